@@ -35,14 +35,18 @@ import org.gradle.api.internal.artifacts.dsl.dependencies.ProjectFinder;
 import org.gradle.api.internal.artifacts.ivyservice.*;
 import org.gradle.api.internal.artifacts.ivyservice.dynamicversions.ModuleResolutionCache;
 import org.gradle.api.internal.artifacts.ivyservice.dynamicversions.SingleFileBackedModuleResolutionCache;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.RepositoryMissCache;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.ResolveIvyFactory;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.StartParameterResolutionOverride;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.UserResolverChain;
 import org.gradle.api.internal.artifacts.ivyservice.modulecache.DefaultModuleDescriptorCache;
+import org.gradle.api.internal.artifacts.ivyservice.modulecache.InMemoryModuleDescriptorCache;
 import org.gradle.api.internal.artifacts.ivyservice.modulecache.ModuleDescriptorCache;
 import org.gradle.api.internal.artifacts.ivyservice.moduleconverter.*;
 import org.gradle.api.internal.artifacts.ivyservice.moduleconverter.dependencies.*;
 import org.gradle.api.internal.artifacts.ivyservice.projectmodule.DefaultProjectModuleRegistry;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.DefaultDependencyResolver;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.ModuleMetaDataPrefetcher;
 import org.gradle.api.internal.artifacts.mvnsettings.*;
 import org.gradle.api.internal.artifacts.repositories.DefaultResolverFactory;
 import org.gradle.api.internal.artifacts.repositories.transport.RepositoryTransportFactory;
@@ -50,6 +54,7 @@ import org.gradle.api.internal.externalresource.cached.ByUrlCachedExternalResour
 import org.gradle.api.internal.externalresource.ivy.ArtifactAtRepositoryCachedExternalResourceIndex;
 import org.gradle.api.internal.externalresource.local.LocallyAvailableResourceFinder;
 import org.gradle.api.internal.externalresource.local.ivy.LocallyAvailableResourceFinderFactory;
+import org.gradle.api.internal.externalresource.transport.http.HttpConnectionPools;
 import org.gradle.api.internal.file.FileResolver;
 import org.gradle.api.internal.file.IdentityFileResolver;
 import org.gradle.api.internal.filestore.PathKeyFileStore;
@@ -60,6 +65,7 @@ import org.gradle.api.internal.notations.api.NotationParser;
 import org.gradle.cache.CacheRepository;
 import org.gradle.internal.Factory;
 import org.gradle.internal.SystemProperties;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.reflect.Instantiator;
 import org.gradle.internal.service.DefaultServiceRegistry;
 import org.gradle.internal.service.ServiceRegistry;
@@ -166,6 +172,10 @@ public class DefaultDependencyManagementServices extends DefaultServiceRegistry
         );
     }
 
+    protected RepositoryMissCache createRepositoryMissCache() {
+        return new RepositoryMissCache();
+    }
+
     protected BuildCommencedTimeProvider createBuildTimeProvider() {
         return new BuildCommencedTimeProvider();
     }
@@ -182,7 +192,8 @@ public class DefaultDependencyManagementServices extends DefaultServiceRegistry
         return new DefaultModuleDescriptorCache(
                 get(ArtifactCacheMetaData.class),
                 get(BuildCommencedTimeProvider.class),
-                get(CacheLockingManager.class)
+                get(CacheLockingManager.class),
+                get(InMemoryModuleDescriptorCache.class)
         );
     }
 
@@ -240,7 +251,8 @@ public class DefaultDependencyManagementServices extends DefaultServiceRegistry
 
     protected RepositoryTransportFactory createRepositoryTransportFactory() {
         return new RepositoryTransportFactory(
-                get(ProgressLoggerFactory.class), get(ArtifactRevisionIdFileStore.class), get(ByUrlCachedExternalResourceIndex.class)
+                get(ProgressLoggerFactory.class), get(ArtifactRevisionIdFileStore.class), get(ByUrlCachedExternalResourceIndex.class),
+                get(GlobalDependencyManagementServices.class).get(HttpConnectionPools.class)
         );
     }
 
@@ -342,10 +354,13 @@ public class DefaultDependencyManagementServices extends DefaultServiceRegistry
                     get(ArtifactAtRepositoryCachedExternalResourceIndex.class),
                     get(CacheLockingManager.class),
                     startParameterResolutionOverride,
-                    get(BuildCommencedTimeProvider.class));
+                    get(BuildCommencedTimeProvider.class),
+                    get(RepositoryMissCache.class));
 
             ResolvedArtifactFactory resolvedArtifactFactory = new ResolvedArtifactFactory(
-                    get(CacheLockingManager.class)
+                    get(CacheLockingManager.class),
+                    get(ExecutorFactory.class),
+                    Integer.getInteger(ResolvedArtifactFactory.DOWNLOAD_THREADS_PROPERTY, 1)
             );
 
             ArtifactDependencyResolver resolver = new DefaultDependencyResolver(
@@ -353,7 +368,11 @@ public class DefaultDependencyManagementServices extends DefaultServiceRegistry
                     get(PublishModuleDescriptorConverter.class),
                     resolvedArtifactFactory,
                     new DefaultProjectModuleRegistry(
-                            get(PublishModuleDescriptorConverter.class))
+                            get(PublishModuleDescriptorConverter.class)),
+                    get(CacheLockingManager.class),
+                    get(ExecutorFactory.class),
+                    Integer.getInteger(ModuleMetaDataPrefetcher.THREADS_PROPERTY, 1),
+                    Integer.getInteger(UserResolverChain.PROBE_THREADS_PROPERTY, 1)
             );
             return new ErrorHandlingArtifactDependencyResolver(
                             new ShortcircuitEmptyConfigsArtifactDependencyResolver(
@@ -37,7 +37,7 @@ public class DefaultResolvedArtifact implements ResolvedArtifact {
     private final String type;
     private final String ext;
     private Factory<File> artifactSource;
-    private File file;
+    private volatile File file;
 
     public DefaultResolvedArtifact(ResolvedDependency resolvedDependency, Artifact artifact, Factory<File> artifactSource) {
         this.resolvedDependency = resolvedDependency;
@@ -112,7 +112,14 @@ public class DefaultResolvedArtifact implements ResolvedArtifact {
         return extraAttributes.get(Dependency.CLASSIFIER);
     }
     
-    public File getFile() {
+    /**
+     * Returns true if the file of this artifact has already been resolved, without resolving it.
+     */
+    public boolean isFileResolved() {
+        return file != null;
+    }
+
+    public synchronized File getFile() {
         if (file == null) {
             file = artifactSource.create();
             artifactSource = null;
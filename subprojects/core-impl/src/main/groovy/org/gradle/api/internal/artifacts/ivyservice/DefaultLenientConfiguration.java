@@ -28,15 +28,17 @@ import java.util.*;
 public class DefaultLenientConfiguration implements ResolvedConfigurationBuilder, LenientConfiguration {
     private final ResolvedDependency root;
     private final Configuration configuration;
+    private final ResolvedArtifactFactory resolvedArtifactFactory;
     private final Map<ModuleDependency, ResolvedDependency> firstLevelDependencies = new LinkedHashMap<ModuleDependency, ResolvedDependency>();
     private final Set<ResolvedArtifact> artifacts = new LinkedHashSet<ResolvedArtifact>();
     private final Set<UnresolvedDependency> unresolvedDependencies = new LinkedHashSet<UnresolvedDependency>();
     private final CachingDirectedGraphWalker<ResolvedDependency, ResolvedArtifact> walker
             = new CachingDirectedGraphWalker<ResolvedDependency, ResolvedArtifact>(new ResolvedDependencyArtifactsGraph());
 
-    public DefaultLenientConfiguration(Configuration configuration, ResolvedDependency root) {
+    public DefaultLenientConfiguration(Configuration configuration, ResolvedDependency root, ResolvedArtifactFactory resolvedArtifactFactory) {
         this.configuration = configuration;
         this.root = root;
+        this.resolvedArtifactFactory = resolvedArtifactFactory;
     }
 
     public boolean hasError() {
@@ -121,6 +123,7 @@ public class DefaultLenientConfiguration implements ResolvedConfigurationBuilder
     }
 
     private Set<File> getFiles(Set<ResolvedArtifact> artifacts) {
+        resolvedArtifactFactory.downloadFiles(artifacts);
         Set<File> files = new LinkedHashSet<File>();
         for (ResolvedArtifact artifact : artifacts) {
             File depFile = artifact.getFile();
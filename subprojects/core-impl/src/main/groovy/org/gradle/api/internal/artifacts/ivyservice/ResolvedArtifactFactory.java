@@ -20,14 +20,33 @@ import org.gradle.api.artifacts.ResolvedArtifact;
 import org.gradle.api.artifacts.ResolvedDependency;
 import org.gradle.api.internal.artifacts.DefaultResolvedArtifact;
 import org.gradle.internal.Factory;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.StoppableExecutor;
 
 import java.io.File;
+import java.util.Collection;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 public class ResolvedArtifactFactory {
+    /**
+     * The number of threads to use to download the artifacts of a configuration at the same time. Defaults to 1, which downloads each
+     * artifact when its file is first requested.
+     */
+    public static final String DOWNLOAD_THREADS_PROPERTY = "org.gradle.dependency.resolution.downloadThreads";
+
     private final CacheLockingManager lockingManager;
+    private final ExecutorFactory executorFactory;
+    private final int downloadThreads;
 
-    public ResolvedArtifactFactory(CacheLockingManager lockingManager) {
+    /**
+     * @param downloadThreads The number of threads to use to download artifacts ahead of their files being requested. When 1 or less,
+     * each artifact is downloaded when its file is requested.
+     */
+    public ResolvedArtifactFactory(CacheLockingManager lockingManager, ExecutorFactory executorFactory, int downloadThreads) {
         this.lockingManager = lockingManager;
+        this.executorFactory = executorFactory;
+        this.downloadThreads = downloadThreads;
     }
 
     public ResolvedArtifact create(ResolvedDependency owner, final Artifact artifact, final ArtifactResolver resolver) {
@@ -41,4 +60,56 @@ public class ResolvedArtifactFactory {
             }
         });
     }
+
+    /**
+     * Downloads the files of the given artifacts which have not been downloaded yet at the same time, returning once all of them have
+     * completed. An artifact which cannot be downloaded is skipped, so that the failure is reported when its file is requested.
+     */
+    public void downloadFiles(Collection<? extends ResolvedArtifact> artifacts) {
+        if (downloadThreads <= 1) {
+            return;
+        }
+        final Queue<ResolvedArtifact> pending = new ConcurrentLinkedQueue<ResolvedArtifact>();
+        for (ResolvedArtifact artifact : artifacts) {
+            if (artifact instanceof DefaultResolvedArtifact && !((DefaultResolvedArtifact) artifact).isFileResolved()) {
+                pending.add(artifact);
+            }
+        }
+        if (pending.size() < 2) {
+            // Nothing to do at the same time, so leave any download until the file is requested
+            return;
+        }
+
+        final Runnable downloader = new Runnable() {
+            public void run() {
+                ResolvedArtifact artifact;
+                while ((artifact = pending.poll()) != null) {
+                    try {
+                        artifact.getFile();
+                    } catch (RuntimeException e) {
+                        // Reported when the file is requested
+                    }
+                }
+            }
+        };
+        final StoppableExecutor executor = executorFactory.create("Download artifacts");
+        // This thread is one of the downloaders
+        for (int i = 1; i < Math.min(downloadThreads, pending.size()); i++) {
+            executor.execute(downloader);
+        }
+        // The downloads use the artifact cache, so this thread releases it while waiting for them
+        lockingManager.useCache("download artifacts", new Runnable() {
+            public void run() {
+                lockingManager.longRunningOperation("Wait for artifact downloads", new Runnable() {
+                    public void run() {
+                        try {
+                            downloader.run();
+                        } finally {
+                            executor.stop();
+                        }
+                    }
+                });
+            }
+        });
+    }
 }
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.ivyresolve;
+
+import org.apache.ivy.core.module.id.ModuleId;
+import org.apache.ivy.core.module.id.ModuleRevisionId;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Remembers the module versions that could not be found in each remote repository during a build, so that a repository is asked for a
+ * missing module version at most once per build. Local repositories are not remembered, as their content can change during the build.
+ */
+public class RepositoryMissCache {
+    private final Map<String, Set<ModuleRevisionId>> misses = new HashMap<String, Set<ModuleRevisionId>>();
+
+    public synchronized boolean isMissing(ModuleVersionRepository repository, ModuleRevisionId moduleRevisionId) {
+        Set<ModuleRevisionId> missing = misses.get(repository.getId());
+        return missing != null && missing.contains(normalise(moduleRevisionId));
+    }
+
+    public synchronized void missing(ModuleVersionRepository repository, ModuleRevisionId moduleRevisionId) {
+        if (repository.isLocal()) {
+            return;
+        }
+        Set<ModuleRevisionId> missing = misses.get(repository.getId());
+        if (missing == null) {
+            missing = new HashSet<ModuleRevisionId>();
+            misses.put(repository.getId(), missing);
+        }
+        missing.add(normalise(moduleRevisionId));
+    }
+
+    private static ModuleRevisionId normalise(ModuleRevisionId moduleRevisionId) {
+        // Discard the extra attributes and branch
+        return new ModuleRevisionId(new ModuleId(moduleRevisionId.getOrganisation(), moduleRevisionId.getName()), moduleRevisionId.getRevision());
+    }
+}
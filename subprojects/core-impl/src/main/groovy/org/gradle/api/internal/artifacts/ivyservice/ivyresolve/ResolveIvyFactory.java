@@ -34,6 +34,7 @@ import org.gradle.internal.TimeProvider;
 import org.gradle.util.WrapUtil;
 
 import java.util.List;
+import java.util.concurrent.Executor;
 
 public class ResolveIvyFactory {
     private final IvyFactory ivyFactory;
@@ -45,13 +46,13 @@ public class ResolveIvyFactory {
     private final CacheLockingManager cacheLockingManager;
     private final StartParameterResolutionOverride startParameterResolutionOverride;
     private final TimeProvider timeProvider;
-
+    private final RepositoryMissCache repositoryMissCache;
 
     public ResolveIvyFactory(IvyFactory ivyFactory, ResolverProvider resolverProvider, SettingsConverter settingsConverter,
                              ModuleResolutionCache moduleResolutionCache, ModuleDescriptorCache moduleDescriptorCache,
                              CachedExternalResourceIndex<ArtifactAtRepositoryKey> artifactAtRepositoryCachedResolutionIndex,
                              CacheLockingManager cacheLockingManager, StartParameterResolutionOverride startParameterResolutionOverride,
-                             TimeProvider timeProvider) {
+                             TimeProvider timeProvider, RepositoryMissCache repositoryMissCache) {
         this.ivyFactory = ivyFactory;
         this.resolverProvider = resolverProvider;
         this.settingsConverter = settingsConverter;
@@ -61,10 +62,15 @@ public class ResolveIvyFactory {
         this.cacheLockingManager = cacheLockingManager;
         this.startParameterResolutionOverride = startParameterResolutionOverride;
         this.timeProvider = timeProvider;
+        this.repositoryMissCache = repositoryMissCache;
     }
 
-    public IvyAdapter create(ConfigurationInternal configuration) {
-        UserResolverChain userResolverChain = new UserResolverChain();
+    /**
+     * @param probeExecutor Used to ask the repositories for a module version at the same time. When null, the repositories are asked in turn.
+     * @param probeThreads The maximum number of repositories to ask using the executor at the same time.
+     */
+    public IvyAdapter create(ConfigurationInternal configuration, Executor probeExecutor, int probeThreads) {
+        UserResolverChain userResolverChain = new UserResolverChain(repositoryMissCache, cacheLockingManager, probeExecutor, probeThreads);
         ResolutionRules resolutionRules = configuration.getResolutionStrategy().getResolutionRules();
         startParameterResolutionOverride.addResolutionRules(resolutionRules);
 
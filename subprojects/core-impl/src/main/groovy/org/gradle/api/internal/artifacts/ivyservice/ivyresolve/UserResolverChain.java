@@ -24,6 +24,8 @@ import org.apache.ivy.plugins.latest.ArtifactInfo;
 import org.apache.ivy.plugins.latest.ComparatorLatestStrategy;
 import org.apache.ivy.plugins.resolver.ResolverSettings;
 import org.gradle.api.internal.artifacts.ivyservice.*;
+import org.gradle.internal.Factory;
+import org.gradle.internal.UncheckedException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -31,14 +33,35 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.*;
 
 public class UserResolverChain implements DependencyToModuleResolver {
     private static final Logger LOGGER = LoggerFactory.getLogger(UserResolverChain.class);
+    /**
+     * The number of threads to use to look for a module version in all repositories at the same time. Defaults to 1, which asks each
+     * repository in turn until the module version is found.
+     */
+    public static final String PROBE_THREADS_PROPERTY = "org.gradle.dependency.resolution.repositoryProbeThreads";
 
     private final List<ModuleVersionRepository> moduleVersionRepositories = new ArrayList<ModuleVersionRepository>();
     private final List<String> moduleVersionRepositoryNames = new ArrayList<String>();
+    private final RepositoryMissCache missCache;
+    private final CacheLockingManager cacheLockingManager;
+    private final Executor probeExecutor;
+    private final Semaphore probeSlots;
     private ResolverSettings settings;
 
+    /**
+     * @param probeExecutor Used to ask the repositories after the first one at the same time. When null, the repositories are asked in turn.
+     * @param probeThreads The maximum number of repositories to ask using the executor at the same time.
+     */
+    public UserResolverChain(RepositoryMissCache missCache, CacheLockingManager cacheLockingManager, Executor probeExecutor, int probeThreads) {
+        this.missCache = missCache;
+        this.cacheLockingManager = cacheLockingManager;
+        this.probeExecutor = probeExecutor;
+        this.probeSlots = new Semaphore(probeThreads);
+    }
+
     public void setSettings(ResolverSettings settings) {
         this.settings = settings;
     }
@@ -66,24 +89,37 @@ public class UserResolverChain implements DependencyToModuleResolver {
 
     private ModuleResolution findLatestModule(DependencyDescriptor dependencyDescriptor, Collection<Throwable> failures) {
         boolean isStaticVersion = !settings.getVersionMatcher().isDynamic(dependencyDescriptor.getDependencyRevisionId());
-        
-        ModuleResolution best = null;
+
+        List<RepositoryProbe> probes = new ArrayList<RepositoryProbe>();
         for (ModuleVersionRepository repository : moduleVersionRepositories) {
-            try {
-                ModuleVersionDescriptor module = repository.getDependency(dependencyDescriptor);
-                if (module != null) {
-                    ModuleResolution moduleResolution = new ModuleResolution(repository, module);
-                    if (isStaticVersion && !moduleResolution.isGeneratedModuleDescriptor()) {
-                        return moduleResolution;
+            // The first repository is asked on this thread, the others in the background
+            probes.add(new RepositoryProbe(repository, dependencyDescriptor, probeExecutor != null && !probes.isEmpty()));
+        }
+
+        try {
+            // Use the results in the declared order of the repositories, regardless of when they arrive
+            ModuleResolution best = null;
+            for (RepositoryProbe probe : probes) {
+                try {
+                    ModuleVersionDescriptor module = probe.getResult();
+                    if (module != null) {
+                        ModuleResolution moduleResolution = new ModuleResolution(probe.repository, module);
+                        if (isStaticVersion && !moduleResolution.isGeneratedModuleDescriptor()) {
+                            return moduleResolution;
+                        }
+                        best = chooseBest(best, moduleResolution);
                     }
-                    best = chooseBest(best, moduleResolution);
+                } catch (Throwable e) {
+                    failures.add(e);
                 }
-            } catch (Throwable e) {
-                failures.add(e);
             }
-        }
 
-        return best;
+            return best;
+        } finally {
+            for (RepositoryProbe probe : probes) {
+                probe.cancel();
+            }
+        }
     }
 
     private ModuleResolution chooseBest(ModuleResolution one, ModuleResolution two) {
@@ -108,6 +144,90 @@ public class UserResolverChain implements DependencyToModuleResolver {
         return comparison < 0 ? two : one;
     }
 
+    /**
+     * Looks for a module version in a single repository, remembering the repository if it does not have the module version.
+     */
+    private class RepositoryProbe {
+        private final ModuleVersionRepository repository;
+        private final DependencyDescriptor dependencyDescriptor;
+        private final FutureTask<ModuleVersionDescriptor> lookup;
+
+        private RepositoryProbe(final ModuleVersionRepository repository, final DependencyDescriptor dependencyDescriptor, final boolean background) {
+            this.repository = repository;
+            this.dependencyDescriptor = dependencyDescriptor;
+            if (missCache.isMissing(repository, dependencyDescriptor.getDependencyRevisionId())) {
+                LOGGER.debug("Module '{}' already found to be missing from repository '{}'", dependencyDescriptor.getDependencyRevisionId(), repository.getName());
+                lookup = null;
+                return;
+            }
+            lookup = new FutureTask<ModuleVersionDescriptor>(new Callable<ModuleVersionDescriptor>() {
+                public ModuleVersionDescriptor call() {
+                    if (!background) {
+                        return getDependency();
+                    }
+                    // The repositories use the artifact cache, which the resolving thread releases only while it waits for a result
+                    return cacheLockingManager.useCache(String.format("Resolve %s using repository %s", dependencyDescriptor, repository.getId()), new Factory<ModuleVersionDescriptor>() {
+                        public ModuleVersionDescriptor create() {
+                            return getDependency();
+                        }
+                    });
+                }
+            });
+            // When all the threads are busy, the lookup is run on the resolving thread when its result is needed
+            if (background && probeSlots.tryAcquire()) {
+                probeExecutor.execute(new Runnable() {
+                    public void run() {
+                        try {
+                            lookup.run();
+                        } finally {
+                            probeSlots.release();
+                        }
+                    }
+                });
+            }
+        }
+
+        private ModuleVersionDescriptor getDependency() {
+            ModuleVersionDescriptor module = repository.getDependency(dependencyDescriptor);
+            if (module == null) {
+                missCache.missing(repository, dependencyDescriptor.getDependencyRevisionId());
+            }
+            return module;
+        }
+
+        public ModuleVersionDescriptor getResult() throws Throwable {
+            if (lookup == null) {
+                return null;
+            }
+            // Run the lookup here if it has not been started yet
+            lookup.run();
+            if (!lookup.isDone()) {
+                cacheLockingManager.longRunningOperation(String.format("Wait for %s from repository %s", dependencyDescriptor, repository.getId()), new Runnable() {
+                    public void run() {
+                        try {
+                            lookup.get();
+                        } catch (InterruptedException e) {
+                            throw UncheckedException.throwAsUncheckedException(e);
+                        } catch (ExecutionException e) {
+                            // Reported below
+                        }
+                    }
+                });
+            }
+            try {
+                return lookup.get();
+            } catch (ExecutionException e) {
+                throw e.getCause();
+            }
+        }
+
+        public void cancel() {
+            if (lookup != null) {
+                lookup.cancel(false);
+            }
+        }
+    }
+
     private static class ModuleResolution implements ArtifactInfo, ModuleVersionResolveResult {
         public final ModuleVersionRepository repository;
         public final ModuleVersionDescriptor module;
@@ -0,0 +1,481 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.modulecache;
+
+import org.apache.ivy.core.IvyPatternHelper;
+import org.apache.ivy.core.module.descriptor.*;
+import org.apache.ivy.core.module.id.ArtifactId;
+import org.apache.ivy.core.module.id.ModuleId;
+import org.apache.ivy.core.module.id.ModuleRevisionId;
+import org.apache.ivy.core.settings.IvySettings;
+import org.apache.ivy.plugins.matcher.MapMatcher;
+import org.apache.ivy.plugins.matcher.PatternMatcher;
+import org.apache.ivy.plugins.namespace.Namespace;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.IvyContextualiser;
+import org.gradle.messaging.serialize.Serializer;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Serializes module descriptors to a compact binary format, for the module metadata cache. Records the same information
+ * as {@link org.gradle.api.internal.artifacts.ivyservice.IvyXmlModuleDescriptorWriter}, and rebuilds the descriptor
+ * the way {@link org.apache.ivy.plugins.parser.xml.XmlModuleDescriptorParser} does, without any XML parsing.
+ */
+public class ModuleDescriptorSerializer implements Serializer<ModuleDescriptor> {
+    private static final int FORMAT_VERSION = 1;
+
+    public void write(OutputStream outstr, ModuleDescriptor value) throws Exception {
+        Encoder encoder = new Encoder(outstr);
+        encoder.writeModuleDescriptor(value);
+        encoder.flush();
+    }
+
+    public ModuleDescriptor read(InputStream instr) throws Exception {
+        return new Decoder(instr, IvyContextualiser.getIvyContext().getSettings()).readModuleDescriptor();
+    }
+
+    private static class Encoder {
+        private final DataOutputStream output;
+        private final Map<String, Integer> strings = new HashMap<String, Integer>();
+
+        Encoder(OutputStream outstr) {
+            output = new DataOutputStream(new BufferedOutputStream(outstr));
+        }
+
+        void flush() throws IOException {
+            output.flush();
+        }
+
+        void writeModuleDescriptor(ModuleDescriptor md) throws IOException {
+            output.writeByte(FORMAT_VERSION);
+
+            ModuleRevisionId moduleRevisionId = md.getModuleRevisionId();
+            ModuleRevisionId resolvedModuleRevisionId = md.getResolvedModuleRevisionId();
+            writeString(moduleRevisionId.getOrganisation());
+            writeString(moduleRevisionId.getName());
+            writeString(resolvedModuleRevisionId.getBranch());
+            writeString(resolvedModuleRevisionId.getRevision());
+            writeString(md.getStatus());
+            Date publicationDate = md.getResolvedPublicationDate();
+            output.writeBoolean(publicationDate != null);
+            if (publicationDate != null) {
+                output.writeLong(publicationDate.getTime());
+            }
+            output.writeBoolean(md.isDefault());
+            Namespace namespace = md instanceof DefaultModuleDescriptor ? ((DefaultModuleDescriptor) md).getNamespace() : null;
+            writeString(namespace == null || namespace.getName().equals("system") ? null : namespace.getName());
+            writeMap(md.getQualifiedExtraAttributes());
+            writeMap(md.getExtraAttributesNamespaces());
+
+            License[] licenses = md.getLicenses();
+            writeCount(licenses.length);
+            for (License license : licenses) {
+                writeString(license.getName());
+                writeString(license.getUrl());
+            }
+            writeString(md.getHomePage());
+            writeString(md.getDescription());
+            Map<String, String> extraInfo = new LinkedHashMap<String, String>();
+            for (Object o : md.getExtraInfo().entrySet()) {
+                Map.Entry entry = (Map.Entry) o;
+                if (entry.getValue() != null && entry.getValue().toString().length() > 0) {
+                    extraInfo.put(entry.getKey().toString(), entry.getValue().toString());
+                }
+            }
+            writeMap(extraInfo);
+
+            Configuration[] configurations = md.getConfigurations();
+            writeCount(configurations.length);
+            for (Configuration configuration : configurations) {
+                writeString(configuration.getName());
+                writeString(configuration.getVisibility().toString());
+                writeString(configuration.getDescription());
+                writeStrings(configuration.getExtends());
+                output.writeBoolean(configuration.isTransitive());
+                writeString(configuration.getDeprecated());
+                writeMap(configuration.getQualifiedExtraAttributes());
+            }
+
+            Artifact[] artifacts = md.getAllArtifacts();
+            writeCount(artifacts.length);
+            for (Artifact artifact : artifacts) {
+                writeString(artifact.getName());
+                writeString(artifact.getType());
+                writeString(artifact.getExt());
+                List<String> confs = new ArrayList<String>();
+                for (String conf : md.getConfigurationsNames()) {
+                    if (Arrays.asList(md.getArtifacts(conf)).contains(artifact)) {
+                        confs.add(conf);
+                    }
+                }
+                writeStrings(confs.toArray(new String[confs.size()]));
+                writeMap(artifact.getQualifiedExtraAttributes());
+            }
+
+            DependencyDescriptor[] dependencies = md.getDependencies();
+            writeCount(dependencies.length);
+            for (DependencyDescriptor dependency : dependencies) {
+                writeDependency(dependency);
+            }
+
+            writeRules(md.getAllExcludeRules());
+
+            Map mediators = md.getAllDependencyDescriptorMediators().getAllRules();
+            List<Map.Entry> overrides = new ArrayList<Map.Entry>();
+            for (Object o : mediators.entrySet()) {
+                Map.Entry entry = (Map.Entry) o;
+                if (entry.getValue() instanceof OverrideDependencyDescriptorMediator) {
+                    overrides.add(entry);
+                }
+            }
+            writeCount(overrides.size());
+            for (Map.Entry entry : overrides) {
+                MapMatcher matcher = (MapMatcher) entry.getKey();
+                OverrideDependencyDescriptorMediator mediator = (OverrideDependencyDescriptorMediator) entry.getValue();
+                writeString((String) matcher.getAttributes().get(IvyPatternHelper.ORGANISATION_KEY));
+                writeString((String) matcher.getAttributes().get(IvyPatternHelper.MODULE_KEY));
+                writeString(matcher.getPatternMatcher().getName());
+                writeString(mediator.getBranch());
+                writeString(mediator.getVersion());
+            }
+        }
+
+        private void writeDependency(DependencyDescriptor dependency) throws IOException {
+            ModuleRevisionId dependencyRevisionId = dependency.getDependencyRevisionId();
+            ModuleRevisionId dynamicConstraintRevisionId = dependency.getDynamicConstraintDependencyRevisionId();
+            writeString(dependencyRevisionId.getOrganisation());
+            writeString(dependencyRevisionId.getName());
+            writeString(dependencyRevisionId.getBranch());
+            writeString(dependencyRevisionId.getRevision());
+            boolean hasConstraint = !dynamicConstraintRevisionId.equals(dependencyRevisionId);
+            output.writeBoolean(hasConstraint);
+            if (hasConstraint) {
+                writeString(dynamicConstraintRevisionId.getBranch());
+                writeString(dynamicConstraintRevisionId.getRevision());
+            }
+            output.writeBoolean(dependency.isForce());
+            output.writeBoolean(dependency.isChanging());
+            output.writeBoolean(dependency.isTransitive());
+            writeMap(dependency.getQualifiedExtraAttributes());
+
+            String[] moduleConfigurations = dependency.getModuleConfigurations();
+            writeCount(moduleConfigurations.length);
+            for (String moduleConfiguration : moduleConfigurations) {
+                writeString(moduleConfiguration);
+                writeStrings(dependency.getDependencyConfigurations(moduleConfiguration));
+            }
+
+            DependencyArtifactDescriptor[] artifacts = dependency.getAllDependencyArtifacts();
+            writeCount(artifacts.length);
+            for (DependencyArtifactDescriptor artifact : artifacts) {
+                writeString(artifact.getName());
+                writeString(artifact.getType());
+                writeString(artifact.getExt());
+                writeStrings(artifact.getConfigurations());
+                writeMap(artifact.getQualifiedExtraAttributes());
+            }
+
+            writeRules(dependency.getAllIncludeRules());
+            writeRules(dependency.getAllExcludeRules());
+        }
+
+        private void writeRules(IncludeRule[] rules) throws IOException {
+            writeCount(rules.length);
+            for (IncludeRule rule : rules) {
+                writeRule(rule.getId(), rule.getConfigurations(), rule.getMatcher());
+            }
+        }
+
+        private void writeRules(ExcludeRule[] rules) throws IOException {
+            writeCount(rules.length);
+            for (ExcludeRule rule : rules) {
+                writeRule(rule.getId(), rule.getConfigurations(), rule.getMatcher());
+            }
+        }
+
+        private void writeRule(ArtifactId id, String[] confs, PatternMatcher matcher) throws IOException {
+            writeString(id.getModuleId().getOrganisation());
+            writeString(id.getModuleId().getName());
+            writeString(id.getName());
+            writeString(id.getType());
+            writeString(id.getExt());
+            writeStrings(confs);
+            writeString(matcher.getName());
+        }
+
+        private void writeMap(Map<?, ?> map) throws IOException {
+            if (map == null) {
+                writeCount(0);
+                return;
+            }
+            writeCount(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                writeString(entry.getKey().toString());
+                writeString(entry.getValue() == null ? null : entry.getValue().toString());
+            }
+        }
+
+        private void writeStrings(String[] values) throws IOException {
+            writeCount(values.length);
+            for (String value : values) {
+                writeString(value);
+            }
+        }
+
+        /**
+         * Writes a string as a reference into the table of strings already written, or as the string itself the first
+         * time it is seen. Encoded as 0 for null, 1 for a new string, or the index into the table plus 2.
+         */
+        private void writeString(String value) throws IOException {
+            if (value == null) {
+                writeCount(0);
+                return;
+            }
+            Integer index = strings.get(value);
+            if (index != null) {
+                writeCount(index + 2);
+                return;
+            }
+            strings.put(value, strings.size());
+            writeCount(1);
+            byte[] bytes = value.getBytes("UTF-8");
+            writeCount(bytes.length);
+            output.write(bytes);
+        }
+
+        /**
+         * Writes a non-negative int using a variable length encoding of 7 bits per byte.
+         */
+        private void writeCount(int value) throws IOException {
+            while ((value & ~0x7F) != 0) {
+                output.writeByte((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            output.writeByte(value);
+        }
+    }
+
+    private static class Decoder {
+        private final DataInputStream input;
+        private final IvySettings settings;
+        private final List<String> strings = new ArrayList<String>();
+
+        Decoder(InputStream instr, IvySettings settings) {
+            this.input = new DataInputStream(new BufferedInputStream(instr));
+            this.settings = settings;
+        }
+
+        ModuleDescriptor readModuleDescriptor() throws IOException {
+            int version = input.readUnsignedByte();
+            if (version != FORMAT_VERSION) {
+                throw new IOException(String.format("Unexpected module descriptor format version %s.", version));
+            }
+
+            String organisation = readString();
+            String name = readString();
+            String branch = readString();
+            String revision = readString();
+            String status = readString();
+            Date publicationDate = input.readBoolean() ? new Date(input.readLong()) : null;
+            boolean isDefault = input.readBoolean();
+            String namespace = readString();
+            Map<String, String> extraAttributes = readMap();
+            ModuleRevisionId moduleRevisionId = ModuleRevisionId.newInstance(organisation, name, branch, revision, extraAttributes);
+            DefaultModuleDescriptor md = new DefaultModuleDescriptor(moduleRevisionId, status, publicationDate, isDefault);
+            if (namespace != null) {
+                md.setNamespace(settings.getNamespace(namespace));
+            }
+            for (Map.Entry<String, String> entry : readMap().entrySet()) {
+                md.addExtraAttributeNamespace(entry.getKey(), entry.getValue());
+            }
+
+            for (int i = readCount(); i > 0; i--) {
+                md.addLicense(new License(readString(), readString()));
+            }
+            md.setHomePage(readString());
+            md.setDescription(readString());
+            for (Map.Entry<String, String> entry : readMap().entrySet()) {
+                md.addExtraInfo(entry.getKey(), entry.getValue());
+            }
+
+            for (int i = readCount(); i > 0; i--) {
+                String confName = readString();
+                Configuration.Visibility visibility = Configuration.Visibility.getVisibility(readString());
+                String description = readString();
+                String[] extendsFrom = readStrings();
+                boolean transitive = input.readBoolean();
+                String deprecated = readString();
+                Configuration configuration = new Configuration(confName, visibility, description, extendsFrom, transitive, deprecated);
+                for (Map.Entry<String, String> entry : readMap().entrySet()) {
+                    configuration.setExtraAttribute(entry.getKey(), entry.getValue());
+                }
+                md.addConfiguration(configuration);
+            }
+
+            for (int i = readCount(); i > 0; i--) {
+                String artifactName = readString();
+                String type = readString();
+                String ext = readString();
+                String[] confs = readStrings();
+                MDArtifact artifact = new MDArtifact(md, artifactName, type, ext, null, readMap());
+                if (confs.length == 0) {
+                    confs = md.getConfigurationsNames();
+                }
+                for (String conf : confs) {
+                    artifact.addConfiguration(conf);
+                    md.addArtifact(conf, artifact);
+                }
+            }
+
+            for (int i = readCount(); i > 0; i--) {
+                md.addDependency(readDependency(md));
+            }
+
+            for (int i = readCount(); i > 0; i--) {
+                ArtifactId id = readArtifactId();
+                String[] confs = readStrings();
+                DefaultExcludeRule rule = new DefaultExcludeRule(id, readMatcher(), new HashMap<String, String>());
+                for (String conf : confs.length == 0 ? md.getConfigurationsNames() : confs) {
+                    rule.addConfiguration(conf);
+                }
+                md.addExcludeRule(rule);
+            }
+
+            for (int i = readCount(); i > 0; i--) {
+                ModuleId moduleId = new ModuleId(readString(), readString());
+                PatternMatcher matcher = readMatcher();
+                md.addDependencyDescriptorMediator(moduleId, matcher, new OverrideDependencyDescriptorMediator(readString(), readString()));
+            }
+            return md;
+        }
+
+        private DependencyDescriptor readDependency(ModuleDescriptor md) throws IOException {
+            String organisation = readString();
+            String name = readString();
+            String branch = readString();
+            String revision = readString();
+            boolean hasConstraint = input.readBoolean();
+            String branchConstraint = hasConstraint ? readString() : null;
+            String revisionConstraint = hasConstraint ? readString() : null;
+            boolean force = input.readBoolean();
+            boolean changing = input.readBoolean();
+            boolean transitive = input.readBoolean();
+            Map<String, String> extraAttributes = readMap();
+            ModuleRevisionId dependencyRevisionId = ModuleRevisionId.newInstance(organisation, name, branch, revision, extraAttributes);
+            ModuleRevisionId dynamicConstraintRevisionId = hasConstraint
+                    ? ModuleRevisionId.newInstance(organisation, name, branchConstraint, revisionConstraint, extraAttributes)
+                    : dependencyRevisionId;
+            DefaultDependencyDescriptor dd = new DefaultDependencyDescriptor(md, dependencyRevisionId, dynamicConstraintRevisionId, force, changing, transitive);
+
+            for (int i = readCount(); i > 0; i--) {
+                String moduleConfiguration = readString();
+                for (String dependencyConfiguration : readStrings()) {
+                    dd.addDependencyConfiguration(moduleConfiguration, dependencyConfiguration);
+                }
+            }
+
+            for (int i = readCount(); i > 0; i--) {
+                String artifactName = readString();
+                String type = readString();
+                String ext = readString();
+                String[] confs = readStrings();
+                DefaultDependencyArtifactDescriptor artifact = new DefaultDependencyArtifactDescriptor(dd, artifactName, type, ext, null, readMap());
+                if (confs.length == 0) {
+                    confs = dd.getModuleConfigurations();
+                }
+                for (String conf : confs) {
+                    artifact.addConfiguration(conf);
+                    dd.addDependencyArtifact(conf, artifact);
+                }
+            }
+
+            for (int i = readCount(); i > 0; i--) {
+                ArtifactId id = readArtifactId();
+                String[] confs = readStrings();
+                DefaultIncludeRule rule = new DefaultIncludeRule(id, readMatcher(), new HashMap<String, String>());
+                for (String conf : confs.length == 0 ? dd.getModuleConfigurations() : confs) {
+                    rule.addConfiguration(conf);
+                    dd.addIncludeRule(conf, rule);
+                }
+            }
+
+            for (int i = readCount(); i > 0; i--) {
+                ArtifactId id = readArtifactId();
+                String[] confs = readStrings();
+                DefaultExcludeRule rule = new DefaultExcludeRule(id, readMatcher(), new HashMap<String, String>());
+                for (String conf : confs.length == 0 ? dd.getModuleConfigurations() : confs) {
+                    rule.addConfiguration(conf);
+                    dd.addExcludeRule(conf, rule);
+                }
+            }
+            return dd;
+        }
+
+        private ArtifactId readArtifactId() throws IOException {
+            ModuleId moduleId = new ModuleId(readString(), readString());
+            return new ArtifactId(moduleId, readString(), readString(), readString());
+        }
+
+        private PatternMatcher readMatcher() throws IOException {
+            return settings.getMatcher(readString());
+        }
+
+        private Map<String, String> readMap() throws IOException {
+            int count = readCount();
+            Map<String, String> map = new LinkedHashMap<String, String>();
+            for (int i = 0; i < count; i++) {
+                map.put(readString(), readString());
+            }
+            return map;
+        }
+
+        private String[] readStrings() throws IOException {
+            String[] values = new String[readCount()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = readString();
+            }
+            return values;
+        }
+
+        private String readString() throws IOException {
+            int code = readCount();
+            if (code == 0) {
+                return null;
+            }
+            if (code > 1) {
+                return strings.get(code - 2);
+            }
+            byte[] bytes = new byte[readCount()];
+            input.readFully(bytes);
+            String value = new String(bytes, "UTF-8");
+            strings.add(value);
+            return value;
+        }
+
+        private int readCount() throws IOException {
+            int value = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = input.readUnsignedByte();
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+    }
+}
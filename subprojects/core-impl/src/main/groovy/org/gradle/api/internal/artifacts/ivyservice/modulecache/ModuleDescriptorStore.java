@@ -20,62 +20,78 @@ import org.apache.ivy.core.module.descriptor.Artifact;
 import org.apache.ivy.core.module.descriptor.DefaultArtifact;
 import org.apache.ivy.core.module.descriptor.ModuleDescriptor;
 import org.apache.ivy.core.module.id.ModuleRevisionId;
-import org.apache.ivy.plugins.parser.ParserSettings;
-import org.apache.ivy.plugins.parser.xml.XmlModuleDescriptorParser;
 import org.gradle.api.Action;
-import org.gradle.api.internal.artifacts.ivyservice.IvyModuleDescriptorWriter;
-import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.IvyContextualiser;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.ModuleVersionRepository;
 import org.gradle.api.internal.filestore.FileStoreEntry;
 import org.gradle.api.internal.filestore.PathKeyFileStore;
 import org.gradle.internal.UncheckedException;
+import org.gradle.messaging.serialize.Serializer;
 
-import java.io.File;
-import java.net.URL;
+import java.io.*;
 import java.util.Collections;
 
 public class ModuleDescriptorStore {
 
     private static final String DESCRIPTOR_ARTIFACT_PATTERN =
-            "module-metadata/[organisation]/[module](/[branch])/[revision]/[resolverId].ivy.xml";
-
-    private final XmlModuleDescriptorParser parser = XmlModuleDescriptorParser.getInstance();
+            "module-metadata/[organisation]/[module](/[branch])/[revision]/[resolverId].ivy.bin";
     private final PathKeyFileStore pathKeyFileStore;
-    private final IvyModuleDescriptorWriter ivyModuleDescriptorWriter;
+    private final Serializer<ModuleDescriptor> serializer;
+    private final InMemoryModuleDescriptorCache inMemoryCache;
 
-    public ModuleDescriptorStore(PathKeyFileStore pathKeyFileStore, IvyModuleDescriptorWriter ivyModuleDescriptorWriter) {
+    public ModuleDescriptorStore(PathKeyFileStore pathKeyFileStore, Serializer<ModuleDescriptor> serializer, InMemoryModuleDescriptorCache inMemoryCache) {
         this.pathKeyFileStore = pathKeyFileStore;
-        this.ivyModuleDescriptorWriter = ivyModuleDescriptorWriter;
+        this.serializer = serializer;
+        this.inMemoryCache = inMemoryCache;
     }
 
     public ModuleDescriptor getModuleDescriptor(ModuleVersionRepository repository, ModuleRevisionId moduleRevisionId) {
         String filePath = getFilePath(repository, moduleRevisionId);
-        final FileStoreEntry fileStoreEntry = pathKeyFileStore.get(filePath);
+        FileStoreEntry fileStoreEntry = pathKeyFileStore.get(filePath);
         if (fileStoreEntry != null) {
-            return parseModuleDescriptorFile(fileStoreEntry.getFile());
+            File moduleDescriptorFile = fileStoreEntry.getFile();
+            ModuleDescriptor moduleDescriptor = inMemoryCache.get(moduleDescriptorFile);
+            if (moduleDescriptor == null) {
+                moduleDescriptor = readModuleDescriptorFile(moduleDescriptorFile);
+                inMemoryCache.put(moduleDescriptorFile, moduleDescriptor);
+            }
+            return moduleDescriptor;
         }
         return null;
     }
 
-
     public void putModuleDescriptor(ModuleVersionRepository repository, final ModuleDescriptor moduleDescriptor) {
         String filePath = getFilePath(repository, moduleDescriptor.getModuleRevisionId());
-        pathKeyFileStore.add(filePath, new Action<File>() {
+        FileStoreEntry fileStoreEntry = pathKeyFileStore.add(filePath, new Action<File>() {
             public void execute(File moduleDescriptorFile) {
                 try {
-                    ivyModuleDescriptorWriter.write(moduleDescriptor, moduleDescriptorFile);
+                    writeModuleDescriptorFile(moduleDescriptor, moduleDescriptorFile);
                 } catch (Exception e) {
                     throw UncheckedException.throwAsUncheckedException(e);
                 }
             }
         });
+        if (fileStoreEntry != null) {
+            inMemoryCache.remove(fileStoreEntry.getFile());
+        }
     }
 
-    private ModuleDescriptor parseModuleDescriptorFile(File moduleDescriptorFile) {
-        ParserSettings settings = IvyContextualiser.getIvyContext().getSettings();
+    private void writeModuleDescriptorFile(ModuleDescriptor moduleDescriptor, File moduleDescriptorFile) throws Exception {
+        OutputStream outputStream = new FileOutputStream(moduleDescriptorFile);
         try {
-            URL result = moduleDescriptorFile.toURI().toURL();
-            return parser.parseDescriptor(settings, result, false);
+            serializer.write(outputStream, moduleDescriptor);
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    private ModuleDescriptor readModuleDescriptorFile(File moduleDescriptorFile) {
+        try {
+            InputStream inputStream = new FileInputStream(moduleDescriptorFile);
+            try {
+                return serializer.read(inputStream);
+            } finally {
+                inputStream.close();
+            }
         } catch (Exception e) {
             throw UncheckedException.throwAsUncheckedException(e);
         }
@@ -28,28 +28,59 @@ import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.ResolveIvyFactory
 import org.gradle.api.internal.artifacts.ivyservice.projectmodule.ProjectDependencyResolver;
 import org.gradle.api.internal.artifacts.ivyservice.projectmodule.ProjectModuleRegistry;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ResolutionResultBuilder;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.StoppableExecutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.Executor;
+
 public class DefaultDependencyResolver implements ArtifactDependencyResolver {
     private static final Logger LOGGER = LoggerFactory.getLogger(DefaultDependencyResolver.class);
     private final ModuleDescriptorConverter moduleDescriptorConverter;
     private final ResolvedArtifactFactory resolvedArtifactFactory;
     private final ResolveIvyFactory ivyFactory;
     private final ProjectModuleRegistry projectModuleRegistry;
+    private final CacheLockingManager cacheLockingManager;
+    private final ExecutorFactory executorFactory;
+    private final int prefetchThreads;
+    private final int probeThreads;
 
     public DefaultDependencyResolver(ResolveIvyFactory ivyFactory, ModuleDescriptorConverter moduleDescriptorConverter, ResolvedArtifactFactory resolvedArtifactFactory,
-                                     ProjectModuleRegistry projectModuleRegistry) {
+                                     ProjectModuleRegistry projectModuleRegistry, CacheLockingManager cacheLockingManager, ExecutorFactory executorFactory,
+                                     int prefetchThreads, int probeThreads) {
         this.ivyFactory = ivyFactory;
         this.moduleDescriptorConverter = moduleDescriptorConverter;
         this.resolvedArtifactFactory = resolvedArtifactFactory;
         this.projectModuleRegistry = projectModuleRegistry;
+        this.cacheLockingManager = cacheLockingManager;
+        this.executorFactory = executorFactory;
+        this.prefetchThreads = prefetchThreads;
+        this.probeThreads = probeThreads;
     }
 
     public ResolverResults resolve(ConfigurationInternal configuration) throws ResolveException {
         LOGGER.debug("Resolving {}", configuration);
 
-        IvyAdapter ivyAdapter = ivyFactory.create(configuration);
+        if (prefetchThreads <= 1 && probeThreads <= 1) {
+            return resolve(configuration, null);
+        }
+
+        final StoppableExecutor executor = executorFactory.create(String.format("Resolve %s", configuration));
+        try {
+            return resolve(configuration, executor);
+        } finally {
+            // Let the background lookups that are still running use the cache while we wait for them
+            cacheLockingManager.longRunningOperation(String.format("Finish resolving %s", configuration), new Runnable() {
+                public void run() {
+                    executor.stop();
+                }
+            });
+        }
+    }
+
+    private ResolverResults resolve(ConfigurationInternal configuration, Executor executor) {
+        IvyAdapter ivyAdapter = ivyFactory.create(configuration, probeThreads > 1 ? executor : null, probeThreads);
 
         DependencyToModuleResolver dependencyResolver = ivyAdapter.getDependencyToModuleResolver();
         dependencyResolver = new ClientModuleResolver(dependencyResolver);
@@ -64,7 +95,21 @@ public class DefaultDependencyResolver implements ArtifactDependencyResolver {
             conflictResolver = new LatestModuleConflictResolver();
         }
 
-        DependencyGraphBuilder builder = new DependencyGraphBuilder(moduleDescriptorConverter, resolvedArtifactFactory, idResolver, conflictResolver);
+        if (prefetchThreads <= 1) {
+            DependencyGraphBuilder builder = new DependencyGraphBuilder(moduleDescriptorConverter, resolvedArtifactFactory, idResolver, conflictResolver);
+            return resolve(builder, configuration, ivyAdapter);
+        }
+
+        ModuleMetaDataPrefetcher prefetcher = new ModuleMetaDataPrefetcher(executor, prefetchThreads, cacheLockingManager);
+        try {
+            DependencyGraphBuilder builder = new DependencyGraphBuilder(moduleDescriptorConverter, resolvedArtifactFactory, idResolver, conflictResolver, prefetcher);
+            return resolve(builder, configuration, ivyAdapter);
+        } finally {
+            prefetcher.stop();
+        }
+    }
+
+    private ResolverResults resolve(DependencyGraphBuilder builder, ConfigurationInternal configuration, IvyAdapter ivyAdapter) {
         ResolutionResultBuilder resultBuilder = new ResolutionResultBuilder();
         DefaultLenientConfiguration result = builder.resolve(configuration, ivyAdapter.getResolveData(), resultBuilder);
         return new ResolverResults(new DefaultResolvedConfiguration(result), resultBuilder.getResult());
@@ -32,6 +32,7 @@ import org.gradle.api.internal.artifacts.ResolvedConfigurationIdentifier;
 import org.gradle.api.internal.artifacts.configurations.ConfigurationInternal;
 import org.gradle.api.internal.artifacts.ivyservice.*;
 import org.gradle.api.internal.artifacts.ivyservice.moduleconverter.dependencies.EnhancedDependencyDescriptor;
+import org.gradle.api.internal.artifacts.ivyservice.moduleconverter.dependencies.ProjectDependencyDescriptor;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.InternalDependencyResult;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ModuleVersionSelection;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ResolvedConfigurationListener;
@@ -40,6 +41,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.FutureTask;
 
 import static org.gradle.api.internal.artifacts.DefaultModuleVersionIdentifier.newId;
 
@@ -49,21 +51,32 @@ public class DependencyGraphBuilder {
     private final ResolvedArtifactFactory resolvedArtifactFactory;
     private final DependencyToModuleVersionIdResolver dependencyResolver;
     private final ForcedModuleConflictResolver conflictResolver;
+    private final ModuleMetaDataPrefetcher prefetcher;
 
     public DependencyGraphBuilder(ModuleDescriptorConverter moduleDescriptorConverter, ResolvedArtifactFactory resolvedArtifactFactory, DependencyToModuleVersionIdResolver dependencyResolver, ModuleConflictResolver conflictResolver) {
+        this(moduleDescriptorConverter, resolvedArtifactFactory, dependencyResolver, conflictResolver, null);
+    }
+
+    /**
+     * @param prefetcher Used to resolve dependencies in the background as soon as they are discovered. When null, each dependency is resolved when the
+     * traversal reaches it.
+     */
+    public DependencyGraphBuilder(ModuleDescriptorConverter moduleDescriptorConverter, ResolvedArtifactFactory resolvedArtifactFactory, DependencyToModuleVersionIdResolver dependencyResolver, ModuleConflictResolver conflictResolver,
+                                  ModuleMetaDataPrefetcher prefetcher) {
         this.moduleDescriptorConverter = moduleDescriptorConverter;
         this.resolvedArtifactFactory = resolvedArtifactFactory;
         this.dependencyResolver = dependencyResolver;
         this.conflictResolver = new ForcedModuleConflictResolver(conflictResolver);
+        this.prefetcher = prefetcher;
     }
 
     public DefaultLenientConfiguration resolve(ConfigurationInternal configuration, ResolveData resolveData, ResolvedConfigurationListener listener) throws ResolveException {
         ModuleDescriptor moduleDescriptor = moduleDescriptorConverter.convert(configuration.getAll(), configuration.getModule());
 
-        ResolveState resolveState = new ResolveState(moduleDescriptor, configuration.getName(), dependencyResolver, resolveData);
+        ResolveState resolveState = new ResolveState(moduleDescriptor, configuration.getName(), dependencyResolver, prefetcher, resolveData);
         traverseGraph(resolveState);
 
-        DefaultLenientConfiguration result = new DefaultLenientConfiguration(configuration, resolveState.root.getResult());
+        DefaultLenientConfiguration result = new DefaultLenientConfiguration(configuration, resolveState.root.getResult(), resolvedArtifactFactory);
         assembleResult(resolveState, result, listener);
 
         return result;
@@ -87,6 +100,13 @@ public class DependencyGraphBuilder {
                 dependencies.clear();
                 node.visitOutgoingDependencies(dependencies);
 
+                if (resolveState.prefetcher != null) {
+                    // Start fetching the meta-data for all of the edges, and then visit them in order
+                    for (DependencyEdge dependency : dependencies) {
+                        dependency.prefetchModuleRevisionId();
+                    }
+                }
+
                 for (DependencyEdge dependency : dependencies) {
                     LOGGER.debug("Visiting dependency {}", dependency);
 
@@ -280,6 +300,12 @@ public class DependencyGraphBuilder {
             return targetModuleRevision;
         }
 
+        public void prefetchModuleRevisionId() {
+            if (targetModuleRevision == null) {
+                resolveState.getSelector(dependencyDescriptor).prefetch();
+            }
+        }
+
         public void resolveModuleRevisionId() {
             if (targetModuleRevision == null) {
                 selector = resolveState.getSelector(dependencyDescriptor);
@@ -420,12 +446,14 @@ public class DependencyGraphBuilder {
         private final Map<ModuleRevisionId, ModuleVersionSelectorResolveState> selectors = new LinkedHashMap<ModuleRevisionId, ModuleVersionSelectorResolveState>();
         private final ConfigurationNode root;
         private final DependencyToModuleVersionIdResolver resolver;
+        private final ModuleMetaDataPrefetcher prefetcher;
         private final ResolveData resolveData;
         private final Set<ConfigurationNode> queued = new HashSet<ConfigurationNode>();
         private final LinkedList<ConfigurationNode> queue = new LinkedList<ConfigurationNode>();
 
-        public ResolveState(ModuleDescriptor rootModule, String rootConfigurationName, DependencyToModuleVersionIdResolver resolver, ResolveData resolveData) {
+        public ResolveState(ModuleDescriptor rootModule, String rootConfigurationName, DependencyToModuleVersionIdResolver resolver, ModuleMetaDataPrefetcher prefetcher, ResolveData resolveData) {
             this.resolver = resolver;
+            this.prefetcher = prefetcher;
             this.resolveData = resolveData;
             DefaultModuleRevisionResolveState rootVersion = getRevision(rootModule.getModuleRevisionId());
             rootVersion.setDescriptor(rootModule);
@@ -876,6 +904,7 @@ public class DependencyGraphBuilder {
         DefaultModuleRevisionResolveState targetModuleRevision;
         ModuleVersionIdResolveResult idResolveResult;
         ModuleVersionResolveResult resolveResult;
+        FutureTask<ModuleVersionIdResolveResult> prefetchedResult;
 
         private ModuleVersionSelectorResolveState(DependencyDescriptor descriptor, ModuleResolveState module, DependencyToModuleVersionIdResolver resolver, ResolveState resolveState) {
             this.descriptor = descriptor;
@@ -889,6 +918,17 @@ public class DependencyGraphBuilder {
             return descriptor.toString();
         }
 
+        public void prefetch() {
+            if (targetModuleRevision != null || failure != null || idResolveResult != null || prefetchedResult != null) {
+                return;
+            }
+            if (descriptor instanceof ProjectDependencyDescriptor) {
+                // Project modules come from the build model, so leave them to the resolving thread
+                return;
+            }
+            prefetchedResult = resolveState.prefetcher.prefetch(resolver, descriptor);
+        }
+
         /**
          * @return The module version, or null if there is a failure to resolve this selector.
          */
@@ -904,7 +944,8 @@ public class DependencyGraphBuilder {
                 return null;
             }
 
-            idResolveResult = resolver.resolve(descriptor);
+            idResolveResult = prefetchedResult != null ? resolveState.prefetcher.get(prefetchedResult) : resolver.resolve(descriptor);
+            prefetchedResult = null;
             if (idResolveResult.getFailure() != null) {
                 failure = idResolveResult.getFailure();
                 return null;
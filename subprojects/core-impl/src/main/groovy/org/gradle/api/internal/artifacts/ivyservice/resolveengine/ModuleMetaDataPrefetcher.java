@@ -0,0 +1,169 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine;
+
+import org.apache.ivy.core.module.descriptor.DependencyDescriptor;
+import org.apache.ivy.core.module.id.ModuleRevisionId;
+import org.gradle.api.internal.artifacts.ivyservice.CacheLockingManager;
+import org.gradle.api.internal.artifacts.ivyservice.DependencyToModuleVersionIdResolver;
+import org.gradle.api.internal.artifacts.ivyservice.ModuleVersionIdResolveResult;
+import org.gradle.api.internal.artifacts.ivyservice.ModuleVersionResolveException;
+import org.gradle.api.internal.artifacts.ivyservice.ModuleVersionResolveResult;
+import org.gradle.internal.Factory;
+import org.gradle.internal.UncheckedException;
+
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Resolves dependencies to module versions and their meta-data on up to a fixed number of threads, as soon as the dependencies are discovered by
+ * {@link DependencyGraphBuilder}. The graph is still traversed on the resolving thread, which picks up each result in the same order as when
+ * resolving serially. A dependency which has not been started by the time the traversal reaches it is resolved on the resolving thread instead.
+ */
+public class ModuleMetaDataPrefetcher {
+    /**
+     * The number of threads to use to fetch module meta-data ahead of the dependency graph traversal. Defaults to 1, which resolves each
+     * dependency on the resolving thread.
+     */
+    public static final String THREADS_PROPERTY = "org.gradle.dependency.resolution.prefetchThreads";
+
+    private final Executor executor;
+    private final int maxThreads;
+    private final CacheLockingManager cacheLockingManager;
+    private final LinkedList<FutureTask<ModuleVersionIdResolveResult>> queue = new LinkedList<FutureTask<ModuleVersionIdResolveResult>>();
+    private int activeThreads;
+
+    public ModuleMetaDataPrefetcher(Executor executor, int maxThreads, CacheLockingManager cacheLockingManager) {
+        this.executor = executor;
+        this.maxThreads = maxThreads;
+        this.cacheLockingManager = cacheLockingManager;
+    }
+
+    /**
+     * Starts resolving the given dependency in the background.
+     */
+    public FutureTask<ModuleVersionIdResolveResult> prefetch(final DependencyToModuleVersionIdResolver resolver, final DependencyDescriptor dependencyDescriptor) {
+        FutureTask<ModuleVersionIdResolveResult> result = new FutureTask<ModuleVersionIdResolveResult>(new Callable<ModuleVersionIdResolveResult>() {
+            public ModuleVersionIdResolveResult call() {
+                // The repositories use the artifact cache, which the resolving thread releases only while it waits for a result
+                return cacheLockingManager.useCache(String.format("Resolve %s", dependencyDescriptor), new Factory<ModuleVersionIdResolveResult>() {
+                    public ModuleVersionIdResolveResult create() {
+                        ModuleVersionIdResolveResult idResolveResult = resolver.resolve(dependencyDescriptor);
+                        if (idResolveResult.getFailure() != null) {
+                            return idResolveResult;
+                        }
+                        return new PrefetchedResolveResult(idResolveResult, idResolveResult.resolve());
+                    }
+                });
+            }
+        });
+        synchronized (queue) {
+            queue.add(result);
+            if (activeThreads < maxThreads) {
+                activeThreads++;
+                executor.execute(new Runnable() {
+                    public void run() {
+                        runQueued();
+                    }
+                });
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Waits for the result of an earlier call to {@link #prefetch}, resolving the dependency on this thread when it has not been started yet.
+     */
+    public ModuleVersionIdResolveResult get(final FutureTask<ModuleVersionIdResolveResult> result) {
+        synchronized (queue) {
+            queue.remove(result);
+        }
+        result.run();
+        if (!result.isDone()) {
+            cacheLockingManager.longRunningOperation("Wait for module meta-data", new Runnable() {
+                public void run() {
+                    waitFor(result);
+                }
+            });
+        }
+        return waitFor(result);
+    }
+
+    /**
+     * Discards the dependencies which have not been started yet.
+     */
+    public void stop() {
+        synchronized (queue) {
+            for (FutureTask<ModuleVersionIdResolveResult> result : queue) {
+                result.cancel(false);
+            }
+            queue.clear();
+        }
+    }
+
+    private void runQueued() {
+        while (true) {
+            FutureTask<ModuleVersionIdResolveResult> next;
+            synchronized (queue) {
+                if (queue.isEmpty()) {
+                    activeThreads--;
+                    return;
+                }
+                next = queue.removeFirst();
+            }
+            next.run();
+        }
+    }
+
+    private static ModuleVersionIdResolveResult waitFor(FutureTask<ModuleVersionIdResolveResult> result) {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        } catch (ExecutionException e) {
+            throw UncheckedException.throwAsUncheckedException(e.getCause());
+        }
+    }
+
+    private static class PrefetchedResolveResult implements ModuleVersionIdResolveResult {
+        private final ModuleVersionIdResolveResult idResolveResult;
+        private final ModuleVersionResolveResult resolveResult;
+
+        private PrefetchedResolveResult(ModuleVersionIdResolveResult idResolveResult, ModuleVersionResolveResult resolveResult) {
+            this.idResolveResult = idResolveResult;
+            this.resolveResult = resolveResult;
+        }
+
+        public ModuleVersionResolveException getFailure() {
+            return idResolveResult.getFailure();
+        }
+
+        public ModuleRevisionId getId() throws ModuleVersionResolveException {
+            return idResolveResult.getId();
+        }
+
+        public ModuleVersionResolveResult resolve() {
+            return resolveResult;
+        }
+
+        public IdSelectionReason getSelectionReason() {
+            return idResolveResult.getSelectionReason();
+        }
+    }
+}
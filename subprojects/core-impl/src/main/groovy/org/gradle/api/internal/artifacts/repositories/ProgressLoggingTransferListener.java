@@ -24,7 +24,8 @@ import org.gradle.logging.ProgressLoggerFactory;
 
 public class ProgressLoggingTransferListener extends AbstractProgressLoggingHandler implements TransferListener {
     private final Class loggingClass;
-    private ResourceOperation resourceOperation;
+    // Each thread reports the progress of its own transfer
+    private final ThreadLocal<ResourceOperation> resourceOperation = new ThreadLocal<ResourceOperation>();
 
     public ProgressLoggingTransferListener(ProgressLoggerFactory progressLoggerFactory, Class loggingClass) {
         super(progressLoggerFactory);
@@ -38,13 +39,14 @@ public class ProgressLoggingTransferListener extends AbstractProgressLoggingHand
         }
         final int eventType = evt.getEventType();
         if (eventType == TransferEvent.TRANSFER_STARTED) {
-            resourceOperation = createResourceOperation(resource.getName(), ResourceOperation.Type.valueOf(getRequestType(evt)), loggingClass, evt.getTotalLength());
+            resourceOperation.set(createResourceOperation(resource.getName(), ResourceOperation.Type.valueOf(getRequestType(evt)), loggingClass, evt.getTotalLength()));
         }
         if (eventType == TransferEvent.TRANSFER_PROGRESS) {
-            resourceOperation.logProcessedBytes(evt.getLength());
+            resourceOperation.get().logProcessedBytes(evt.getLength());
         }
         if (eventType == TransferEvent.TRANSFER_COMPLETED) {
-            resourceOperation.completed();
+            resourceOperation.get().completed();
+            resourceOperation.remove();
         }
     }
 
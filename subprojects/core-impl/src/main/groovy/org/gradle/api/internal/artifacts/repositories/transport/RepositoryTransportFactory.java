@@ -25,6 +25,7 @@ import org.gradle.api.internal.artifacts.repositories.cachemanager.DownloadingRe
 import org.gradle.api.internal.artifacts.repositories.cachemanager.LocalFileRepositoryCacheManager;
 import org.gradle.api.internal.externalresource.cached.CachedExternalResourceIndex;
 import org.gradle.api.internal.externalresource.transport.file.FileTransport;
+import org.gradle.api.internal.externalresource.transport.http.HttpConnectionPools;
 import org.gradle.api.internal.externalresource.transport.http.HttpTransport;
 import org.gradle.api.internal.filestore.FileStore;
 import org.gradle.logging.ProgressLoggerFactory;
@@ -34,17 +35,20 @@ public class RepositoryTransportFactory {
     private final RepositoryCacheManager downloadingCacheManager;
     private final RepositoryCacheManager localCacheManager;
     private final ProgressLoggerFactory progressLoggerFactory;
+    private final HttpConnectionPools httpConnectionPools;
 
     public RepositoryTransportFactory(ProgressLoggerFactory progressLoggerFactory,
-                                      FileStore<ArtifactRevisionId> fileStore, CachedExternalResourceIndex<String> byUrlCachedExternalResourceIndex) {
+                                      FileStore<ArtifactRevisionId> fileStore, CachedExternalResourceIndex<String> byUrlCachedExternalResourceIndex,
+                                      HttpConnectionPools httpConnectionPools) {
         this.progressLoggerFactory = progressLoggerFactory;
+        this.httpConnectionPools = httpConnectionPools;
         this.transferListener = new ProgressLoggingTransferListener(progressLoggerFactory, RepositoryTransport.class);
         this.downloadingCacheManager = new DownloadingRepositoryCacheManager("downloading", fileStore, byUrlCachedExternalResourceIndex);
         this.localCacheManager = new LocalFileRepositoryCacheManager("local");
     }
 
     public RepositoryTransport createHttpTransport(String name, PasswordCredentials credentials) {
-        return new HttpTransport(name, credentials, downloadingCacheManager, progressLoggerFactory);
+        return new HttpTransport(name, credentials, downloadingCacheManager, progressLoggerFactory, httpConnectionPools);
     }
 
     public RepositoryTransport createFileTransport(String name) {
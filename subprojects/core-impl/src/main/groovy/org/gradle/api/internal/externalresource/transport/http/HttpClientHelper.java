@@ -21,8 +21,11 @@ import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpHead;
 import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.params.ClientPNames;
+import org.apache.http.conn.ClientConnectionManager;
 import org.apache.http.impl.client.*;
 import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
 import org.apache.http.util.EntityUtils;
 import org.gradle.api.UncheckedIOException;
 import org.slf4j.Logger;
@@ -32,15 +35,35 @@ import java.io.IOException;
 
 /**
  * Provides some convenience and unified logging.
+ *
+ * <p>A helper can be used by several threads at the same time. Connections come from the given {@link HttpConnectionPools}.</p>
  */
 public class HttpClientHelper {
+    /**
+     * The maximum time, in milliseconds, to wait for a pooled connection when all of them are in use. Defaults to 60000.
+     */
+    public static final String CONNECTION_REQUEST_TIMEOUT_PROPERTY = "org.gradle.http.connectionRequestTimeout";
 
     private static final Logger LOGGER = LoggerFactory.getLogger(HttpClientHelper.class);
-    private final HttpClient client;
-    private final BasicHttpContext httpContext = new BasicHttpContext();
 
-    public HttpClientHelper(HttpSettings settings) {
-        DefaultHttpClient client = new SystemDefaultHttpClient();
+    private final HttpClient client;
+    // Each thread keeps the authentication state established by its earlier requests
+    private final ThreadLocal<HttpContext> httpContext = new ThreadLocal<HttpContext>() {
+        @Override
+        protected HttpContext initialValue() {
+            return new BasicHttpContext();
+        }
+    };
+
+    public HttpClientHelper(HttpSettings settings, HttpConnectionPools connectionPools) {
+        final ClientConnectionManager connectionManager = connectionPools.getConnectionManager();
+        DefaultHttpClient client = new SystemDefaultHttpClient() {
+            @Override
+            protected ClientConnectionManager createClientConnectionManager() {
+                return connectionManager;
+            }
+        };
+        client.getParams().setLongParameter(ClientPNames.CONN_MANAGER_TIMEOUT, Long.getLong(CONNECTION_REQUEST_TIMEOUT_PROPERTY, 60000));
         new HttpClientConfigurer(settings).configure(client);
         this.client = new DecompressingHttpClient(client);
     }
@@ -96,10 +119,11 @@ public class HttpClientHelper {
 
     public HttpResponse performHttpRequest(HttpRequestBase request) throws IOException {
         // Without this, HTTP Client prohibits multiple redirects to the same location within the same context
-        httpContext.removeAttribute(DefaultRedirectStrategy.REDIRECT_LOCATIONS);
+        HttpContext context = httpContext.get();
+        context.removeAttribute(DefaultRedirectStrategy.REDIRECT_LOCATIONS);
 
         LOGGER.debug("Performing HTTP {}: {}", request.getMethod(), request.getURI());
-        return client.execute(request, httpContext);
+        return client.execute(request, context);
     }
 
     private HttpResponse processResponse(String source, String method, HttpResponse response) {
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.externalresource.transport.http;
+
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.impl.conn.SchemeRegistryFactory;
+import org.gradle.internal.Stoppable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The HTTP connection pools shared by all builds in this process, so that connections are kept alive and reused across repositories
+ * and builds.
+ *
+ * <p>A pool uses the SSL system properties from when it was created, so there is a pool for each set of SSL properties seen. A pool is
+ * kept until this object is stopped, so that helpers created before the properties changed can still make requests.</p>
+ */
+public class HttpConnectionPools implements Stoppable {
+    /**
+     * The maximum number of pooled connections to a single host. Defaults to 20.
+     */
+    public static final String MAX_CONNECTIONS_PER_ROUTE_PROPERTY = "org.gradle.http.maxConnectionsPerRoute";
+    /**
+     * The maximum number of pooled connections to all hosts. Defaults to 100.
+     */
+    public static final String MAX_CONNECTIONS_PROPERTY = "org.gradle.http.maxConnections";
+    private static final int IDLE_CONNECTION_TIMEOUT_SECONDS = 60;
+
+    private final Map<Map<String, String>, PoolingClientConnectionManager> connectionManagers = new HashMap<Map<String, String>, PoolingClientConnectionManager>();
+    private boolean stopped;
+
+    /**
+     * Returns the connection manager for the current SSL system properties.
+     */
+    public synchronized ClientConnectionManager getConnectionManager() {
+        if (stopped) {
+            throw new IllegalStateException("Cannot use HTTP connection pools, as they have been stopped.");
+        }
+        for (PoolingClientConnectionManager connectionManager : connectionManagers.values()) {
+            connectionManager.closeExpiredConnections();
+            connectionManager.closeIdleConnections(IDLE_CONNECTION_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+        Map<String, String> sslProperties = getSslSystemProperties();
+        PoolingClientConnectionManager connectionManager = connectionManagers.get(sslProperties);
+        if (connectionManager == null) {
+            connectionManager = new PoolingClientConnectionManager(SchemeRegistryFactory.createSystemDefault());
+            connectionManager.setDefaultMaxPerRoute(Integer.getInteger(MAX_CONNECTIONS_PER_ROUTE_PROPERTY, 20));
+            connectionManager.setMaxTotal(Integer.getInteger(MAX_CONNECTIONS_PROPERTY, 100));
+            connectionManagers.put(sslProperties, connectionManager);
+        }
+        return connectionManager;
+    }
+
+    private static Map<String, String> getSslSystemProperties() {
+        Map<String, String> sslProperties = new TreeMap<String, String>();
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith("javax.net.ssl.") || name.startsWith("ssl.") || name.startsWith("https.")) {
+                sslProperties.put(name, System.getProperty(name));
+            }
+        }
+        return sslProperties;
+    }
+
+    /**
+     * Closes the connections of all pools.
+     */
+    public synchronized void stop() {
+        stopped = true;
+        for (PoolingClientConnectionManager connectionManager : connectionManagers.values()) {
+            connectionManager.shutdown();
+        }
+        connectionManagers.clear();
+    }
+}
@@ -32,16 +32,19 @@ public class HttpTransport implements RepositoryTransport {
     private final PasswordCredentials credentials;
     private final RepositoryCacheManager repositoryCacheManager;
     private ProgressLoggerFactory progressLoggerFactory;
+    private final HttpConnectionPools connectionPools;
 
-    public HttpTransport(String name, PasswordCredentials credentials, RepositoryCacheManager repositoryCacheManager, ProgressLoggerFactory progressLoggerFactory) {
+    public HttpTransport(String name, PasswordCredentials credentials, RepositoryCacheManager repositoryCacheManager, ProgressLoggerFactory progressLoggerFactory,
+                         HttpConnectionPools connectionPools) {
         this.name = name;
         this.credentials = credentials;
         this.repositoryCacheManager = repositoryCacheManager;
         this.progressLoggerFactory = progressLoggerFactory;
+        this.connectionPools = connectionPools;
     }
 
     public ExternalResourceRepository getRepository() {
-        HttpClientHelper http = new HttpClientHelper(new DefaultHttpSettings(credentials));
+        HttpClientHelper http = new HttpClientHelper(new DefaultHttpSettings(credentials), connectionPools);
         final HttpResourceAccessor accessor = new HttpResourceAccessor(http);
         final HttpResourceUploader uploader = new HttpResourceUploader(http);
         return new DefaultExternalResourceRepository(
@@ -62,6 +62,7 @@ class DefaultDependencyManagementServicesTest extends Specification {
         _ * parent.get(ListenerManager) >> listenerManager
         _ * parent.get(FileLockManager) >> Mock(FileLockManager)
         _ * parent.get(TimeProvider) >> Mock(TimeProvider)
+        _ * parent.get(GlobalDependencyManagementServices) >> new DefaultGlobalDependencyManagementServices()
     }
 
     private CacheRepository initCacheRepository() {
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts
+
+import org.gradle.api.internal.externalresource.transport.http.HttpConnectionPools
+import spock.lang.Specification
+
+class DefaultGlobalDependencyManagementServicesTest extends Specification {
+    final DefaultGlobalDependencyManagementServices services = new DefaultGlobalDependencyManagementServices()
+
+    def "provides HTTP connection pools"() {
+        expect:
+        services.get(HttpConnectionPools) instanceof HttpConnectionPools
+        services.get(HttpConnectionPools).is(services.get(HttpConnectionPools))
+    }
+
+    def "stops HTTP connection pools when stopped"() {
+        def pools = services.get(HttpConnectionPools)
+
+        when:
+        services.stop()
+        pools.connectionManager
+
+        then:
+        thrown(IllegalStateException)
+    }
+}
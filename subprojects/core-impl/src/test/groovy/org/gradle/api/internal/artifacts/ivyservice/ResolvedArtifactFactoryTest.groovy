@@ -20,11 +20,14 @@ import org.gradle.api.artifacts.ResolvedArtifact
 import org.gradle.api.artifacts.ResolvedDependency
 import org.gradle.internal.Factory
 import org.gradle.api.internal.artifacts.DefaultResolvedArtifact
+import org.gradle.internal.concurrent.ExecutorFactory
+import org.gradle.internal.concurrent.StoppableExecutor
 import spock.lang.Specification
 
 class ResolvedArtifactFactoryTest extends Specification {
     final CacheLockingManager lockingManager = Mock()
-    final ResolvedArtifactFactory factory = new ResolvedArtifactFactory(lockingManager)
+    final ExecutorFactory executorFactory = Mock()
+    final ResolvedArtifactFactory factory = new ResolvedArtifactFactory(lockingManager, executorFactory, 1)
 
     def "creates an artifact backed by module resolve result"() {
         Artifact artifact = Mock()
@@ -53,4 +56,73 @@ class ResolvedArtifactFactoryTest extends Specification {
         _ * artifactResolveResult.file >> file
         0 * _._
     }
+
+    def "downloads the files of the given artifacts at the same time"() {
+        StoppableExecutor executor = Mock()
+        ResolvedArtifactFactory downloadingFactory = new ResolvedArtifactFactory(lockingManager, executorFactory, 2)
+        Factory<File> source1 = Mock()
+        Factory<File> source2 = Mock()
+        Factory<File> source3 = Mock()
+        def artifact1 = artifact(source1)
+        def artifact2 = artifact(source2)
+        def artifact3 = artifact(source3)
+
+        when:
+        downloadingFactory.downloadFiles([artifact1, artifact2, artifact3])
+
+        then:
+        1 * executorFactory.create(!null) >> executor
+        1 * executor.execute(!null)
+        1 * lockingManager.useCache(!null, _ as Runnable) >> {String displayName, Runnable action ->
+            action.run()
+        }
+        1 * lockingManager.longRunningOperation(!null, _ as Runnable) >> {String displayName, Runnable action ->
+            action.run()
+        }
+        1 * source1.create() >> new File("a.jar")
+        1 * source2.create() >> { throw new RuntimeException("broken") }
+        1 * source3.create() >> new File("c.jar")
+        1 * executor.stop()
+        0 * _._
+
+        and:
+        artifact1.fileResolved
+        !artifact2.fileResolved
+        artifact3.fileResolved
+    }
+
+    def "does not download artifacts whose files have already been resolved"() {
+        ResolvedArtifactFactory downloadingFactory = new ResolvedArtifactFactory(lockingManager, executorFactory, 2)
+        Factory<File> source1 = Mock()
+        Factory<File> source2 = Mock()
+        def artifact1 = artifact(source1)
+        def artifact2 = artifact(source2)
+
+        given:
+        _ * source1.create() >> new File("a.jar")
+        artifact1.file
+
+        when:
+        downloadingFactory.downloadFiles([artifact1, artifact2])
+
+        then:
+        0 * _._
+    }
+
+    def "leaves the files to be downloaded when requested when using a single download thread"() {
+        def artifact1 = artifact(Mock(Factory))
+        def artifact2 = artifact(Mock(Factory))
+
+        when:
+        factory.downloadFiles([artifact1, artifact2])
+
+        then:
+        0 * _._
+    }
+
+    def artifact(Factory<File> source) {
+        Artifact artifact = Mock()
+        _ * artifact.qualifiedExtraAttributes >> [:]
+        return new DefaultResolvedArtifact(Mock(ResolvedDependency), artifact, source)
+    }
 }
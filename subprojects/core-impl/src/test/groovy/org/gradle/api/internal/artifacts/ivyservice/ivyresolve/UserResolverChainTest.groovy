@@ -0,0 +1,185 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.ivyresolve
+
+import org.apache.ivy.core.module.descriptor.DefaultDependencyDescriptor
+import org.apache.ivy.core.module.descriptor.DefaultModuleDescriptor
+import org.apache.ivy.core.module.id.ModuleRevisionId
+import org.apache.ivy.plugins.resolver.ResolverSettings
+import org.apache.ivy.plugins.version.VersionMatcher
+import org.gradle.api.internal.artifacts.ivyservice.CacheLockingManager
+import org.gradle.api.internal.artifacts.ivyservice.ModuleVersionNotFoundException
+import org.gradle.internal.Factory
+import spock.lang.Specification
+
+import java.util.concurrent.Executors
+
+class UserResolverChainTest extends Specification {
+    final ResolverSettings settings = Mock()
+    final VersionMatcher versionMatcher = Mock()
+    final CacheLockingManager cacheLockingManager = Mock()
+    final RepositoryMissCache missCache = new RepositoryMissCache()
+    final ModuleRevisionId id = ModuleRevisionId.newInstance("group", "module", "1.0")
+    final dependency = new DefaultDependencyDescriptor(id, false)
+
+    def setup() {
+        _ * settings.versionMatcher >> versionMatcher
+        _ * versionMatcher.isDynamic(_) >> false
+        _ * cacheLockingManager.useCache(_, _) >> { String operation, Factory action -> action.create() }
+        _ * cacheLockingManager.longRunningOperation(_, _) >> { String operation, Runnable action -> action.run() }
+    }
+
+    def "uses first repository that contains the module"() {
+        def chain = chain(null)
+        def repo1 = repository("repo1", false)
+        def repo2 = repository("repo2", false)
+        def repo3 = repository("repo3", false)
+        def module = module()
+        chain.add(repo1)
+        chain.add(repo2)
+        chain.add(repo3)
+
+        when:
+        def result = chain.resolve(dependency)
+
+        then:
+        result.descriptor == module.descriptor
+
+        and:
+        1 * repo1.getDependency(dependency) >> null
+        1 * repo2.getDependency(dependency) >> module
+        0 * repo3.getDependency(_)
+    }
+
+    def "uses repositories in declared order when probing them concurrently"() {
+        def executor = Executors.newFixedThreadPool(2)
+        def chain = chain(executor)
+        def repo1 = repository("repo1", false)
+        def repo2 = repository("repo2", false)
+        def repo3 = repository("repo3", false)
+        def module2 = module()
+        def module3 = module()
+        chain.add(repo1)
+        chain.add(repo2)
+        chain.add(repo3)
+
+        when:
+        def result = chain.resolve(dependency)
+
+        then:
+        result.descriptor == module2.descriptor
+
+        and:
+        1 * repo1.getDependency(dependency) >> null
+        1 * repo2.getDependency(dependency) >> { Thread.sleep(100); module2 }
+        (0..1) * repo3.getDependency(dependency) >> module3
+
+        cleanup:
+        executor.shutdown()
+    }
+
+    def "does not ask a remote repository again for a module that it does not contain"() {
+        def chain = chain(null)
+        def remote = repository("remote", false)
+        def local = repository("local", true)
+        chain.add(remote)
+        chain.add(local)
+
+        when:
+        def first = chain.resolve(dependency)
+        def second = chain.resolve(dependency)
+
+        then:
+        first.failure instanceof ModuleVersionNotFoundException
+        second.failure instanceof ModuleVersionNotFoundException
+
+        and:
+        1 * remote.getDependency(dependency) >> null
+        2 * local.getDependency(dependency) >> null
+    }
+
+    def "reports failures from all repositories"() {
+        def executor = Executors.newSingleThreadExecutor()
+        def chain = chain(executor)
+        def repo1 = repository("repo1", false)
+        def repo2 = repository("repo2", false)
+        def failure = new RuntimeException("broken")
+        chain.add(repo1)
+        chain.add(repo2)
+
+        when:
+        def result = chain.resolve(dependency)
+
+        then:
+        result.failure.causes == [failure]
+
+        and:
+        1 * repo1.getDependency(dependency) >> { throw failure }
+        1 * repo2.getDependency(dependency) >> null
+
+        cleanup:
+        executor.shutdown()
+    }
+
+    def "asks repository on resolving thread when all probe threads are busy"() {
+        def executor = Executors.newCachedThreadPool()
+        def chain = chain(executor, 1)
+        def repo1 = repository("repo1", false)
+        def repo2 = repository("repo2", false)
+        def repo3 = repository("repo3", false)
+        def module3 = module()
+        def resolvingThread = Thread.currentThread()
+        chain.add(repo1)
+        chain.add(repo2)
+        chain.add(repo3)
+
+        when:
+        def result = chain.resolve(dependency)
+
+        then:
+        result.descriptor == module3.descriptor
+
+        and:
+        1 * repo1.getDependency(dependency) >> null
+        1 * repo2.getDependency(dependency) >> { Thread.sleep(100); null }
+        1 * repo3.getDependency(dependency) >> { assert Thread.currentThread() == resolvingThread; module3 }
+
+        cleanup:
+        executor.shutdown()
+    }
+
+    def chain(def executor, int probeThreads = 2) {
+        def chain = new UserResolverChain(missCache, cacheLockingManager, executor, probeThreads)
+        chain.settings = settings
+        return chain
+    }
+
+    def repository(String name, boolean local) {
+        ModuleVersionRepository repository = Mock()
+        _ * repository.id >> name
+        _ * repository.name >> name
+        _ * repository.local >> local
+        return repository
+    }
+
+    def module() {
+        ModuleVersionDescriptor module = Mock()
+        def descriptor = new DefaultModuleDescriptor(id, "release", new Date())
+        _ * module.id >> id
+        _ * module.descriptor >> descriptor
+        return module
+    }
+}
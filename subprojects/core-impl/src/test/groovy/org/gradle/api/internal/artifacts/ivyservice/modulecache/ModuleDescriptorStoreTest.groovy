@@ -19,23 +19,27 @@ package org.gradle.api.internal.artifacts.ivyservice.modulecache
 import org.apache.ivy.core.module.descriptor.ModuleDescriptor
 import org.apache.ivy.core.module.id.ModuleRevisionId
 import org.gradle.api.Action
-import org.gradle.api.internal.artifacts.ivyservice.IvyModuleDescriptorWriter
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.ModuleVersionRepository
 import org.gradle.api.internal.filestore.FileStoreEntry
 import org.gradle.api.internal.filestore.PathKeyFileStore
+import org.gradle.messaging.serialize.Serializer
+import org.gradle.util.TemporaryFolder
+import org.junit.Rule
 import spock.lang.Specification
 
 class ModuleDescriptorStoreTest extends Specification {
+    @Rule final TemporaryFolder tmpDir = new TemporaryFolder()
     ModuleDescriptorStore store
     PathKeyFileStore pathKeyFileStore = Mock()
     ModuleRevisionId moduleRevisionId = Mock()
     ModuleVersionRepository repository = Mock()
     FileStoreEntry fileStoreEntry = Mock()
     ModuleDescriptor moduleDescriptor = Mock()
-    IvyModuleDescriptorWriter ivyModuleDescriptorWriter = Mock()
+    Serializer<ModuleDescriptor> serializer = Mock()
+    InMemoryModuleDescriptorCache inMemoryCache = new InMemoryModuleDescriptorCache(10)
 
     def setup() {
-        store = new ModuleDescriptorStore(pathKeyFileStore, ivyModuleDescriptorWriter);
+        store = new ModuleDescriptorStore(pathKeyFileStore, serializer, inMemoryCache);
         _ * repository.getId() >> "repositoryId"
         _ * moduleRevisionId.getOrganisation() >> "org.test"
         _ * moduleRevisionId.getName() >> "testArtifact"
@@ -43,11 +47,46 @@ class ModuleDescriptorStoreTest extends Specification {
         _ * moduleDescriptor.getModuleRevisionId() >> moduleRevisionId
     }
 
-    def "getModuleDescriptorFile uses PathKeyFileStore to get file"() {
+    def "getModuleDescriptor uses PathKeyFileStore to get file"() {
         when:
+        def result = store.getModuleDescriptor(repository, moduleRevisionId);
+
+        then:
+        result == null
+        1 * pathKeyFileStore.get("module-metadata/org.test/testArtifact/1.0/repositoryId.ivy.bin") >> null
+    }
+
+    def "getModuleDescriptor reads binary descriptor once and then serves it from memory"() {
+        given:
+        def descriptorFile = tmpDir.file("repositoryId.ivy.bin")
+        descriptorFile << "descriptor"
+        _ * pathKeyFileStore.get("module-metadata/org.test/testArtifact/1.0/repositoryId.ivy.bin") >> fileStoreEntry
+        _ * fileStoreEntry.getFile() >> descriptorFile
+
+        when:
+        def first = store.getModuleDescriptor(repository, moduleRevisionId);
+        def second = store.getModuleDescriptor(repository, moduleRevisionId);
+
+        then:
+        first == moduleDescriptor
+        second == moduleDescriptor
+        1 * serializer.read(_ as InputStream) >> moduleDescriptor
+    }
+
+    def "getModuleDescriptor reads binary descriptor again when file has changed"() {
+        given:
+        def descriptorFile = tmpDir.file("repositoryId.ivy.bin")
+        descriptorFile << "descriptor"
+        _ * pathKeyFileStore.get("module-metadata/org.test/testArtifact/1.0/repositoryId.ivy.bin") >> fileStoreEntry
+        _ * fileStoreEntry.getFile() >> descriptorFile
+
+        when:
+        store.getModuleDescriptor(repository, moduleRevisionId);
+        descriptorFile << "changed descriptor"
         store.getModuleDescriptor(repository, moduleRevisionId);
+
         then:
-        1 * pathKeyFileStore.get("module-metadata/org.test/testArtifact/1.0/repositoryId.ivy.xml") >> null
+        2 * serializer.read(_ as InputStream) >> moduleDescriptor
     }
 
     def "putModuleDescriptor uses PathKeyFileStore to write file"() {
@@ -55,6 +94,21 @@ class ModuleDescriptorStoreTest extends Specification {
         store.putModuleDescriptor(repository, moduleDescriptor);
 
         then:
-        1 * pathKeyFileStore.add("module-metadata/org.test/testArtifact/1.0/repositoryId.ivy.xml", {f -> _} as Action<File>) >> fileStoreEntry
+        1 * pathKeyFileStore.add("module-metadata/org.test/testArtifact/1.0/repositoryId.ivy.bin", {f -> _} as Action<File>) >> fileStoreEntry
+    }
+
+    def "putModuleDescriptor discards descriptor held in memory"() {
+        given:
+        def descriptorFile = tmpDir.file("repositoryId.ivy.bin")
+        descriptorFile << "descriptor"
+        _ * fileStoreEntry.getFile() >> descriptorFile
+        inMemoryCache.put(descriptorFile, moduleDescriptor)
+
+        when:
+        store.putModuleDescriptor(repository, moduleDescriptor);
+
+        then:
+        1 * pathKeyFileStore.add("module-metadata/org.test/testArtifact/1.0/repositoryId.ivy.bin", _) >> fileStoreEntry
+        inMemoryCache.get(descriptorFile) == null
     }
-}
\ No newline at end of file
+}
@@ -30,6 +30,8 @@ import org.gradle.api.internal.artifacts.configurations.ConfigurationInternal
 import org.gradle.api.internal.artifacts.ivyservice.moduleconverter.dependencies.EnhancedDependencyDescriptor
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ResolvedConfigurationListener
 import org.gradle.api.specs.Spec
+import org.gradle.internal.Factory
+import org.gradle.internal.concurrent.DefaultExecutorFactory
 import spock.lang.Specification
 import org.apache.ivy.core.module.descriptor.*
 import org.gradle.api.artifacts.*
@@ -149,6 +151,48 @@ class DependencyGraphBuilderTest extends Specification {
         modules(result) == ids(selected, b, c, d)
     }
 
+    def "resolves module meta-data in the background when using a prefetcher"() {
+        given:
+        def executorFactory = new DefaultExecutorFactory()
+        CacheLockingManager cacheLockingManager = Mock()
+        _ * cacheLockingManager.useCache(_, _) >> { String operation, Factory action -> action.create() }
+        _ * cacheLockingManager.longRunningOperation(_, _) >> { String operation, Runnable action -> action.run() }
+        def prefetcher = new ModuleMetaDataPrefetcher(executorFactory.create("prefetch"), 4, cacheLockingManager)
+        def prefetchingBuilder = new DependencyGraphBuilder(moduleDescriptorConverter, resolvedArtifactFactory, dependencyResolver, conflictResolver, prefetcher)
+
+        def selected = revision('a', '1.2')
+        def evicted = revision('a', '1.1')
+        def b = revision('b')
+        def c = revision('c')
+        def d = revision('d')
+        def e = revision('e')
+        traverses root, selected
+        traverses selected, c
+        traverses root, b
+        traverses b, d
+        traverses root, e
+        doesNotResolve d, evicted
+        doesNotResolve e, c
+
+        when:
+        def result = prefetchingBuilder.resolve(configuration, resolveData, listener)
+        result.rethrowFailure()
+
+        then:
+        1 * conflictResolver.select(!null, !null) >> { Collection<ModuleRevisionResolveState> candidates, ModuleRevisionResolveState root ->
+            assert candidates*.revision == ['1.2', '1.1']
+            return candidates.find { it.revision == '1.2' }
+        }
+        0 * conflictResolver._
+
+        and:
+        modules(result) == ids(selected, b, c, d, e)
+
+        cleanup:
+        prefetcher.stop()
+        executorFactory.stop()
+    }
+
     def "does not include evicted module when evicted module already traversed before conflict detected"() {
         given:
         def selected = revision('a', '1.2')
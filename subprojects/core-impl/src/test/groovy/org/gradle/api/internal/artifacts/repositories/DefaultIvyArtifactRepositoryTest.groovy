@@ -20,6 +20,7 @@ import org.gradle.api.InvalidUserDataException
 import org.gradle.api.artifacts.repositories.PasswordCredentials
 import org.gradle.api.internal.artifacts.repositories.transport.RepositoryTransportFactory
 import org.gradle.api.internal.externalresource.transport.file.FileTransport
+import org.gradle.api.internal.externalresource.transport.http.HttpConnectionPools
 import org.gradle.api.internal.externalresource.transport.http.HttpTransport
 import org.gradle.api.internal.externalresource.cached.CachedExternalResourceIndex
 import org.gradle.api.internal.externalresource.local.LocallyAvailableResourceFinder
@@ -234,7 +235,7 @@ class DefaultIvyArtifactRepositoryTest extends Specification {
     }
 
     private HttpTransport createHttpTransport(String name, PasswordCredentials credentials) {
-        return new HttpTransport(name, credentials, cacheManager, progressLoggerFactory)
+        return new HttpTransport(name, credentials, cacheManager, progressLoggerFactory, new HttpConnectionPools())
     }
 
 }
@@ -20,16 +20,23 @@ import org.apache.http.HttpResponse
 import org.apache.http.client.methods.HttpRequestBase
 import org.gradle.api.artifacts.repositories.PasswordCredentials
 import org.apache.http.client.methods.HttpGet
-
+import org.apache.http.client.params.ClientPNames
 import spock.lang.Specification
 
 class HttpClientHelperTest extends Specification {
+    final HttpSettings settings = Stub(HttpSettings) {
+        getCredentials() >> Stub(PasswordCredentials)
+        getProxySettings() >> Stub(HttpProxySettings)
+    }
+    final HttpConnectionPools connectionPools = new HttpConnectionPools()
+
+    def cleanup() {
+        connectionPools.stop()
+        System.clearProperty(HttpClientHelper.CONNECTION_REQUEST_TIMEOUT_PROPERTY)
+    }
+
     def "throws HttpRequestException if an IO error occurs during a request"() {
-        def settings = Stub(HttpSettings) {
-            getCredentials() >> Stub(PasswordCredentials)
-            getProxySettings() >> Stub(HttpProxySettings)
-        }
-        def client = new HttpClientHelper(settings) {
+        def client = new HttpClientHelper(settings, connectionPools) {
             @Override
             protected HttpResponse executeGetOrHead(HttpRequestBase method) {
                 throw new IOException("ouch")
@@ -43,4 +50,27 @@ class HttpClientHelperTest extends Specification {
         HttpRequestException e = thrown()
         e.cause.message == "ouch"
     }
+
+    def "waits a limited time for a pooled connection"() {
+        when:
+        def helper = new HttpClientHelper(settings, connectionPools)
+
+        then:
+        helper.client.params.getParameter(ClientPNames.CONN_MANAGER_TIMEOUT) == 60000L
+
+        when:
+        System.setProperty(HttpClientHelper.CONNECTION_REQUEST_TIMEOUT_PROPERTY, "1000")
+        helper = new HttpClientHelper(settings, connectionPools)
+
+        then:
+        helper.client.params.getParameter(ClientPNames.CONN_MANAGER_TIMEOUT) == 1000L
+    }
+
+    def "uses a connection manager from the given pools"() {
+        when:
+        def helper = new HttpClientHelper(settings, connectionPools)
+
+        then:
+        helper.client.connectionManager.is(connectionPools.connectionManager)
+    }
 }
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.externalresource.transport.http
+
+import org.apache.http.HttpHost
+import org.apache.http.conn.ClientConnectionManager
+import org.apache.http.conn.routing.HttpRoute
+import org.gradle.util.SetSystemProperties
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.util.concurrent.TimeUnit
+
+class HttpConnectionPoolsTest extends Specification {
+    @Rule SetSystemProperties systemProperties = new SetSystemProperties()
+    final HttpConnectionPools pools = new HttpConnectionPools()
+
+    def cleanup() {
+        pools.stop()
+    }
+
+    def "uses the same pool while the SSL settings are unchanged"() {
+        expect:
+        pools.connectionManager.is(pools.connectionManager)
+    }
+
+    def "keeps the old pool usable when the SSL settings change"() {
+        def oldConnectionManager = pools.connectionManager
+
+        when:
+        System.setProperty("javax.net.ssl.keyStoreType", "test")
+        def newConnectionManager = pools.connectionManager
+
+        then:
+        !newConnectionManager.is(oldConnectionManager)
+        isUsable(oldConnectionManager)
+
+        when:
+        System.clearProperty("javax.net.ssl.keyStoreType")
+
+        then:
+        pools.connectionManager.is(oldConnectionManager)
+    }
+
+    def "shuts down all pools when stopped"() {
+        def first = pools.connectionManager
+        System.setProperty("javax.net.ssl.keyStoreType", "test")
+        def second = pools.connectionManager
+
+        when:
+        pools.stop()
+
+        then:
+        !isUsable(first)
+        !isUsable(second)
+
+        when:
+        pools.connectionManager
+
+        then:
+        IllegalStateException e = thrown()
+        e.message == "Cannot use HTTP connection pools, as they have been stopped."
+    }
+
+    def isUsable(ClientConnectionManager connectionManager) {
+        def route = new HttpRoute(new HttpHost("localhost"))
+        try {
+            def connection = connectionManager.requestConnection(route, null).getConnection(1, TimeUnit.SECONDS)
+            connectionManager.releaseConnection(connection, 0, TimeUnit.SECONDS)
+            return true
+        } catch (IllegalStateException e) {
+            assert e.message == "Connection pool shut down"
+            return false
+        }
+    }
+}
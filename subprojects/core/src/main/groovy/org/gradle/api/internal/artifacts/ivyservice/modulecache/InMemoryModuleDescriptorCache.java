@@ -0,0 +1,84 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.modulecache;
+
+import org.apache.ivy.core.module.descriptor.ModuleDescriptor;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An LRU cache of the module descriptors read from the module metadata cache, keyed by descriptor file. A single
+ * instance is provided by the global services, so that a daemon does not read the same descriptors again for each
+ * build. An entry is used only while the length and timestamp of its file are unchanged.
+ *
+ * <p>The maximum number of descriptors can be set using the {@value #MAX_ENTRIES_PROPERTY} system property.</p>
+ */
+public class InMemoryModuleDescriptorCache {
+    public static final String MAX_ENTRIES_PROPERTY = "org.gradle.cache.moduleDescriptorCacheSize";
+    static final int DEFAULT_MAX_ENTRIES = 5000;
+
+    private final Map<File, CachedDescriptor> descriptors;
+
+    public InMemoryModuleDescriptorCache() {
+        this(Integer.getInteger(MAX_ENTRIES_PROPERTY, DEFAULT_MAX_ENTRIES));
+    }
+
+    public InMemoryModuleDescriptorCache(final int maxEntries) {
+        descriptors = new LinkedHashMap<File, CachedDescriptor>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<File, CachedDescriptor> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the descriptor read from the given file, or null if not cached or the file has changed since.
+     */
+    public synchronized ModuleDescriptor get(File descriptorFile) {
+        CachedDescriptor cached = descriptors.get(descriptorFile);
+        if (cached == null) {
+            return null;
+        }
+        if (cached.length != descriptorFile.length() || cached.lastModified != descriptorFile.lastModified()) {
+            descriptors.remove(descriptorFile);
+            return null;
+        }
+        return cached.descriptor;
+    }
+
+    public synchronized void put(File descriptorFile, ModuleDescriptor descriptor) {
+        descriptors.put(descriptorFile, new CachedDescriptor(descriptor, descriptorFile.length(), descriptorFile.lastModified()));
+    }
+
+    public synchronized void remove(File descriptorFile) {
+        descriptors.remove(descriptorFile);
+    }
+
+    private static class CachedDescriptor {
+        final ModuleDescriptor descriptor;
+        final long length;
+        final long lastModified;
+
+        private CachedDescriptor(ModuleDescriptor descriptor, long length, long lastModified) {
+            this.descriptor = descriptor;
+            this.length = length;
+            this.lastModified = lastModified;
+        }
+    }
+}
@@ -19,8 +19,11 @@ import org.gradle.internal.Factory;
 import org.gradle.api.internal.TaskInternal;
 import org.gradle.cache.DefaultSerializer;
 import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.messaging.serialize.Serializer;
 
 import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashSet;
@@ -31,7 +34,7 @@ public class CacheBackedTaskHistoryRepository implements TaskHistoryRepository {
     private final TaskArtifactStateCacheAccess cacheAccess;
     private final FileSnapshotRepository snapshotRepository;
     private final PersistentIndexedCache<String, TaskHistory> taskHistoryCache;
-    private final DefaultSerializer<TaskHistory> serializer = new DefaultSerializer<TaskHistory>();
+    private final TaskHistorySerializer serializer = new TaskHistorySerializer();
 
     public CacheBackedTaskHistoryRepository(TaskArtifactStateCacheAccess cacheAccess, FileSnapshotRepository snapshotRepository) {
         this.cacheAccess = cacheAccess;
@@ -83,13 +86,12 @@ public class CacheBackedTaskHistoryRepository implements TaskHistoryRepository {
     }
 
     private TaskHistory loadHistory(TaskInternal task) {
-        ClassLoader original = serializer.getClassLoader();
-        serializer.setClassLoader(task.getClass().getClassLoader());
+        serializer.classLoader.set(task.getClass().getClassLoader());
         try {
             TaskHistory history = taskHistoryCache.get(task.getPath());
             return history == null ? new TaskHistory() : history;
         } finally {
-            serializer.setClassLoader(original);
+            serializer.classLoader.remove();
         }
     }
 
@@ -126,6 +128,22 @@ public class CacheBackedTaskHistoryRepository implements TaskHistoryRepository {
         return bestMatch;
     }
 
+    /**
+     * Reads each history using the class loader of the task whose history the current thread is loading, as histories may be loaded by tasks
+     * executing in parallel.
+     */
+    private static class TaskHistorySerializer implements Serializer<TaskHistory> {
+        private final ThreadLocal<ClassLoader> classLoader = new ThreadLocal<ClassLoader>();
+
+        public TaskHistory read(InputStream instr) throws Exception {
+            return new DefaultSerializer<TaskHistory>(classLoader.get()).read(instr);
+        }
+
+        public void write(OutputStream outstr, TaskHistory value) throws Exception {
+            new DefaultSerializer<TaskHistory>().write(outstr, value);
+        }
+    }
+
     private static class TaskHistory implements Serializable {
         private static final int MAX_HISTORY_ENTRIES = 3;
         private final List<LazyTaskExecution> configurations = new ArrayList<LazyTaskExecution>();
@@ -156,7 +174,7 @@ public class CacheBackedTaskHistoryRepository implements TaskHistoryRepository {
         @Override
         public FileCollectionSnapshot getOutputFilesSnapshot() {
             if (outputFilesSnapshot == null) {
-                outputFilesSnapshot = cacheAccess.useCache("fetch output files", new Factory<FileCollectionSnapshot>() {
+                outputFilesSnapshot = cacheAccess.useCacheConcurrently("fetch output files", new Factory<FileCollectionSnapshot>() {
                     public FileCollectionSnapshot create() {
                         return snapshotRepository.get(outputFilesSnapshotId);
                     }
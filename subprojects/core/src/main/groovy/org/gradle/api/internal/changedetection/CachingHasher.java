@@ -16,34 +16,173 @@
 package org.gradle.api.internal.changedetection;
 
 import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.cache.internal.UnitOfWorkParticipant;
 import org.gradle.messaging.serialize.Serializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
 
-public class CachingHasher implements Hasher {
+/**
+ * A {@link Hasher} which caches the hashes of files in the persistent file hash cache.
+ *
+ * <p>Recently used entries are also kept in memory. Updates are not written to the persistent cache straight away, but are
+ * collected in memory and written in a single batch, ordered by file, at the end of the unit of work or once too many
+ * updates are pending. Both operations must be called while holding the lock on the cache.</p>
+ *
+ * <p>This hasher can be used from several threads at once, for example when tasks are executed in parallel.</p>
+ */
+public class CachingHasher implements Hasher, FileHashCache, UnitOfWorkParticipant {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CachingHasher.class);
+    static final int DEFAULT_IN_MEMORY_ENTRIES = 20000;
+    static final int MAX_PENDING_ENTRIES = 10000;
     private final PersistentIndexedCache<File, FileInfo> cache;
     private final Hasher hasher;
-    private long timestamp;
+    private final Map<File, FileInfo> inMemoryEntries;
+    private final Map<File, FileInfo> pendingEntries = new HashMap<File, FileInfo>();
+    private long inMemoryHits;
+    private long persistentHits;
+    private long misses;
+    private long flushes;
+    private long flushedEntries;
+
+    /**
+     * Creates a hasher which caches hashes in the given persistent cache. Hashes made with different algorithms must be kept in
+     * different caches.
+     */
+    public CachingHasher(Hasher hasher, TaskArtifactStateCacheAccess cacheAccess, String cacheName) {
+        this(hasher, cacheAccess, cacheName, DEFAULT_IN_MEMORY_ENTRIES);
+    }
 
-    public CachingHasher(Hasher hasher, TaskArtifactStateCacheAccess cacheAccess) {
+    public CachingHasher(Hasher hasher, TaskArtifactStateCacheAccess cacheAccess, String cacheName, final int maxInMemoryEntries) {
         this.hasher = hasher;
-        cache = cacheAccess.createCache("fileHashes", File.class, FileInfo.class, new FileInfoSerializer());
+        cache = cacheAccess.createCache(cacheName, File.class, FileInfo.class, new FileInfoSerializer());
+        inMemoryEntries = new LinkedHashMap<File, FileInfo>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<File, FileInfo> eldest) {
+                return size() > maxInMemoryEntries;
+            }
+        };
     }
 
     public byte[] hash(File file) {
-        FileInfo info = cache.get(file);
-
         long length = file.length();
-        timestamp = file.lastModified();
-        if (info != null && length == info.length && timestamp == info.timestamp) {
-            return info.hash;
+        long timestamp = file.lastModified();
+        byte[] hash = getCachedHash(file, length, timestamp);
+        if (hash != null) {
+            return hash;
         }
 
-        byte[] hash = hasher.hash(file);
-        cache.put(file, new FileInfo(hash, length, timestamp));
+        hash = hasher.hash(file);
+        cacheHash(file, length, timestamp, hash);
         return hash;
     }
 
+    public byte[] getCachedHash(File file, long length, long lastModified) {
+        synchronized (this) {
+            FileInfo info = pendingEntries.get(file);
+            if (info == null) {
+                info = inMemoryEntries.get(file);
+            }
+            if (info != null) {
+                if (length == info.length && lastModified == info.timestamp) {
+                    inMemoryHits++;
+                    return info.hash;
+                }
+                misses++;
+                return null;
+            }
+        }
+
+        // Look up the persistent cache without holding the lock, so that other threads can use the in-memory entries meanwhile
+        FileInfo info = cache.get(file);
+
+        synchronized (this) {
+            if (info != null) {
+                if (!inMemoryEntries.containsKey(file) && !pendingEntries.containsKey(file)) {
+                    inMemoryEntries.put(file, info);
+                }
+                if (length == info.length && lastModified == info.timestamp) {
+                    persistentHits++;
+                    return info.hash;
+                }
+            }
+            misses++;
+            return null;
+        }
+    }
+
+    public void cacheHash(File file, long length, long lastModified, byte[] hash) {
+        FileInfo info = new FileInfo(hash, length, lastModified);
+        boolean flush;
+        synchronized (this) {
+            pendingEntries.put(file, info);
+            inMemoryEntries.put(file, info);
+            flush = pendingEntries.size() >= MAX_PENDING_ENTRIES;
+        }
+        if (flush) {
+            flush();
+        }
+    }
+
+    public void onStartWork(String operationDisplayName) {
+    }
+
+    /**
+     * Writes any pending updates to the persistent cache.
+     */
+    public void onEndWork() {
+        flush();
+        synchronized (this) {
+            LOGGER.debug("File hash cache: {} in-memory hits, {} persistent hits, {} misses, {} entries written in {} batches.",
+                    new Object[]{inMemoryHits, persistentHits, misses, flushedEntries, flushes});
+        }
+    }
+
+    /**
+     * Takes the pending updates and writes them to the persistent cache. The updates are written without holding the lock, so that other threads
+     * can use the in-memory entries meanwhile.
+     */
+    private void flush() {
+        Map<File, FileInfo> entries;
+        synchronized (this) {
+            if (pendingEntries.isEmpty()) {
+                return;
+            }
+            entries = new TreeMap<File, FileInfo>(pendingEntries);
+            pendingEntries.clear();
+            flushes++;
+            flushedEntries += entries.size();
+        }
+        for (Map.Entry<File, FileInfo> entry : entries.entrySet()) {
+            cache.put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    public synchronized long getInMemoryHits() {
+        return inMemoryHits;
+    }
+
+    public synchronized long getPersistentHits() {
+        return persistentHits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getFlushes() {
+        return flushes;
+    }
+
+    public synchronized long getFlushedEntries() {
+        return flushedEntries;
+    }
+
     public static class FileInfo implements Serializable {
         private final byte[] hash;
         private final long timestamp;
@@ -0,0 +1,493 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.changedetection;
+
+import org.gradle.api.file.FileCollection;
+import org.gradle.api.internal.file.collections.SimpleFileCollection;
+import org.gradle.util.ChangeListener;
+import org.gradle.util.NoOpChangeListener;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * A compact snapshot of a collection of files. The entries are held in parallel arrays sorted by path, with the hashes
+ * of all files packed into a single array, so a snapshot does not hold an object per file and two snapshots can be
+ * compared with a single merge pass.
+ *
+ * <p>A snapshot can optionally record the length and modification time of each file, which allows a later snapshot of
+ * the same files to reuse the hash of each file whose length and modification time have not changed.</p>
+ */
+class DefaultFileCollectionSnapshot implements FileCollectionSnapshot {
+    static final byte FILE = 0;
+    static final byte DIR = 1;
+    static final byte MISSING = 2;
+    private static final int MAX_SHARED_PREFIX = 0xFFFF;
+
+    private final String[] paths;
+    private final byte[] types;
+    private final byte[] hashes;
+    private final int hashLength;
+    // The length and modification time of each entry, or null when not recorded. Unknown values are -1
+    private final long[] stats;
+
+    private DefaultFileCollectionSnapshot(String[] paths, byte[] types, byte[] hashes, int hashLength, long[] stats) {
+        this.paths = paths;
+        this.types = types;
+        this.hashes = hashes;
+        this.hashLength = hashLength;
+        this.stats = stats;
+    }
+
+    static DefaultFileCollectionSnapshot empty() {
+        return new DefaultFileCollectionSnapshot(new String[0], new byte[0], new byte[0], 0, null);
+    }
+
+    /**
+     * Returns the hash of the given file, when this snapshot recorded the file with the given length and modification
+     * time. Returns null otherwise.
+     */
+    byte[] getHashIfUnchanged(String path, long length, long lastModified) {
+        if (stats == null) {
+            return null;
+        }
+        int index = Arrays.binarySearch(paths, path);
+        if (index < 0 || types[index] != FILE || stats[2 * index] != length || stats[2 * index + 1] != lastModified) {
+            return null;
+        }
+        byte[] hash = new byte[hashLength];
+        System.arraycopy(hashes, index * hashLength, hash, 0, hashLength);
+        return hash;
+    }
+
+    /**
+     * Returns true when the given hash has the same length as the hashes of this snapshot, or this snapshot contains no files.
+     */
+    boolean hasSameHashLength(byte[] hash) {
+        return hashLength == 0 || hash.length == hashLength;
+    }
+
+    int size() {
+        return paths.length;
+    }
+
+    public FileCollection getFiles() {
+        List<File> files = new ArrayList<File>();
+        for (int i = 0; i < paths.length; i++) {
+            if (types[i] == FILE) {
+                files.add(new File(paths[i]));
+            }
+        }
+        return new SimpleFileCollection(files);
+    }
+
+    public void changesSince(FileCollectionSnapshot oldSnapshot, final ChangeListener<File> listener) {
+        diff((DefaultFileCollectionSnapshot) oldSnapshot, new EntryListener() {
+            public void added(int index) {
+                listener.added(new File(paths[index]));
+            }
+
+            public void removed(DefaultFileCollectionSnapshot oldSnapshot, int index) {
+                listener.removed(new File(oldSnapshot.paths[index]));
+            }
+
+            public void changed(int index) {
+                listener.changed(new File(paths[index]));
+            }
+        });
+    }
+
+    public Diff changesSince(FileCollectionSnapshot oldSnapshot) {
+        final DefaultFileCollectionSnapshot other = (DefaultFileCollectionSnapshot) oldSnapshot;
+        return new Diff() {
+            public FileCollectionSnapshot applyTo(FileCollectionSnapshot snapshot) {
+                return applyTo(snapshot, new NoOpChangeListener<Merge>());
+            }
+
+            public FileCollectionSnapshot applyTo(FileCollectionSnapshot snapshot, final ChangeListener<Merge> listener) {
+                DefaultFileCollectionSnapshot target = (DefaultFileCollectionSnapshot) snapshot;
+                final List<Integer> updated = new ArrayList<Integer>();
+                final List<String> removed = new ArrayList<String>();
+                diff(other, new EntryListener() {
+                    public void added(int index) {
+                        DefaultMerge merge = new DefaultMerge();
+                        listener.added(merge);
+                        if (!merge.ignore) {
+                            updated.add(index);
+                        }
+                    }
+
+                    public void removed(DefaultFileCollectionSnapshot oldSnapshot, int index) {
+                        DefaultMerge merge = new DefaultMerge();
+                        listener.removed(merge);
+                        if (!merge.ignore) {
+                            removed.add(oldSnapshot.paths[index]);
+                        }
+                    }
+
+                    public void changed(int index) {
+                        DefaultMerge merge = new DefaultMerge();
+                        listener.changed(merge);
+                        if (!merge.ignore) {
+                            updated.add(index);
+                        }
+                    }
+                });
+                return target.merge(DefaultFileCollectionSnapshot.this, updated, removed);
+            }
+        };
+    }
+
+    /**
+     * Walks this snapshot and the given old snapshot side by side, in path order.
+     */
+    private void diff(DefaultFileCollectionSnapshot oldSnapshot, EntryListener listener) {
+        int i = 0;
+        int j = 0;
+        while (i < paths.length && j < oldSnapshot.paths.length) {
+            int cmp = paths[i].compareTo(oldSnapshot.paths[j]);
+            if (cmp < 0) {
+                listener.added(i++);
+            } else if (cmp > 0) {
+                listener.removed(oldSnapshot, j++);
+            } else {
+                if (!isSameEntry(i, oldSnapshot, j)) {
+                    listener.changed(i);
+                }
+                i++;
+                j++;
+            }
+        }
+        while (i < paths.length) {
+            listener.added(i++);
+        }
+        while (j < oldSnapshot.paths.length) {
+            listener.removed(oldSnapshot, j++);
+        }
+    }
+
+    private boolean isSameEntry(int index, DefaultFileCollectionSnapshot other, int otherIndex) {
+        if (types[index] != other.types[otherIndex]) {
+            return false;
+        }
+        if (types[index] != FILE) {
+            return true;
+        }
+        if (hashLength != other.hashLength) {
+            return false;
+        }
+        int offset = index * hashLength;
+        int otherOffset = otherIndex * hashLength;
+        for (int k = 0; k < hashLength; k++) {
+            if (hashes[offset + k] != other.hashes[otherOffset + k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns a copy of this snapshot with the given entries of the source snapshot added or replaced, and the given
+     * paths removed. Both lists must be in path order.
+     *
+     * <p>When the source snapshot hashes files with a different algorithm, the files of this snapshot which are not replaced
+     * are dropped, so that they are reported as changed the next time the result is compared.</p>
+     */
+    private DefaultFileCollectionSnapshot merge(DefaultFileCollectionSnapshot source, List<Integer> updated, List<String> removed) {
+        boolean keepFiles = true;
+        if (hashLength != source.hashLength) {
+            for (Integer index : updated) {
+                if (source.types[index] == FILE) {
+                    keepFiles = false;
+                    break;
+                }
+            }
+        }
+        Builder builder = new Builder(paths.length + updated.size());
+        int i = 0;
+        int u = 0;
+        int r = 0;
+        while (i < paths.length || u < updated.size()) {
+            int cmp;
+            if (i == paths.length) {
+                cmp = 1;
+            } else if (u == updated.size()) {
+                cmp = -1;
+            } else {
+                cmp = paths[i].compareTo(source.paths[updated.get(u)]);
+            }
+            if (cmp < 0) {
+                while (r < removed.size() && removed.get(r).compareTo(paths[i]) < 0) {
+                    r++;
+                }
+                if ((r == removed.size() || !removed.get(r).equals(paths[i])) && (keepFiles || types[i] != FILE)) {
+                    builder.add(this, i);
+                }
+                i++;
+            } else {
+                builder.add(source, updated.get(u++));
+                if (cmp == 0) {
+                    i++;
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    void write(DataOutputStream output) throws IOException {
+        output.writeInt(paths.length);
+        output.writeInt(hashLength);
+        output.writeBoolean(stats != null);
+        String previous = "";
+        for (int i = 0; i < paths.length; i++) {
+            String path = paths[i];
+            int shared = 0;
+            int maxShared = Math.min(MAX_SHARED_PREFIX, Math.min(previous.length(), path.length()));
+            while (shared < maxShared && previous.charAt(shared) == path.charAt(shared)) {
+                shared++;
+            }
+            output.writeChar(shared);
+            output.writeUTF(path.substring(shared));
+            output.writeByte(types[i]);
+            if (types[i] == FILE) {
+                output.write(hashes, i * hashLength, hashLength);
+                if (stats != null) {
+                    output.writeLong(stats[2 * i]);
+                    output.writeLong(stats[2 * i + 1]);
+                }
+            }
+            previous = path;
+        }
+    }
+
+    static DefaultFileCollectionSnapshot read(DataInputStream input) throws IOException {
+        int count = input.readInt();
+        int hashLength = input.readInt();
+        String[] paths = new String[count];
+        byte[] types = new byte[count];
+        byte[] hashes = new byte[count * hashLength];
+        long[] stats = input.readBoolean() ? new long[2 * count] : null;
+        String previous = "";
+        for (int i = 0; i < count; i++) {
+            int shared = input.readChar();
+            String path = previous.substring(0, shared) + input.readUTF();
+            paths[i] = path;
+            types[i] = input.readByte();
+            if (types[i] == FILE) {
+                input.readFully(hashes, i * hashLength, hashLength);
+                if (stats != null) {
+                    stats[2 * i] = input.readLong();
+                    stats[2 * i + 1] = input.readLong();
+                }
+            } else if (stats != null) {
+                stats[2 * i] = -1;
+                stats[2 * i + 1] = -1;
+            }
+            previous = path;
+        }
+        return new DefaultFileCollectionSnapshot(paths, types, hashes, hashLength, stats);
+    }
+
+    private interface EntryListener {
+        void added(int index);
+
+        void removed(DefaultFileCollectionSnapshot oldSnapshot, int index);
+
+        void changed(int index);
+    }
+
+    private static class DefaultMerge implements Merge {
+        private boolean ignore;
+
+        public void ignore() {
+            ignore = true;
+        }
+    }
+
+    /**
+     * Collects the entries of a snapshot. Entries may be added in any order. When a path is added more than once, the
+     * last entry for the path wins.
+     */
+    static class Builder {
+        private final List<String> paths;
+        private final ByteArrayList types;
+        private final ByteArrayList hashes;
+        private long[] stats;
+        private int hashLength = -1;
+        private boolean sorted = true;
+
+        Builder(int expectedSize) {
+            paths = new ArrayList<String>(expectedSize);
+            types = new ByteArrayList(expectedSize);
+            hashes = new ByteArrayList(expectedSize * 16);
+        }
+
+        void addFile(String path, byte[] hash) {
+            checkHashLength(path, hash.length);
+            addPath(path, FILE);
+            hashes.add(hash, 0, hash.length);
+        }
+
+        void addFile(String path, byte[] hash, long length, long lastModified) {
+            addFile(path, hash);
+            setStat(length, lastModified);
+        }
+
+        void addDirectory(String path) {
+            addPath(path, DIR);
+        }
+
+        void addMissingFile(String path) {
+            addPath(path, MISSING);
+        }
+
+        private void add(DefaultFileCollectionSnapshot snapshot, int index) {
+            if (snapshot.types[index] == FILE) {
+                checkHashLength(snapshot.paths[index], snapshot.hashLength);
+                addPath(snapshot.paths[index], FILE);
+                hashes.add(snapshot.hashes, index * snapshot.hashLength, snapshot.hashLength);
+                if (snapshot.stats != null) {
+                    setStat(snapshot.stats[2 * index], snapshot.stats[2 * index + 1]);
+                }
+            } else {
+                addPath(snapshot.paths[index], snapshot.types[index]);
+            }
+        }
+
+        private void checkHashLength(String path, int length) {
+            if (hashLength < 0) {
+                hashLength = length;
+            } else if (length != hashLength) {
+                throw new IllegalArgumentException(String.format("Hash of %s has length %s, expected %s.", path, length, hashLength));
+            }
+        }
+
+        private void addPath(String path, byte type) {
+            if (sorted && !paths.isEmpty() && paths.get(paths.size() - 1).compareTo(path) >= 0) {
+                sorted = false;
+            }
+            paths.add(path);
+            types.add(type);
+        }
+
+        private void setStat(long length, long lastModified) {
+            int index = paths.size() - 1;
+            if (stats == null || stats.length < 2 * paths.size()) {
+                long[] newStats = new long[Math.max(32, 4 * paths.size())];
+                int copied = 0;
+                if (stats != null) {
+                    copied = Math.min(stats.length, newStats.length);
+                    System.arraycopy(stats, 0, newStats, 0, copied);
+                }
+                Arrays.fill(newStats, copied, newStats.length, -1);
+                stats = newStats;
+            }
+            stats[2 * index] = length;
+            stats[2 * index + 1] = lastModified;
+        }
+
+        DefaultFileCollectionSnapshot build() {
+            int hashLength = Math.max(0, this.hashLength);
+            int count = paths.size();
+            int[] hashOffsets = new int[count];
+            int offset = 0;
+            for (int i = 0; i < count; i++) {
+                hashOffsets[i] = offset;
+                if (types.get(i) == FILE) {
+                    offset += hashLength;
+                }
+            }
+
+            Integer[] order = new Integer[count];
+            for (int i = 0; i < count; i++) {
+                order[i] = i;
+            }
+            if (!sorted) {
+                // Stable sort, so that the last entry for a duplicated path can be found
+                Arrays.sort(order, new Comparator<Integer>() {
+                    public int compare(Integer a, Integer b) {
+                        return paths.get(a).compareTo(paths.get(b));
+                    }
+                });
+            }
+
+            int unique = 0;
+            for (int i = 0; i < count; i++) {
+                if (i == count - 1 || !paths.get(order[i]).equals(paths.get(order[i + 1]))) {
+                    order[unique++] = order[i];
+                }
+            }
+
+            String[] sortedPaths = new String[unique];
+            byte[] sortedTypes = new byte[unique];
+            byte[] sortedHashes = new byte[unique * hashLength];
+            long[] sortedStats = stats == null ? null : new long[2 * unique];
+            for (int i = 0; i < unique; i++) {
+                int index = order[i];
+                sortedPaths[i] = paths.get(index);
+                sortedTypes[i] = types.get(index);
+                if (sortedTypes[i] == FILE) {
+                    hashes.copyTo(hashOffsets[index], sortedHashes, i * hashLength, hashLength);
+                }
+                if (sortedStats != null) {
+                    boolean known = 2 * index < stats.length;
+                    sortedStats[2 * i] = known ? stats[2 * index] : -1;
+                    sortedStats[2 * i + 1] = known ? stats[2 * index + 1] : -1;
+                }
+            }
+            return new DefaultFileCollectionSnapshot(sortedPaths, sortedTypes, sortedHashes, hashLength, sortedStats);
+        }
+    }
+
+    private static class ByteArrayList {
+        private byte[] bytes;
+        private int size;
+
+        ByteArrayList(int capacity) {
+            bytes = new byte[Math.max(16, capacity)];
+        }
+
+        byte get(int index) {
+            return bytes[index];
+        }
+
+        void add(byte value) {
+            ensureCapacity(size + 1);
+            bytes[size++] = value;
+        }
+
+        void add(byte[] values, int offset, int length) {
+            ensureCapacity(size + length);
+            System.arraycopy(values, offset, bytes, size, length);
+            size += length;
+        }
+
+        void copyTo(int offset, byte[] target, int targetOffset, int length) {
+            System.arraycopy(bytes, offset, target, targetOffset, length);
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > bytes.length) {
+                byte[] newBytes = new byte[Math.max(capacity, bytes.length * 2)];
+                System.arraycopy(bytes, 0, newBytes, 0, size);
+                bytes = newBytes;
+            }
+        }
+    }
+}
@@ -17,142 +17,251 @@
 package org.gradle.api.internal.changedetection;
 
 import org.gradle.api.file.FileCollection;
-import org.gradle.api.internal.file.collections.SimpleFileCollection;
-import org.gradle.util.ChangeListener;
-import org.gradle.util.NoOpChangeListener;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.StoppableExecutor;
 
 import java.io.File;
-import java.io.Serializable;
-import java.math.BigInteger;
-import java.util.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class DefaultFileSnapshotter implements FileSnapshotter {
+    static final int DEFAULT_PARALLEL_THRESHOLD = 500;
+    private static final int BATCH_SIZE = 64;
     private final Hasher hasher;
+    private final FileHashCache hashCache;
+    private final ExecutorFactory executorFactory;
+    private final int maxThreads;
+    private final int parallelThreshold;
+    private StoppableExecutor executor;
 
     public DefaultFileSnapshotter(Hasher hasher) {
+        this(hasher, null, null, 1, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates a snapshotter which stats and hashes the files of large collections using up to the given number of
+     * threads. The given hasher is called from the worker threads, so must be thread-safe. The hash cache, if any, is
+     * only used from the threads which request snapshots. The worker threads are created on first use and kept until the executor factory
+     * is stopped.
+     */
+    public DefaultFileSnapshotter(Hasher hasher, FileHashCache hashCache, ExecutorFactory executorFactory, int maxThreads) {
+        this(hasher, hashCache, executorFactory, maxThreads, DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    DefaultFileSnapshotter(Hasher hasher, FileHashCache hashCache, ExecutorFactory executorFactory, int maxThreads, int parallelThreshold) {
         this.hasher = hasher;
+        this.hashCache = hashCache;
+        this.executorFactory = executorFactory;
+        this.maxThreads = maxThreads;
+        this.parallelThreshold = parallelThreshold;
     }
 
     public FileCollectionSnapshot emptySnapshot() {
-        return new FileCollectionSnapshotImpl(new HashMap<String, FileSnapshot>());
+        return DefaultFileCollectionSnapshot.empty();
     }
 
     public FileCollectionSnapshot snapshot(FileCollection sourceFiles) {
-        Map<String, FileSnapshot> snapshots = new HashMap<String, FileSnapshot>();
-        for (File file : sourceFiles.getAsFileTree()) {
-            if (file.isFile()) {
-                snapshots.put(file.getAbsolutePath(), new FileHashSnapshot(hasher.hash(file)));
-            } else if (file.isDirectory()) {
-                snapshots.put(file.getAbsolutePath(), new DirSnapshot());
-            } else {
-                snapshots.put(file.getAbsolutePath(), new MissingFileSnapshot());
-            }
-        }
-        return new FileCollectionSnapshotImpl(snapshots);
+        return doSnapshot(sourceFiles, null);
     }
 
-    private interface FileSnapshot extends Serializable {
-        boolean isUpToDate(FileSnapshot snapshot);
+    public FileCollectionSnapshot snapshot(FileCollection files, FileCollectionSnapshot previous) {
+        return doSnapshot(files, previous == null ? DefaultFileCollectionSnapshot.empty() : (DefaultFileCollectionSnapshot) previous);
     }
 
-    private static class FileHashSnapshot implements FileSnapshot {
-        private final byte[] hash;
-
-        public FileHashSnapshot(byte[] hash) {
-            this.hash = hash;
-        }
-
-        public boolean isUpToDate(FileSnapshot snapshot) {
-            if (!(snapshot instanceof FileHashSnapshot)) {
-                return false;
+    /**
+     * @param previous The snapshot to reuse hashes from, or null to not record file lengths and modification times.
+     */
+    private FileCollectionSnapshot doSnapshot(FileCollection sourceFiles, DefaultFileCollectionSnapshot previous) {
+        if (maxThreads > 1) {
+            List<File> files = new ArrayList<File>();
+            for (File file : sourceFiles.getAsFileTree()) {
+                files.add(file);
             }
-
-            FileHashSnapshot other = (FileHashSnapshot) snapshot;
-            return Arrays.equals(hash, other.hash);
+            if (files.size() >= parallelThreshold) {
+                return snapshotConcurrently(files, previous);
+            }
+            return snapshotFiles(files, previous);
         }
+        return snapshotFiles(sourceFiles.getAsFileTree(), previous);
+    }
 
-        @Override
-        public String toString() {
-            return new BigInteger(1, hash).toString(16);
+    private FileCollectionSnapshot snapshotFiles(Iterable<File> files, DefaultFileCollectionSnapshot previous) {
+        DefaultFileCollectionSnapshot.Builder builder = new DefaultFileCollectionSnapshot.Builder(16);
+        for (File file : files) {
+            String path = file.getAbsolutePath();
+            if (file.isFile()) {
+                if (previous == null) {
+                    builder.addFile(path, hash(file));
+                } else {
+                    long length = file.length();
+                    long lastModified = file.lastModified();
+                    byte[] hash = previous.getHashIfUnchanged(path, length, lastModified);
+                    if (hash == null) {
+                        hash = hash(file, length, lastModified);
+                        if (!previous.hasSameHashLength(hash)) {
+                            // The previous snapshot was made using a different algorithm, so none of its hashes can be reused
+                            return snapshotFiles(files, null);
+                        }
+                    }
+                    builder.addFile(path, hash, length, lastModified);
+                }
+            } else if (file.isDirectory()) {
+                builder.addDirectory(path);
+            } else {
+                builder.addMissingFile(path);
+            }
         }
+        return builder.build();
     }
 
-    private static class DirSnapshot implements FileSnapshot {
-        public boolean isUpToDate(FileSnapshot snapshot) {
-            return snapshot instanceof DirSnapshot;
-        }
+    private byte[] hash(File file) {
+        return hashCache == null ? hasher.hash(file) : hash(file, file.length(), file.lastModified());
     }
 
-    private static class MissingFileSnapshot implements FileSnapshot {
-        public boolean isUpToDate(FileSnapshot snapshot) {
-            return snapshot instanceof MissingFileSnapshot;
+    private byte[] hash(File file, long length, long lastModified) {
+        if (hashCache == null) {
+            return hasher.hash(file);
+        }
+        byte[] hash = hashCache.getCachedHash(file, length, lastModified);
+        if (hash == null) {
+            hash = hasher.hash(file);
+            hashCache.cacheHash(file, length, lastModified, hash);
         }
+        return hash;
     }
 
-    private static class FileCollectionSnapshotImpl implements FileCollectionSnapshot {
-        private final Map<String, FileSnapshot> snapshots;
-
-        public FileCollectionSnapshotImpl(Map<String, FileSnapshot> snapshots) {
-            this.snapshots = snapshots;
-        }
+    /**
+     * Snapshots the given files in three passes: the files are stat()ed on the worker threads, then the previous snapshot
+     * and the hash cache are queried on this thread, then the files whose hash is unknown are hashed on the worker threads. Files are handed
+     * out to workers in batches of adjacent entries, so that each worker tends to stay within a single directory.
+     */
+    private FileCollectionSnapshot snapshotConcurrently(final List<File> files, DefaultFileCollectionSnapshot previous) {
+        final FileDetails[] details = new FileDetails[files.size()];
+        runConcurrently(files.size(), new IndexedAction() {
+            public void execute(int index) {
+                details[index] = new FileDetails(files.get(index));
+            }
+        });
 
-        public FileCollection getFiles() {
-            List<File> files = new ArrayList<File>();
-            for (Map.Entry<String, FileSnapshot> entry : snapshots.entrySet()) {
-                if (entry.getValue() instanceof FileHashSnapshot) {
-                    files.add(new File(entry.getKey()));
+        final List<FileDetails> toHash = new ArrayList<FileDetails>();
+        for (FileDetails fileDetails : details) {
+            if (fileDetails.isFile) {
+                if (previous != null) {
+                    fileDetails.hash = previous.getHashIfUnchanged(fileDetails.file.getAbsolutePath(), fileDetails.length, fileDetails.lastModified);
+                }
+                if (fileDetails.hash == null && hashCache != null) {
+                    fileDetails.hash = hashCache.getCachedHash(fileDetails.file, fileDetails.length, fileDetails.lastModified);
+                }
+                if (fileDetails.hash == null) {
+                    toHash.add(fileDetails);
                 }
             }
-            return new SimpleFileCollection(files);
         }
 
-        public void changesSince(FileCollectionSnapshot oldSnapshot, final ChangeListener<File> listener) {
-            FileCollectionSnapshotImpl other = (FileCollectionSnapshotImpl) oldSnapshot;
-            diff(snapshots, other.snapshots, new ChangeListener<Map.Entry<String, FileSnapshot>>() {
-                public void added(Map.Entry<String, FileSnapshot> element) {
-                    listener.added(new File(element.getKey()));
-                }
-
-                public void removed(Map.Entry<String, FileSnapshot> element) {
-                    listener.removed(new File(element.getKey()));
-                }
+        runConcurrently(toHash.size(), new IndexedAction() {
+            public void execute(int index) {
+                FileDetails fileDetails = toHash.get(index);
+                fileDetails.hash = hasher.hash(fileDetails.file);
+            }
+        });
 
-                public void changed(Map.Entry<String, FileSnapshot> element) {
-                    listener.changed(new File(element.getKey()));
+        if (previous != null) {
+            for (FileDetails fileDetails : details) {
+                if (fileDetails.isFile && !previous.hasSameHashLength(fileDetails.hash)) {
+                    // The previous snapshot was made using a different algorithm, so none of its hashes can be reused
+                    return snapshotConcurrently(files, null);
                 }
-            });
+            }
         }
 
-        private void diff(Map<String, FileSnapshot> snapshots, Map<String, FileSnapshot> oldSnapshots,
-                          ChangeListener<Map.Entry<String, FileSnapshot>> listener) {
-            Map<String, FileSnapshot> otherSnapshots = new HashMap<String, FileSnapshot>(oldSnapshots);
-            for (Map.Entry<String, FileSnapshot> entry : snapshots.entrySet()) {
-                FileSnapshot otherFile = otherSnapshots.remove(entry.getKey());
-                if (otherFile == null) {
-                    listener.added(entry);
-                } else if (!entry.getValue().isUpToDate(otherFile)) {
-                    listener.changed(entry);
-                }
+        DefaultFileCollectionSnapshot.Builder builder = new DefaultFileCollectionSnapshot.Builder(details.length);
+        for (FileDetails fileDetails : details) {
+            String path = fileDetails.file.getAbsolutePath();
+            if (fileDetails.isFile && previous != null) {
+                builder.addFile(path, fileDetails.hash, fileDetails.length, fileDetails.lastModified);
+            } else if (fileDetails.isFile) {
+                builder.addFile(path, fileDetails.hash);
+            } else if (fileDetails.isDirectory) {
+                builder.addDirectory(path);
+            } else {
+                builder.addMissingFile(path);
             }
-            for (Map.Entry<String, FileSnapshot> entry : otherSnapshots.entrySet()) {
-                listener.removed(entry);
+        }
+        if (hashCache != null) {
+            for (FileDetails fileDetails : toHash) {
+                hashCache.cacheHash(fileDetails.file, fileDetails.length, fileDetails.lastModified, fileDetails.hash);
             }
         }
+        return builder.build();
+    }
 
-        public Diff changesSince(final FileCollectionSnapshot oldSnapshot) {
-            final FileCollectionSnapshotImpl other = (FileCollectionSnapshotImpl) oldSnapshot;
-            return new Diff() {
-                public FileCollectionSnapshot applyTo(FileCollectionSnapshot snapshot) {
-                    return applyTo(snapshot, new NoOpChangeListener<Merge>());
+    private void runConcurrently(final int count, final IndexedAction action) {
+        if (count == 0) {
+            return;
+        }
+        final AtomicInteger nextBatch = new AtomicInteger();
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        int workers = Math.min(maxThreads, (count + BATCH_SIZE - 1) / BATCH_SIZE);
+        final CountDownLatch finished = new CountDownLatch(workers);
+        StoppableExecutor executor = getExecutor();
+        for (int i = 0; i < workers; i++) {
+            executor.execute(new Runnable() {
+                public void run() {
+                    try {
+                        int start;
+                        while (failure.get() == null && (start = nextBatch.getAndAdd(BATCH_SIZE)) < count) {
+                            int end = Math.min(start + BATCH_SIZE, count);
+                            for (int index = start; index < end; index++) {
+                                action.execute(index);
+                            }
+                        }
+                    } catch (Throwable throwable) {
+                        failure.compareAndSet(null, throwable);
+                    } finally {
+                        finished.countDown();
+                    }
                 }
+            });
+        }
+        try {
+            finished.await();
+        } catch (InterruptedException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+        if (failure.get() != null) {
+            throw UncheckedException.throwAsUncheckedException(failure.get());
+        }
+    }
 
-                public FileCollectionSnapshot applyTo(FileCollectionSnapshot snapshot, final ChangeListener<Merge> listener) {
-                    FileCollectionSnapshotImpl target = (FileCollectionSnapshotImpl) snapshot;
-                    final Map<String, FileSnapshot> newSnapshots = new HashMap<String, FileSnapshot>(target.snapshots);
-                    diff(snapshots, other.snapshots, new MapMergeChangeListener<String, FileSnapshot>(listener, newSnapshots));
-                    return new FileCollectionSnapshotImpl(newSnapshots);
-                }
-            };
+    private synchronized StoppableExecutor getExecutor() {
+        if (executor == null) {
+            executor = executorFactory.create("Snapshot files");
+        }
+        return executor;
+    }
+
+    private interface IndexedAction {
+        void execute(int index);
+    }
+
+    private static class FileDetails {
+        final File file;
+        final boolean isFile;
+        final boolean isDirectory;
+        final long length;
+        final long lastModified;
+        byte[] hash;
+
+        FileDetails(File file) {
+            this.file = file;
+            isFile = file.isFile();
+            isDirectory = !isFile && file.isDirectory();
+            length = isFile ? file.length() : 0;
+            lastModified = isFile ? file.lastModified() : 0;
         }
     }
 }
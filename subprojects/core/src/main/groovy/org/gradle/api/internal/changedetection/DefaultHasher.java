@@ -20,7 +20,17 @@ import org.gradle.util.hash.HashUtil;
 import java.io.File;
 
 public class DefaultHasher implements Hasher {
+    private final String algorithm;
+
+    public DefaultHasher() {
+        this("MD5");
+    }
+
+    public DefaultHasher(String algorithm) {
+        this.algorithm = algorithm;
+    }
+
     public byte[] hash(File file) {
-        return HashUtil.createHash(file, "MD5").asByteArray();
+        return HashUtil.createHash(file, algorithm).asByteArray();
     }
 }
\ No newline at end of file
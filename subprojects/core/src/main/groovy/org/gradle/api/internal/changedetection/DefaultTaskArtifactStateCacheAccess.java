@@ -25,18 +25,21 @@ import org.gradle.cache.internal.FileLockManager;
 import org.gradle.listener.LazyCreationProxy;
 
 import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
 
 public class DefaultTaskArtifactStateCacheAccess implements TaskArtifactStateCacheAccess {
     private final Gradle gradle;
     private final CacheRepository cacheRepository;
     private PersistentCache cache;
+    private final Map<String, PersistentIndexedCache> indexedCaches = new HashMap<String, PersistentIndexedCache>();
 
     public DefaultTaskArtifactStateCacheAccess(Gradle gradle, CacheRepository cacheRepository) {
         this.gradle = gradle;
         this.cacheRepository = cacheRepository;
     }
 
-    private PersistentCache getCache() {
+    private synchronized PersistentCache getCache() {
         if (cache == null) {
             cache = cacheRepository
                     .cache("taskArtifacts")
@@ -48,23 +51,32 @@ public class DefaultTaskArtifactStateCacheAccess implements TaskArtifactStateCac
         return cache;
     }
 
-    public <K, V> PersistentIndexedCache<K, V> createCache(final String cacheName, final Class<K> keyType, final Class<V> valueType) {
-        Factory<PersistentIndexedCache> factory = new Factory<PersistentIndexedCache>() {
-            public PersistentIndexedCache create() {
-                return getCache().createCache(cacheFile(cacheName), keyType, valueType);
-            }
-        };
-        return new LazyCreationProxy<PersistentIndexedCache>(PersistentIndexedCache.class, factory).getSource();
+    public synchronized <K, V> PersistentIndexedCache<K, V> createCache(final String cacheName, final Class<K> keyType, final Class<V> valueType) {
+        PersistentIndexedCache indexedCache = indexedCaches.get(cacheName);
+        if (indexedCache == null) {
+            Factory<PersistentIndexedCache> factory = new Factory<PersistentIndexedCache>() {
+                public PersistentIndexedCache create() {
+                    return getCache().createCache(cacheFile(cacheName), keyType, valueType);
+                }
+            };
+            indexedCache = new LazyCreationProxy<PersistentIndexedCache>(PersistentIndexedCache.class, factory).getSource();
+            indexedCaches.put(cacheName, indexedCache);
+        }
+        return indexedCache;
     }
 
-    public <K, V> PersistentIndexedCache<K, V> createCache(final String cacheName, final Class<K> keyType, final Class<V> valueType, final Serializer<V> valueSerializer) {
-        Factory<PersistentIndexedCache> factory = new Factory<PersistentIndexedCache>() {
-            public PersistentIndexedCache create() {
-                return getCache().createCache(cacheFile(cacheName), keyType, valueSerializer);
-            }
-        };
-        return new LazyCreationProxy<PersistentIndexedCache>(PersistentIndexedCache.class, factory).getSource();
-
+    public synchronized <K, V> PersistentIndexedCache<K, V> createCache(final String cacheName, final Class<K> keyType, final Class<V> valueType, final Serializer<V> valueSerializer) {
+        PersistentIndexedCache indexedCache = indexedCaches.get(cacheName);
+        if (indexedCache == null) {
+            Factory<PersistentIndexedCache> factory = new Factory<PersistentIndexedCache>() {
+                public PersistentIndexedCache create() {
+                    return getCache().createCache(cacheFile(cacheName), keyType, valueSerializer);
+                }
+            };
+            indexedCache = new LazyCreationProxy<PersistentIndexedCache>(PersistentIndexedCache.class, factory).getSource();
+            indexedCaches.put(cacheName, indexedCache);
+        }
+        return indexedCache;
     }
 
     private File cacheFile(String cacheName) {
@@ -79,6 +91,10 @@ public class DefaultTaskArtifactStateCacheAccess implements TaskArtifactStateCac
         getCache().useCache(operationDisplayName, action);
     }
 
+    public <T> T useCacheConcurrently(String operationDisplayName, Factory<? extends T> action) {
+        return getCache().useCacheConcurrently(operationDisplayName, action);
+    }
+
     public void longRunningOperation(String operationDisplayName, Runnable action) {
         getCache().longRunningOperation(operationDisplayName, action);
     }
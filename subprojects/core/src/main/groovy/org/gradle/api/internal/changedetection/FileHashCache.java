@@ -0,0 +1,34 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.changedetection;
+
+import java.io.File;
+
+/**
+ * A cache of file content hashes. An entry is only valid while the length and modification time of the file remain
+ * unchanged. Implementations are not required to be thread-safe.
+ */
+public interface FileHashCache {
+    /**
+     * Returns the cached hash of the given file, or null when there is no entry for the file or the entry is out of date.
+     */
+    byte[] getCachedHash(File file, long length, long lastModified);
+
+    /**
+     * Records the hash of the given file.
+     */
+    void cacheHash(File file, long length, long lastModified, byte[] hash);
+}
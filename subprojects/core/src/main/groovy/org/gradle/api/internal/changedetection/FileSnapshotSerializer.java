@@ -0,0 +1,94 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.changedetection;
+
+import org.gradle.cache.DefaultSerializer;
+import org.gradle.messaging.serialize.Serializer;
+
+import java.io.*;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Serializes the entries of the file snapshot cache. Snapshots are written in a compact binary format, with the paths of
+ * each snapshot front-coded against the previous path. Any other values are written using Java serialization.
+ */
+class FileSnapshotSerializer implements Serializer<Object> {
+    private static final byte LONG = 1;
+    private static final byte FILE_COLLECTION = 2;
+    private static final byte OUTPUT_FILES = 3;
+    private static final byte SERIALIZED_OBJECT = 4;
+    private final DefaultSerializer<Object> defaultSerializer = new DefaultSerializer<Object>(getClass().getClassLoader());
+
+    public Object read(InputStream instr) throws Exception {
+        return read(new DataInputStream(instr));
+    }
+
+    public void write(OutputStream outstr, Object value) throws Exception {
+        DataOutputStream output = new DataOutputStream(outstr);
+        write(output, value);
+        output.flush();
+    }
+
+    private Object read(DataInputStream input) throws Exception {
+        byte tag = input.readByte();
+        switch (tag) {
+            case LONG:
+                return input.readLong();
+            case FILE_COLLECTION:
+                return DefaultFileCollectionSnapshot.read(input);
+            case OUTPUT_FILES:
+                int count = input.readInt();
+                Map<String, Long> rootFileIds = new HashMap<String, Long>(count * 4 / 3 + 1);
+                for (int i = 0; i < count; i++) {
+                    String path = input.readUTF();
+                    rootFileIds.put(path, input.readBoolean() ? input.readLong() : null);
+                }
+                FileCollectionSnapshot filesSnapshot = (FileCollectionSnapshot) read(input);
+                return new OutputFilesSnapshotter.OutputFilesSnapshot(rootFileIds, filesSnapshot);
+            case SERIALIZED_OBJECT:
+                return defaultSerializer.read(input);
+            default:
+                throw new IllegalArgumentException(String.format("Unexpected file snapshot entry type %s.", tag));
+        }
+    }
+
+    private void write(DataOutputStream output, Object value) throws Exception {
+        if (value instanceof Long) {
+            output.writeByte(LONG);
+            output.writeLong((Long) value);
+        } else if (value instanceof DefaultFileCollectionSnapshot) {
+            output.writeByte(FILE_COLLECTION);
+            ((DefaultFileCollectionSnapshot) value).write(output);
+        } else if (value instanceof OutputFilesSnapshotter.OutputFilesSnapshot) {
+            OutputFilesSnapshotter.OutputFilesSnapshot snapshot = (OutputFilesSnapshotter.OutputFilesSnapshot) value;
+            output.writeByte(OUTPUT_FILES);
+            output.writeInt(snapshot.getRootFileIds().size());
+            for (Map.Entry<String, Long> entry : snapshot.getRootFileIds().entrySet()) {
+                output.writeUTF(entry.getKey());
+                output.writeBoolean(entry.getValue() != null);
+                if (entry.getValue() != null) {
+                    output.writeLong(entry.getValue());
+                }
+            }
+            write(output, snapshot.getFilesSnapshot());
+        } else {
+            output.writeByte(SERIALIZED_OBJECT);
+            output.flush();
+            defaultSerializer.write(output, value);
+        }
+    }
+}
@@ -32,4 +32,15 @@ public interface FileSnapshotter {
      * @return The snapshot.
      */
     FileCollectionSnapshot snapshot(FileCollection files);
+
+    /**
+     * Creates a snapshot of the contents of the given collection, which also records the length and modification time of
+     * each file. The hash of each file whose length and modification time match those recorded by the given snapshot
+     * is reused from that snapshot, rather than being calculated.
+     *
+     * @param files The files to snapshot
+     * @param previous The snapshot to reuse hashes from. May be null.
+     * @return The snapshot.
+     */
+    FileCollectionSnapshot snapshot(FileCollection files, FileCollectionSnapshot previous);
 }
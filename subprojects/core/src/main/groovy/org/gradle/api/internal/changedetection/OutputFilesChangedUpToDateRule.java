@@ -32,7 +32,8 @@ public class OutputFilesChangedUpToDateRule implements UpToDateRule {
     }
 
     public TaskUpToDateState create(final TaskInternal task, final TaskExecution previousExecution, final TaskExecution currentExecution) {
-        final FileCollectionSnapshot outputFilesBefore = outputFilesSnapshotter.snapshot(task.getOutputs().getFiles());
+        final FileCollectionSnapshot outputFilesBefore = outputFilesSnapshotter.snapshot(task.getOutputs().getFiles(),
+                previousExecution == null ? null : previousExecution.getOutputFilesSnapshot());
 
         return new TaskUpToDateState() {
             public void checkUpToDate(final Collection<String> messages) {
@@ -77,7 +78,7 @@ public class OutputFilesChangedUpToDateRule implements UpToDateRule {
                                 // Update any files which were change since the task was last executed
                             }
                         });
-                FileCollectionSnapshot outputFilesAfter = outputFilesSnapshotter.snapshot(task.getOutputs().getFiles());
+                FileCollectionSnapshot outputFilesAfter = outputFilesSnapshotter.snapshot(task.getOutputs().getFiles(), outputFilesBefore);
                 currentExecution.setOutputFilesSnapshot(outputFilesAfter.changesSince(outputFilesBefore).applyTo(newOutputFiles));
             }
         };
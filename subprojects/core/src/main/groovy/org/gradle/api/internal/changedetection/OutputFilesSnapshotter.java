@@ -37,16 +37,25 @@ import java.util.Map;
  * <li>Collect the hash of each output file and each file in each output directory.</li>
  * </ul>
  *
+ * <p>When created to trust file metadata, the snapshotter also records the length and modification time of each output
+ * file, and only hashes those output files whose length or modification time differ from the previous snapshot.</p>
  */
 public class OutputFilesSnapshotter implements FileSnapshotter {
     private final FileSnapshotter snapshotter;
     private final IdGenerator<Long> idGenerator;
     private final PersistentIndexedCache<String, Long> dirIdentiferCache;
+    private final boolean trustFileMetadata;
 
     public OutputFilesSnapshotter(FileSnapshotter snapshotter, IdGenerator<Long> idGenerator,
                                   TaskArtifactStateCacheAccess cacheAccess) {
+        this(snapshotter, idGenerator, cacheAccess, false);
+    }
+
+    public OutputFilesSnapshotter(FileSnapshotter snapshotter, IdGenerator<Long> idGenerator,
+                                  TaskArtifactStateCacheAccess cacheAccess, boolean trustFileMetadata) {
         this.snapshotter = snapshotter;
         this.idGenerator = idGenerator;
+        this.trustFileMetadata = trustFileMetadata;
         dirIdentiferCache = cacheAccess.createCache("outputFileStates", String.class, Long.class);
     }
 
@@ -55,25 +64,39 @@ public class OutputFilesSnapshotter implements FileSnapshotter {
     }
 
     public FileCollectionSnapshot snapshot(FileCollection files) {
+        return snapshot(files, null);
+    }
+
+    public FileCollectionSnapshot snapshot(FileCollection files, FileCollectionSnapshot previous) {
         Map<String, Long> snapshotDirIds = new HashMap<String, Long>();
         for (File file : files) {
-            Long dirId;
-            if (file.exists()) {
-                dirId = dirIdentiferCache.get(file.getAbsolutePath());
-                if (dirId == null) {
-                    dirId = idGenerator.generateId();
-                    dirIdentiferCache.put(file.getAbsolutePath(), dirId);
-                }
-            } else {
-                dirIdentiferCache.remove(file.getAbsolutePath());
-                dirId = null;
+            snapshotDirIds.put(file.getAbsolutePath(), getDirId(file));
+        }
+        FileCollectionSnapshot filesSnapshot;
+        if (trustFileMetadata) {
+            FileCollectionSnapshot previousFilesSnapshot = previous == null ? null : ((OutputFilesSnapshot) previous).filesSnapshot;
+            filesSnapshot = snapshotter.snapshot(files, previousFilesSnapshot);
+        } else {
+            filesSnapshot = snapshotter.snapshot(files);
+        }
+        return new OutputFilesSnapshot(snapshotDirIds, filesSnapshot);
+    }
+
+    // Synchronized, so that tasks executing in parallel which share an output file agree on its id
+    private synchronized Long getDirId(File file) {
+        if (file.exists()) {
+            Long dirId = dirIdentiferCache.get(file.getAbsolutePath());
+            if (dirId == null) {
+                dirId = idGenerator.generateId();
+                dirIdentiferCache.put(file.getAbsolutePath(), dirId);
             }
-            snapshotDirIds.put(file.getAbsolutePath(), dirId);
+            return dirId;
         }
-        return new OutputFilesSnapshot(snapshotDirIds, snapshotter.snapshot(files));
+        dirIdentiferCache.remove(file.getAbsolutePath());
+        return null;
     }
 
-    private static class OutputFilesSnapshot implements FileCollectionSnapshot {
+    static class OutputFilesSnapshot implements FileCollectionSnapshot {
         private final Map<String, Long> rootFileIds;
         private final FileCollectionSnapshot filesSnapshot;
 
@@ -82,6 +105,14 @@ public class OutputFilesSnapshotter implements FileSnapshotter {
             this.filesSnapshot = filesSnapshot;
         }
 
+        Map<String, Long> getRootFileIds() {
+            return rootFileIds;
+        }
+
+        FileCollectionSnapshot getFilesSnapshot() {
+            return filesSnapshot;
+        }
+
         public FileCollection getFiles() {
             return filesSnapshot.getFiles();
         }
@@ -36,6 +36,14 @@ public interface TaskArtifactStateCacheAccess {
      */
     void useCache(String operationDisplayName, Runnable action);
 
+    /**
+     * Performs some work against the cache. Acquires the locks in the same way as {@link #useCache(String, Factory)}, except that other threads of this
+     * process can use the cache in this way at the same time. The caches created by this cache access can be used concurrently from these threads.
+     *
+     * <p>This method is re-entrant, so that an action can call back into this method.</p>
+     */
+    <T> T useCacheConcurrently(String operationDisplayName, Factory<? extends T> action);
+
     /**
      * Performs some long running operation. Releases all locks while the operation is running, and reacquires the locks at the end of
      * the long running operation.
@@ -44,7 +52,15 @@ public interface TaskArtifactStateCacheAccess {
      */
     void longRunningOperation(String operationDisplayName, Runnable action);
 
+    /**
+     * Creates the indexed cache with the given name. Returns the same cache when called again with the same name, so that the cache
+     * can be shared by several users, such as the instances of a task type.
+     */
     <K, V> PersistentIndexedCache createCache(String cacheName, Class<K> keyType, Class<V> valueType);
 
+    /**
+     * Creates the indexed cache with the given name. Returns the same cache when called again with the same name.
+     */
+
     <K, V> PersistentIndexedCache<K, V> createCache(String cacheName, Class<K> keyType, Class<V> valueType, Serializer<V> valueSerializer);
 }
@@ -15,20 +15,38 @@
  */
 package org.gradle.api.internal.changedetection;
 
+import org.gradle.cache.internal.UnitOfWorkParticipant;
 import org.gradle.execution.BuildExecutionAction;
 import org.gradle.execution.BuildExecutionContext;
 
+import java.util.Arrays;
+import java.util.List;
+
 public class TaskCacheLockHandlingBuildExecuter implements BuildExecutionAction {
     private final TaskArtifactStateCacheAccess cacheAccess;
+    private final List<UnitOfWorkParticipant> participants;
 
-    public TaskCacheLockHandlingBuildExecuter(TaskArtifactStateCacheAccess cacheAccess) {
+    /**
+     * @param participants Notified at the start and end of task execution, while the cache is locked.
+     */
+    public TaskCacheLockHandlingBuildExecuter(TaskArtifactStateCacheAccess cacheAccess, UnitOfWorkParticipant... participants) {
         this.cacheAccess = cacheAccess;
+        this.participants = Arrays.asList(participants);
     }
 
     public void execute(final BuildExecutionContext context) {
         cacheAccess.useCache("execute tasks", new Runnable(){
             public void run() {
-                context.proceed();
+                for (UnitOfWorkParticipant participant : participants) {
+                    participant.onStartWork("execute tasks");
+                }
+                try {
+                    context.proceed();
+                } finally {
+                    for (UnitOfWorkParticipant participant : participants) {
+                        participant.onEndWork();
+                    }
+                }
             }
         });
     }
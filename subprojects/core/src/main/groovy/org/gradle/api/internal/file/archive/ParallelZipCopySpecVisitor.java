@@ -0,0 +1,447 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.file.archive;
+
+import org.apache.tools.zip.UnixStat;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.FileVisitDetails;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.internal.file.copy.ArchiveCopyAction;
+import org.gradle.api.internal.file.copy.CopyAction;
+import org.gradle.api.internal.file.copy.EmptyCopySpecVisitor;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.StoppableExecutor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.LinkedList;
+import java.util.concurrent.*;
+import java.util.zip.CRC32;
+
+/**
+ * Creates a ZIP file, compressing the content of the file entries on a pool of worker threads. The content of each entry is
+ * read on the visiting thread and compressed into an independent deflate stream by a worker. The compressed entries are
+ * written to the ZIP file on the visiting thread, in the order they were visited, so the result does not depend on the
+ * number of workers. Entries whose content is larger than a threshold are compressed as they are read, in order, instead.
+ *
+ * <p>When incremental, the compressed data of the entries of the previous version of the ZIP file is reused for the entries
+ * whose path and content have not changed, instead of compressing their content again.</p>
+ */
+public class ParallelZipCopySpecVisitor extends EmptyCopySpecVisitor {
+    private static final Logger LOGGER = Logging.getLogger(ParallelZipCopySpecVisitor.class);
+    private static final int LARGE_ENTRY_SIZE = 4 * 1024 * 1024;
+    private static final int MAX_BUFFERED_SIZE = 64 * 1024 * 1024;
+    private static final int MAX_PENDING_ENTRIES = 4096;
+    private static final Runnable STOP = new Runnable() {
+        public void run() {
+        }
+    };
+
+    private final ExecutorFactory executorFactory;
+    private final int maxThreads;
+    private final boolean incremental;
+    private final LinkedList<PendingEntry> pending = new LinkedList<PendingEntry>();
+    private final BlockingQueue<Runnable> queue = new LinkedBlockingQueue<Runnable>();
+    private File zipFile;
+    private ZipArchiveWriter writer;
+    private StoppableExecutor executor;
+    private long bufferedSize;
+    private File previousZipFile;
+    private ZipArchiveIndex previousArchive;
+
+    public ParallelZipCopySpecVisitor(ExecutorFactory executorFactory, int maxThreads) {
+        this(executorFactory, maxThreads, false);
+    }
+
+    public ParallelZipCopySpecVisitor(ExecutorFactory executorFactory, int maxThreads, boolean incremental) {
+        this.executorFactory = executorFactory;
+        this.maxThreads = maxThreads;
+        this.incremental = incremental;
+    }
+
+    public void startVisit(CopyAction action) {
+        ArchiveCopyAction archiveAction = (ArchiveCopyAction) action;
+        zipFile = archiveAction.getArchivePath();
+        if (incremental && zipFile.isFile()) {
+            openPreviousArchive();
+        }
+        try {
+            writer = new ZipArchiveWriter(zipFile);
+        } catch (Exception e) {
+            closePreviousArchive();
+            throw new GradleException(String.format("Could not create ZIP '%s'.", zipFile), e);
+        }
+        executor = executorFactory.create(String.format("Compress ZIP '%s'", zipFile));
+        for (int i = 0; i < maxThreads; i++) {
+            executor.execute(new Runnable() {
+                public void run() {
+                    try {
+                        Runnable job;
+                        while ((job = queue.take()) != STOP) {
+                            job.run();
+                        }
+                    } catch (InterruptedException e) {
+                        throw UncheckedException.throwAsUncheckedException(e);
+                    }
+                }
+            });
+        }
+    }
+
+    public void endVisit() {
+        try {
+            while (!pending.isEmpty()) {
+                writeNextEntry();
+            }
+            writer.close();
+        } catch (IOException e) {
+            abort();
+            throw new GradleException(String.format("Could not create ZIP '%s'.", zipFile), e);
+        } catch (RuntimeException e) {
+            abort();
+            throw e;
+        } finally {
+            stopWorkers();
+            closePreviousArchive();
+        }
+    }
+
+    public void visitFile(FileVisitDetails fileDetails) {
+        try {
+            PendingEntry entry = new PendingEntry(fileDetails.getRelativePath().getPathString(), fileDetails.getLastModified(),
+                    UnixStat.FILE_FLAG | fileDetails.getMode(), fileDetails.toString(), false);
+            ZipArchiveIndex.Entry previousEntry = previousArchive == null ? null : previousArchive.get(entry.path);
+            if (previousEntry != null && previousEntry.size > LARGE_ENTRY_SIZE && isUnchanged(fileDetails, previousEntry)) {
+                // Check large entries up front, as their content is not buffered
+                entry.previousEntry = previousEntry;
+                pending.add(entry);
+            } else {
+                EntryContent content = new EntryContent(entry, previousEntry);
+                fileDetails.copyTo(content);
+                content.close();
+            }
+        } catch (Exception e) {
+            abort();
+            throw new GradleException(String.format("Could not add %s to ZIP '%s'.", fileDetails, zipFile), e);
+        }
+        writeCompletedEntries();
+    }
+
+    public void visitDir(FileVisitDetails dirDetails) {
+        try {
+            PendingEntry entry = new PendingEntry(dirDetails.getRelativePath().getPathString(), dirDetails.getLastModified(),
+                    UnixStat.DIR_FLAG | dirDetails.getMode(), dirDetails.toString(), true);
+            pending.add(entry);
+        } catch (Exception e) {
+            abort();
+            throw new GradleException(String.format("Could not add %s to ZIP '%s'.", dirDetails, zipFile), e);
+        }
+        writeCompletedEntries();
+    }
+
+    public boolean getDidWork() {
+        return true;
+    }
+
+    private void writeCompletedEntries() {
+        while (!pending.isEmpty() && (pending.getFirst().isDone() || bufferedSize > MAX_BUFFERED_SIZE || pending.size() > MAX_PENDING_ENTRIES)) {
+            writeNextEntry();
+        }
+    }
+
+    private void writeNextEntry() {
+        PendingEntry entry = pending.removeFirst();
+        try {
+            if (entry.directory) {
+                writer.putDirectory(entry.path, entry.lastModified, entry.unixMode);
+            } else if (entry.previousEntry != null) {
+                writer.putCopiedFile(entry.path, entry.lastModified, entry.unixMode, previousArchive, entry.previousEntry);
+            } else {
+                ZipArchiveWriter.CompressedContent content = entry.getCompressedContent();
+                bufferedSize -= entry.bufferedSize;
+                writer.putFile(entry.path, entry.lastModified, entry.unixMode, content);
+            }
+        } catch (Exception e) {
+            abort();
+            throw new GradleException(String.format("Could not add %s to ZIP '%s'.", entry.displayName, zipFile), unwrap(e));
+        }
+    }
+
+    private boolean isUnchanged(FileVisitDetails fileDetails, ZipArchiveIndex.Entry previousEntry) {
+        ContentComparison comparison = new ContentComparison(previousEntry);
+        try {
+            fileDetails.copyTo(comparison);
+        } finally {
+            comparison.close();
+        }
+        return comparison.isUnchanged();
+    }
+
+    private boolean isUnchanged(byte[] content, int length, ZipArchiveIndex.Entry previousEntry) {
+        if (length != previousEntry.size) {
+            return false;
+        }
+        // The CRC rejects most changed entries without decompressing the previous content
+        CRC32 crc = new CRC32();
+        crc.update(content, 0, length);
+        if (crc.getValue() != previousEntry.crc) {
+            return false;
+        }
+        ContentComparison comparison = new ContentComparison(previousEntry);
+        try {
+            comparison.write(content, 0, length);
+        } finally {
+            comparison.close();
+        }
+        return comparison.isUnchanged();
+    }
+
+    private void openPreviousArchive() {
+        // Move the previous ZIP file aside, so that its entries can be read while the new ZIP file is written
+        File file = new File(zipFile.getParentFile(), zipFile.getName() + ".previous");
+        file.delete();
+        if (!zipFile.renameTo(file)) {
+            LOGGER.debug("Could not move ZIP '{}' aside, so will not reuse its entries.", zipFile);
+            return;
+        }
+        previousZipFile = file;
+        try {
+            previousArchive = ZipArchiveIndex.open(file);
+        } catch (IOException e) {
+            LOGGER.debug(String.format("Could not read ZIP '%s', so will not reuse its entries.", zipFile), e);
+        }
+    }
+
+    private void closePreviousArchive() {
+        if (previousArchive != null) {
+            previousArchive.close();
+            previousArchive = null;
+        }
+        if (previousZipFile != null) {
+            previousZipFile.delete();
+            previousZipFile = null;
+        }
+    }
+
+    private Throwable unwrap(Exception e) {
+        return e instanceof ExecutionException ? e.getCause() : e;
+    }
+
+    private void abort() {
+        for (PendingEntry entry : pending) {
+            if (entry.compression != null) {
+                entry.compression.cancel(false);
+            }
+        }
+        pending.clear();
+        queue.clear();
+        bufferedSize = 0;
+        writer.abort();
+        stopWorkers();
+        closePreviousArchive();
+    }
+
+    private void stopWorkers() {
+        if (executor == null) {
+            return;
+        }
+        for (int i = 0; i < maxThreads; i++) {
+            queue.add(STOP);
+        }
+        try {
+            executor.stop();
+        } finally {
+            executor = null;
+        }
+    }
+
+    private static class PendingEntry {
+        final String path;
+        final long lastModified;
+        final int unixMode;
+        final String displayName;
+        final boolean directory;
+        FutureTask<ZipArchiveWriter.CompressedContent> compression;
+        ZipArchiveIndex.Entry previousEntry;
+        int bufferedSize;
+
+        PendingEntry(String path, long lastModified, int unixMode, String displayName, boolean directory) {
+            this.path = path;
+            this.lastModified = lastModified;
+            this.unixMode = unixMode;
+            this.displayName = displayName;
+            this.directory = directory;
+        }
+
+        boolean isDone() {
+            return compression == null || compression.isDone();
+        }
+
+        ZipArchiveWriter.CompressedContent getCompressedContent() throws ExecutionException, InterruptedException {
+            // Compress on this thread if no worker has started yet
+            compression.run();
+            return compression.get();
+        }
+    }
+
+    /**
+     * Receives the content of a file entry. Buffers the content for compression by a worker, unless it becomes too large, in
+     * which case the entry is written directly once the entries before it have been written.
+     */
+    private class EntryContent extends OutputStream {
+        private final PendingEntry entry;
+        private final ZipArchiveIndex.Entry previousEntry;
+        private ZipArchiveWriter.ExposedByteArrayOutputStream buffer = new ZipArchiveWriter.ExposedByteArrayOutputStream(8192);
+        private OutputStream streaming;
+
+        private EntryContent(PendingEntry entry, ZipArchiveIndex.Entry previousEntry) {
+            this.entry = entry;
+            this.previousEntry = previousEntry;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (streaming != null) {
+                streaming.write(b, off, len);
+                return;
+            }
+            buffer.write(b, off, len);
+            if (buffer.size() > LARGE_ENTRY_SIZE) {
+                while (!pending.isEmpty()) {
+                    writeNextEntry();
+                }
+                streaming = writer.putStreamingFile(entry.path, entry.lastModified, entry.unixMode);
+                streaming.write(buffer.getBuffer(), 0, buffer.size());
+                buffer = null;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (streaming != null) {
+                streaming.close();
+                return;
+            }
+            final byte[] content = buffer.getBuffer();
+            final int length = buffer.size();
+            buffer = null;
+            if (previousEntry != null && isUnchanged(content, length, previousEntry)) {
+                entry.previousEntry = previousEntry;
+                pending.add(entry);
+                return;
+            }
+            entry.bufferedSize = length;
+            entry.compression = new FutureTask<ZipArchiveWriter.CompressedContent>(new Callable<ZipArchiveWriter.CompressedContent>() {
+                public ZipArchiveWriter.CompressedContent call() {
+                    return ZipArchiveWriter.compress(content, length);
+                }
+            });
+            pending.add(entry);
+            bufferedSize += length;
+            queue.add(entry.compression);
+        }
+    }
+
+    /**
+     * Compares the content written to it with the uncompressed content of an entry of the previous ZIP file. An entry which
+     * cannot be read from the previous ZIP file counts as changed.
+     */
+    private class ContentComparison extends OutputStream {
+        private final ZipArchiveIndex.Entry previousEntry;
+        private final byte[] buffer = new byte[8192];
+        private InputStream previousContent;
+        private long count;
+        private boolean changed;
+
+        private ContentComparison(ZipArchiveIndex.Entry previousEntry) {
+            this.previousEntry = previousEntry;
+            try {
+                previousContent = previousArchive.open(previousEntry);
+            } catch (IOException e) {
+                failed(e);
+            }
+        }
+
+        @Override
+        public void write(int b) {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+            try {
+                while (!changed && len > 0) {
+                    int chunk = Math.min(len, buffer.length);
+                    int read = 0;
+                    while (read < chunk) {
+                        int n = previousContent.read(buffer, read, chunk - read);
+                        if (n < 0) {
+                            changed = true;
+                            return;
+                        }
+                        read += n;
+                    }
+                    for (int i = 0; i < chunk; i++) {
+                        if (buffer[i] != b[off + i]) {
+                            changed = true;
+                            return;
+                        }
+                    }
+                    off += chunk;
+                    len -= chunk;
+                }
+            } catch (IOException e) {
+                failed(e);
+            }
+        }
+
+        boolean isUnchanged() {
+            return !changed && count == previousEntry.size;
+        }
+
+        @Override
+        public void close() {
+            if (previousContent == null) {
+                return;
+            }
+            try {
+                if (!changed && previousContent.read() >= 0) {
+                    changed = true;
+                }
+                previousContent.close();
+            } catch (IOException e) {
+                failed(e);
+            }
+            previousContent = null;
+        }
+
+        private void failed(IOException e) {
+            LOGGER.debug(String.format("Could not read the previous content of an entry of ZIP '%s'.", zipFile), e);
+            changed = true;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.file.archive;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Reads the central directory of an existing ZIP file, so that the compressed data of its entries can be copied as is into
+ * another ZIP file. ZIP files which use Zip64 extensions or encryption are not supported.
+ */
+class ZipArchiveIndex {
+    private static final int LOCAL_FILE_HEADER_SIG = 0x04034b50;
+    private static final int CENTRAL_FILE_HEADER_SIG = 0x02014b50;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIG = 0x06054b50;
+    private static final int END_OF_CENTRAL_DIRECTORY_LENGTH = 22;
+    private static final int LOCAL_FILE_HEADER_LENGTH = 30;
+    private static final int CENTRAL_FILE_HEADER_LENGTH = 46;
+    private static final int MAX_COMMENT_LENGTH = 0xFFFF;
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+    private static final int ENCRYPTED_FLAG = 0x01;
+    private static final int UTF8_FLAG = 0x800;
+
+    private final File zipFile;
+    private final RandomAccessFile file;
+    private final Map<String, Entry> entries = new HashMap<String, Entry>();
+
+    private ZipArchiveIndex(File zipFile) throws IOException {
+        this.zipFile = zipFile;
+        file = new RandomAccessFile(zipFile, "r");
+    }
+
+    /**
+     * Reads the index of the given ZIP file.
+     *
+     * @throws IOException when the file cannot be read, or is not a supported ZIP file.
+     */
+    static ZipArchiveIndex open(File zipFile) throws IOException {
+        ZipArchiveIndex index = new ZipArchiveIndex(zipFile);
+        try {
+            index.readCentralDirectory();
+            return index;
+        } catch (IOException e) {
+            index.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the file entry with the given path, or null if there is no such entry.
+     */
+    Entry get(String path) {
+        return entries.get(path);
+    }
+
+    /**
+     * Copies the compressed data of the given entry to the given stream.
+     */
+    void copyTo(Entry entry, OutputStream outputStream) throws IOException {
+        seekToData(entry);
+        byte[] buffer = new byte[8192];
+        long remaining = entry.compressedSize;
+        while (remaining > 0) {
+            int count = file.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (count < 0) {
+                throw new IOException(String.format("Unexpected end of ZIP '%s'.", zipFile));
+            }
+            outputStream.write(buffer, 0, count);
+            remaining -= count;
+        }
+    }
+
+    /**
+     * Opens the uncompressed content of the given entry. The stream reads from this index, so must be consumed before
+     * the index is used for anything else.
+     */
+    InputStream open(Entry entry) throws IOException {
+        seekToData(entry);
+        if (entry.method == STORED) {
+            return new DataInputStream(entry.compressedSize, false);
+        }
+        return new InflaterInputStream(new DataInputStream(entry.compressedSize, true), new Inflater(true)) {
+            @Override
+            public void close() throws IOException {
+                super.close();
+                inf.end();
+            }
+        };
+    }
+
+    private void seekToData(Entry entry) throws IOException {
+        byte[] header = new byte[LOCAL_FILE_HEADER_LENGTH];
+        file.seek(entry.offset);
+        file.readFully(header);
+        if (getInt(header, 0) != LOCAL_FILE_HEADER_SIG) {
+            throw new IOException(String.format("Unexpected local file header in ZIP '%s'.", zipFile));
+        }
+        file.seek(entry.offset + LOCAL_FILE_HEADER_LENGTH + getShort(header, 26) + getShort(header, 28));
+    }
+
+    void close() {
+        try {
+            file.close();
+        } catch (IOException e) {
+            // Ignore, the file has only been read
+        }
+    }
+
+    private void readCentralDirectory() throws IOException {
+        int tailLength = (int) Math.min(file.length(), END_OF_CENTRAL_DIRECTORY_LENGTH + MAX_COMMENT_LENGTH);
+        byte[] tail = new byte[tailLength];
+        file.seek(file.length() - tailLength);
+        file.readFully(tail);
+        int end = tailLength - END_OF_CENTRAL_DIRECTORY_LENGTH;
+        while (end >= 0 && getInt(tail, end) != END_OF_CENTRAL_DIRECTORY_SIG) {
+            end--;
+        }
+        if (end < 0) {
+            throw new IOException(String.format("Could not find the central directory of ZIP '%s'.", zipFile));
+        }
+        int count = getShort(tail, end + 10);
+        long length = getInt(tail, end + 12);
+        long offset = getInt(tail, end + 16);
+        if (count == 0xFFFF || length == 0xFFFFFFFFL || offset == 0xFFFFFFFFL) {
+            throw new IOException(String.format("ZIP '%s' uses Zip64 extensions.", zipFile));
+        }
+
+        byte[] directory = new byte[(int) length];
+        file.seek(offset);
+        file.readFully(directory);
+        String defaultCharsetName = Charset.defaultCharset().name();
+        int pos = 0;
+        for (int i = 0; i < count; i++) {
+            if (pos + CENTRAL_FILE_HEADER_LENGTH > directory.length || getInt(directory, pos) != CENTRAL_FILE_HEADER_SIG) {
+                throw new IOException(String.format("Unexpected central directory entry in ZIP '%s'.", zipFile));
+            }
+            int flags = getShort(directory, pos + 8);
+            int nameLength = getShort(directory, pos + 28);
+            String name = new String(directory, pos + CENTRAL_FILE_HEADER_LENGTH, nameLength,
+                    (flags & UTF8_FLAG) != 0 ? "UTF-8" : defaultCharsetName);
+            Entry entry = new Entry(getShort(directory, pos + 10), getInt(directory, pos + 16), getInt(directory, pos + 20),
+                    getInt(directory, pos + 24), getInt(directory, pos + 42));
+            if ((entry.method == STORED || entry.method == DEFLATED) && (flags & ENCRYPTED_FLAG) == 0 && !name.endsWith("/")) {
+                entries.put(name, entry);
+            }
+            pos += CENTRAL_FILE_HEADER_LENGTH + nameLength + getShort(directory, pos + 30) + getShort(directory, pos + 32);
+        }
+    }
+
+    private static long getInt(byte[] buffer, int pos) {
+        return (buffer[pos] & 0xFFL) | (buffer[pos + 1] & 0xFFL) << 8 | (buffer[pos + 2] & 0xFFL) << 16 | (buffer[pos + 3] & 0xFFL) << 24;
+    }
+
+    private static int getShort(byte[] buffer, int pos) {
+        return (buffer[pos] & 0xFF) | (buffer[pos + 1] & 0xFF) << 8;
+    }
+
+    /**
+     * Reads the compressed data of an entry, starting at the current position of the file. As ZipFile does, a dummy byte
+     * can be added after the data, which the inflater may need to detect the end of a raw deflate stream.
+     */
+    private class DataInputStream extends InputStream {
+        private long remaining;
+        private boolean dummyByteRead;
+
+        private DataInputStream(long length, boolean addDummyByte) {
+            remaining = length;
+            dummyByteRead = !addDummyByte;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] buffer = new byte[1];
+            return read(buffer, 0, 1) < 0 ? -1 : buffer[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (remaining == 0) {
+                if (dummyByteRead) {
+                    return -1;
+                }
+                dummyByteRead = true;
+                buffer[offset] = 0;
+                return 1;
+            }
+            int count = file.read(buffer, offset, (int) Math.min(length, remaining));
+            if (count < 0) {
+                throw new IOException(String.format("Unexpected end of ZIP '%s'.", zipFile));
+            }
+            remaining -= count;
+            return count;
+        }
+    }
+
+    /**
+     * A file entry of the ZIP file.
+     */
+    static class Entry {
+        final int method;
+        final long crc;
+        final long compressedSize;
+        final long size;
+        private final long offset;
+
+        private Entry(int method, long crc, long compressedSize, long size, long offset) {
+            this.method = method;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.offset = offset;
+        }
+    }
+}
@@ -0,0 +1,334 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.file.archive;
+
+import org.gradle.api.GradleException;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes a ZIP file from entries whose content has already been compressed, so that the compression can happen elsewhere.
+ * Entries are written in the order they are added. The entries are equivalent to those written by Ant's
+ * {@code ZipOutputStream} for the same names, timestamps and unix modes, but do not use any Zip64 extensions.
+ */
+class ZipArchiveWriter {
+    private static final int LOCAL_FILE_HEADER_SIG = 0x04034b50;
+    private static final int DATA_DESCRIPTOR_SIG = 0x08074b50;
+    private static final int CENTRAL_FILE_HEADER_SIG = 0x02014b50;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIG = 0x06054b50;
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+    private static final int DATA_DESCRIPTOR_FLAG = 0x08;
+    private static final int UTF8_FLAG = 0x800;
+    private static final int PLATFORM_UNIX = 3;
+    private static final long MAX_SIZE = 0xFFFFFFFFL;
+    private static final int MAX_ENTRIES = 0xFFFF;
+
+    private final File zipFile;
+    private final CountingOutputStream output;
+    private final DataOutputStream data;
+    private final List<Entry> entries = new ArrayList<Entry>();
+    private final Calendar calendar = Calendar.getInstance();
+    private final String charsetName = Charset.defaultCharset().name();
+    private final int nameFlags = charsetName.equals("UTF-8") ? UTF8_FLAG : 0;
+
+    ZipArchiveWriter(File zipFile) throws IOException {
+        this.zipFile = zipFile;
+        output = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(zipFile), 64 * 1024));
+        data = new DataOutputStream(output);
+    }
+
+    /**
+     * Compresses the given content, as a ZIP entry's data.
+     */
+    static CompressedContent compress(byte[] content, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(content, 0, length);
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(content, 0, length);
+            deflater.finish();
+            ExposedByteArrayOutputStream compressed = new ExposedByteArrayOutputStream(length / 2 + 64);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                int count = deflater.deflate(buffer);
+                compressed.write(buffer, 0, count);
+            }
+            return new CompressedContent(compressed.getBuffer(), compressed.size(), length, crc.getValue());
+        } finally {
+            deflater.end();
+        }
+    }
+
+    void putDirectory(String path, long lastModified, int unixMode) throws IOException {
+        Entry entry = new Entry(path, lastModified, unixMode, true, STORED, 0);
+        entry.crc = 0;
+        entry.compressedSize = 0;
+        entry.size = 0;
+        writeLocalFileHeader(entry);
+    }
+
+    void putFile(String path, long lastModified, int unixMode, CompressedContent content) throws IOException {
+        Entry entry = new Entry(path, lastModified, unixMode, false, DEFLATED, 0);
+        entry.crc = content.crc;
+        entry.compressedSize = content.compressedLength;
+        entry.size = content.length;
+        writeLocalFileHeader(entry);
+        output.write(content.compressed, 0, content.compressedLength);
+    }
+
+    /**
+     * Adds a file entry whose content is the same as the given entry of another ZIP file, by copying its compressed data.
+     */
+    void putCopiedFile(String path, long lastModified, int unixMode, ZipArchiveIndex source, ZipArchiveIndex.Entry sourceEntry) throws IOException {
+        Entry entry = new Entry(path, lastModified, unixMode, false, sourceEntry.method, 0);
+        entry.crc = sourceEntry.crc;
+        entry.compressedSize = sourceEntry.compressedSize;
+        entry.size = sourceEntry.size;
+        writeLocalFileHeader(entry);
+        source.copyTo(sourceEntry, output);
+    }
+
+    /**
+     * Starts a file entry whose content is compressed as it is written to the returned stream. The entry is complete when
+     * the stream is closed.
+     */
+    OutputStream putStreamingFile(String path, long lastModified, int unixMode) throws IOException {
+        final Entry entry = new Entry(path, lastModified, unixMode, false, DEFLATED, DATA_DESCRIPTOR_FLAG);
+        writeLocalFileHeader(entry);
+        final long start = output.getCount();
+        final CRC32 crc = new CRC32();
+        final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        return new DeflaterOutputStream(output, deflater, 8192) {
+            private long size;
+            private boolean closed;
+
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                crc.update(b, off, len);
+                size += len;
+                super.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                // Complete the entry, but leave the archive open
+                finish();
+                deflater.end();
+                entry.crc = crc.getValue();
+                entry.size = size;
+                entry.compressedSize = output.getCount() - start;
+                checkSize(entry.size);
+                checkSize(entry.compressedSize);
+                writeInt(DATA_DESCRIPTOR_SIG);
+                writeInt(entry.crc);
+                writeInt(entry.compressedSize);
+                writeInt(entry.size);
+            }
+        };
+    }
+
+    void close() throws IOException {
+        try {
+            long centralDirectoryOffset = output.getCount();
+            for (Entry entry : entries) {
+                writeCentralFileHeader(entry);
+            }
+            long centralDirectoryLength = output.getCount() - centralDirectoryOffset;
+            checkSize(output.getCount());
+            if (entries.size() > MAX_ENTRIES) {
+                throw new GradleException(String.format("Cannot add more than %s entries to ZIP '%s'.", MAX_ENTRIES, zipFile));
+            }
+            writeInt(END_OF_CENTRAL_DIRECTORY_SIG);
+            writeShort(0);
+            writeShort(0);
+            writeShort(entries.size());
+            writeShort(entries.size());
+            writeInt(centralDirectoryLength);
+            writeInt(centralDirectoryOffset);
+            writeShort(0);
+        } finally {
+            output.close();
+        }
+    }
+
+    void abort() {
+        try {
+            output.close();
+        } catch (IOException e) {
+            // Ignore, the original failure is more interesting
+        }
+    }
+
+    private void writeLocalFileHeader(Entry entry) throws IOException {
+        entry.offset = output.getCount();
+        checkSize(entry.offset);
+        entries.add(entry);
+        writeInt(LOCAL_FILE_HEADER_SIG);
+        writeShort(entry.getVersionNeeded());
+        writeShort(entry.flags);
+        writeShort(entry.method);
+        writeInt(entry.dosTime);
+        writeInt(entry.crc);
+        writeInt(entry.compressedSize);
+        writeInt(entry.size);
+        writeShort(entry.name.length);
+        writeShort(0);
+        output.write(entry.name);
+    }
+
+    private void writeCentralFileHeader(Entry entry) throws IOException {
+        writeInt(CENTRAL_FILE_HEADER_SIG);
+        writeShort((PLATFORM_UNIX << 8) | 20);
+        writeShort(entry.getVersionNeeded());
+        writeShort(entry.flags);
+        writeShort(entry.method);
+        writeInt(entry.dosTime);
+        writeInt(entry.crc);
+        writeInt(entry.compressedSize);
+        writeInt(entry.size);
+        writeShort(entry.name.length);
+        writeShort(0);
+        writeShort(0);
+        writeShort(0);
+        writeShort(0);
+        writeInt(entry.externalAttributes);
+        writeInt(entry.offset);
+        output.write(entry.name);
+    }
+
+    private void writeInt(long value) throws IOException {
+        data.writeInt(Integer.reverseBytes((int) value));
+    }
+
+    private void writeShort(int value) throws IOException {
+        data.writeShort(Short.reverseBytes((short) value));
+    }
+
+    private void checkSize(long value) {
+        if (value > MAX_SIZE) {
+            throw new GradleException(String.format("ZIP '%s' is too large, as it would need Zip64 extensions.", zipFile));
+        }
+    }
+
+    private long toDosTime(long time) {
+        calendar.setTimeInMillis(time);
+        int year = calendar.get(Calendar.YEAR);
+        if (year < 1980) {
+            // The earliest time a ZIP file can represent: 1 January 1980, 00:00
+            return (1 << 21) | (1 << 16);
+        }
+        return ((long) (year - 1980) << 25)
+                | ((calendar.get(Calendar.MONTH) + 1) << 21)
+                | (calendar.get(Calendar.DAY_OF_MONTH) << 16)
+                | (calendar.get(Calendar.HOUR_OF_DAY) << 11)
+                | (calendar.get(Calendar.MINUTE) << 5)
+                | (calendar.get(Calendar.SECOND) >> 1);
+    }
+
+    private class Entry {
+        final byte[] name;
+        final long dosTime;
+        final int externalAttributes;
+        final int method;
+        final int flags;
+        long offset;
+        long crc;
+        long compressedSize;
+        long size;
+
+        Entry(String path, long lastModified, int unixMode, boolean directory, int method, int flags) throws UnsupportedEncodingException {
+            this.name = (directory ? path + '/' : path).getBytes(charsetName);
+            this.dosTime = toDosTime(lastModified);
+            this.method = method;
+            this.flags = flags | nameFlags;
+            // As for org.apache.tools.zip.ZipEntry.setUnixMode()
+            this.externalAttributes = (unixMode << 16) | ((unixMode & 0200) == 0 ? 1 : 0) | (directory ? 0x10 : 0);
+        }
+
+        int getVersionNeeded() {
+            return method == DEFLATED || (flags & DATA_DESCRIPTOR_FLAG) != 0 ? 20 : 10;
+        }
+    }
+
+    /**
+     * The compressed data of a file entry.
+     */
+    static class CompressedContent {
+        private final byte[] compressed;
+        private final int compressedLength;
+        private final long length;
+        private final long crc;
+
+        CompressedContent(byte[] compressed, int compressedLength, long length, long crc) {
+            this.compressed = compressed;
+            this.compressedLength = compressedLength;
+            this.length = length;
+            this.crc = crc;
+        }
+    }
+
+    static class ExposedByteArrayOutputStream extends ByteArrayOutputStream {
+        ExposedByteArrayOutputStream(int size) {
+            super(size);
+        }
+
+        byte[] getBuffer() {
+            return buf;
+        }
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
+}
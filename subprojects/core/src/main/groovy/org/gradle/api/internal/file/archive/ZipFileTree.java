@@ -29,25 +29,27 @@ import org.gradle.api.internal.file.collections.FileSystemMirroringFileTree;
 import org.gradle.api.internal.file.collections.MinimalFileTree;
 import org.gradle.internal.nativeplatform.filesystem.FileSystem;
 import org.gradle.util.DeprecationLogger;
+import org.gradle.util.GFileUtils;
 import org.gradle.util.hash.HashUtil;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Enumeration;
-import java.util.Iterator;
-import java.util.Map;
-import java.util.TreeMap;
+import java.util.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 public class ZipFileTree implements MinimalFileTree, FileSystemMirroringFileTree {
     private final File zipFile;
     private final File tmpDir;
+    private final File mirrorKeyFile;
+    private volatile SortedEntryNames sortedEntryNames;
+    private String mirrorKey;
 
     public ZipFileTree(File zipFile, File tmpDir) {
         this.zipFile = zipFile;
         String expandDirName = String.format("%s_%s", zipFile.getName(), HashUtil.createCompactMD5(zipFile.getAbsolutePath()));
         this.tmpDir = new File(tmpDir, expandDirName);
+        this.mirrorKeyFile = new File(tmpDir, expandDirName + ".key");
     }
 
     public String getDisplayName() {
@@ -69,25 +71,18 @@ public class ZipFileTree implements MinimalFileTree, FileSystemMirroringFileTree
         }
 
         AtomicBoolean stopFlag = new AtomicBoolean();
+        String zipKey = zipFile.length() + ":" + zipFile.lastModified();
 
         try {
             ZipFile zip = new ZipFile(zipFile);
             try {
-                // The iteration order of zip.getEntries() is based on the hash of the zip entry. This isn't much use
-                // to us. So, collect the entries in a map and iterate over them in alphabetical order.
-                Map<String, ZipEntry> entriesByName = new TreeMap<String, ZipEntry>();
-                Enumeration entries = zip.getEntries();
-                while (entries.hasMoreElements()) {
-                    ZipEntry entry = (ZipEntry) entries.nextElement();
-                    entriesByName.put(entry.getName(), entry);
-                }
-                Iterator<ZipEntry> sortedEntries = entriesByName.values().iterator();
+                Iterator<ZipEntry> sortedEntries = getSortedEntries(zip).iterator();
                 while (!stopFlag.get() && sortedEntries.hasNext()) {
                     ZipEntry entry = sortedEntries.next();
                     if (entry.isDirectory()) {
-                        visitor.visitDir(new DetailsImpl(entry, zip, stopFlag));
+                        visitor.visitDir(new DetailsImpl(entry, zip, zipKey, stopFlag));
                     } else {
-                        visitor.visitFile(new DetailsImpl(entry, zip, stopFlag));
+                        visitor.visitFile(new DetailsImpl(entry, zip, zipKey, stopFlag));
                     }
                 }
             } finally {
@@ -98,15 +93,85 @@ public class ZipFileTree implements MinimalFileTree, FileSystemMirroringFileTree
         }
     }
 
+    private List<ZipEntry> getSortedEntries(ZipFile zip) {
+        // The iteration order of zip.getEntries() is based on the hash of the zip entry. This isn't much use
+        // to us. So, collect the entries in a map and iterate over them in alphabetical order. The sorted names are
+        // kept for as long as the zip file is unchanged, so that later visits only need to look the entries up.
+        SortedEntryNames names = sortedEntryNames;
+        List<ZipEntry> sortedEntries = new ArrayList<ZipEntry>();
+        if (names != null && names.isFor(zipFile)) {
+            for (String name : names.names) {
+                ZipEntry entry = zip.getEntry(name);
+                if (entry == null) {
+                    // Changed without changing its length or timestamp
+                    sortedEntries.clear();
+                    break;
+                }
+                sortedEntries.add(entry);
+            }
+            if (!sortedEntries.isEmpty() || names.names.length == 0) {
+                return sortedEntries;
+            }
+        }
+
+        Map<String, ZipEntry> entriesByName = new TreeMap<String, ZipEntry>();
+        Enumeration entries = zip.getEntries();
+        while (entries.hasMoreElements()) {
+            ZipEntry entry = (ZipEntry) entries.nextElement();
+            entriesByName.put(entry.getName(), entry);
+        }
+        sortedEntries.addAll(entriesByName.values());
+        sortedEntryNames = new SortedEntryNames(zipFile, entriesByName.keySet());
+        return sortedEntries;
+    }
+
+    /**
+     * Discards the mirror when it was extracted from a different version of the zip file. The length and last modified
+     * time of the zip file it was extracted from are stored next to the mirror.
+     *
+     * <p>The key file and the mirror are not locked, so, like the rest of the build directory they live in, they must not
+     * be used by several processes at the same time.</p>
+     */
+    private synchronized void useMirrorFor(String zipKey) {
+        if (zipKey.equals(mirrorKey)) {
+            return;
+        }
+        if (!mirrorKeyFile.isFile() || !GFileUtils.readFile(mirrorKeyFile).equals(zipKey)) {
+            if (tmpDir.exists()) {
+                GFileUtils.deleteDirectory(tmpDir);
+            }
+            GFileUtils.writeFile(zipKey, mirrorKeyFile);
+        }
+        mirrorKey = zipKey;
+    }
+
+    private static class SortedEntryNames {
+        private final long length;
+        private final long lastModified;
+        private final String[] names;
+
+        private SortedEntryNames(File zipFile, Collection<String> names) {
+            this.length = zipFile.length();
+            this.lastModified = zipFile.lastModified();
+            this.names = names.toArray(new String[names.size()]);
+        }
+
+        boolean isFor(File zipFile) {
+            return zipFile.length() == length && zipFile.lastModified() == lastModified;
+        }
+    }
+
     private class DetailsImpl extends AbstractFileTreeElement implements FileVisitDetails {
         private final ZipEntry entry;
         private final ZipFile zip;
+        private final String zipKey;
         private final AtomicBoolean stopFlag;
         private File file;
 
-        public DetailsImpl(ZipEntry entry, ZipFile zip, AtomicBoolean stopFlag) {
+        public DetailsImpl(ZipEntry entry, ZipFile zip, String zipKey, AtomicBoolean stopFlag) {
             this.entry = entry;
             this.zip = zip;
+            this.zipKey = zipKey;
             this.stopFlag = stopFlag;
         }
 
@@ -121,11 +186,30 @@ public class ZipFileTree implements MinimalFileTree, FileSystemMirroringFileTree
         public File getFile() {
             if (file == null) {
                 file = new File(tmpDir, entry.getName());
-                copyTo(file);
+                useMirrorFor(zipKey);
+                if (!isExtractedTo(file)) {
+                    copyTo(file);
+                }
             }
             return file;
         }
 
+        /**
+         * Checks whether a previous visit of this version of the zip file has already extracted this entry to the given file.
+         * Visitors which only read the content through {@link #open()} or {@link #copyTo(File)} never extract the entry.
+         *
+         * <p>The mirror only ever contains entries of the current version of the zip file, so an existing file of the right
+         * length is a complete extraction of this entry. The entry's timestamp is deliberately not copied to the file: the
+         * timestamp of an extracted file changes whenever it is extracted again, so that anything which detects changes using
+         * the length and timestamp of a file sees the new content.</p>
+         */
+        private boolean isExtractedTo(File file) {
+            if (entry.isDirectory()) {
+                return file.isDirectory();
+            }
+            return entry.getSize() >= 0 && file.isFile() && file.length() == entry.getSize();
+        }
+
         public long getLastModified() {
             return entry.getTime();
         }
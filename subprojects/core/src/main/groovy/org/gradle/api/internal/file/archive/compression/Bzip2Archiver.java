@@ -21,7 +21,9 @@ import org.apache.tools.bzip2.CBZip2OutputStream;
 import org.gradle.api.internal.resources.URIBuilder;
 import org.gradle.api.resources.ReadableResource;
 import org.gradle.api.resources.ResourceException;
+import org.gradle.internal.concurrent.ExecutorFactory;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.InputStream;
@@ -60,6 +62,19 @@ public class Bzip2Archiver implements ReadableResource {
         };
     }
 
+    public static Compressor getCompressor(final ExecutorFactory executorFactory, final int maxThreads) {
+        return new Compressor() {
+            public OutputStream compress(File destination) {
+                try {
+                    return new ParallelBzip2OutputStream(new BufferedOutputStream(new FileOutputStream(destination)), executorFactory, maxThreads);
+                } catch (Exception e) {
+                    String message = String.format("Unable to create bzip2 output stream for file %s", destination);
+                    throw new RuntimeException(message, e);
+                }
+            }
+        };
+    }
+
     public InputStream read() {
         InputStream is = resource.read();
         try {
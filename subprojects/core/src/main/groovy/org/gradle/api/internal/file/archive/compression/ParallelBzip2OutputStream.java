@@ -0,0 +1,256 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.file.archive.compression;
+
+import org.apache.tools.bzip2.CBZip2OutputStream;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.StoppableExecutor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedList;
+import java.util.concurrent.*;
+
+/**
+ * Compresses to a single bzip2 stream using a pool of worker threads. The input is split into chunks that fit into one
+ * bzip2 block, and each chunk is compressed on a worker into a complete bzip2 stream holding that one block. The blocks
+ * are then taken out of those streams and written, in order, into one stream with the combined CRC of all blocks. Many
+ * readers, including the Java bzip2 implementations, stop at the end of the first stream, so the output must not be a
+ * sequence of concatenated streams.
+ */
+public class ParallelBzip2OutputStream extends OutputStream {
+    // CBZip2OutputStream ends a 900k block once it holds 900k - 20 bytes after run length encoding. The encoding expands
+    // the input by at most 5/4, so a chunk of this size always compresses to exactly one block.
+    private static final int BLOCK_SIZE = 700 * 1000;
+    private static final long BLOCK_MAGIC = 0x314159265359L;
+    private static final long END_OF_STREAM_MAGIC = 0x177245385090L;
+    // "BZh9", for 900k blocks
+    private static final byte[] STREAM_HEADER = {'B', 'Z', 'h', '9'};
+    private static final Runnable STOP = new Runnable() {
+        public void run() {
+        }
+    };
+
+    private final OutputStream out;
+    private final int maxThreads;
+    private final LinkedList<FutureTask<CompressedBlock>> pending = new LinkedList<FutureTask<CompressedBlock>>();
+    private final BlockingQueue<Runnable> queue = new LinkedBlockingQueue<Runnable>();
+    private StoppableExecutor executor;
+    private byte[] block = new byte[BLOCK_SIZE];
+    private int blockLength;
+    private boolean headerWritten;
+    private int combinedCrc;
+    private int bitBuffer;
+    private int bitCount;
+
+    public ParallelBzip2OutputStream(OutputStream out, ExecutorFactory executorFactory, int maxThreads) {
+        this.out = out;
+        this.maxThreads = maxThreads;
+        executor = executorFactory.create("Compress bzip2");
+        for (int i = 0; i < maxThreads; i++) {
+            executor.execute(new Runnable() {
+                public void run() {
+                    try {
+                        Runnable job;
+                        while ((job = queue.take()) != STOP) {
+                            job.run();
+                        }
+                    } catch (InterruptedException e) {
+                        throw UncheckedException.throwAsUncheckedException(e);
+                    }
+                }
+            });
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            int count = Math.min(len, BLOCK_SIZE - blockLength);
+            System.arraycopy(b, off, block, blockLength, count);
+            blockLength += count;
+            off += count;
+            len -= count;
+            if (blockLength == BLOCK_SIZE) {
+                compressBlock();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (executor == null) {
+            return;
+        }
+        try {
+            if (blockLength > 0) {
+                compressBlock();
+            }
+            while (!pending.isEmpty()) {
+                writeNextBlock();
+            }
+            writeHeader();
+            writeBits(24, (int) (END_OF_STREAM_MAGIC >>> 24));
+            writeBits(24, (int) (END_OF_STREAM_MAGIC & 0xffffff));
+            writeBits(16, combinedCrc >>> 16);
+            writeBits(16, combinedCrc & 0xffff);
+            if (bitCount > 0) {
+                writeBits(8 - bitCount, 0);
+            }
+        } finally {
+            try {
+                stopWorkers();
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    private void compressBlock() throws IOException {
+        final byte[] content = block;
+        final int length = blockLength;
+        FutureTask<CompressedBlock> compression = new FutureTask<CompressedBlock>(new Callable<CompressedBlock>() {
+            public CompressedBlock call() throws Exception {
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 4 + 64);
+                // CBZip2OutputStream expects the opening "BZ" to be written by the caller
+                compressed.write('B');
+                compressed.write('Z');
+                CBZip2OutputStream outStr = new CBZip2OutputStream(compressed);
+                outStr.write(content, 0, length);
+                outStr.close();
+                return new CompressedBlock(compressed.toByteArray());
+            }
+        });
+        pending.add(compression);
+        queue.add(compression);
+        block = new byte[BLOCK_SIZE];
+        blockLength = 0;
+
+        // Keep the workers busy, but bound the number of blocks held in memory
+        while (!pending.isEmpty() && (pending.getFirst().isDone() || pending.size() > 2 * maxThreads)) {
+            writeNextBlock();
+        }
+    }
+
+    private void writeNextBlock() throws IOException {
+        FutureTask<CompressedBlock> compression = pending.removeFirst();
+        CompressedBlock block;
+        try {
+            // Compress on this thread if no worker has started yet
+            compression.run();
+            block = compression.get();
+        } catch (InterruptedException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        } catch (ExecutionException e) {
+            throw UncheckedException.throwAsUncheckedException(e.getCause());
+        }
+
+        writeHeader();
+        // The block starts on a byte boundary in its own stream, but generally not in this one
+        byte[] bytes = block.bytes;
+        int end = (int) (block.endBit / 8);
+        for (int i = STREAM_HEADER.length; i < end; i++) {
+            writeBits(8, bytes[i] & 0xff);
+        }
+        int remainingBits = (int) (block.endBit % 8);
+        if (remainingBits > 0) {
+            writeBits(remainingBits, (bytes[end] & 0xff) >>> (8 - remainingBits));
+        }
+        combinedCrc = ((combinedCrc << 1) | (combinedCrc >>> 31)) ^ block.crc;
+    }
+
+    private void writeHeader() throws IOException {
+        if (!headerWritten) {
+            out.write(STREAM_HEADER);
+            headerWritten = true;
+        }
+    }
+
+    private void writeBits(int count, int value) throws IOException {
+        bitBuffer = (bitBuffer << count) | value;
+        bitCount += count;
+        while (bitCount >= 8) {
+            bitCount -= 8;
+            out.write(bitBuffer >>> bitCount);
+        }
+        bitBuffer &= (1 << bitCount) - 1;
+    }
+
+    private void stopWorkers() {
+        for (FutureTask<CompressedBlock> compression : pending) {
+            compression.cancel(false);
+        }
+        pending.clear();
+        queue.clear();
+        for (int i = 0; i < maxThreads; i++) {
+            queue.add(STOP);
+        }
+        try {
+            executor.stop();
+        } finally {
+            executor = null;
+        }
+    }
+
+    /**
+     * The single block of a complete bzip2 stream.
+     */
+    private static class CompressedBlock {
+        private final byte[] bytes;
+        private final long endBit;
+        private final int crc;
+
+        CompressedBlock(byte[] bytes) {
+            this.bytes = bytes;
+            // The stream header is followed by the block magic and the block CRC
+            if (readBits(bytes, 32, 48) != BLOCK_MAGIC) {
+                throw new IllegalStateException("Unexpected bzip2 block header.");
+            }
+            crc = (int) readBits(bytes, 80, 32);
+
+            // The stream ends with the end of stream magic and the combined CRC, padded to a whole byte with 0 bits
+            long totalBits = 8L * bytes.length;
+            for (int padding = 0; padding < 8; padding++) {
+                long end = totalBits - padding - 80;
+                if (readBits(bytes, end, 48) == END_OF_STREAM_MAGIC) {
+                    if (readBits(bytes, end + 48, 32) != (crc & 0xffffffffL)) {
+                        // The combined CRC of a single block is the CRC of that block
+                        throw new IllegalStateException("Compressed more than one bzip2 block.");
+                    }
+                    endBit = end;
+                    return;
+                }
+            }
+            throw new IllegalStateException("Unexpected end of bzip2 stream.");
+        }
+
+        private static long readBits(byte[] bytes, long start, int count) {
+            long value = 0;
+            for (long bit = start; bit < start + count; bit++) {
+                value = (value << 1) | ((bytes[(int) (bit / 8)] >>> (7 - bit % 8)) & 1);
+            }
+            return value;
+        }
+    }
+}
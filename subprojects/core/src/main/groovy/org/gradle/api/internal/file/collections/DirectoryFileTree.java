@@ -16,7 +16,6 @@
 
 package org.gradle.api.internal.file.collections;
 
-import org.gradle.api.GradleException;
 import org.gradle.api.file.*;
 import org.gradle.api.internal.file.DefaultFileTreeElement;
 import org.gradle.api.logging.Logger;
@@ -131,19 +130,18 @@ public class DirectoryFileTree implements MinimalFileTree, PatternFilterableFile
         }
     }
 
+    /**
+     * Visits the contents of the given directory. Entries which are not files are treated as directories, and are only
+     * descended into when the spec accepts them. When there are include patterns, the spec built by
+     * {@link PatternSet#getAsSpec()} accepts a directory only if one of them can still match beneath it, so subtrees which
+     * cannot contain a match are never listed.
+     */
     private void walkDir(File file, RelativePath path, FileVisitor visitor, Spec<FileTreeElement> spec, AtomicBoolean stopFlag) {
-        File[] children = file.listFiles();
-        if (children == null) {
-            if (file.isDirectory() && !file.canRead()) {
-                throw new GradleException(String.format("Could not list contents of directory '%s' as it is not readable.", file));
-            }
-            // else, might be a link which points to nothing, or has been removed while we're visiting, or ...
-            throw new GradleException(String.format("Could not list contents of '%s'.", file));
-        }
+        DirectoryListing children = DirectoryListing.read(file);
         List<FileVisitDetailsImpl> dirs = new ArrayList<FileVisitDetailsImpl>();
-        for (int i = 0; !stopFlag.get() && i < children.length; i++) {
-            File child = children[i];
-            boolean isFile = child.isFile();
+        for (int i = 0; !stopFlag.get() && i < children.size(); i++) {
+            File child = children.getFile(i);
+            boolean isFile = children.isFile(i);
             RelativePath childPath = path.append(isFile, child.getName());
             FileVisitDetailsImpl details = new FileVisitDetailsImpl(child, childPath, stopFlag);
             if (isAllowed(details, spec)) {
@@ -185,6 +183,13 @@ public class DirectoryFileTree implements MinimalFileTree, PatternFilterableFile
             this.stop = stop;
         }
 
+        @Override
+        public boolean isDirectory() {
+            // Files were identified when the parent directory was read. Anything else may be a directory, a broken link
+            // or some other kind of entry, so ask the file system
+            return !getRelativePath().isFile() && super.isDirectory();
+        }
+
         public void stopVisiting() {
             stop.set(true);
         }
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.file.collections;
+
+import org.gradle.api.GradleException;
+
+import java.io.File;
+
+/**
+ * The contents of a single directory, along with whether each entry is a file. This is determined once, when the directory
+ * is read, so that the walker does not need to query the file system again for the files it visits.
+ */
+class DirectoryListing {
+    private final File[] children;
+    private final boolean[] isFile;
+
+    private DirectoryListing(File[] children, boolean[] isFile) {
+        this.children = children;
+        this.isFile = isFile;
+    }
+
+    public static DirectoryListing read(File dir) {
+        File[] children = dir.listFiles();
+        if (children == null) {
+            if (dir.isDirectory() && !dir.canRead()) {
+                throw new GradleException(String.format("Could not list contents of directory '%s' as it is not readable.", dir));
+            }
+            // else, might be a link which points to nothing, or has been removed while we're visiting, or ...
+            throw new GradleException(String.format("Could not list contents of '%s'.", dir));
+        }
+        boolean[] isFile = new boolean[children.length];
+        for (int i = 0; i < children.length; i++) {
+            isFile[i] = children[i].isFile();
+        }
+        return new DirectoryListing(children, isFile);
+    }
+
+    public int size() {
+        return children.length;
+    }
+
+    public File getFile(int index) {
+        return children[index];
+    }
+
+    public boolean isFile(int index) {
+        return isFile[index];
+    }
+}
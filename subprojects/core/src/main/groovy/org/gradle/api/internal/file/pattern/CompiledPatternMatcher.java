@@ -0,0 +1,218 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.file.pattern;
+
+import org.gradle.api.file.RelativePath;
+import org.gradle.api.specs.Spec;
+
+import java.util.*;
+
+/**
+ * Matches a path against a set of patterns in a single pass over the segments of the path. The patterns are merged into a
+ * trie of pattern steps, so that a path segment is compared only once against each distinct step, and literal steps are
+ * looked up by name rather than compared one by one. A path is satisfied when it matches any of the patterns, as the
+ * {@link Spec} built by {@link PatternMatcherFactory} for each pattern would.
+ */
+public class CompiledPatternMatcher implements Spec<RelativePath> {
+    private final boolean partialMatchDirs;
+    private final boolean caseSensitive;
+    private final Node root = new Node(false);
+
+    public CompiledPatternMatcher(boolean partialMatchDirs, boolean caseSensitive, Iterable<String> patterns) {
+        this.partialMatchDirs = partialMatchDirs;
+        this.caseSensitive = caseSensitive;
+        for (String pattern : patterns) {
+            add(pattern);
+        }
+    }
+
+    private void add(String pattern) {
+        // trailing / or \ assumes **
+        if (pattern.endsWith("/") || pattern.endsWith("\\")) {
+            pattern = pattern + "**";
+        }
+        String[] parts = pattern.length() == 0 ? new String[0] : pattern.split("\\\\|/");
+
+        Node node = root;
+        for (String part : parts) {
+            node = node.addStep(part, caseSensitive);
+        }
+        node.matchesFiles = true;
+        // A '**/name' pattern only ever matches files, see NameOnlyPatternMatcher
+        boolean nameOnly = parts.length == 2 && parts[0].equals("**") && !parts[1].equals("**");
+        node.matchesDirs |= !nameOnly;
+    }
+
+    public boolean isSatisfiedBy(RelativePath path) {
+        String[] segments = path.getSegments();
+        List<Node> current = new ArrayList<Node>(4);
+        root.addTo(current);
+        List<Node> next = new ArrayList<Node>(4);
+        for (int i = 0; i < segments.length && !current.isEmpty(); i++) {
+            String segment = segments[i];
+            for (int j = 0; j < current.size(); j++) {
+                current.get(j).step(segment, next);
+            }
+            List<Node> tmp = current;
+            current = next;
+            next = tmp;
+            next.clear();
+        }
+
+        if (current.isEmpty()) {
+            return false;
+        }
+        boolean isFile = path.isFile();
+        if (!isFile && partialMatchDirs) {
+            return true;
+        }
+        for (int i = 0; i < current.size(); i++) {
+            Node node = current.get(i);
+            if (isFile ? node.matchesFiles : node.matchesDirs) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The position in one or more patterns after some number of steps.
+     */
+    private static class Node {
+        private final boolean greedy;
+        private Map<String, Node> literals;
+        private List<WildcardStep> wildcards;
+        private Node greedyChild;
+        private boolean matchesFiles;
+        private boolean matchesDirs;
+
+        private Node(boolean greedy) {
+            this.greedy = greedy;
+        }
+
+        Node addStep(String part, boolean caseSensitive) {
+            if (part.equals("**")) {
+                if (greedyChild == null) {
+                    greedyChild = new Node(true);
+                }
+                return greedyChild;
+            }
+            if (caseSensitive && part.indexOf('*') < 0 && part.indexOf('?') < 0) {
+                if (literals == null) {
+                    literals = new HashMap<String, Node>();
+                }
+                Node child = literals.get(part);
+                if (child == null) {
+                    child = new Node(false);
+                    literals.put(part, child);
+                }
+                return child;
+            }
+            if (wildcards == null) {
+                wildcards = new ArrayList<WildcardStep>();
+            }
+            for (WildcardStep wildcard : wildcards) {
+                if (wildcard.source.equals(part)) {
+                    return wildcard.target;
+                }
+            }
+            WildcardStep wildcard = new WildcardStep(part, caseSensitive, new Node(false));
+            wildcards.add(wildcard);
+            return wildcard.target;
+        }
+
+        /**
+         * Adds this node to the given set, along with the nodes reachable by matching zero segments with '**'.
+         */
+        void addTo(List<Node> nodes) {
+            Node node = this;
+            while (node != null && !nodes.contains(node)) {
+                nodes.add(node);
+                node = node.greedyChild;
+            }
+        }
+
+        /**
+         * Adds the nodes reachable by matching the given segment to the given set.
+         */
+        void step(String segment, List<Node> nodes) {
+            if (greedy) {
+                addTo(nodes);
+            }
+            if (literals != null) {
+                Node child = literals.get(segment);
+                if (child != null) {
+                    child.addTo(nodes);
+                }
+            }
+            if (wildcards != null) {
+                for (int i = 0; i < wildcards.size(); i++) {
+                    WildcardStep wildcard = wildcards.get(i);
+                    if (wildcard.matches(segment)) {
+                        wildcard.target.addTo(nodes);
+                    }
+                }
+            }
+        }
+    }
+
+    private static class WildcardStep {
+        private final String source;
+        private final Node target;
+        private final String prefix;
+        private final String suffix;
+        private final PatternStep step;
+
+        private WildcardStep(String source, boolean caseSensitive, Node target) {
+            this.source = source;
+            this.target = target;
+            int star = source.indexOf('*');
+            if (caseSensitive && star >= 0 && star == source.lastIndexOf('*') && source.indexOf('?') < 0) {
+                // the common 'prefix*suffix' form, which can be matched without a regular expression
+                prefix = source.substring(0, star);
+                suffix = source.substring(star + 1);
+                step = null;
+            } else {
+                prefix = null;
+                suffix = null;
+                step = PatternStepFactory.getStep(source, false, caseSensitive);
+            }
+        }
+
+        boolean matches(String segment) {
+            if (step != null) {
+                return step.matches(segment, false);
+            }
+            int end = segment.length() - suffix.length();
+            if (end < prefix.length() || !segment.startsWith(prefix) || !segment.endsWith(suffix)) {
+                return false;
+            }
+            // '*' matches any character except a line terminator, as it does for RegExpPatternStep
+            for (int i = prefix.length(); i < end; i++) {
+                switch (segment.charAt(i)) {
+                    case '\n':
+                    case '\r':
+                    case '\u0085':
+                    case '\u2028':
+                    case '\u2029':
+                        return false;
+                }
+            }
+            return true;
+        }
+    }
+}
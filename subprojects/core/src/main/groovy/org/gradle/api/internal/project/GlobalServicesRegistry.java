@@ -18,6 +18,8 @@ package org.gradle.api.internal.project;
 
 import org.gradle.StartParameter;
 import org.gradle.api.internal.*;
+import org.gradle.api.internal.artifacts.GlobalDependencyManagementServices;
+import org.gradle.api.internal.artifacts.ivyservice.modulecache.InMemoryModuleDescriptorCache;
 import org.gradle.api.internal.classpath.DefaultModuleRegistry;
 import org.gradle.api.internal.classpath.DefaultPluginModuleRegistry;
 import org.gradle.api.internal.classpath.ModuleRegistry;
@@ -28,17 +30,20 @@ import org.gradle.initialization.ClassLoaderRegistry;
 import org.gradle.initialization.DefaultClassLoaderRegistry;
 import org.gradle.initialization.DefaultCommandLineConverter;
 import org.gradle.internal.Factory;
+import org.gradle.internal.concurrent.DefaultExecutorFactory;
 import org.gradle.internal.nativeplatform.ProcessEnvironment;
 import org.gradle.internal.nativeplatform.services.NativeServices;
 import org.gradle.internal.reflect.DirectInstantiator;
 import org.gradle.internal.reflect.Instantiator;
 import org.gradle.internal.service.DefaultServiceRegistry;
+import org.gradle.internal.service.ServiceLocator;
 import org.gradle.internal.service.ServiceRegistry;
 import org.gradle.listener.DefaultListenerManager;
 import org.gradle.listener.ListenerManager;
 import org.gradle.logging.LoggingServiceRegistry;
 import org.gradle.messaging.remote.MessagingServer;
 import org.gradle.messaging.remote.internal.MessagingServices;
+import org.gradle.process.internal.WorkerProcessPool;
 import org.gradle.util.ClassLoaderFactory;
 import org.gradle.util.DefaultClassLoaderFactory;
 
@@ -99,6 +104,20 @@ public class GlobalServicesRegistry extends DefaultServiceRegistry {
         return get(MessagingServices.class).get(MessagingServer.class);
     }
 
+    protected WorkerProcessPool createWorkerProcessPool() {
+        return new WorkerProcessPool(get(MessagingServer.class), new DefaultExecutorFactory());
+    }
+
+    protected InMemoryModuleDescriptorCache createInMemoryModuleDescriptorCache() {
+        return new InMemoryModuleDescriptorCache();
+    }
+
+    protected GlobalDependencyManagementServices createGlobalDependencyManagementServices() {
+        ClassLoader coreImplClassLoader = get(ClassLoaderRegistry.class).getCoreImplClassLoader();
+        ServiceLocator serviceLocator = new ServiceLocator(coreImplClassLoader);
+        return serviceLocator.getFactory(GlobalDependencyManagementServices.class).newInstance();
+    }
+
     protected ClassGenerator createClassGenerator() {
         return new AsmBackedClassGenerator();
     }
@@ -18,6 +18,7 @@ package org.gradle.api.internal.project;
 import org.gradle.api.internal.DependencyInjectingInstantiator;
 import org.gradle.api.internal.GradleInternal;
 import org.gradle.api.internal.artifacts.dsl.dependencies.ProjectFinder;
+import org.gradle.api.internal.changedetection.CachingHasher;
 import org.gradle.api.internal.changedetection.TaskArtifactStateCacheAccess;
 import org.gradle.api.internal.changedetection.TaskCacheLockHandlingBuildExecuter;
 import org.gradle.api.internal.plugins.DefaultPluginRegistry;
@@ -49,7 +50,7 @@ public class GradleInternalServiceRegistry extends DefaultServiceRegistry implem
                         new ExcludedTaskFilteringBuildConfigurationAction(),
                         new TaskNameResolvingBuildConfigurationAction()),
                 asList(new DryRunBuildExecutionAction(),
-                        new TaskCacheLockHandlingBuildExecuter(get(TaskArtifactStateCacheAccess.class)),
+                        new TaskCacheLockHandlingBuildExecuter(get(TaskArtifactStateCacheAccess.class), get(CachingHasher.class)),
                         new SelectedTaskExecutionAction()));
     }
 
@@ -16,6 +16,7 @@
 package org.gradle.api.internal.project;
 
 import org.gradle.StartParameter;
+import org.gradle.api.InvalidUserDataException;
 import org.gradle.api.execution.TaskActionListener;
 import org.gradle.api.internal.DocumentationRegistry;
 import org.gradle.api.internal.changedetection.*;
@@ -25,12 +26,27 @@ import org.gradle.api.invocation.Gradle;
 import org.gradle.cache.CacheRepository;
 import org.gradle.execution.taskgraph.TaskPlanExecutor;
 import org.gradle.execution.taskgraph.TaskPlanExecutorFactory;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.id.RandomLongIdGenerator;
 import org.gradle.internal.service.DefaultServiceRegistry;
 import org.gradle.internal.service.ServiceRegistry;
 import org.gradle.listener.ListenerManager;
+import org.gradle.util.hash.HashUtil;
 
 public class TaskExecutionServices extends DefaultServiceRegistry {
+    /**
+     * The number of threads to use to snapshot large input file collections. Defaults to 1, which snapshots on the task thread.
+     */
+    static final String SNAPSHOT_THREADS_PROPERTY = "org.gradle.snapshot.threads";
+    /**
+     * When true, output files whose length and modification time are unchanged since the previous snapshot are not hashed.
+     */
+    static final String TRUST_OUTPUT_FILE_METADATA_PROPERTY = "org.gradle.snapshot.trustOutputMetadata";
+    /**
+     * The algorithm to use to hash the content of input and output files. Either MD5, the default, or {@link HashUtil#MURMUR3}
+     * for a faster, non-cryptographic hash.
+     */
+    static final String SNAPSHOT_HASH_ALGORITHM_PROPERTY = "org.gradle.snapshot.hashAlgorithm";
     private final Gradle gradle;
 
     public TaskExecutionServices(ServiceRegistry parent, Gradle gradle) {
@@ -57,15 +73,36 @@ public class TaskExecutionServices extends DefaultServiceRegistry {
         return new DefaultTaskArtifactStateCacheAccess(gradle, get(CacheRepository.class));
     }
 
+    protected CachingHasher createCachingHasher() {
+        String algorithm = getSnapshotHashAlgorithm();
+        return new CachingHasher(new DefaultHasher(algorithm), get(TaskArtifactStateCacheAccess.class), String.format("fileHashes-%s", algorithm));
+    }
+
+    private Hasher newContentHasher() {
+        return new DefaultHasher(getSnapshotHashAlgorithm());
+    }
+
+    static String getSnapshotHashAlgorithm() {
+        String algorithm = System.getProperty(SNAPSHOT_HASH_ALGORITHM_PROPERTY, "MD5").toUpperCase();
+        if (!algorithm.equals("MD5") && !algorithm.equals(HashUtil.MURMUR3)) {
+            throw new InvalidUserDataException(String.format("Cannot hash files using algorithm '%s' specified by system property '%s'. Supported algorithms are MD5 and %s.",
+                    System.getProperty(SNAPSHOT_HASH_ALGORITHM_PROPERTY), SNAPSHOT_HASH_ALGORITHM_PROPERTY, HashUtil.MURMUR3));
+        }
+        return algorithm;
+    }
+
     protected TaskArtifactStateRepository createTaskArtifactStateRepository() {
         TaskArtifactStateCacheAccess cacheAccess = get(TaskArtifactStateCacheAccess.class);
 
-        FileSnapshotter fileSnapshotter = new DefaultFileSnapshotter(
-                new CachingHasher(
-                        new DefaultHasher(),
-                        cacheAccess));
+        Hasher hasher = newContentHasher();
+        CachingHasher cachingHasher = get(CachingHasher.class);
+        int snapshotThreads = Integer.getInteger(SNAPSHOT_THREADS_PROPERTY, 1);
+        FileSnapshotter fileSnapshotter = snapshotThreads > 1
+                ? new DefaultFileSnapshotter(hasher, cachingHasher, get(ExecutorFactory.class), snapshotThreads)
+                : new DefaultFileSnapshotter(cachingHasher);
 
-        FileSnapshotter outputFilesSnapshotter = new OutputFilesSnapshotter(fileSnapshotter, new RandomLongIdGenerator(), cacheAccess);
+        FileSnapshotter outputFilesSnapshotter = new OutputFilesSnapshotter(fileSnapshotter, new RandomLongIdGenerator(), cacheAccess,
+                Boolean.getBoolean(TRUST_OUTPUT_FILE_METADATA_PROPERTY));
 
         TaskHistoryRepository taskHistoryRepository = new CacheBackedTaskHistoryRepository(cacheAccess, new CacheBackedFileSnapshotRepository(cacheAccess));
 
@@ -28,6 +28,16 @@ import java.io.File;
  * @author Hans Dockter
  */
 public abstract class AbstractArchiveTask extends AbstractCopyTask {
+    /**
+     * The number of threads to use to compress the archive. Defaults to 1, which compresses on the task thread.
+     */
+    static final String ARCHIVE_THREADS_PROPERTY = "org.gradle.archive.threads";
+
+    /**
+     * Whether to reuse the compressed entries of the previous version of a ZIP archive. Defaults to false.
+     */
+    static final String INCREMENTAL_ARCHIVE_PROPERTY = "org.gradle.archive.incremental";
+
     private File destinationDir;
     private String customName;
     private String baseName;
@@ -24,6 +24,7 @@ import org.gradle.api.internal.file.archive.compression.Compressor;
 import org.gradle.api.internal.file.archive.compression.GzipArchiver;
 import org.gradle.api.internal.file.archive.compression.SimpleCompressor;
 import org.gradle.api.internal.file.copy.CopyActionImpl;
+import org.gradle.internal.concurrent.ExecutorFactory;
 
 import java.io.File;
 import java.util.concurrent.Callable;
@@ -80,10 +81,17 @@ public class Tar extends AbstractArchiveTask {
 
         public Compressor getCompressor() {
             switch(compression) {
-                case BZIP2: return Bzip2Archiver.getCompressor();
+                case BZIP2: return getBzip2Compressor();
                 case GZIP:  return GzipArchiver.getCompressor();
                 default:    return new SimpleCompressor();
             }
         }
+
+        private Compressor getBzip2Compressor() {
+            int archiveThreads = Integer.getInteger(ARCHIVE_THREADS_PROPERTY, 1);
+            return archiveThreads > 1
+                    ? Bzip2Archiver.getCompressor(getServices().get(ExecutorFactory.class), archiveThreads)
+                    : Bzip2Archiver.getCompressor();
+        }
     }
 }
\ No newline at end of file
@@ -16,9 +16,12 @@
 package org.gradle.api.tasks.bundling;
 
 import org.gradle.api.internal.file.FileResolver;
+import org.gradle.api.internal.file.archive.ParallelZipCopySpecVisitor;
 import org.gradle.api.internal.file.archive.ZipCopySpecVisitor;
 import org.gradle.api.internal.file.copy.ArchiveCopyAction;
 import org.gradle.api.internal.file.copy.CopyActionImpl;
+import org.gradle.api.internal.file.copy.CopySpecVisitor;
+import org.gradle.internal.concurrent.ExecutorFactory;
 
 import java.io.File;
 
@@ -33,7 +36,15 @@ public class Zip extends AbstractArchiveTask {
 
     public Zip() {
         setExtension(ZIP_EXTENSION);
-        action = new ZipCopyAction(getServices().get(FileResolver.class));
+        action = new ZipCopyAction(getServices().get(FileResolver.class), createVisitor());
+    }
+
+    private CopySpecVisitor createVisitor() {
+        int archiveThreads = Integer.getInteger(ARCHIVE_THREADS_PROPERTY, 1);
+        boolean incremental = Boolean.getBoolean(INCREMENTAL_ARCHIVE_PROPERTY);
+        return archiveThreads > 1 || incremental
+                ? new ParallelZipCopySpecVisitor(getServices().get(ExecutorFactory.class), archiveThreads, incremental)
+                : new ZipCopySpecVisitor();
     }
 
     protected CopyActionImpl getCopyAction() {
@@ -41,8 +52,8 @@ public class Zip extends AbstractArchiveTask {
     }
 
     private class ZipCopyAction extends CopyActionImpl implements ArchiveCopyAction {
-        public ZipCopyAction(FileResolver fileResolver) {
-            super(fileResolver, new ZipCopySpecVisitor());
+        public ZipCopyAction(FileResolver fileResolver, CopySpecVisitor visitor) {
+            super(fileResolver, visitor);
         }
 
         public File getArchivePath() {
@@ -21,7 +21,7 @@ import org.gradle.util.GUtil
 
 import org.gradle.api.specs.Spec
 import org.gradle.api.specs.Specs
-import org.gradle.api.internal.file.pattern.PatternMatcherFactory
+import org.gradle.api.internal.file.pattern.CompiledPatternMatcher
 import org.gradle.api.specs.AndSpec
 import org.gradle.api.specs.NotSpec
 import org.gradle.api.specs.OrSpec
@@ -98,8 +98,8 @@ class PatternSet implements AntBuilderAware, PatternFilterable {
         boolean hasIncludes = includes || includeSpecs
         if (hasIncludes) {
             List<Spec<FileTreeElement>> matchers = []
-            for (String include: includes) {
-                matchers.add(new RelativePathSpec(PatternMatcherFactory.getPatternMatcher(true, caseSensitive, include)))
+            if (includes) {
+                matchers.add(new RelativePathSpec(new CompiledPatternMatcher(true, caseSensitive, includes)))
             }
             matchers.addAll(includeSpecs)
             includeSpec = new OrSpec<FileTreeElement>(matchers as Spec[])
@@ -112,8 +112,8 @@ class PatternSet implements AntBuilderAware, PatternFilterable {
         }
 
         List<Spec<FileTreeElement>> matchers = []
-        for (String exclude: allExcludes) {
-            matchers.add(new RelativePathSpec(PatternMatcherFactory.getPatternMatcher(false, caseSensitive, exclude)))
+        if (allExcludes) {
+            matchers.add(new RelativePathSpec(new CompiledPatternMatcher(false, caseSensitive, allExcludes)))
         }
         matchers.addAll(excludeSpecs)
         Spec<FileTreeElement> excludeSpec = new NotSpec<FileTreeElement>(new OrSpec<FileTreeElement>(matchers as Spec[]))
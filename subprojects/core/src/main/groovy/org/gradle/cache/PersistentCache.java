@@ -15,6 +15,7 @@
  */
 package org.gradle.cache;
 
+import org.gradle.internal.Factory;
 import org.gradle.messaging.serialize.Serializer;
 
 import java.io.File;
@@ -38,6 +39,15 @@ public interface PersistentCache extends CacheAccess {
      */
     File getBaseDir();
 
+    /**
+     * Performs some work against the cache, in the same way as {@link #useCache(String, org.gradle.internal.Factory)}, except that other threads
+     * of this process may also use the cache in this way at the same time. The indexed caches of this cache can be used concurrently from these
+     * threads. Anything else used by the action must be thread-safe.
+     *
+     * <p>This method is re-entrant, so that an action can call back into this method.</p>
+     */
+    <T> T useCacheConcurrently(String operationDisplayName, Factory<? extends T> action);
+
     /**
      * Creates an indexed cache implementation that is contained within this cache. This method may be used at any time.
      *
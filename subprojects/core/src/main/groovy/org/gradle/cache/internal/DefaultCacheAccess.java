@@ -20,6 +20,7 @@ import org.gradle.cache.CacheAccess;
 import org.gradle.cache.DefaultSerializer;
 import org.gradle.cache.PersistentIndexedCache;
 import org.gradle.cache.internal.btree.BTreePersistentIndexedCache;
+import org.gradle.cache.internal.btree.MappedFileBlockStore;
 import org.gradle.internal.Factory;
 import org.gradle.internal.UncheckedException;
 import org.gradle.messaging.serialize.Serializer;
@@ -31,20 +32,31 @@ import java.util.List;
 import java.util.Set;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import static org.gradle.cache.internal.FileLockManager.LockMode.Exclusive;
 
 @ThreadSafe
 public class DefaultCacheAccess implements CacheAccess {
+    /**
+     * When set to true, the indexed caches read their blocks from memory mapped regions of the cache files.
+     */
+    public static final String MEMORY_MAPPED_PROPERTY = "org.gradle.cache.memoryMapped";
     private final String cacheDiplayName;
     private final File lockFile;
     private final FileLockManager lockManager;
+    private final boolean memoryMapped = Boolean.getBoolean(MEMORY_MAPPED_PROPERTY);
     private final FileAccess fileAccess = new UnitOfWorkFileAccess();
     private final Set<MultiProcessSafePersistentIndexedCache<?, ?>> caches = new HashSet<MultiProcessSafePersistentIndexedCache<?, ?>>();
     private final Lock lock = new ReentrantLock();
     private final Condition condition = lock.newCondition();
     private Thread owner;
+    // The threads using the cache via useCacheConcurrently(). Is empty while there is an owner.
+    private final Set<Thread> concurrentOwners = new HashSet<Thread>();
+    private int exclusiveWaiters;
+    private boolean concurrentWorkStarted;
     private FileLockManager.LockMode lockMode;
     private FileLock fileLock;
     // TODO:DAZ This can probably be part of the per-thread operation stack
@@ -71,7 +83,7 @@ public class DefaultCacheAccess implements CacheAccess {
     public void open(FileLockManager.LockMode lockMode) {
         lock.lock();
         try {
-            if (owner != null) {
+            if (owner != null || !concurrentOwners.isEmpty()) {
                 throw new IllegalStateException(String.format("Cannot open the %s, as it is already in use.", cacheDiplayName));
             }
             this.lockMode = lockMode;
@@ -96,6 +108,8 @@ public class DefaultCacheAccess implements CacheAccess {
             started = false;
             lockMode = null;
             owner = null;
+            concurrentOwners.clear();
+            concurrentWorkStarted = false;
             if (fileLock != null) {
                 try {
                     fileLock.close();
@@ -141,36 +155,128 @@ public class DefaultCacheAccess implements CacheAccess {
         }
     }
 
+    /**
+     * Performs some work against the cache, in the same way as {@link #useCache(String, Factory)}, except that any number of threads of this
+     * process can do so at the same time. Actions run using {@link #useCache(String, Factory)} are excluded while these actions are running.
+     * The indexed caches can be read and updated from several threads, but anything else that the action uses must be thread-safe.
+     *
+     * <p>The cache files are locked when the first thread starts to use the cache, and released when the last thread finishes.</p>
+     *
+     * <p>This method is re-entrant. A thread which already holds the cache keeps it in the same way.</p>
+     */
+    public <T> T useCacheConcurrently(String operationDisplayName, Factory<? extends T> action) {
+        if (lockMode == FileLockManager.LockMode.Shared) {
+            throw new UnsupportedOperationException("Not implemented yet.");
+        }
+
+        lockCacheConcurrently(operationDisplayName);
+        try {
+            return action.create();
+        } finally {
+            unlockCache(operationDisplayName);
+        }
+    }
+
     private void lockCache(String operationDisplayName) {
         lock.lock();
         try {
-            while (owner != null && owner != Thread.currentThread()) {
-                try {
-                    condition.await();
-                } catch (InterruptedException e) {
-                    throw UncheckedException.throwAsUncheckedException(e);
-                }
+            Thread current = Thread.currentThread();
+            if (owner != current && !concurrentOwners.contains(current)) {
+                awaitExclusiveAccess();
+                owner = current;
             }
-            owner = Thread.currentThread();
             operationStack.get().pushCacheAction(operationDisplayName);
         } finally {
             lock.unlock();
         }
     }
 
+    private void lockCacheConcurrently(String operationDisplayName) {
+        lock.lock();
+        try {
+            Thread current = Thread.currentThread();
+            if (owner != current && !concurrentOwners.contains(current)) {
+                awaitConcurrentAccess();
+                operationStack.get().pushCacheAction(operationDisplayName);
+                addConcurrentOwner();
+            } else {
+                operationStack.get().pushCacheAction(operationDisplayName);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
     private void unlockCache(String operationDisplayName) {
         lock.lock();
         try {
             operationStack.get().popCacheAction(operationDisplayName);
             if (!operationStack.get().isInCacheAction()) {
-                owner = null;
-                condition.signalAll();
+                if (owner == Thread.currentThread()) {
+                    owner = null;
+                    condition.signalAll();
+                } else if (concurrentOwners.contains(Thread.currentThread())) {
+                    removeConcurrentOwner();
+                }
             }
         } finally {
             lock.unlock();
         }
     }
 
+    /**
+     * Waits until no other thread is using the cache. Waiting threads are preferred over new concurrent users, so that they are not starved.
+     */
+    private void awaitExclusiveAccess() {
+        exclusiveWaiters++;
+        try {
+            while (owner != null || !concurrentOwners.isEmpty()) {
+                await();
+            }
+        } finally {
+            exclusiveWaiters--;
+        }
+    }
+
+    private void awaitConcurrentAccess() {
+        while (owner != null || exclusiveWaiters > 0) {
+            await();
+        }
+    }
+
+    private void await() {
+        try {
+            condition.await();
+        } catch (InterruptedException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+    }
+
+    /**
+     * Adds the current thread as a concurrent user of the cache. The first concurrent user starts the unit of work.
+     */
+    private void addConcurrentOwner() {
+        concurrentOwners.add(Thread.currentThread());
+        if (concurrentOwners.size() == 1) {
+            concurrentWorkStarted = onStartWork();
+        }
+    }
+
+    /**
+     * Removes the current thread as a concurrent user of the cache. The last concurrent user ends the unit of work, while it still owns the cache.
+     */
+    private void removeConcurrentOwner() {
+        try {
+            if (concurrentOwners.size() == 1 && concurrentWorkStarted) {
+                concurrentWorkStarted = false;
+                onEndWork();
+            }
+        } finally {
+            concurrentOwners.remove(Thread.currentThread());
+            condition.signalAll();
+        }
+    }
+
     public <T> T longRunningOperation(String operationDisplayName, Factory<? extends T> action) {
         if (operationStack.get().isInLongRunningOperation()) {
             operationStack.get().pushLongRunningOperation(operationDisplayName);
@@ -181,25 +287,30 @@ public class DefaultCacheAccess implements CacheAccess {
             }
         }
 
-        checkThreadIsOwner();
-        boolean wasEnded = onEndWork();
+        // A thread using the cache concurrently leaves the unit of work to the last concurrent user to end
+        boolean concurrent = checkThreadIsOwner();
+        boolean wasEnded = !concurrent && onEndWork();
         parkOwner(operationDisplayName);
         try {
             return action.create();
         } finally {
-            restoreOwner(operationDisplayName);
+            restoreOwner(operationDisplayName, concurrent);
             if (wasEnded) {
                 onStartWork();
             }
         }
     }
 
-    private void checkThreadIsOwner() {
+    /**
+     * Returns true if the current thread is using the cache concurrently with other threads, false if it is the owner of the cache.
+     */
+    private boolean checkThreadIsOwner() {
         lock.lock();
         try {
-            if (owner != Thread.currentThread()) {
+            if (owner != Thread.currentThread() && !concurrentOwners.contains(Thread.currentThread())) {
                 throw new IllegalStateException(String.format("Cannot start long running operation, as the %s has not been locked.", cacheDiplayName));
             }
+            return owner != Thread.currentThread();
         } finally {
             lock.unlock();
         }
@@ -208,11 +319,14 @@ public class DefaultCacheAccess implements CacheAccess {
     private void parkOwner(String operationDisplayName) {
         lock.lock();
         try {
-            if (owner != Thread.currentThread()) {
+            if (owner == Thread.currentThread()) {
+                owner = null;
+                condition.signalAll();
+            } else if (concurrentOwners.contains(Thread.currentThread())) {
+                removeConcurrentOwner();
+            } else {
                 throw new IllegalStateException(String.format("Cannot start long running operation, as the %s has not been locked.", cacheDiplayName));
             }
-            owner = null;
-            condition.signalAll();
 
             operationStack.get().pushLongRunningOperation(operationDisplayName);
         } finally {
@@ -220,18 +334,18 @@ public class DefaultCacheAccess implements CacheAccess {
         }
     }
 
-    private void restoreOwner(String description) {
+    private void restoreOwner(String description, boolean concurrent) {
         lock.lock();
         try {
-            while (owner != null) {
-                try {
-                    condition.await();
-                } catch (InterruptedException e) {
-                    throw UncheckedException.throwAsUncheckedException(e);
-                }
+            if (concurrent) {
+                awaitConcurrentAccess();
+                operationStack.get().popLongRunningOperation(description);
+                addConcurrentOwner();
+            } else {
+                awaitExclusiveAccess();
+                owner = Thread.currentThread();
+                operationStack.get().popLongRunningOperation(description);
             }
-            owner = Thread.currentThread();
-            operationStack.get().popLongRunningOperation(description);
         } finally {
             lock.unlock();
         }
@@ -270,6 +384,9 @@ public class DefaultCacheAccess implements CacheAccess {
     }
 
     <K, V> BTreePersistentIndexedCache<K, V> doCreateCache(final File cacheFile, final Serializer<K> keySerializer, final Serializer<V> valueSerializer) {
+        if (memoryMapped) {
+            return new BTreePersistentIndexedCache<K, V>(cacheFile, new MappedFileBlockStore(cacheFile), keySerializer, valueSerializer);
+        }
         return new BTreePersistentIndexedCache<K, V>(cacheFile, keySerializer, valueSerializer);
     }
 
@@ -307,29 +424,51 @@ public class DefaultCacheAccess implements CacheAccess {
     private FileLock getLock() {
         lock.lock();
         try {
-            if (Thread.currentThread() != owner || !started) {
+            if ((Thread.currentThread() != owner && !concurrentOwners.contains(Thread.currentThread())) || !started) {
                 throw new IllegalStateException(String.format("The %s has not been locked.", cacheDiplayName));
             }
+            if (fileLock == null) {
+                fileLock = lockManager.lock(lockFile, Exclusive, cacheDiplayName, operationStack.get().getDescription());
+            }
+            return fileLock;
         } finally {
             lock.unlock();
         }
-        if (fileLock == null) {
-            fileLock = lockManager.lock(lockFile, Exclusive, cacheDiplayName, operationStack.get().getDescription());
-        }
-        return fileLock;
     }
 
     private class UnitOfWorkFileAccess extends AbstractFileAccess {
+        // The file lock marks the cache files as possibly corrupt while they are being updated, so each update must run on its own.
+        // Reads can run concurrently.
+        private final ReadWriteLock accessLock = new ReentrantReadWriteLock();
+
         public <T> T readFile(Factory<? extends T> action) throws LockTimeoutException {
-            return getLock().readFile(action);
+            FileLock fileLock = getLock();
+            accessLock.readLock().lock();
+            try {
+                return fileLock.readFile(action);
+            } finally {
+                accessLock.readLock().unlock();
+            }
         }
 
         public void updateFile(Runnable action) throws LockTimeoutException {
-            getLock().updateFile(action);
+            FileLock fileLock = getLock();
+            accessLock.writeLock().lock();
+            try {
+                fileLock.updateFile(action);
+            } finally {
+                accessLock.writeLock().unlock();
+            }
         }
 
         public void writeFile(Runnable action) throws LockTimeoutException {
-            getLock().writeFile(action);
+            FileLock fileLock = getLock();
+            accessLock.writeLock().lock();
+            try {
+                fileLock.writeFile(action);
+            } finally {
+                accessLock.writeLock().unlock();
+            }
         }
     }
 
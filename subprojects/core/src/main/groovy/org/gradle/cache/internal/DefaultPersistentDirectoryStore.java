@@ -129,6 +129,10 @@ public class DefaultPersistentDirectoryStore implements ReferencablePersistentCa
         cacheAccess.useCache(operationDisplayName, action);
     }
 
+    public <T> T useCacheConcurrently(String operationDisplayName, Factory<? extends T> action) {
+        return cacheAccess.useCacheConcurrently(operationDisplayName, action);
+    }
+
     public <T> T longRunningOperation(String operationDisplayName, Factory<? extends T> action) {
         return cacheAccess.longRunningOperation(operationDisplayName, action);
     }
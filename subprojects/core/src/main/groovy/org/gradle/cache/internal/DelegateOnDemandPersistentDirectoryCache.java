@@ -62,6 +62,14 @@ public class DelegateOnDemandPersistentDirectoryCache implements ReferencablePer
         });
     }
 
+    public <T> T useCacheConcurrently(final String operationDisplayName, final Factory<? extends T> action) {
+        return runWithOpenedCache(new Factory<T>() {
+            public T create() {
+                return delegateCache.useCacheConcurrently(operationDisplayName, action);
+            }
+        });
+    }
+
     public <T> T longRunningOperation(final String operationDisplayName, final Factory<? extends T> action) {
         return runWithOpenedCache(new Factory<T>() {
             public T create() {
@@ -73,7 +73,7 @@ public class MultiProcessSafePersistentIndexedCache<K, V> implements PersistentI
         close();
     }
 
-    public void close() {
+    public synchronized void close() {
         if (cache != null) {
             try {
                 fileAccess.writeFile(new Runnable() {
@@ -87,7 +87,8 @@ public class MultiProcessSafePersistentIndexedCache<K, V> implements PersistentI
         }
     }
 
-    private PersistentIndexedCache<K, V> getCache() {
+    // Synchronized so that the backing cache, which supports concurrent reads, is opened only once
+    private synchronized PersistentIndexedCache<K, V> getCache() {
         if (cache == null) {
             // Use writeFile because the cache can internally recover from datafile
             // corruption, so we don't care at this level if it's corrupt
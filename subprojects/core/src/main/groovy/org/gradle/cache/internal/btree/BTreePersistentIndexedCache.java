@@ -26,12 +26,13 @@ import java.math.BigInteger;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 // todo - stream serialised value to file
 // todo - handle hash collisions (properly, this time)
 // todo - don't store null links to child blocks in leaf index blocks
 // todo - align block boundaries
-// todo - thread safety control
 // todo - remove the check-sum from each block
 // todo - merge small values into a single data block
 // todo - discard when file corrupt
@@ -39,6 +40,11 @@ import java.util.*;
 // todo - free list leaks disk space
 // todo - merge adjacent free blocks
 // todo - use more efficient lookup for free block with nearest size
+
+/**
+ * A persistent indexed cache backed by a B-tree. Entries can be read concurrently by multiple threads. Updates are serialized, and
+ * exclude readers while they are in progress.
+ */
 public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache<K, V> {
     private static final Logger LOGGER = LoggerFactory.getLogger(BTreePersistentIndexedCache.class);
     private final File cacheFile;
@@ -47,6 +53,7 @@ public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache
     private final short maxChildIndexEntries;
     private final int minIndexChildNodes;
     private final StateCheckBlockStore store;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
     private HeaderBlock header;
 
     public BTreePersistentIndexedCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
@@ -55,12 +62,21 @@ public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache
 
     public BTreePersistentIndexedCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer,
                                        short maxChildIndexEntries, int maxFreeListEntries) {
+        this(cacheFile, new FileBackedBlockStore(cacheFile), keySerializer, valueSerializer, maxChildIndexEntries, maxFreeListEntries);
+    }
+
+    public BTreePersistentIndexedCache(File cacheFile, BlockStore backingStore, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        this(cacheFile, backingStore, keySerializer, valueSerializer, (short) 512, 512);
+    }
+
+    public BTreePersistentIndexedCache(File cacheFile, BlockStore backingStore, Serializer<K> keySerializer, Serializer<V> valueSerializer,
+                                       short maxChildIndexEntries, int maxFreeListEntries) {
         this.cacheFile = cacheFile;
         this.keySerializer = keySerializer;
         this.serializer = valueSerializer;
         this.maxChildIndexEntries = maxChildIndexEntries;
         this.minIndexChildNodes = maxChildIndexEntries / 2;
-        BlockStore cachingStore = new CachingBlockStore(new FileBackedBlockStore(cacheFile), IndexBlock.class, FreeListBlockStore.FreeListBlock.class);
+        BlockStore cachingStore = new CachingBlockStore(backingStore, BlockCache.getShared(), IndexBlock.class, DataBlock.class, FreeListBlockStore.FreeListBlock.class);
         store = new StateCheckBlockStore(new FreeListBlockStore(cachingStore, maxFreeListEntries));
         try {
             open();
@@ -113,15 +129,24 @@ public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache
 
     public V get(K key) {
         try {
+            lock.readLock().lock();
             try {
-                DataBlock block = header.getRoot().get(key);
+                DataBlock block = header.readRoot().get(key);
                 if (block != null) {
                     return block.getValue();
                 }
                 return null;
             } catch (CorruptedCacheException e) {
+                // Fall through to rebuild the cache, which requires exclusive access
+            } finally {
+                lock.readLock().unlock();
+            }
+            lock.writeLock().lock();
+            try {
                 rebuild();
                 return null;
+            } finally {
+                lock.writeLock().unlock();
             }
         } catch (Exception e) {
             throw new UncheckedIOException(String.format("Could not read entry '%s' from %s.", key, this), e);
@@ -129,6 +154,7 @@ public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache
     }
 
     public void put(K key, V value) {
+        lock.writeLock().lock();
         try {
             MessageDigestStream digestStream = new MessageDigestStream();
             keySerializer.write(digestStream, key);
@@ -150,10 +176,13 @@ public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache
             store.flush();
         } catch (Exception e) {
             throw new UncheckedIOException(String.format("Could not add entry '%s' to %s.", key, this), e);
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
     public void remove(K key) {
+        lock.writeLock().lock();
         try {
             Lookup lookup = header.getRoot().find(key);
             if (lookup.entry == null) {
@@ -165,6 +194,8 @@ public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache
             store.flush();
         } catch (Exception e) {
             throw new UncheckedIOException(String.format("Could not remove entry '%s' from %s.", key, this), e);
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
@@ -177,25 +208,42 @@ public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache
     }
 
     public void reset() {
-        close();
+        lock.writeLock().lock();
         try {
-            open();
-        } catch (Exception e) {
-            throw new UncheckedIOException(e);
+            close();
+            try {
+                open();
+            } catch (Exception e) {
+                throw new UncheckedIOException(e);
+            }
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
     public void close() {
-        LOGGER.debug("Closing {}", this);
+        lock.writeLock().lock();
         try {
-            store.close();
-        } catch (Exception e) {
-            throw new UncheckedIOException(e);
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Closing {}. Using {}.", this, BlockCache.getShared());
+            }
+            try {
+                store.close();
+            } catch (Exception e) {
+                throw new UncheckedIOException(e);
+            }
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
     public boolean isOpen() {
-        return store.isOpen();
+        lock.readLock().lock();
+        try {
+            return store.isOpen();
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     private void rebuild() throws Exception {
@@ -206,11 +254,14 @@ public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache
     }
 
     public void verify() {
+        lock.writeLock().lock();
         try {
             doVerify();
         } catch (Exception e) {
             throw new UncheckedIOException(String.format("Some problems were found when checking the integrity of %s.",
                     this), e);
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
@@ -337,6 +388,13 @@ public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache
         public IndexBlock getRoot() throws Exception {
             return index.getRoot();
         }
+
+        /**
+         * Reads the root block without attaching it to the tree, for lookups which may run concurrently.
+         */
+        public IndexBlock readRoot() throws Exception {
+            return store.read(index.rootPos, IndexBlock.class);
+        }
     }
 
     private class IndexBlock extends BlockPayload {
@@ -436,13 +494,34 @@ public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache
             maybeSplit();
         }
 
+        /**
+         * Finds the data block for the given key. Unlike {@link #find(Object)}, does not update the transient fields of the
+         * visited blocks, so can be used by multiple readers concurrently.
+         */
         public DataBlock get(K key) throws Exception {
-            Lookup lookup = find(key);
-            if (lookup.entry == null) {
-                return null;
-            }
+            MessageDigestStream digestStream = new MessageDigestStream();
+            keySerializer.write(digestStream, key);
+            long hashCode = digestStream.getChecksum();
+
+            IndexBlock current = this;
+            while (true) {
+                int index = Collections.binarySearch(current.entries, new IndexEntry(hashCode));
+                if (index >= 0) {
+                    return store.read(current.entries.get(index).dataBlock, DataBlock.class);
+                }
 
-            return store.read(lookup.entry.dataBlock, DataBlock.class);
+                index = -index - 1;
+                BlockPointer childBlockPos;
+                if (index == current.entries.size()) {
+                    childBlockPos = current.tailPos;
+                } else {
+                    childBlockPos = current.entries.get(index).childIndexBlock;
+                }
+                if (childBlockPos.isNull()) {
+                    return null;
+                }
+                current = store.read(childBlockPos, IndexBlock.class);
+            }
         }
 
         public Lookup find(K key) throws Exception {
@@ -632,13 +711,11 @@ public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache
     private class DataBlock extends BlockPayload {
         private int size;
         private byte[] serialisedValue;
-        private V value;
 
         private DataBlock() {
         }
 
         public DataBlock(V value) throws Exception {
-            this.value = value;
             setValue(value);
             size = serialisedValue.length;
         }
@@ -650,10 +727,8 @@ public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache
         }
 
         public V getValue() throws Exception {
-            if (value == null) {
-                value = serializer.read(new ByteArrayInputStream(serialisedValue));
-            }
-            return value;
+            // Data blocks may be cached, so deserialize a new value each time rather than sharing the value between callers
+            return serializer.read(new ByteArrayInputStream(serialisedValue));
         }
 
         @Override
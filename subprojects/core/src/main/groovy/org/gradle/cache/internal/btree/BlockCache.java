@@ -0,0 +1,205 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.cache.internal.btree;
+
+import java.util.*;
+
+/**
+ * An LRU cache of blocks, bounded by the total size of the cached blocks. A single instance is shared by all the
+ * indexed caches in the process, so that the memory used for caching blocks has a global budget.
+ *
+ * <p>The maximum size can be set using the {@value #MAX_SIZE_PROPERTY} system property, in bytes.</p>
+ */
+public class BlockCache {
+    public static final String MAX_SIZE_PROPERTY = "org.gradle.cache.blockCacheSize";
+    static final long DEFAULT_MAX_SIZE = 32 * 1024 * 1024;
+    // Rough allowance for the in-memory representation of each cached block, in addition to its payload
+    private static final int ENTRY_OVERHEAD = 64;
+    private static final BlockCache SHARED = new BlockCache(Long.getLong(MAX_SIZE_PROPERTY, DEFAULT_MAX_SIZE));
+
+    private final long maxSize;
+    private final LinkedHashMap<Key, CachedBlock> blocks = new LinkedHashMap<Key, CachedBlock>(16, 0.75f, true);
+    private final Map<Object, Set<Key>> blocksByOwner = new HashMap<Object, Set<Key>>();
+    private long size;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public BlockCache(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the cache shared by all the indexed caches in this process.
+     */
+    public static BlockCache getShared() {
+        return SHARED;
+    }
+
+    /**
+     * Returns the cached block at the given position, for the given owner. Returns null if not cached.
+     */
+    public synchronized BlockPayload get(Object owner, BlockPointer pos) {
+        CachedBlock cached = blocks.get(new Key(owner, pos));
+        if (cached == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return cached.block;
+    }
+
+    public synchronized void put(Object owner, BlockPayload block) {
+        Key key = new Key(owner, block.getPos());
+        long blockSize = block.getSize() + ENTRY_OVERHEAD;
+        CachedBlock previous = blocks.remove(key);
+        if (previous != null) {
+            size -= previous.size;
+        }
+        if (blockSize > maxSize) {
+            forget(key);
+            return;
+        }
+        blocks.put(key, new CachedBlock(block, blockSize));
+        ownerKeys(owner).add(key);
+        size += blockSize;
+        evict();
+    }
+
+    public synchronized void remove(Object owner, BlockPointer pos) {
+        Key key = new Key(owner, pos);
+        CachedBlock cached = blocks.remove(key);
+        if (cached != null) {
+            size -= cached.size;
+            forget(key);
+        }
+    }
+
+    /**
+     * Discards all the blocks cached for the given owner.
+     */
+    public synchronized void removeAll(Object owner) {
+        Set<Key> keys = blocksByOwner.remove(owner);
+        if (keys == null) {
+            return;
+        }
+        for (Key key : keys) {
+            size -= blocks.remove(key).size;
+        }
+    }
+
+    private Set<Key> ownerKeys(Object owner) {
+        Set<Key> keys = blocksByOwner.get(owner);
+        if (keys == null) {
+            keys = new HashSet<Key>();
+            blocksByOwner.put(owner, keys);
+        }
+        return keys;
+    }
+
+    private void forget(Key key) {
+        Set<Key> keys = blocksByOwner.get(key.owner);
+        if (keys != null) {
+            keys.remove(key);
+            if (keys.isEmpty()) {
+                blocksByOwner.remove(key.owner);
+            }
+        }
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<Key, CachedBlock>> iterator = blocks.entrySet().iterator();
+        while (size > maxSize && iterator.hasNext()) {
+            Map.Entry<Key, CachedBlock> entry = iterator.next();
+            iterator.remove();
+            size -= entry.getValue().size;
+            forget(entry.getKey());
+            evictions++;
+        }
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public synchronized long getSize() {
+        return size;
+    }
+
+    public synchronized int getBlockCount() {
+        return blocks.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized double getHitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("block cache (%d blocks, %d/%d bytes, %d hits, %d misses, %d evictions, hit rate %.1f%%)",
+                blocks.size(), size, maxSize, hits, misses, evictions, 100 * getHitRate());
+    }
+
+    private static class Key {
+        private final Object owner;
+        private final BlockPointer pos;
+
+        private Key(Object owner, BlockPointer pos) {
+            this.owner = owner;
+            this.pos = pos;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (obj == null || obj.getClass() != getClass()) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return owner == other.owner && pos.equals(other.pos);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(owner) + pos.hashCode();
+        }
+    }
+
+    private static class CachedBlock {
+        private final BlockPayload block;
+        private final long size;
+
+        private CachedBlock(BlockPayload block, long size) {
+            this.block = block;
+            this.size = size;
+        }
+    }
+}
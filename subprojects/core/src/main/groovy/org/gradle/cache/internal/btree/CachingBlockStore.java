@@ -15,18 +15,17 @@
  */
 package org.gradle.cache.internal.btree;
 
-import org.apache.commons.collections.map.LRUMap;
-
 import java.util.*;
 
 public class CachingBlockStore implements BlockStore {
     private final BlockStore store;
     private final Map<BlockPointer, BlockPayload> dirty = new LinkedHashMap<BlockPointer, BlockPayload>();
-    private final Map<BlockPointer, BlockPayload> indexBlockCache = new LRUMap(100);
+    private final BlockCache blockCache;
     private final Set<Class<?>> cachableTypes = new HashSet<Class<?>>();
 
-    public CachingBlockStore(BlockStore store, Class<? extends BlockPayload>... cacheableBlockTypes) {
+    public CachingBlockStore(BlockStore store, BlockCache blockCache, Class<? extends BlockPayload>... cacheableBlockTypes) {
         this.store = store;
+        this.blockCache = blockCache;
         cachableTypes.addAll(Arrays.asList(cacheableBlockTypes));
     }
 
@@ -36,13 +35,13 @@ public class CachingBlockStore implements BlockStore {
 
     public void close() {
         flush();
-        indexBlockCache.clear();
+        blockCache.removeAll(this);
         store.close();
     }
 
     public void clear() {
         dirty.clear();
-        indexBlockCache.clear();
+        blockCache.removeAll(this);
         store.clear();
     }
 
@@ -62,7 +61,7 @@ public class CachingBlockStore implements BlockStore {
 
     public void remove(BlockPayload block) {
         dirty.remove(block.getPos());
-        indexBlockCache.remove(block.getPos());
+        blockCache.remove(this, block.getPos());
         store.remove(block);
     }
 
@@ -77,7 +76,7 @@ public class CachingBlockStore implements BlockStore {
         if (block != null) {
             return block;
         }
-        block = payloadType.cast(indexBlockCache.get(pos));
+        block = payloadType.cast(blockCache.get(this, pos));
         if (block != null) {
             return block;
         }
@@ -94,7 +93,7 @@ public class CachingBlockStore implements BlockStore {
 
     private <T extends BlockPayload> void maybeCache(T block) {
         if (cachableTypes.contains(block.getClass())) {
-            indexBlockCache.put(block.getPos(), block);
+            blockCache.put(this, block);
         }
     }
 }
@@ -18,6 +18,8 @@ package org.gradle.cache.internal.btree;
 import org.gradle.api.UncheckedIOException;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.zip.CRC32;
 
 public class FileBackedBlockStore implements BlockStore {
@@ -201,10 +203,10 @@ public class FileBackedBlockStore implements BlockStore {
             if (pos + HEADER_SIZE >= file.length()) {
                 throw blockCorruptedException();
             }
-            file.seek(pos);
 
+            // Use positional reads, so that blocks can be read concurrently
             Crc32InputStream checkSumInputStream = new Crc32InputStream(new BufferedInputStream(
-                    new RandomAccessFileInputStream(file)));
+                    new FileChannelInputStream(file.getChannel(), pos)));
             DataInputStream inputStream = new DataInputStream(checkSumInputStream);
 
             BlockPayload payload = getPayload();
@@ -241,26 +243,32 @@ public class FileBackedBlockStore implements BlockStore {
         }
     }
 
-    private static class RandomAccessFileInputStream extends InputStream {
-        private final RandomAccessFile file;
-
-        private RandomAccessFileInputStream(RandomAccessFile file) {
-            this.file = file;
-        }
+    private static class FileChannelInputStream extends InputStream {
+        private final FileChannel channel;
+        private long pos;
 
-        @Override
-        public int read(byte[] bytes) throws IOException {
-            return file.read(bytes);
+        private FileChannelInputStream(FileChannel channel, long pos) {
+            this.channel = channel;
+            this.pos = pos;
         }
 
         @Override
         public int read() throws IOException {
-            return file.read();
+            byte[] bytes = new byte[1];
+            int count = read(bytes, 0, 1);
+            return count < 0 ? -1 : bytes[0] & 0xFF;
         }
 
         @Override
         public int read(byte[] bytes, int offset, int length) throws IOException {
-            return file.read(bytes, offset, length);
+            if (length == 0) {
+                return 0;
+            }
+            int count = channel.read(ByteBuffer.wrap(bytes, offset, length), pos);
+            if (count > 0) {
+                pos += count;
+            }
+            return count;
         }
     }
 
@@ -287,10 +295,10 @@ public class FileBackedBlockStore implements BlockStore {
         }
     }
 
-    private static class Crc32InputStream extends FilterInputStream {
-        private final CRC32 checksum;
+    static class Crc32InputStream extends FilterInputStream {
+        final CRC32 checksum;
 
-        private Crc32InputStream(InputStream inputStream) {
+        Crc32InputStream(InputStream inputStream) {
             super(inputStream);
             checksum = new CRC32();
         }
@@ -323,10 +331,10 @@ public class FileBackedBlockStore implements BlockStore {
         }
     }
 
-    private static class Crc32OutputStream extends FilterOutputStream {
-        private final CRC32 checksum;
+    static class Crc32OutputStream extends FilterOutputStream {
+        final CRC32 checksum;
 
-        private Crc32OutputStream(OutputStream outputStream) {
+        Crc32OutputStream(OutputStream outputStream) {
             super(outputStream);
             this.checksum = new CRC32();
         }
@@ -0,0 +1,375 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.cache.internal.btree;
+
+import org.gradle.api.UncheckedIOException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link BlockStore} which reads blocks from memory mapped regions of the cache file, rather than seeking and reading
+ * the file for each block. Uses the same file format as {@link FileBackedBlockStore}.
+ *
+ * <p>The file is mapped read-only, in regions of a fixed size which are mapped on first use and remapped when the file
+ * grows. Blocks are written through the file channel, which is coherent with the mapped regions.</p>
+ *
+ * <p>The regions are unmapped when the store is closed or cleared, rather than when they are garbage collected, as some platforms do not allow a
+ * mapped file to be deleted or truncated. The caller must not read from the store while it is being closed or cleared.</p>
+ */
+public class MappedFileBlockStore implements BlockStore {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MappedFileBlockStore.class);
+    static final int DEFAULT_REGION_SIZE = 8 * 1024 * 1024;
+    private final File cacheFile;
+    private final int regionSize;
+    private final List<MappedByteBuffer> regions = new ArrayList<MappedByteBuffer>();
+    // Regions which have been replaced by a larger mapping, but may still be in use by a concurrent read
+    private final List<MappedByteBuffer> replacedRegions = new ArrayList<MappedByteBuffer>();
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private long length;
+    private long nextBlock;
+    private Factory factory;
+
+    public MappedFileBlockStore(File cacheFile) {
+        this(cacheFile, DEFAULT_REGION_SIZE);
+    }
+
+    public MappedFileBlockStore(File cacheFile, int regionSize) {
+        this.cacheFile = cacheFile;
+        this.regionSize = regionSize;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("cache '%s'", cacheFile);
+    }
+
+    public void open(Runnable runnable, Factory factory) {
+        this.factory = factory;
+        try {
+            file = new RandomAccessFile(cacheFile, "rw");
+            channel = file.getChannel();
+            length = channel.size();
+            nextBlock = length;
+            if (length == 0) {
+                runnable.run();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void close() {
+        clearRegions();
+        try {
+            file.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void clear() {
+        clearRegions();
+        try {
+            channel.truncate(0);
+        } catch (IOException e) {
+            // Some platforms do not allow a file to be truncated while it is mapped. Any content left at the end of the
+            // file is not referenced by the new blocks, so can be discarded.
+            LOGGER.debug(String.format("Could not truncate %s.", this), e);
+        }
+        length = 0;
+        nextBlock = 0;
+    }
+
+    public void attach(BlockPayload block) {
+        if (block.getBlock() == null) {
+            block.setBlock(new BlockImpl(block));
+        }
+    }
+
+    public void remove(BlockPayload block) {
+        BlockImpl blockImpl = (BlockImpl) block.getBlock();
+        blockImpl.detach();
+    }
+
+    public void flush() {
+    }
+
+    public <T extends BlockPayload> T readFirst(Class<T> payloadType) {
+        return read(new BlockPointer(0), payloadType);
+    }
+
+    public <T extends BlockPayload> T read(BlockPointer pos, Class<T> payloadType) {
+        assert !pos.isNull();
+        try {
+            T payload = payloadType.cast(factory.create(payloadType));
+            BlockImpl block = new BlockImpl(payload, pos);
+            block.read();
+            return payload;
+        } catch (CorruptedCacheException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void write(BlockPayload block) {
+        BlockImpl blockImpl = (BlockImpl) block.getBlock();
+        try {
+            blockImpl.write();
+        } catch (CorruptedCacheException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private synchronized void clearRegions() {
+        for (MappedByteBuffer region : regions) {
+            if (region != null) {
+                unmap(region);
+            }
+        }
+        for (MappedByteBuffer region : replacedRegions) {
+            unmap(region);
+        }
+        regions.clear();
+        replacedRegions.clear();
+    }
+
+    private void unmap(MappedByteBuffer region) {
+        try {
+            Method cleanerMethod = region.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(region);
+            if (cleaner != null) {
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        } catch (Exception e) {
+            // Not supported by this JVM, so leave the region to be unmapped when it is garbage collected
+            LOGGER.debug(String.format("Could not unmap region of %s.", this), e);
+        }
+    }
+
+    private long alloc(long length) {
+        long pos = nextBlock;
+        nextBlock += length;
+        return pos;
+    }
+
+    /**
+     * Returns the region containing the given position, mapped at least up to the given end position or the end of the region.
+     * Blocks may be read concurrently, so access to the regions is synchronized.
+     */
+    private synchronized MappedByteBuffer region(long pos, long end) throws IOException {
+        int index = (int) (pos / regionSize);
+        while (regions.size() <= index) {
+            regions.add(null);
+        }
+        long regionStart = (long) index * regionSize;
+        long required = Math.min(regionSize, end - regionStart);
+        MappedByteBuffer region = regions.get(index);
+        if (region == null || region.capacity() < required) {
+            if (region != null) {
+                replacedRegions.add(region);
+            }
+            long size = Math.min(regionSize, length - regionStart);
+            region = channel.map(FileChannel.MapMode.READ_ONLY, regionStart, size);
+            regions.set(index, region);
+        }
+        return region;
+    }
+
+    /**
+     * Copies the given range of the file from the mapped regions.
+     */
+    private void readFully(long pos, byte[] bytes, int offset, int count) throws IOException {
+        while (count > 0) {
+            ByteBuffer region = region(pos, pos + count).duplicate();
+            int offsetInRegion = (int) (pos % regionSize);
+            int chunk = Math.min(count, region.capacity() - offsetInRegion);
+            region.position(offsetInRegion);
+            region.get(bytes, offset, chunk);
+            pos += chunk;
+            offset += chunk;
+            count -= chunk;
+        }
+    }
+
+    private final class BlockImpl extends Block {
+        private static final int HEADER_SIZE = 2 + INT_SIZE;
+        private static final int TAIL_SIZE = LONG_SIZE;
+        static final int BLOCK_MARKER = 0xCC;
+
+        private BlockPointer pos;
+        private int payloadSize;
+
+        private BlockImpl(BlockPayload payload, BlockPointer pos) {
+            this(payload);
+            setPos(pos);
+        }
+
+        public BlockImpl(BlockPayload payload) {
+            super(payload);
+            pos = null;
+            payloadSize = -1;
+        }
+
+        @Override
+        public boolean hasPos() {
+            return pos != null;
+        }
+
+        @Override
+        public BlockPointer getPos() {
+            if (pos == null) {
+                pos = new BlockPointer(alloc(getSize()));
+            }
+            return pos;
+        }
+
+        @Override
+        public void setPos(BlockPointer pos) {
+            assert this.pos == null && !pos.isNull();
+            this.pos = pos;
+        }
+
+        public int getSize() {
+            if (payloadSize < 0) {
+                payloadSize = getPayload().getSize();
+            }
+            return payloadSize + HEADER_SIZE + TAIL_SIZE;
+        }
+
+        @Override
+        public void setSize(int size) {
+            int newPayloadSize = size - HEADER_SIZE - TAIL_SIZE;
+            assert newPayloadSize >= payloadSize;
+            payloadSize = newPayloadSize;
+        }
+
+        public void write() throws Exception {
+            long pos = getPos().getPos();
+
+            ChannelOutputStream channelOutputStream = new ChannelOutputStream(pos);
+            FileBackedBlockStore.Crc32OutputStream checkSumOutputStream = new FileBackedBlockStore.Crc32OutputStream(
+                    new BufferedOutputStream(channelOutputStream));
+            DataOutputStream outputStream = new DataOutputStream(checkSumOutputStream);
+
+            BlockPayload payload = getPayload();
+
+            // Write header
+            outputStream.writeByte(BLOCK_MARKER);
+            outputStream.writeByte(payload.getType());
+            outputStream.writeInt(payloadSize);
+            long finalSize = pos + HEADER_SIZE + TAIL_SIZE + payloadSize;
+
+            // Write body
+            payload.write(outputStream);
+
+            // Write checksum
+            outputStream.writeLong(checkSumOutputStream.checksum.getValue());
+            outputStream.close();
+
+            // Pad
+            if (channelOutputStream.pos < finalSize && length < finalSize) {
+                channel.write(ByteBuffer.wrap(new byte[1]), finalSize - 1);
+            }
+            length = Math.max(length, Math.max(finalSize, channelOutputStream.pos));
+        }
+
+        public void read() throws Exception {
+            long pos = getPos().getPos();
+            assert pos >= 0;
+            if (pos + HEADER_SIZE >= length) {
+                throw blockCorruptedException();
+            }
+
+            // Copy the whole block out of the mapping, then decode it from the copy
+            byte[] header = new byte[HEADER_SIZE];
+            readFully(pos, header, 0, HEADER_SIZE);
+            BlockPayload payload = getPayload();
+            if (header[0] != (byte) BLOCK_MARKER) {
+                throw blockCorruptedException();
+            }
+            if (header[1] != (byte) payload.getType()) {
+                throw blockCorruptedException();
+            }
+            payloadSize = ByteBuffer.wrap(header, 2, INT_SIZE).getInt();
+            if (payloadSize < 0 || pos + HEADER_SIZE + TAIL_SIZE + payloadSize > length) {
+                throw blockCorruptedException();
+            }
+            byte[] block = new byte[HEADER_SIZE + payloadSize + TAIL_SIZE];
+            System.arraycopy(header, 0, block, 0, HEADER_SIZE);
+            readFully(pos + HEADER_SIZE, block, HEADER_SIZE, payloadSize + TAIL_SIZE);
+
+            FileBackedBlockStore.Crc32InputStream checkSumInputStream = new FileBackedBlockStore.Crc32InputStream(
+                    new ByteArrayInputStream(block));
+            DataInputStream inputStream = new DataInputStream(checkSumInputStream);
+
+            // Skip header
+            inputStream.readFully(header);
+
+            // Read body
+            payload.read(inputStream);
+
+            // Read and verify checksum
+            long actualChecksum = checkSumInputStream.checksum.getValue();
+            long checksum = inputStream.readLong();
+            if (actualChecksum != checksum) {
+                throw blockCorruptedException();
+            }
+            inputStream.close();
+        }
+
+        public RuntimeException blockCorruptedException() {
+            return new CorruptedCacheException(String.format("Corrupted %s found in %s.", this,
+                    MappedFileBlockStore.this));
+        }
+    }
+
+    /**
+     * Writes to the file channel, starting at a given position.
+     */
+    private class ChannelOutputStream extends OutputStream {
+        private long pos;
+
+        private ChannelOutputStream(long pos) {
+            this.pos = pos;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int count) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, count);
+            while (buffer.hasRemaining()) {
+                pos += channel.write(buffer, pos);
+            }
+        }
+    }
+}
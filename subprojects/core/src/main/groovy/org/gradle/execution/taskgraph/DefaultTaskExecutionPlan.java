@@ -17,7 +17,9 @@
 package org.gradle.execution.taskgraph;
 
 import org.gradle.api.CircularReferenceException;
+import org.gradle.api.Project;
 import org.gradle.api.Task;
+import org.gradle.api.Transformer;
 import org.gradle.api.internal.TaskInternal;
 import org.gradle.api.internal.tasks.CachingTaskDependencyResolveContext;
 import org.gradle.api.specs.Spec;
@@ -40,56 +42,95 @@ class DefaultTaskExecutionPlan implements TaskExecutionPlan {
     private final Condition condition = lock.newCondition();
     private final LinkedHashMap<Task, TaskInfo> executionPlan = new LinkedHashMap<Task, TaskInfo>();
     private final List<Throwable> failures = new ArrayList<Throwable>();
+    private final List<TaskInfo> planOrder = new ArrayList<TaskInfo>();
+    // The tasks whose dependencies have all completed successfully, and which have not been started, highest priority first
+    private final Queue<TaskInfo> readyQueue = new PriorityQueue<TaskInfo>(11, new TaskPriorityComparator());
+    // The tasks whose dependencies have completed, but which cannot start until the executing task of their project has completed
+    private final Map<Project, List<TaskInfo>> waitingForProject = new HashMap<Project, List<TaskInfo>>();
+    private final Set<Project> executingProjects = new HashSet<Project>();
+    // The position in the plan of the first task which may not have been started or skipped yet
+    private int firstPendingTask;
+    private int pendingTaskCount;
+    private int completedTaskCount;
     private Spec<? super Task> filter = Specs.satisfyAll();
 
     private TaskFailureHandler failureHandler = new RethrowingFailureHandler();
 
     public void addToTaskGraph(Collection<? extends Task> tasks) {
-        List<Task> queue = new ArrayList<Task>(tasks);
-        Collections.sort(queue);
+        List<Task> sortedTasks = new ArrayList<Task>(tasks);
+        Collections.sort(sortedTasks);
 
-        Set<Task> visiting = new HashSet<Task>();
+        // A depth-first traversal, using a stack whose top is the end of the list. Tasks are pushed in reverse order, so that they are visited in order
+        List<Task> stack = new ArrayList<Task>(sortedTasks.size());
+        for (int i = sortedTasks.size() - 1; i >= 0; i--) {
+            stack.add(sortedTasks.get(i));
+        }
+
+        // The tasks whose dependencies are being visited, along with their dependencies in order. Dependencies are resolved once per task
+        Map<Task, List<Task>> visiting = new HashMap<Task, List<Task>>();
         CachingTaskDependencyResolveContext context = new CachingTaskDependencyResolveContext();
 
-        while (!queue.isEmpty()) {
-            Task task = queue.get(0);
+        while (!stack.isEmpty()) {
+            Task task = stack.get(stack.size() - 1);
             if (!filter.isSatisfiedBy(task)) {
                 // Filtered - skip
-                queue.remove(0);
+                stack.remove(stack.size() - 1);
                 continue;
             }
             if (executionPlan.containsKey(task)) {
                 // Already in plan - skip
-                queue.remove(0);
+                stack.remove(stack.size() - 1);
                 continue;
             }
 
-            if (visiting.add(task)) {
-                // Have not seen this task before - add its dependencies to the head of the queue and leave this
-                // task in the queue
-                Set<Task> dependsOnTasks = new TreeSet<Task>(Collections.reverseOrder());
-                dependsOnTasks.addAll(context.getDependencies(task));
-                for (Task dependsOnTask : dependsOnTasks) {
-                    if (visiting.contains(dependsOnTask)) {
+            List<Task> dependsOnTasks = visiting.get(task);
+            if (dependsOnTasks == null) {
+                // Have not seen this task before - push its dependencies onto the stack and leave this task on the stack
+                dependsOnTasks = new ArrayList<Task>(context.getDependencies(task));
+                Collections.sort(dependsOnTasks);
+                visiting.put(task, dependsOnTasks);
+                for (int i = dependsOnTasks.size() - 1; i >= 0; i--) {
+                    Task dependsOnTask = dependsOnTasks.get(i);
+                    if (visiting.containsKey(dependsOnTask)) {
                         throw new CircularReferenceException(String.format(
                                 "Circular dependency between tasks. Cycle includes [%s, %s].", task, dependsOnTask));
                     }
-                    queue.add(0, dependsOnTask);
+                    stack.add(dependsOnTask);
                 }
             } else {
                 // Have visited this task's dependencies - add it to the end of the plan
-                queue.remove(0);
+                stack.remove(stack.size() - 1);
                 visiting.remove(task);
                 Set<TaskInfo> dependencies = new HashSet<TaskInfo>();
-                for (Task dependency : context.getDependencies(task)) {
+                for (Task dependency : dependsOnTasks) {
                     TaskInfo dependencyInfo = executionPlan.get(dependency);
                     if (dependencyInfo != null) {
                         dependencies.add(dependencyInfo);
                     }
                     // else - the dependency has been filtered, so ignore it
                 }
-                executionPlan.put(task, new TaskInfo((TaskInternal) task, dependencies));
+                TaskInfo taskInfo = new TaskInfo((TaskInternal) task, dependencies, planOrder.size());
+                executionPlan.put(task, taskInfo);
+                addToPlan(taskInfo);
+            }
+        }
+    }
+
+    private void addToPlan(TaskInfo taskInfo) {
+        lock.lock();
+        try {
+            planOrder.add(taskInfo);
+            pendingTaskCount++;
+            if (!taskInfo.allDependenciesComplete()) {
+                return;
+            }
+            if (taskInfo.allDependenciesSuccessful()) {
+                readyQueue.add(taskInfo);
+            } else {
+                skipExecution(taskInfo);
             }
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -97,7 +138,14 @@ class DefaultTaskExecutionPlan implements TaskExecutionPlan {
         lock.lock();
         try {
             executionPlan.clear();
+            planOrder.clear();
+            readyQueue.clear();
+            waitingForProject.clear();
+            executingProjects.clear();
             failures.clear();
+            firstPendingTask = 0;
+            pendingTaskCount = 0;
+            completedTaskCount = 0;
         } finally {
             lock.unlock();
         }
@@ -118,29 +166,21 @@ class DefaultTaskExecutionPlan implements TaskExecutionPlan {
     public TaskInfo getTaskToExecute(Spec<TaskInfo> criteria) {
         lock.lock();
         try {
-
             TaskInfo nextMatching;
             while ((nextMatching = getNextReadyAndMatching(criteria)) != null) {
-                while (!nextMatching.allDependenciesComplete()) {
+                if (!nextMatching.allDependenciesComplete()) {
                     try {
                         condition.await();
                     } catch (InterruptedException e) {
                         throw new RuntimeException(e);
                     }
-                }
-
-                // The task state could have been modified while we waited for dependency completion. Check that it is still 'ready'.
-                if (!nextMatching.isReady()) {
+                    // The task state could have been modified while we waited for dependency completion. Find the next matching task again.
                     continue;
                 }
 
-                if (nextMatching.allDependenciesSuccessful()) {
-                    nextMatching.startExecution();
-                    return nextMatching;
-                } else {
-                    nextMatching.skipExecution();
-                    condition.signalAll();
-                }
+                // Tasks whose dependencies did not complete successfully are skipped as soon as their dependencies complete
+                startExecution(nextMatching);
+                return nextMatching;
             }
 
             return null;
@@ -152,7 +192,12 @@ class DefaultTaskExecutionPlan implements TaskExecutionPlan {
     }
 
     private TaskInfo getNextReadyAndMatching(Spec<TaskInfo> criteria) {
-        for (TaskInfo taskInfo : executionPlan.values()) {
+        // Tasks are never returned to the ready state once started or skipped, so skip over these for future searches
+        while (firstPendingTask < planOrder.size() && !planOrder.get(firstPendingTask).isReady()) {
+            firstPendingTask++;
+        }
+        for (int i = firstPendingTask; i < planOrder.size(); i++) {
+            TaskInfo taskInfo = planOrder.get(i);
             if (taskInfo.isReady() && criteria.isSatisfiedBy(taskInfo)) {
                 return taskInfo;
             }
@@ -160,6 +205,66 @@ class DefaultTaskExecutionPlan implements TaskExecutionPlan {
         return null;
     }
 
+    public TaskInfo getReadyTaskToExecute() {
+        lock.lock();
+        try {
+            while (true) {
+                TaskInfo taskInfo;
+                while ((taskInfo = readyQueue.poll()) != null) {
+                    if (!taskInfo.isReady()) {
+                        // Already started by getTaskToExecute(), or skipped when execution was aborted
+                        continue;
+                    }
+                    Project project = taskInfo.getTask().getProject();
+                    if (executingProjects.contains(project)) {
+                        List<TaskInfo> waiting = waitingForProject.get(project);
+                        if (waiting == null) {
+                            waiting = new ArrayList<TaskInfo>();
+                            waitingForProject.put(project, waiting);
+                        }
+                        waiting.add(taskInfo);
+                        continue;
+                    }
+                    startExecution(taskInfo);
+                    return taskInfo;
+                }
+
+                if (pendingTaskCount == 0) {
+                    return null;
+                }
+                try {
+                    condition.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void prioritise(Transformer<Long, Task> estimatedDuration) {
+        lock.lock();
+        try {
+            // The plan is in dependency order, so visit the tasks in reverse order to visit each task after all the tasks which depend on it
+            for (int i = planOrder.size() - 1; i >= 0; i--) {
+                TaskInfo taskInfo = planOrder.get(i);
+                long longestDependentChain = 0;
+                for (TaskInfo dependent : taskInfo.getDependents()) {
+                    longestDependentChain = Math.max(longestDependentChain, dependent.getPriority());
+                }
+                taskInfo.setPriority(estimatedDuration.transform(taskInfo.getTask()) + longestDependentChain);
+            }
+
+            // Reorder the queue using the new priorities
+            List<TaskInfo> queued = new ArrayList<TaskInfo>(readyQueue);
+            readyQueue.clear();
+            readyQueue.addAll(queued);
+        } finally {
+            lock.unlock();
+        }
+    }
+
     public void taskComplete(TaskInfo taskInfo) {
         lock.lock();
         try {
@@ -168,12 +273,57 @@ class DefaultTaskExecutionPlan implements TaskExecutionPlan {
             }
 
             taskInfo.finishExecution();
+            Project project = taskInfo.getTask().getProject();
+            if (executingProjects.remove(project)) {
+                List<TaskInfo> waiting = waitingForProject.remove(project);
+                if (waiting != null) {
+                    readyQueue.addAll(waiting);
+                }
+            }
+            completed(taskInfo);
             condition.signalAll();
         } finally {
             lock.unlock();
         }
     }
 
+    private void startExecution(TaskInfo taskInfo) {
+        taskInfo.startExecution();
+        pendingTaskCount--;
+        executingProjects.add(taskInfo.getTask().getProject());
+    }
+
+    private void skipExecution(TaskInfo taskInfo) {
+        taskInfo.skipExecution();
+        pendingTaskCount--;
+        completed(taskInfo);
+    }
+
+    /**
+     * Updates the dependents of the given completed task. Dependents whose dependencies have all completed are queued, or skipped if one of their
+     * dependencies was not successful.
+     */
+    private void completed(TaskInfo taskInfo) {
+        List<TaskInfo> queue = new LinkedList<TaskInfo>();
+        queue.add(taskInfo);
+        while (!queue.isEmpty()) {
+            TaskInfo completed = queue.remove(0);
+            completedTaskCount++;
+            for (TaskInfo dependent : completed.getDependents()) {
+                if (!dependent.isReady() || !dependent.dependencyComplete(completed)) {
+                    continue;
+                }
+                if (dependent.allDependenciesSuccessful()) {
+                    readyQueue.add(dependent);
+                } else {
+                    dependent.skipExecution();
+                    pendingTaskCount--;
+                    queue.add(dependent);
+                }
+            }
+        }
+    }
+
     private void handleFailure(TaskInfo taskInfo) {
         Throwable executionFailure = taskInfo.getExecutionFailure();
         if (executionFailure != null) {
@@ -196,9 +346,9 @@ class DefaultTaskExecutionPlan implements TaskExecutionPlan {
 
     private void abortExecution() {
         // Allow currently executing tasks to complete, but skip everything else.
-        for (TaskInfo taskInfo : executionPlan.values()) {
+        for (TaskInfo taskInfo : planOrder) {
             if (taskInfo.isReady()) {
-                taskInfo.skipExecution();
+                skipExecution(taskInfo);
             }
         }
     }
@@ -232,12 +382,17 @@ class DefaultTaskExecutionPlan implements TaskExecutionPlan {
     }
 
     private boolean allTasksComplete() {
-        for (TaskInfo taskInfo : executionPlan.values()) {
-            if (!taskInfo.isComplete()) {
-                return false;
+        return completedTaskCount == planOrder.size();
+    }
+
+    private static class TaskPriorityComparator implements Comparator<TaskInfo> {
+        public int compare(TaskInfo taskInfo1, TaskInfo taskInfo2) {
+            // Higher priority first, then in plan order
+            if (taskInfo1.getPriority() != taskInfo2.getPriority()) {
+                return taskInfo1.getPriority() > taskInfo2.getPriority() ? -1 : 1;
             }
+            return taskInfo1.getOrdinal() - taskInfo2.getOrdinal();
         }
-        return true;
     }
 
     private static class RethrowingFailureHandler implements TaskFailureHandler {
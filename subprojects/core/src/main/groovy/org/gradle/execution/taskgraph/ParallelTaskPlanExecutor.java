@@ -20,23 +20,31 @@ import org.gradle.api.Project;
 import org.gradle.api.Task;
 import org.gradle.api.execution.TaskExecutionListener;
 import org.gradle.api.internal.changedetection.TaskArtifactStateCacheAccess;
-import org.gradle.api.specs.Spec;
+import org.gradle.api.tasks.TaskState;
+import org.gradle.internal.Factory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
-import java.util.LinkedHashSet;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+/**
+ * Executes the tasks of a plan using a pool of worker threads. Each worker takes whichever task is ready to execute next, preferring the tasks on the
+ * critical path of the plan, as estimated from how long each task took to execute in previous builds.
+ *
+ * <p>The workers use the task artifact cache concurrently, so that they can check whether their tasks are up-to-date at the same time. The task
+ * listeners are notified by one worker at a time.</p>
+ */
 class ParallelTaskPlanExecutor extends DefaultTaskPlanExecutor {
     private static final Logger LOGGER = LoggerFactory.getLogger(ParallelTaskPlanExecutor.class);
 
-    private final List<Thread> executorThreads = new ArrayList<Thread>();
     private final TaskArtifactStateCacheAccess stateCacheAccess;
+    private final TaskDurationHistory durationHistory;
     private final int executorCount;
 
-    public ParallelTaskPlanExecutor(TaskArtifactStateCacheAccess cacheAccess, int numberOfParallelExecutors) {
+    public ParallelTaskPlanExecutor(TaskArtifactStateCacheAccess cacheAccess, TaskDurationHistory durationHistory, int numberOfParallelExecutors) {
         if (numberOfParallelExecutors < 1) {
             throw new IllegalArgumentException("Not a valid number of parallel executors: " + numberOfParallelExecutors);
         }
@@ -44,13 +52,15 @@ class ParallelTaskPlanExecutor extends DefaultTaskPlanExecutor {
         LOGGER.info("Using {} parallel executor threads", numberOfParallelExecutors);
 
         this.stateCacheAccess = cacheAccess;
+        this.durationHistory = durationHistory;
         this.executorCount = numberOfParallelExecutors;
     }
 
     public void process(final TaskExecutionPlan taskExecutionPlan, final TaskExecutionListener taskListener) {
+        taskExecutionPlan.prioritise(durationHistory);
         stateCacheAccess.longRunningOperation("Executing all tasks", new Runnable() {
             public void run() {
-                doProcess(taskExecutionPlan, taskListener);
+                doProcess(taskExecutionPlan, new SerializedTaskExecutionListener(taskListener));
                 // TODO This needs to wait until all tasks have been executed, not just started....
                 taskExecutionPlan.awaitCompletion();
             }
@@ -58,17 +68,12 @@ class ParallelTaskPlanExecutor extends DefaultTaskPlanExecutor {
     }
 
     private void doProcess(TaskExecutionPlan taskExecutionPlan, TaskExecutionListener taskListener) {
-        List<Project> projects = getAllProjects(taskExecutionPlan);
-        int numExecutors = Math.min(executorCount, projects.size());
+        // Only one task of each project executes at a time, so there is no point using more executors than projects
+        int numExecutors = Math.min(executorCount, getProjectCount(taskExecutionPlan));
 
+        List<Thread> executorThreads = new ArrayList<Thread>();
         for (int i = 0; i < numExecutors; i++) {
-            TaskExecutorWorker worker = new TaskExecutorWorker(taskExecutionPlan, taskListener);
-
-            for (int j = i; j < projects.size(); j += numExecutors) {
-                worker.addProject(projects.get(j));
-            }
-
-            executorThreads.add(new Thread(worker));
+            executorThreads.add(new Thread(new TaskExecutorWorker(taskExecutionPlan, taskListener)));
         }
 
         for (Thread executorThread : executorThreads) {
@@ -77,20 +82,18 @@ class ParallelTaskPlanExecutor extends DefaultTaskPlanExecutor {
         }
     }
 
-    private List<Project> getAllProjects(TaskExecutionPlan taskExecutionPlan) {
-        final Set<Project> uniqueProjects = new LinkedHashSet<Project>();
+    private int getProjectCount(TaskExecutionPlan taskExecutionPlan) {
+        final Set<Project> uniqueProjects = new HashSet<Project>();
         for (Task task : taskExecutionPlan.getTasks()) {
             uniqueProjects.add(task.getProject());
         }
-        return new ArrayList<Project>(uniqueProjects);
+        return uniqueProjects.size();
     }
 
     private class TaskExecutorWorker implements Runnable {
         private final TaskExecutionPlan taskExecutionPlan;
         private final TaskExecutionListener taskListener;
 
-        private final List<Project> projects = new ArrayList<Project>();
-
         private TaskExecutorWorker(TaskExecutionPlan taskExecutionPlan, TaskExecutionListener taskListener) {
             this.taskExecutionPlan = taskExecutionPlan;
             this.taskListener = taskListener;
@@ -98,7 +101,7 @@ class ParallelTaskPlanExecutor extends DefaultTaskPlanExecutor {
 
         public void run() {
             TaskInfo taskInfo;
-            while ((taskInfo = taskExecutionPlan.getTaskToExecute(getTaskSpec())) != null) {
+            while ((taskInfo = taskExecutionPlan.getReadyTaskToExecute()) != null) {
                 executeTaskWithCacheLock(taskInfo);
             }
 
@@ -108,24 +111,37 @@ class ParallelTaskPlanExecutor extends DefaultTaskPlanExecutor {
         private void executeTaskWithCacheLock(final TaskInfo taskInfo) {
             final String taskPath = taskInfo.getTask().getPath();
             LOGGER.info(taskPath + " (" + Thread.currentThread() + " - start");
-            stateCacheAccess.useCache("Executing " + taskPath, new Runnable() {
-                public void run() {
+            stateCacheAccess.useCacheConcurrently("Executing " + taskPath, new Factory<Object>() {
+                public Object create() {
+                    long start = System.currentTimeMillis();
                     processTask(taskInfo, taskExecutionPlan, taskListener);
+                    TaskState state = taskInfo.getTask().getState();
+                    if (!state.getSkipped() && state.getFailure() == null) {
+                        durationHistory.recordDuration(taskInfo.getTask(), System.currentTimeMillis() - start);
+                    }
+                    return null;
                 }
             });
             LOGGER.info(taskPath + " (" + Thread.currentThread() + ") - complete");
         }
+    }
+
+    /**
+     * Notifies the given listener from one thread at a time. The listeners were written for tasks executing one at a time.
+     */
+    private static class SerializedTaskExecutionListener implements TaskExecutionListener {
+        private final TaskExecutionListener listener;
 
-        public void addProject(Project project) {
-            projects.add(project);
+        private SerializedTaskExecutionListener(TaskExecutionListener listener) {
+            this.listener = listener;
         }
 
-        private Spec<TaskInfo> getTaskSpec() {
-            return new Spec<TaskInfo>() {
-                public boolean isSatisfiedBy(TaskInfo element) {
-                    return projects.contains(element.getTask().getProject());
-                }
-            };
+        public synchronized void beforeExecute(Task task) {
+            listener.beforeExecute(task);
+        }
+
+        public synchronized void afterExecute(Task task, TaskState state) {
+            listener.afterExecute(task, state);
         }
     }
 }
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.execution.taskgraph;
+
+import org.gradle.api.Task;
+import org.gradle.api.Transformer;
+import org.gradle.api.internal.changedetection.TaskArtifactStateCacheAccess;
+import org.gradle.cache.PersistentIndexedCache;
+
+/**
+ * Records how long each task took the last time it executed, and uses this to estimate how long the task will take to execute.
+ * Must be used with the task artifact cache locked.
+ */
+class TaskDurationHistory implements Transformer<Long, Task> {
+    // The estimate used for a task which has not executed before
+    static final long UNKNOWN_DURATION = 1;
+    private final PersistentIndexedCache<String, Long> durations;
+
+    public TaskDurationHistory(TaskArtifactStateCacheAccess cacheAccess) {
+        durations = cacheAccess.createCache("taskDurations", String.class, Long.class);
+    }
+
+    /**
+     * Returns the estimated duration of the given task, in milliseconds.
+     */
+    public Long transform(Task task) {
+        Long duration = durations.get(task.getPath());
+        return duration != null ? duration : UNKNOWN_DURATION;
+    }
+
+    public void recordDuration(Task task, long duration) {
+        durations.put(task.getPath(), duration);
+    }
+}
@@ -17,6 +17,7 @@
 package org.gradle.execution.taskgraph;
 
 import org.gradle.api.Task;
+import org.gradle.api.Transformer;
 import org.gradle.api.specs.Spec;
 
 import java.util.List;
@@ -34,6 +35,22 @@ public interface TaskExecutionPlan {
      */
     TaskInfo getTaskToExecute(Spec<TaskInfo> criteria);
 
+    /**
+     * Provides any ready-to-execute task, regardless of its position in the plan. Of the tasks whose dependencies have completed, the task with the
+     * highest priority is returned. A task is not returned while another task of the same project is executing.
+     * If no task is ready-to-execute, this method will block until one is.
+     * If no tasks remain, null will be returned.
+     * @return The next task to execute, or null if no tasks remain.
+     */
+    TaskInfo getReadyTaskToExecute();
+
+    /**
+     * Prioritises the tasks of the plan so that those on the critical path are executed first. The priority of a task is the estimated duration of the
+     * longest chain of tasks that starts with the task.
+     * @param estimatedDuration Provides the estimated duration of a task.
+     */
+    void prioritise(Transformer<Long, Task> estimatedDuration);
+
     /**
      * Signals to the plan that execution of this task has completed. Execution is complete if the task succeeds, fails, or an exception is thrown during execution.
      * @param task the completed task.
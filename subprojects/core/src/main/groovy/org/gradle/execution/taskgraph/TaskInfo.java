@@ -18,6 +18,8 @@ package org.gradle.execution.taskgraph;
 
 import org.gradle.api.internal.TaskInternal;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 
 class TaskInfo {
@@ -28,13 +30,27 @@ class TaskInfo {
 
     private final TaskInternal task;
     private final Set<TaskInfo> dependencies;
+    private final List<TaskInfo> dependents = new ArrayList<TaskInfo>();
+    private final int ordinal;
     private TaskExecutionState state;
     private Throwable executionFailure;
+    private long priority;
+    private int incompleteDependencies;
+    private boolean dependencyUnsuccessful;
 
-    public TaskInfo(TaskInternal task, Set<TaskInfo> dependencies) {
+    public TaskInfo(TaskInternal task, Set<TaskInfo> dependencies, int ordinal) {
         this.task = task;
         this.dependencies = dependencies;
+        this.ordinal = ordinal;
         this.state = TaskExecutionState.READY;
+        for (TaskInfo dependency : dependencies) {
+            dependency.dependents.add(this);
+            if (!dependency.isComplete()) {
+                incompleteDependencies++;
+            } else if (!dependency.isSuccessful()) {
+                dependencyUnsuccessful = true;
+            }
+        }
     }
 
     public TaskInternal getTask() {
@@ -45,6 +61,31 @@ class TaskInfo {
         return dependencies;
     }
 
+    /**
+     * Returns the tasks in the plan which depend on this task.
+     */
+    public List<TaskInfo> getDependents() {
+        return dependents;
+    }
+
+    /**
+     * Returns the position of this task in the plan.
+     */
+    public int getOrdinal() {
+        return ordinal;
+    }
+
+    /**
+     * Returns the priority of this task. Tasks with a higher priority are executed first when more than one task is ready to execute.
+     */
+    public long getPriority() {
+        return priority;
+    }
+
+    public void setPriority(long priority) {
+        this.priority = priority;
+    }
+
     public boolean isReady() {
         return state == TaskExecutionState.READY;
     }
@@ -89,21 +130,25 @@ class TaskInfo {
         return this.getTask().getState().getFailure();
     }
 
-    public boolean allDependenciesComplete() {
-        for (TaskInfo dependency : getDependencies()) {
-            if (!dependency.isComplete()) {
-                return false;
-            }
+    /**
+     * Notifies this task that one of its dependencies has completed.
+     *
+     * @return true if all the dependencies of this task are now complete.
+     */
+    public boolean dependencyComplete(TaskInfo dependency) {
+        assert incompleteDependencies > 0;
+        if (!dependency.isSuccessful()) {
+            dependencyUnsuccessful = true;
         }
-        return true;
+        incompleteDependencies--;
+        return incompleteDependencies == 0;
+    }
+
+    public boolean allDependenciesComplete() {
+        return incompleteDependencies == 0;
     }
 
     public boolean allDependenciesSuccessful() {
-        for (TaskInfo dependency : getDependencies()) {
-            if (!dependency.isSuccessful()) {
-                return false;
-            }
-        }
-        return true;
+        return !dependencyUnsuccessful;
     }
 }
@@ -44,7 +44,7 @@ public class TaskPlanExecutorFactory implements Factory<TaskPlanExecutor> {
                     documentationRegistry.getFeatureLifecycle()
             );
             LOGGER.warn(parallelWarningMessage);
-            return new ParallelTaskPlanExecutor(taskArtifactStateCacheAccess, options.numberOfParallelThreads());
+            return new ParallelTaskPlanExecutor(taskArtifactStateCacheAccess, new TaskDurationHistory(taskArtifactStateCacheAccess), options.numberOfParallelThreads());
         }
         return new DefaultTaskPlanExecutor();
 
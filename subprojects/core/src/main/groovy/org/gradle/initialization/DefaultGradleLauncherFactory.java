@@ -19,6 +19,7 @@ package org.gradle.initialization;
 import org.gradle.*;
 import org.gradle.api.internal.ExceptionAnalyser;
 import org.gradle.api.internal.GradleInternal;
+import org.gradle.internal.Stoppable;
 import org.gradle.internal.reflect.Instantiator;
 import org.gradle.api.internal.project.GlobalServicesRegistry;
 import org.gradle.internal.service.ServiceRegistry;
@@ -43,8 +44,8 @@ import java.util.Arrays;
 /**
  * @author Hans Dockter
  */
-public class DefaultGradleLauncherFactory implements GradleLauncherFactory {
-    private final ServiceRegistry sharedServices;
+public class DefaultGradleLauncherFactory implements GradleLauncherFactory, Stoppable {
+    private final GlobalServicesRegistry sharedServices;
     private final NestedBuildTracker tracker;
     private CommandLineConverter<StartParameter> commandLineConverter;
 
@@ -76,6 +77,13 @@ public class DefaultGradleLauncherFactory implements GradleLauncherFactory {
         sharedServices.get(ListenerManager.class).removeListener(listener);
     }
 
+    /**
+     * Stops the services shared by the builds of this factory.
+     */
+    public void stop() {
+        sharedServices.close();
+    }
+
     public StartParameter createStartParameter(String... commandLineArgs) {
         if (commandLineConverter == null) {
             commandLineConverter = sharedServices.get(CommandLineConverter.class);
@@ -34,7 +34,7 @@ public class LazyCreationProxy<T> {
     }
 
     private static class LazyInvocationHandler implements InvocationHandler {
-        private Object target;
+        private volatile Object target;
         private final Factory<?> factory;
 
         public LazyInvocationHandler(Factory<?> factory) {
@@ -42,14 +42,26 @@ public class LazyCreationProxy<T> {
         }
 
         public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-            if (target == null) {
-                target = factory.create();
-            }
             try {
-                return method.invoke(target, args);
+                return method.invoke(getTarget(), args);
             } catch (InvocationTargetException e) {
                 throw e.getCause();
             }
         }
+
+        // The proxy may be used from several threads, so make sure only one target is created
+        private Object getTarget() {
+            Object target = this.target;
+            if (target == null) {
+                synchronized (this) {
+                    target = this.target;
+                    if (target == null) {
+                        target = factory.create();
+                        this.target = target;
+                    }
+                }
+            }
+            return target;
+        }
     }
 }
@@ -22,7 +22,9 @@ import org.gradle.messaging.remote.ConnectEvent;
 import org.gradle.messaging.remote.ObjectConnection;
 import org.gradle.process.ExecResult;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
@@ -35,6 +37,8 @@ public class DefaultWorkerProcess implements WorkerProcess {
     private ExecHandle execHandle;
     private boolean running;
     private Throwable processFailure;
+    private boolean stopped;
+    private final List<Runnable> stopActions = new ArrayList<Runnable>();
     private final long connectTimeout;
 
     public DefaultWorkerProcess(int connectTimeoutValue, TimeUnit connectTimeoutUnits) {
@@ -72,6 +76,7 @@ public class DefaultWorkerProcess implements WorkerProcess {
     }
 
     private void onProcessStop(ExecResult execResult) {
+        List<Runnable> actions;
         lock.lock();
         try {
             try {
@@ -80,10 +85,29 @@ public class DefaultWorkerProcess implements WorkerProcess {
                 processFailure = e;
             }
             running = false;
+            stopped = true;
+            actions = new ArrayList<Runnable>(stopActions);
+            stopActions.clear();
             condition.signalAll();
         } finally {
             lock.unlock();
         }
+        for (Runnable action : actions) {
+            action.run();
+        }
+    }
+
+    public void whenStopped(Runnable action) {
+        lock.lock();
+        try {
+            if (!stopped) {
+                stopActions.add(action);
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        action.run();
     }
 
     @Override
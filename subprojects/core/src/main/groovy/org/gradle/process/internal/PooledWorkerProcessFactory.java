@@ -0,0 +1,57 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.process.internal;
+
+import org.gradle.api.internal.file.IdentityFileResolver;
+import org.gradle.internal.Factory;
+
+/**
+ * A factory for worker processes which run as sessions in the long-lived processes of a {@link WorkerProcessPool}. New
+ * pooled processes are started using builders from the given process factory.
+ *
+ * <p>The application classes of a session are always loaded in an isolated ClassLoader, regardless of {@link
+ * WorkerProcessBuilder#isLoadApplicationInSystemClassLoader()}, as the system ClassLoader of a pooled process is shared by
+ * all of its sessions.</p>
+ */
+public class PooledWorkerProcessFactory implements Factory<WorkerProcessBuilder> {
+    private final Factory<WorkerProcessBuilder> processFactory;
+    private final WorkerProcessPool pool;
+
+    public PooledWorkerProcessFactory(Factory<WorkerProcessBuilder> processFactory, WorkerProcessPool pool) {
+        this.processFactory = processFactory;
+        this.pool = pool;
+    }
+
+    public WorkerProcessBuilder create() {
+        return new PooledWorkerProcessBuilder(processFactory.create());
+    }
+
+    private class PooledWorkerProcessBuilder extends WorkerProcessBuilder {
+        private final WorkerProcessBuilder processBuilder;
+
+        public PooledWorkerProcessBuilder(WorkerProcessBuilder processBuilder) {
+            super(new IdentityFileResolver());
+            this.processBuilder = processBuilder;
+            setLogLevel(processBuilder.getLogLevel());
+        }
+
+        @Override
+        public WorkerProcess build() {
+            return pool.newSession(this, processBuilder);
+        }
+    }
+}
@@ -29,4 +29,10 @@ public interface WorkerProcess {
     void start();
 
     ExecResult waitForStop();
+
+    /**
+     * Registers an action to run when this worker process stops, whether or not it was asked to stop. The action is run
+     * straight away when the process has already stopped.
+     */
+    void whenStopped(Runnable action);
 }
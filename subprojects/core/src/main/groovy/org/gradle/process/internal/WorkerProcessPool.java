@@ -0,0 +1,462 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.process.internal;
+
+import org.gradle.api.Action;
+import org.gradle.internal.Stoppable;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.classpath.DefaultClassPath;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.StoppableExecutor;
+import org.gradle.internal.id.IdGenerator;
+import org.gradle.internal.id.LongIdGenerator;
+import org.gradle.messaging.remote.Address;
+import org.gradle.messaging.remote.ConnectEvent;
+import org.gradle.messaging.remote.MessagingServer;
+import org.gradle.messaging.remote.ObjectConnection;
+import org.gradle.process.ExecResult;
+import org.gradle.process.internal.child.ActionExecutionWorker;
+import org.gradle.process.internal.child.PooledWorkerControl;
+import org.gradle.process.internal.child.PooledWorkerListener;
+import org.gradle.process.internal.child.PooledWorkerServer;
+import org.gradle.process.internal.child.PooledWorkerSession;
+import org.gradle.util.ClasspathUtil;
+import org.gradle.util.GUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.net.URL;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>A pool of worker processes which are kept alive after use, and shared by all builds run by this process. This
+ * saves the start-up and warm-up cost of a new JVM for each worker, which adds up when a build runs many short lived
+ * workers, such as those of small test tasks.</p>
+ *
+ * <p>Each {@link WorkerProcess} handed out by the pool is a session in one of the pooled processes. A pooled process
+ * runs one session at a time, and a session is only given to a pooled process which was started with the same java
+ * executable, JVM arguments, environment, working directory, log level and implementation classpath. Each session
+ * loads its application and implementation classes in new ClassLoaders, and the system properties and standard
+ * streams of the process are reset when a session completes. Other static state, such as threads started by a
+ * session, is not cleaned up, so a pooled process is stopped after {@link #MAX_SESSIONS_PER_PROCESS} sessions.</p>
+ *
+ * <p>A pooled process stops itself after being idle for {@link PooledWorkerServer#MAX_IDLE_TIME}. To avoid handing out
+ * a process which is about to do so, idle processes are not reused once they get close to that limit.</p>
+ */
+public class WorkerProcessPool implements Stoppable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(WorkerProcessPool.class);
+    static final int MAX_SESSIONS_PER_PROCESS = 50;
+    private static final long CONNECT_TIMEOUT = TimeUnit.SECONDS.toMillis(120);
+    private static final long MAX_REUSE_IDLE_TIME = PooledWorkerServer.MAX_IDLE_TIME - TimeUnit.MINUTES.toMillis(1);
+    private final MessagingServer server;
+    private final StoppableExecutor executor;
+    private final IdGenerator<?> idGenerator = new LongIdGenerator();
+    private final Lock lock = new ReentrantLock();
+    private final Map<Object, LinkedList<PooledProcess>> idleProcesses = new HashMap<Object, LinkedList<PooledProcess>>();
+    private final Set<PooledProcess> processes = new HashSet<PooledProcess>();
+    private boolean stopped;
+
+    public WorkerProcessPool(MessagingServer server, ExecutorFactory executorFactory) {
+        this.server = server;
+        this.executor = executorFactory.create("Worker process pool");
+    }
+
+    /**
+     * Creates a session for the given worker, which will run in a pooled process. When a new process is required, it is
+     * started using the given process builder.
+     */
+    public WorkerProcess newSession(WorkerProcessBuilder sessionBuilder, WorkerProcessBuilder processBuilder) {
+        if (sessionBuilder.getWorker() == null) {
+            throw new IllegalStateException("No worker action specified for this worker process.");
+        }
+        return new Session(sessionBuilder, processBuilder);
+    }
+
+    /**
+     * Stops all pooled processes, waiting for any running sessions to complete.
+     */
+    public void stop() {
+        List<PooledProcess> toStop;
+        lock.lock();
+        try {
+            stopped = true;
+            idleProcesses.clear();
+            toStop = new ArrayList<PooledProcess>(processes);
+        } finally {
+            lock.unlock();
+        }
+        for (PooledProcess process : toStop) {
+            process.stop();
+        }
+        executor.stop();
+    }
+
+    private PooledProcess acquire(Object key, WorkerProcessBuilder sessionBuilder, WorkerProcessBuilder processBuilder) {
+        PooledProcess process = null;
+        boolean reused = false;
+        List<PooledProcess> expired = new ArrayList<PooledProcess>();
+        lock.lock();
+        try {
+            if (stopped) {
+                throw new IllegalStateException("Cannot use worker process pool, as it has been stopped.");
+            }
+            LinkedList<PooledProcess> idle = idleProcesses.get(key);
+            long now = System.currentTimeMillis();
+            while (process == null && idle != null && !idle.isEmpty()) {
+                // Prefer the most recently used process, as it is likely to be the warmest
+                PooledProcess candidate = idle.removeLast();
+                if (now - candidate.idleSince < MAX_REUSE_IDLE_TIME) {
+                    process = candidate;
+                    reused = true;
+                } else {
+                    expired.add(candidate);
+                }
+            }
+            if (process == null) {
+                process = new PooledProcess(key, configure(processBuilder, sessionBuilder).build());
+                processes.add(process);
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        for (PooledProcess expiredProcess : expired) {
+            LOGGER.debug("Stopping pooled {}, as it has been idle for too long.", expiredProcess);
+            expiredProcess.stop();
+        }
+        if (reused) {
+            LOGGER.debug("Reusing pooled {}.", process);
+            return process;
+        }
+
+        LOGGER.debug("Starting pooled {}.", process);
+        try {
+            process.start();
+        } catch (RuntimeException e) {
+            lock.lock();
+            try {
+                processes.remove(process);
+            } finally {
+                lock.unlock();
+            }
+            throw e;
+        }
+        return process;
+    }
+
+    private void release(PooledProcess process, boolean reusable) {
+        lock.lock();
+        try {
+            process.session = null;
+            if (!process.running) {
+                return;
+            }
+            if (reusable && !stopped && process.sessions < MAX_SESSIONS_PER_PROCESS) {
+                LinkedList<PooledProcess> idle = idleProcesses.get(process.key);
+                if (idle == null) {
+                    idle = new LinkedList<PooledProcess>();
+                    idleProcesses.put(process.key, idle);
+                }
+                process.idleSince = System.currentTimeMillis();
+                idle.add(process);
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        LOGGER.debug("Stopping pooled {}.", process);
+        process.stop();
+    }
+
+    private void onProcessStop(PooledProcess process, Throwable failure) {
+        Session session;
+        lock.lock();
+        try {
+            process.running = false;
+            processes.remove(process);
+            LinkedList<PooledProcess> idle = idleProcesses.get(process.key);
+            if (idle != null) {
+                idle.remove(process);
+            }
+            session = process.session;
+        } finally {
+            lock.unlock();
+        }
+        if (session != null) {
+            session.onComplete(failure);
+        }
+    }
+
+    private Session getSession(PooledProcess process) {
+        lock.lock();
+        try {
+            return process.session;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static Object keyFor(WorkerProcessBuilder sessionBuilder, List<URL> implementationClassPath) {
+        JavaExecHandleBuilder javaCommand = sessionBuilder.getJavaCommand();
+        return Arrays.asList(javaCommand.getExecutable(), javaCommand.getAllJvmArgs(), javaCommand.getEnvironment(),
+                javaCommand.getWorkingDir(), sessionBuilder.getLogLevel(), implementationClassPath.toString());
+    }
+
+    private static WorkerProcessBuilder configure(WorkerProcessBuilder processBuilder, WorkerProcessBuilder sessionBuilder) {
+        JavaExecHandleBuilder sessionCommand = sessionBuilder.getJavaCommand();
+        JavaExecHandleBuilder processCommand = processBuilder.getJavaCommand();
+        processCommand.setExecutable(sessionCommand.getExecutable());
+        processCommand.setJvmArgs(sessionCommand.getAllJvmArgs());
+        processCommand.setEnvironment(sessionCommand.getEnvironment());
+        processCommand.setWorkingDir(sessionCommand.getWorkingDir());
+        processBuilder.setLogLevel(sessionBuilder.getLogLevel());
+        processBuilder.worker(new PooledWorkerServer());
+        return processBuilder;
+    }
+
+    private class PooledProcess implements PooledWorkerListener {
+        private final Object key;
+        private final WorkerProcess workerProcess;
+        private PooledWorkerControl control;
+        // The following are guarded by the pool lock
+        private boolean running;
+        private int sessions;
+        private long idleSince;
+        private Session session;
+
+        private PooledProcess(Object key, WorkerProcess workerProcess) {
+            this.key = key;
+            this.workerProcess = workerProcess;
+        }
+
+        @Override
+        public String toString() {
+            return workerProcess.toString();
+        }
+
+        void start() {
+            workerProcess.start();
+            ObjectConnection connection = workerProcess.getConnection();
+            connection.addIncoming(PooledWorkerListener.class, this);
+            control = connection.addOutgoing(PooledWorkerControl.class);
+            lock.lock();
+            try {
+                running = true;
+            } finally {
+                lock.unlock();
+            }
+            executor.execute(new Runnable() {
+                public void run() {
+                    Throwable failure = null;
+                    try {
+                        workerProcess.waitForStop();
+                    } catch (Throwable t) {
+                        failure = t;
+                    }
+                    LOGGER.debug("Pooled {} has stopped.", PooledProcess.this);
+                    onProcessStop(PooledProcess.this, failure);
+                }
+            });
+        }
+
+        void runSession(Session session, Object sessionId, byte[] serializedSession) {
+            lock.lock();
+            try {
+                if (!running) {
+                    session.onComplete(new ExecException(String.format("Pooled %s has stopped.", this)));
+                    return;
+                }
+                this.session = session;
+                sessions++;
+            } finally {
+                lock.unlock();
+            }
+            control.runSession(sessionId, serializedSession);
+        }
+
+        void stop() {
+            control.stop();
+        }
+
+        public void sessionCompleted(Object sessionId, Throwable failure) {
+            Session session = getSession(this);
+            if (session != null) {
+                session.onComplete(failure);
+            }
+        }
+    }
+
+    private class Session implements WorkerProcess {
+        private final Lock lock = new ReentrantLock();
+        private final Condition condition = lock.newCondition();
+        private final WorkerProcessBuilder sessionBuilder;
+        private final WorkerProcessBuilder processBuilder;
+        private PooledProcess process;
+        private String displayName = "pooled worker process session";
+        private ObjectConnection connection;
+        private boolean completed;
+        private Throwable failure;
+        private final List<Runnable> stopActions = new ArrayList<Runnable>();
+
+        private Session(WorkerProcessBuilder sessionBuilder, WorkerProcessBuilder processBuilder) {
+            this.sessionBuilder = sessionBuilder;
+            this.processBuilder = processBuilder;
+        }
+
+        @Override
+        public String toString() {
+            return displayName;
+        }
+
+        public ObjectConnection getConnection() {
+            return connection;
+        }
+
+        public void start() {
+            List<URL> implementationClassPath = ClasspathUtil.getClasspath(sessionBuilder.getWorker().getClass().getClassLoader());
+            process = acquire(keyFor(sessionBuilder, implementationClassPath), sessionBuilder, processBuilder);
+            try {
+                Object id = idGenerator.generateId();
+                displayName = String.format("Gradle Worker %s (pooled in %s)", id, process);
+                Address localAddress = server.accept(new Action<ConnectEvent<ObjectConnection>>() {
+                    public void execute(ConnectEvent<ObjectConnection> event) {
+                        onConnect(event.getConnection());
+                    }
+                });
+                Collection<URI> applicationClassPath = new DefaultClassPath(sessionBuilder.getApplicationClasspath()).getAsURIs();
+                ActionExecutionWorker worker = new ActionExecutionWorker(sessionBuilder.getWorker(), id, displayName, localAddress);
+                byte[] serializedSession = GUtil.serialize(new PooledWorkerSession(applicationClassPath, sessionBuilder.getLogLevel(),
+                        sessionBuilder.getSharedPackages(), implementationClassPath, worker));
+
+                LOGGER.debug("Starting {}.", displayName);
+                process.runSession(this, id, serializedSession);
+
+                Date connectExpiry = new Date(System.currentTimeMillis() + CONNECT_TIMEOUT);
+                lock.lock();
+                try {
+                    while (connection == null && !completed) {
+                        try {
+                            if (!condition.awaitUntil(connectExpiry)) {
+                                throw new ExecException(String.format("Timeout after waiting %.1f seconds for %s to connect.", ((double) CONNECT_TIMEOUT) / 1000, displayName));
+                            }
+                        } catch (InterruptedException e) {
+                            throw UncheckedException.throwAsUncheckedException(e);
+                        }
+                    }
+                    if (connection == null) {
+                        throw new ExecException(String.format("Never received a connection from %s.", displayName), failure);
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            } catch (RuntimeException e) {
+                // The process may still be running the session, so do not reuse it
+                release(process, false);
+                throw e;
+            }
+        }
+
+        public ExecResult waitForStop() {
+            ObjectConnection connection;
+            Throwable failure;
+            lock.lock();
+            try {
+                while (!completed) {
+                    try {
+                        condition.await();
+                    } catch (InterruptedException e) {
+                        throw UncheckedException.throwAsUncheckedException(e);
+                    }
+                }
+                connection = this.connection;
+                failure = this.failure;
+                this.connection = null;
+            } finally {
+                lock.unlock();
+            }
+            if (connection != null) {
+                connection.stop();
+            }
+            release(process, failure == null);
+            if (failure != null) {
+                throw new ExecException(String.format("%s failed.", displayName), failure);
+            }
+            return new SessionResult();
+        }
+
+        public void whenStopped(Runnable action) {
+            lock.lock();
+            try {
+                if (!completed) {
+                    stopActions.add(action);
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+            action.run();
+        }
+
+        private void onConnect(ObjectConnection connection) {
+            lock.lock();
+            try {
+                this.connection = connection;
+                condition.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void onComplete(Throwable failure) {
+            List<Runnable> actions = Collections.emptyList();
+            lock.lock();
+            try {
+                if (!completed) {
+                    completed = true;
+                    this.failure = failure;
+                    actions = new ArrayList<Runnable>(stopActions);
+                    stopActions.clear();
+                    condition.signalAll();
+                }
+            } finally {
+                lock.unlock();
+            }
+            for (Runnable action : actions) {
+                action.run();
+            }
+        }
+    }
+
+    private static class SessionResult implements ExecResult {
+        public int getExitValue() {
+            return 0;
+        }
+
+        public ExecResult assertNormalExitValue() throws ExecException {
+            return this;
+        }
+
+        public ExecResult rethrowFailure() throws ExecException {
+            return this;
+        }
+    }
+}
@@ -53,6 +53,14 @@ public class ImplementationClassLoaderWorker implements Action<WorkerContext>, S
         LoggingManagerInternal loggingManager = createLoggingManager();
         loggingManager.setLevel(logLevel).start();
 
+        executeInImplementationClassLoader(workerContext);
+    }
+
+    /**
+     * Creates the implementation ClassLoader and executes the worker action in it, without touching the process-wide
+     * logging configuration. Used directly by {@link PooledWorkerSession}, whose process already has logging configured.
+     */
+    void executeInImplementationClassLoader(WorkerContext workerContext) {
         FilteringClassLoader filteredWorkerClassLoader = new FilteringClassLoader(getClass().getClassLoader());
         filteredWorkerClassLoader.allowPackage("org.slf4j");
         filteredWorkerClassLoader.allowClass(Action.class);
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.process.internal.child;
+
+/**
+ * Sent to a pooled worker process to run sessions in it.
+ */
+public interface PooledWorkerControl {
+    /**
+     * Runs the given session once the current session, if any, has completed.
+     *
+     * @param sessionId The id to report back to {@link PooledWorkerListener#sessionCompleted}.
+     * @param serializedSession The serialized {@link java.util.concurrent.Callable} to run.
+     */
+    void runSession(Object sessionId, byte[] serializedSession);
+
+    /**
+     * Stops the pooled worker process once the current session, if any, has completed.
+     */
+    void stop();
+}
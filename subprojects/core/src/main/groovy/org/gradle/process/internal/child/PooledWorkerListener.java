@@ -0,0 +1,29 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.process.internal.child;
+
+/**
+ * Receives notifications from a pooled worker process.
+ */
+public interface PooledWorkerListener {
+    /**
+     * Called when a session has completed, successfully or not.
+     *
+     * @param failure The failure of the session, or null when it completed successfully.
+     */
+    void sessionCompleted(Object sessionId, Throwable failure);
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.process.internal.child;
+
+import org.gradle.api.Action;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.io.ClassLoaderObjectInputStream;
+import org.gradle.process.internal.WorkerProcessContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.PrintStream;
+import java.io.Serializable;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>The worker action of a pooled worker process. Runs the sessions it is sent one at a time, on the main thread of
+ * the process, until it is stopped.</p>
+ *
+ * <p>Each session is deserialized in the system ClassLoader, the same way {@code GradleWorkerMain} reads the action
+ * of a new worker process, so that it gets a fresh application and implementation ClassLoader. The system properties
+ * and standard streams are reset after each session.</p>
+ *
+ * <p>The process stops when it has been idle for {@link #MAX_IDLE_TIME}, so that it does not outlive the process which
+ * started it by long when that process goes away without stopping it.</p>
+ */
+public class PooledWorkerServer implements Action<WorkerProcessContext>, PooledWorkerControl, Serializable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PooledWorkerServer.class);
+    public static final long MAX_IDLE_TIME = TimeUnit.MINUTES.toMillis(10);
+    private static final SessionRequest STOP = new SessionRequest(null, null);
+    private transient BlockingQueue<SessionRequest> requests;
+
+    public void execute(WorkerProcessContext context) {
+        requests = new LinkedBlockingQueue<SessionRequest>();
+        PooledWorkerListener listener = context.getServerConnection().addOutgoing(PooledWorkerListener.class);
+        context.getServerConnection().addIncoming(PooledWorkerControl.class, this);
+
+        Properties systemProperties = (Properties) System.getProperties().clone();
+        PrintStream out = System.out;
+        PrintStream err = System.err;
+        InputStream in = System.in;
+
+        while (true) {
+            SessionRequest request;
+            try {
+                request = requests.poll(MAX_IDLE_TIME, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                throw UncheckedException.throwAsUncheckedException(e);
+            }
+            if (request == null) {
+                LOGGER.debug("Stopping {}, as it has been idle for too long.", context.getDisplayName());
+                break;
+            }
+            if (request == STOP) {
+                break;
+            }
+
+            LOGGER.debug("Starting session {} of {}.", request.sessionId, context.getDisplayName());
+            Throwable failure = null;
+            try {
+                runSession(request.serializedSession);
+            } catch (Throwable t) {
+                failure = t;
+            } finally {
+                System.setProperties((Properties) systemProperties.clone());
+                System.setOut(out);
+                System.setErr(err);
+                System.setIn(in);
+                Thread.interrupted();
+            }
+            LOGGER.debug("Completed session {} of {}.", request.sessionId, context.getDisplayName());
+            listener.sessionCompleted(request.sessionId, failure);
+        }
+    }
+
+    private void runSession(byte[] serializedSession) throws Exception {
+        ObjectInputStream instr = new ClassLoaderObjectInputStream(new ByteArrayInputStream(serializedSession),
+                ClassLoader.getSystemClassLoader());
+        Callable<?> session = (Callable<?>) instr.readObject();
+        session.call();
+    }
+
+    public void runSession(Object sessionId, byte[] serializedSession) {
+        requests.add(new SessionRequest(sessionId, serializedSession));
+    }
+
+    public void stop() {
+        requests.add(STOP);
+    }
+
+    private static class SessionRequest {
+        private final Object sessionId;
+        private final byte[] serializedSession;
+
+        private SessionRequest(Object sessionId, byte[] serializedSession) {
+            this.sessionId = sessionId;
+            this.serializedSession = serializedSession;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.process.internal.child;
+
+import org.gradle.api.logging.LogLevel;
+import org.gradle.util.DefaultClassLoaderFactory;
+
+import java.io.Serializable;
+import java.net.URI;
+import java.net.URL;
+import java.util.Collection;
+import java.util.concurrent.Callable;
+
+/**
+ * <p>A worker which runs a single session in a pooled worker process. Like {@link IsolatedApplicationClassLoaderWorker},
+ * it loads the application classes in a new isolated ClassLoader, but it leaves the logging of the process, which was
+ * configured when the pooled process started, alone.</p>
+ *
+ * <p>Instantiated in the system ClassLoader of the pooled worker process by {@link PooledWorkerServer}.</p>
+ */
+public class PooledWorkerSession implements Callable<Void>, Serializable {
+    private final Collection<URI> applicationClassPath;
+    private final ImplementationClassLoaderWorker worker;
+
+    public PooledWorkerSession(Collection<URI> applicationClassPath, LogLevel logLevel, Collection<String> sharedPackages,
+                               Collection<URL> implementationClassPath, ActionExecutionWorker workerAction) {
+        this.applicationClassPath = applicationClassPath;
+        this.worker = new ImplementationClassLoaderWorker(logLevel, sharedPackages, implementationClassPath, workerAction);
+    }
+
+    public Void call() throws Exception {
+        final ClassLoader applicationClassLoader = new DefaultClassLoaderFactory().createIsolatedClassLoader(applicationClassPath);
+
+        WorkerContext context = new WorkerContext() {
+            public ClassLoader getApplicationClassLoader() {
+                return applicationClassLoader;
+            }
+        };
+
+        worker.executeInImplementationClassLoader(context);
+
+        return null;
+    }
+}
@@ -15,6 +15,7 @@
  */
 package org.gradle.reporting;
 
+import org.gradle.api.Action;
 import org.w3c.dom.Element;
 
 public class CodePanelRenderer extends DomReportRenderer<String> {
@@ -25,4 +26,13 @@ public class CodePanelRenderer extends DomReportRenderer<String> {
         span.setAttribute("class", "code");
         appendWithText(span, "pre", text);
     }
+
+    /**
+     * Renders a code panel whose text is written by the given action when the report is written.
+     */
+    public void renderStreamed(Action<Appendable> text, Element parent) {
+        Element span = append(parent, "span");
+        span.setAttribute("class", "code");
+        appendStreamedText(append(span, "pre"), text);
+    }
 }
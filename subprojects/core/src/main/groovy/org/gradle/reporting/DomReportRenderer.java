@@ -15,6 +15,7 @@
  */
 package org.gradle.reporting;
 
+import org.gradle.api.Action;
 import org.w3c.dom.Element;
 
 public abstract class DomReportRenderer<T> {
@@ -47,6 +48,14 @@ public abstract class DomReportRenderer<T> {
         element.appendChild(element.getOwnerDocument().createTextNode(textContent.toString()));
     }
 
+    /**
+     * Appends text to the given element which is produced only when the report is written by {@link HtmlReportRenderer},
+     * so that large text is not held in the DOM. The given action appends the text to the page.
+     */
+    protected void appendStreamedText(Element element, Action<Appendable> text) {
+        appendText(element, StreamedText.get(element.getOwnerDocument()).add(text));
+    }
+
     protected Element appendLink(Element parent, String href, Object textContent) {
         Element element = appendWithText(parent, "a", textContent);
         element.setAttribute("href", href);
@@ -65,7 +65,14 @@ public class HtmlReportRenderer {
 
                 writer.write("<!DOCTYPE HTML PUBLIC \"-//W3C//DTD HTML 4.01//EN\" \"http://www.w3.org/TR/html4/strict.dtd\">");
                 writer.write(SystemProperties.getLineSeparator());
-                transformer.transform(new DOMSource(document), new StreamResult(writer));
+                StreamedText streamedText = StreamedText.find(document);
+                if (streamedText == null) {
+                    transformer.transform(new DOMSource(document), new StreamResult(writer));
+                } else {
+                    StringWriter page = new StringWriter();
+                    transformer.transform(new DOMSource(document), new StreamResult(page));
+                    streamedText.writeTo(page.toString(), writer);
+                }
             }
         });
     }
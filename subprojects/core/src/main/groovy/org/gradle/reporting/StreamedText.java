@@ -0,0 +1,130 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.reporting;
+
+import org.gradle.api.Action;
+import org.gradle.internal.SystemProperties;
+import org.w3c.dom.Document;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The text of a DOM document which is only produced when the document is written. The DOM holds a placeholder for each
+ * piece of text, which is replaced with the escaped text as the serialized document is written out.
+ */
+class StreamedText {
+    private static final String KEY = StreamedText.class.getName();
+    private final String placeholderPrefix = String.format("streamed-text-%s-", UUID.randomUUID());
+    private final List<Action<Appendable>> contents = new ArrayList<Action<Appendable>>();
+
+    /**
+     * Returns the streamed text of the given document, or null if it has none.
+     */
+    static StreamedText find(Document document) {
+        return (StreamedText) document.getUserData(KEY);
+    }
+
+    static StreamedText get(Document document) {
+        StreamedText streamedText = find(document);
+        if (streamedText == null) {
+            streamedText = new StreamedText();
+            document.setUserData(KEY, streamedText, null);
+        }
+        return streamedText;
+    }
+
+    /**
+     * Adds the given content, returning the placeholder text to add to the document in its place.
+     */
+    String add(Action<Appendable> content) {
+        contents.add(content);
+        return placeholderPrefix + (contents.size() - 1) + ".";
+    }
+
+    /**
+     * Writes the given serialized document to the given writer, replacing each placeholder with its content.
+     */
+    void writeTo(String document, Writer writer) throws IOException {
+        Appendable escaped = new EscapingAppendable(writer);
+        int pos = 0;
+        while (true) {
+            int start = document.indexOf(placeholderPrefix, pos);
+            if (start < 0) {
+                break;
+            }
+            int end = document.indexOf('.', start + placeholderPrefix.length());
+            writer.write(document, pos, start - pos);
+            contents.get(Integer.parseInt(document.substring(start + placeholderPrefix.length(), end))).execute(escaped);
+            pos = end + 1;
+        }
+        writer.write(document, pos, document.length() - pos);
+    }
+
+    /**
+     * Escapes text in the same way as the html output method of the transformer used by {@link HtmlReportRenderer}.
+     */
+    private static class EscapingAppendable implements Appendable {
+        private final Writer writer;
+
+        private EscapingAppendable(Writer writer) {
+            this.writer = writer;
+        }
+
+        public Appendable append(CharSequence csq) throws IOException {
+            return append(csq, 0, csq.length());
+        }
+
+        public Appendable append(CharSequence csq, int start, int end) throws IOException {
+            for (int i = start; i < end; i++) {
+                char ch = csq.charAt(i);
+                if (Character.isHighSurrogate(ch) && i + 1 < end && Character.isLowSurrogate(csq.charAt(i + 1))) {
+                    writer.write(String.format("&#%d;", Character.toCodePoint(ch, csq.charAt(++i))));
+                } else {
+                    append(ch);
+                }
+            }
+            return this;
+        }
+
+        public Appendable append(char ch) throws IOException {
+            switch (ch) {
+                case '<':
+                    writer.write("&lt;");
+                    break;
+                case '>':
+                    writer.write("&gt;");
+                    break;
+                case '&':
+                    writer.write("&amp;");
+                    break;
+                case '\n':
+                    writer.write(SystemProperties.getLineSeparator());
+                    break;
+                default:
+                    if (ch == '\t' || (ch >= 0x20 && ch < 0x7f)) {
+                        writer.write(ch);
+                    } else {
+                        writer.write(String.format("&#%d;", (int) ch));
+                    }
+            }
+            return this;
+        }
+    }
+}
@@ -97,6 +97,10 @@ public class InMemoryCacheFactory implements CacheFactory {
             action.run();
         }
 
+        public <T> T useCacheConcurrently(String operationDisplayName, Factory<? extends T> action) {
+            return useCache(operationDisplayName, action);
+        }
+
         public <T> T longRunningOperation(String operationDisplayName, Factory<? extends T> action) {
             return action.create();
         }
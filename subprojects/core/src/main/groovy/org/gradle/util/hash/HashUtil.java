@@ -19,28 +19,84 @@ import org.gradle.api.UncheckedIOException;
 import org.gradle.internal.UncheckedException;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
 
 public class HashUtil {
+    /**
+     * A fast hash algorithm, which is not a cryptographic hash, so should be used only to detect changes.
+     */
+    public static final String MURMUR3 = Murmur3Digest.ALGORITHM;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // Digests and buffers are reused by each thread, and are removed while in use
+    private static final ThreadLocal<Map<String, MessageDigest>> DIGESTS = new ThreadLocal<Map<String, MessageDigest>>() {
+        @Override
+        protected Map<String, MessageDigest> initialValue() {
+            return new HashMap<String, MessageDigest>();
+        }
+    };
+    private static final ThreadLocal<byte[]> BUFFERS = new ThreadLocal<byte[]>();
+    private static final ThreadLocal<ByteBuffer> DIRECT_BUFFERS = new ThreadLocal<ByteBuffer>();
+
     public static HashValue createHash(String scriptText, String algorithm) {
-        MessageDigest messageDigest = createMessageDigest(algorithm);
-        messageDigest.update(scriptText.getBytes());
-        return new HashValue(messageDigest.digest());
+        MessageDigest messageDigest = takeMessageDigest(algorithm);
+        try {
+            messageDigest.update(scriptText.getBytes());
+            return new HashValue(messageDigest.digest());
+        } finally {
+            releaseMessageDigest(algorithm, messageDigest);
+        }
     }
 
     public static HashValue createHash(File file, String algorithm) {
+        FileInputStream instr;
         try {
-            return createHash(new FileInputStream(file), algorithm);
+            instr = new FileInputStream(file);
         } catch (FileNotFoundException e) {
             throw new UncheckedIOException(e);
         }
+        MessageDigest messageDigest = takeMessageDigest(algorithm);
+        ByteBuffer buffer = DIRECT_BUFFERS.get();
+        DIRECT_BUFFERS.set(null);
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+        try {
+            try {
+                FileChannel channel = instr.getChannel();
+                while (true) {
+                    buffer.clear();
+                    if (channel.read(buffer) < 0) {
+                        break;
+                    }
+                    buffer.flip();
+                    messageDigest.update(buffer);
+                }
+            } finally {
+                instr.close();
+            }
+            return new HashValue(messageDigest.digest());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            DIRECT_BUFFERS.set(buffer);
+            releaseMessageDigest(algorithm, messageDigest);
+        }
     }
 
     public static HashValue createHash(InputStream instr, String algorithm) {
-        MessageDigest messageDigest = createMessageDigest(algorithm);
+        MessageDigest messageDigest = takeMessageDigest(algorithm);
+        byte[] buffer = BUFFERS.get();
+        BUFFERS.set(null);
+        if (buffer == null) {
+            buffer = new byte[BUFFER_SIZE];
+        }
         try {
-            byte[] buffer = new byte[4096];
             try {
                 while (true) {
                     int nread = instr.read(buffer);
@@ -52,13 +108,29 @@ public class HashUtil {
             } finally {
                 instr.close();
             }
+            return new HashValue(messageDigest.digest());
         } catch (IOException e) {
             throw new UncheckedIOException(e);
+        } finally {
+            BUFFERS.set(buffer);
+            releaseMessageDigest(algorithm, messageDigest);
         }
-        return new HashValue(messageDigest.digest());
+    }
+
+    private static MessageDigest takeMessageDigest(String algorithm) {
+        MessageDigest messageDigest = DIGESTS.get().remove(algorithm);
+        return messageDigest != null ? messageDigest : createMessageDigest(algorithm);
+    }
+
+    private static void releaseMessageDigest(String algorithm, MessageDigest messageDigest) {
+        messageDigest.reset();
+        DIGESTS.get().put(algorithm, messageDigest);
     }
 
     private static MessageDigest createMessageDigest(String algorithm) {
+        if (algorithm.equals(MURMUR3)) {
+            return new Murmur3Digest();
+        }
         try {
             return MessageDigest.getInstance(algorithm);
         } catch (NoSuchAlgorithmException e) {
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.util.hash;
+
+import java.security.MessageDigest;
+
+/**
+ * A {@link MessageDigest} for the 128 bit, x64 variant of MurmurHash3, with a seed of 0. This is much faster to calculate
+ * than MD5 or SHA1, but is not a cryptographic hash, so should be used only to detect changes.
+ */
+class Murmur3Digest extends MessageDigest {
+    static final String ALGORITHM = "MURMUR3";
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+    private static final int BLOCK_SIZE = 16;
+
+    private final byte[] pending = new byte[BLOCK_SIZE];
+    private int pendingLength;
+    private long length;
+    private long h1;
+    private long h2;
+
+    Murmur3Digest() {
+        super(ALGORITHM);
+    }
+
+    @Override
+    protected int engineGetDigestLength() {
+        return BLOCK_SIZE;
+    }
+
+    @Override
+    protected void engineUpdate(byte input) {
+        pending[pendingLength++] = input;
+        length++;
+        if (pendingLength == BLOCK_SIZE) {
+            processBlock(pending, 0);
+            pendingLength = 0;
+        }
+    }
+
+    @Override
+    protected void engineUpdate(byte[] input, int offset, int len) {
+        length += len;
+        int end = offset + len;
+        if (pendingLength > 0) {
+            int count = Math.min(len, BLOCK_SIZE - pendingLength);
+            System.arraycopy(input, offset, pending, pendingLength, count);
+            pendingLength += count;
+            offset += count;
+            if (pendingLength < BLOCK_SIZE) {
+                return;
+            }
+            processBlock(pending, 0);
+            pendingLength = 0;
+        }
+        for (; offset + BLOCK_SIZE <= end; offset += BLOCK_SIZE) {
+            processBlock(input, offset);
+        }
+        pendingLength = end - offset;
+        System.arraycopy(input, offset, pending, 0, pendingLength);
+    }
+
+    @Override
+    protected byte[] engineDigest() {
+        if (pendingLength > 8) {
+            long k2 = getLong(pending, 8, pendingLength - 8);
+            h2 ^= mixK2(k2);
+        }
+        if (pendingLength > 0) {
+            long k1 = getLong(pending, 0, Math.min(pendingLength, 8));
+            h1 ^= mixK1(k1);
+        }
+
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix(h1);
+        h2 = fmix(h2);
+        h1 += h2;
+        h2 += h1;
+
+        byte[] digest = new byte[BLOCK_SIZE];
+        putLong(digest, 0, h1);
+        putLong(digest, 8, h2);
+        engineReset();
+        return digest;
+    }
+
+    @Override
+    protected void engineReset() {
+        pendingLength = 0;
+        length = 0;
+        h1 = 0;
+        h2 = 0;
+    }
+
+    private void processBlock(byte[] input, int offset) {
+        long k1 = getLong(input, offset);
+        long k2 = getLong(input, offset + 8);
+
+        h1 ^= mixK1(k1);
+        h1 = Long.rotateLeft(h1, 27);
+        h1 += h2;
+        h1 = h1 * 5 + 0x52dce729;
+
+        h2 ^= mixK2(k2);
+        h2 = Long.rotateLeft(h2, 31);
+        h2 += h1;
+        h2 = h2 * 5 + 0x38495ab5;
+    }
+
+    private static long mixK1(long k1) {
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        k1 *= C2;
+        return k1;
+    }
+
+    private static long mixK2(long k2) {
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        k2 *= C1;
+        return k2;
+    }
+
+    private static long fmix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    private static long getLong(byte[] buffer, int offset) {
+        return (buffer[offset] & 0xFFL)
+                | (buffer[offset + 1] & 0xFFL) << 8
+                | (buffer[offset + 2] & 0xFFL) << 16
+                | (buffer[offset + 3] & 0xFFL) << 24
+                | (buffer[offset + 4] & 0xFFL) << 32
+                | (buffer[offset + 5] & 0xFFL) << 40
+                | (buffer[offset + 6] & 0xFFL) << 48
+                | (buffer[offset + 7] & 0xFFL) << 56;
+    }
+
+    private static long getLong(byte[] buffer, int offset, int count) {
+        long value = 0;
+        for (int i = count - 1; i >= 0; i--) {
+            value = (value << 8) | (buffer[offset + i] & 0xFFL);
+        }
+        return value;
+    }
+
+    private static void putLong(byte[] buffer, int offset, long value) {
+        for (int i = 0; i < 8; i++) {
+            buffer[offset + i] = (byte) (value >>> (8 * i));
+        }
+    }
+}
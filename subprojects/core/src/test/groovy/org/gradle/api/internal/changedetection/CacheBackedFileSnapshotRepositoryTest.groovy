@@ -24,7 +24,7 @@ class CacheBackedFileSnapshotRepositoryTest extends Specification {
     FileSnapshotRepository repository
 
     def setup() {
-        1 * cacheAccess.createCache("fileSnapshots", Object, Object) >> indexedCache
+        1 * cacheAccess.createCache("fileSnapshots", Object, Object, _ as FileSnapshotSerializer) >> indexedCache
         repository = new CacheBackedFileSnapshotRepository(cacheAccess)
     }
 
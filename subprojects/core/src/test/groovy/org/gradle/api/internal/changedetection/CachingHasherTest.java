@@ -48,10 +48,10 @@ public class CachingHasherTest {
     @Before
     public void setup() {
         context.checking(new Expectations(){{
-            one(cacheAccess).createCache(with(equalTo("fileHashes")), with(equalTo(File.class)), with(notNullValue(Class.class)), with(notNullValue(Serializer.class)));
+            one(cacheAccess).createCache(with(equalTo("fileHashes-MD5")), with(equalTo(File.class)), with(notNullValue(Class.class)), with(notNullValue(Serializer.class)));
             will(returnValue(cache));
         }});
-        hasher = new CachingHasher(delegate, cacheAccess);
+        hasher = new CachingHasher(delegate, cacheAccess, "fileHashes-MD5");
     }
 
     @Test
@@ -66,6 +66,7 @@ public class CachingHasherTest {
         }});
 
         assertThat(hasher.hash(file), sameInstance(hash));
+        hasher.onEndWork();
     }
 
     @Test
@@ -80,6 +81,7 @@ public class CachingHasherTest {
         }});
 
         assertThat(hasher.hash(file), sameInstance(hash));
+        hasher.onEndWork();
     }
 
     @Test
@@ -94,6 +96,7 @@ public class CachingHasherTest {
         }});
 
         assertThat(hasher.hash(file), sameInstance(hash));
+        hasher.onEndWork();
     }
 
     @Test
@@ -105,4 +108,57 @@ public class CachingHasherTest {
 
         assertThat(hasher.hash(file), sameInstance(hash));
     }
+
+    @Test
+    public void doesNotWriteToCacheUntilEndOfWork() {
+        context.checking(new Expectations() {{
+            one(cache).get(file);
+            will(returnValue(null));
+            one(delegate).hash(file);
+            will(returnValue(hash));
+        }});
+
+        assertThat(hasher.hash(file), sameInstance(hash));
+
+        context.checking(new Expectations() {{
+            one(cache).put(with(equalTo(file)), with(reflectionEquals(new CachingHasher.FileInfo(hash, file.length(),
+                    file.lastModified()))));
+        }});
+
+        hasher.onEndWork();
+        hasher.onEndWork();
+
+        assertThat(hasher.getMisses(), equalTo(1L));
+        assertThat(hasher.getFlushes(), equalTo(1L));
+        assertThat(hasher.getFlushedEntries(), equalTo(1L));
+    }
+
+    @Test
+    public void usesInMemoryEntryForRecentlyUsedFile() {
+        context.checking(new Expectations() {{
+            one(cache).get(file);
+            will(returnValue(new CachingHasher.FileInfo(hash, file.length(), file.lastModified())));
+        }});
+
+        assertThat(hasher.hash(file), sameInstance(hash));
+        assertThat(hasher.hash(file), sameInstance(hash));
+
+        assertThat(hasher.getPersistentHits(), equalTo(1L));
+        assertThat(hasher.getInMemoryHits(), equalTo(1L));
+    }
+
+    @Test
+    public void usesPendingEntryForRecentlyHashedFile() {
+        context.checking(new Expectations() {{
+            one(cache).get(file);
+            will(returnValue(null));
+            one(delegate).hash(file);
+            will(returnValue(hash));
+        }});
+
+        assertThat(hasher.hash(file), sameInstance(hash));
+        assertThat(hasher.hash(file), sameInstance(hash));
+
+        assertThat(hasher.getInMemoryHits(), equalTo(1L));
+    }
 }
@@ -29,6 +29,8 @@ import org.gradle.util.TestFile
 import org.gradle.api.file.FileCollection
 import org.gradle.util.ChangeListener
 import org.gradle.api.file.FileTree
+import org.gradle.internal.concurrent.DefaultExecutorFactory
+import org.gradle.internal.concurrent.ExecutorFactory
 
 @RunWith(JMock.class)
 public class DefaultFileSnapshotterTest {
@@ -316,6 +318,162 @@ public class DefaultFileSnapshotterTest {
         target.changesSince(snapshotter.emptySnapshot(), listener)
     }
 
+    @Test
+    public void diffDropsFilesHashedWithADifferentAlgorithmFromSnapshot() {
+        TestFile file1 = tmpDir.createFile('file1')
+        TestFile file2 = tmpDir.createFile('file2')
+        ChangeListener<FileCollectionSnapshot.Merge> mergeListener = context.mock(ChangeListener.class)
+        DefaultFileSnapshotter otherSnapshotter = new DefaultFileSnapshotter(new DefaultHasher("SHA1"))
+
+        FileCollectionSnapshot original = snapshotter.snapshot(files(file1, file2))
+        FileCollectionSnapshot modified = otherSnapshotter.snapshot(files(file2))
+
+        context.checking {
+            one(mergeListener).removed(withParam(notNullValue()))
+            will {merge -> merge.ignore()}
+            one(mergeListener).changed(withParam(notNullValue()))
+        }
+
+        FileCollectionSnapshot target = modified.changesSince(original).applyTo(original, mergeListener)
+
+        context.checking {
+            one(listener).removed(file1)
+            one(listener).changed(file2)
+        }
+        target.changesSince(original, listener)
+    }
+
+    @Test
+    public void doesNotReuseHashesFromPreviousSnapshotMadeWithADifferentAlgorithm() {
+        TestFile file1 = tmpDir.createFile('file1')
+        TestFile file2 = tmpDir.createFile('file2')
+        DefaultFileSnapshotter otherSnapshotter = new DefaultFileSnapshotter(new DefaultHasher("SHA1"))
+
+        FileCollectionSnapshot previous = snapshotter.snapshot(files(file1, file2), snapshotter.emptySnapshot())
+        file2.write('new content')
+        FileCollectionSnapshot snapshot = otherSnapshotter.snapshot(files(file1, file2), previous)
+
+        otherSnapshotter.snapshot(files(file1, file2)).changesSince(snapshot, listener)
+    }
+
+    @Test
+    public void parallelSnapshotIsUpToDateWithSerialSnapshot() {
+        def parallelSnapshotter = new DefaultFileSnapshotter(hasher, null, new DefaultExecutorFactory(), 4, 1)
+        List<File> inputs = (1..200).collect { tmpDir.createFile("dir${it % 7}/file$it").write("content $it") }
+        inputs << tmpDir.createDir('dir') << tmpDir.file('missing')
+
+        FileCollectionSnapshot snapshot = snapshotter.snapshot(files(inputs as File[]))
+
+        parallelSnapshotter.snapshot(files(inputs as File[])).changesSince(snapshot, listener)
+    }
+
+    @Test
+    public void parallelSnapshotDetectsChangedFiles() {
+        def parallelSnapshotter = new DefaultFileSnapshotter(hasher, null, new DefaultExecutorFactory(), 4, 1)
+        List<File> inputs = (1..200).collect { tmpDir.createFile("file$it").write("content $it") }
+
+        FileCollectionSnapshot snapshot = parallelSnapshotter.snapshot(files(inputs as File[]))
+        inputs[150].write('new content')
+
+        context.checking {
+            one(listener).changed(inputs[150])
+        }
+        parallelSnapshotter.snapshot(files(inputs as File[])).changesSince(snapshot, listener)
+    }
+
+    @Test
+    public void parallelSnapshotsReuseTheSameExecutor() {
+        ExecutorFactory executorFactory = context.mock(ExecutorFactory.class)
+        DefaultExecutorFactory realExecutorFactory = new DefaultExecutorFactory()
+        def parallelSnapshotter = new DefaultFileSnapshotter(hasher, null, executorFactory, 4, 1)
+        List<File> inputs = (1..200).collect { tmpDir.createFile("file$it").write("content $it") }
+
+        context.checking {
+            one(executorFactory).create('Snapshot files')
+            will(returnValue(realExecutorFactory.create('Snapshot files')))
+        }
+
+        try {
+            FileCollectionSnapshot snapshot = parallelSnapshotter.snapshot(files(inputs as File[]))
+            parallelSnapshotter.snapshot(files(inputs as File[])).changesSince(snapshot, listener)
+        } finally {
+            realExecutorFactory.stop()
+        }
+    }
+
+    @Test
+    public void parallelSnapshotUsesHashCache() {
+        FileHashCache hashCache = context.mock(FileHashCache.class)
+        def parallelSnapshotter = new DefaultFileSnapshotter(hasher, hashCache, new DefaultExecutorFactory(), 4, 1)
+        TestFile cached = tmpDir.createFile('cached')
+        TestFile notCached = tmpDir.createFile('notCached')
+
+        context.checking {
+            one(hashCache).getCachedHash(cached, cached.length(), cached.lastModified())
+            will(returnValue(hasher.hash(cached)))
+            one(hashCache).getCachedHash(notCached, notCached.length(), notCached.lastModified())
+            will(returnValue(null))
+            one(hashCache).cacheHash(notCached, notCached.length(), notCached.lastModified(), hasher.hash(notCached))
+        }
+
+        FileCollectionSnapshot snapshot = parallelSnapshotter.snapshot(files(cached, notCached))
+
+        snapshotter.snapshot(files(cached, notCached)).changesSince(snapshot, listener)
+    }
+
+    @Test
+    public void reusesHashFromPreviousSnapshotWhenLengthAndTimestampHaveNotChanged() {
+        Hasher countingHasher = context.mock(Hasher.class)
+        def statSnapshotter = new DefaultFileSnapshotter(countingHasher)
+        TestFile file = tmpDir.createFile('file').write('content')
+
+        context.checking {
+            one(countingHasher).hash(file)
+            will(returnValue(hasher.hash(file)))
+        }
+        FileCollectionSnapshot original = statSnapshotter.snapshot(files(file), null)
+        FileCollectionSnapshot snapshot = statSnapshotter.snapshot(files(file), original)
+
+        snapshot.changesSince(original, listener)
+    }
+
+    @Test
+    public void hashesFileWhenLengthHasChangedSincePreviousSnapshot() {
+        Hasher countingHasher = context.mock(Hasher.class)
+        def statSnapshotter = new DefaultFileSnapshotter(countingHasher)
+        TestFile file = tmpDir.createFile('file').write('content')
+
+        context.checking {
+            one(countingHasher).hash(file)
+            will(returnValue(hasher.hash(file)))
+        }
+        FileCollectionSnapshot original = statSnapshotter.snapshot(files(file), null)
+
+        file.write('new content')
+        context.checking {
+            one(countingHasher).hash(file)
+            will(returnValue(hasher.hash(file)))
+            one(listener).changed(file)
+        }
+        statSnapshotter.snapshot(files(file), original).changesSince(original, listener)
+    }
+
+    @Test
+    public void hashesFileWhenPreviousSnapshotDidNotRecordLengthAndTimestamp() {
+        Hasher countingHasher = context.mock(Hasher.class)
+        def statSnapshotter = new DefaultFileSnapshotter(countingHasher)
+        TestFile file = tmpDir.createFile('file').write('content')
+
+        context.checking {
+            exactly(2).of(countingHasher).hash(file)
+            will(returnValue(hasher.hash(file)))
+        }
+        FileCollectionSnapshot original = statSnapshotter.snapshot(files(file))
+        FileCollectionSnapshot snapshot = statSnapshotter.snapshot(files(file), original)
+
+        snapshot.changesSince(original, listener)
+    }
+
     private FileCollection files(File... files) {
         FileTree collection = context.mock(FileTree.class)
         context.checking {
@@ -50,4 +50,14 @@ class DefaultTaskArtifactStateCacheAccessTest extends Specification {
         1 * backingIndexedCache.get("key")
         0 * _._
     }
+
+    def "returns the same cache for the same name"() {
+        when:
+        def indexedCache = cacheAccess.createCache("some-cache", String, Integer)
+
+        then:
+        cacheAccess.createCache("some-cache", String, Integer).is(indexedCache)
+        !cacheAccess.createCache("other-cache", String, Integer).is(indexedCache)
+        0 * _._
+    }
 }
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.changedetection
+
+import org.gradle.util.ChangeListener
+import org.gradle.util.TemporaryFolder
+import org.junit.Rule
+import spock.lang.Specification
+
+class FileSnapshotSerializerTest extends Specification {
+    @Rule final TemporaryFolder tmpDir = new TemporaryFolder()
+    final FileSnapshotSerializer serializer = new FileSnapshotSerializer()
+    final DefaultFileSnapshotter snapshotter = new DefaultFileSnapshotter(new DefaultHasher())
+    final ChangeListener<File> listener = Mock()
+
+    def "can serialize file collection snapshot"() {
+        def builder = new DefaultFileCollectionSnapshot.Builder(4)
+        builder.addFile("/dir/a/file2", [1, 2] as byte[])
+        builder.addDirectory("/dir/b")
+        builder.addFile("/dir/a/file1", [3, 4] as byte[])
+        builder.addMissingFile("/dir/missing")
+        def snapshot = builder.build()
+
+        when:
+        def result = serialize(snapshot)
+        result.changesSince(snapshot, listener)
+
+        then:
+        result instanceof DefaultFileCollectionSnapshot
+        result.files.files == [new File("/dir/a/file1"), new File("/dir/a/file2")] as Set
+        0 * listener._
+
+        when:
+        builder = new DefaultFileCollectionSnapshot.Builder(4)
+        builder.addFile("/dir/a/file1", [3, 4] as byte[])
+        builder.addFile("/dir/a/file2", [1, 5] as byte[])
+        builder.addFile("/dir/b", [1, 2] as byte[])
+        builder.addFile("/dir/c", [1, 2] as byte[])
+        builder.build().changesSince(result, listener)
+
+        then:
+        1 * listener.changed(new File("/dir/a/file2"))
+        1 * listener.changed(new File("/dir/b"))
+        1 * listener.added(new File("/dir/c"))
+        1 * listener.removed(new File("/dir/missing"))
+        0 * listener._
+    }
+
+    def "can serialize empty snapshot"() {
+        def file = tmpDir.createFile("file")
+
+        when:
+        def result = serialize(snapshotter.emptySnapshot())
+        snapshotter.snapshot(files(file)).changesSince(result, listener)
+
+        then:
+        1 * listener.added(file)
+        0 * listener._
+    }
+
+    def "can serialize output files snapshot"() {
+        def file = tmpDir.createFile("dir/file")
+        def filesSnapshot = snapshotter.snapshot(files(file))
+        def snapshot = new OutputFilesSnapshotter.OutputFilesSnapshot([(tmpDir.dir.absolutePath): 12L, "missing": null], filesSnapshot)
+
+        when:
+        def result = serialize(snapshot)
+
+        then:
+        result instanceof OutputFilesSnapshotter.OutputFilesSnapshot
+        result.rootFileIds == [(tmpDir.dir.absolutePath): 12L, "missing": null]
+        result.filesSnapshot instanceof DefaultFileCollectionSnapshot
+        result.files.files == [file] as Set
+    }
+
+    def "can serialize ids and other values"() {
+        expect:
+        serialize(12L) == 12L
+        serialize("value") == "value"
+    }
+
+    def serialize(Object value) {
+        def outstr = new ByteArrayOutputStream()
+        serializer.write(outstr, value)
+        return serializer.read(new ByteArrayInputStream(outstr.toByteArray()))
+    }
+
+    def files(File... files) {
+        return new org.gradle.api.internal.file.collections.SimpleFileCollection(files)
+    }
+}
@@ -0,0 +1,375 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.file.archive;
+
+import org.apache.commons.io.IOUtils;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.FileVisitDetails;
+import org.gradle.api.file.RelativePath;
+import org.gradle.api.internal.file.copy.ArchiveCopyAction;
+import org.gradle.api.internal.file.copy.ReadableCopySpec;
+import org.gradle.internal.concurrent.DefaultExecutorFactory;
+import org.gradle.util.TestFile;
+import org.gradle.util.TemporaryFolder;
+import org.hamcrest.Description;
+import org.jmock.Expectations;
+import org.jmock.api.Action;
+import org.jmock.api.Invocation;
+import org.jmock.integration.junit4.JMock;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.*;
+import java.util.zip.CRC32;
+import java.util.zip.ZipFile;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import static org.gradle.api.file.FileVisitorUtil.assertVisitsPermissions;
+
+@RunWith(JMock.class)
+public class ParallelZipCopySpecVisitorTest {
+    @Rule
+    public final TemporaryFolder tmpDir = new TemporaryFolder();
+    private final JUnit4Mockery context = new JUnit4Mockery();
+    private final ArchiveCopyAction copyAction = context.mock(ArchiveCopyAction.class);
+    private final ReadableCopySpec copySpec = context.mock(ReadableCopySpec.class);
+    private final ParallelZipCopySpecVisitor visitor = new ParallelZipCopySpecVisitor(new DefaultExecutorFactory(), 4);
+    private TestFile zipFile;
+    private int mockCount;
+
+    @Before
+    public void setup() {
+        zipFile = tmpDir.getDir().file("test.zip");
+        context.checking(new Expectations(){{
+            allowing(copyAction).getArchivePath();
+            will(returnValue(zipFile));
+        }});
+    }
+
+    @Test
+    public void createsZipFile() {
+        zip(dir("dir"), file("dir/file1"), file("file2"));
+
+        TestFile expandDir = tmpDir.getDir().file("expanded");
+        zipFile.unzipTo(expandDir);
+        expandDir.file("dir/file1").assertContents(equalTo("contents of dir/file1"));
+        expandDir.file("file2").assertContents(equalTo("contents of file2"));
+    }
+
+    @Test
+    public void createsZipFileWithEntriesInVisitOrder() throws IOException {
+        List<FileVisitDetails> files = new ArrayList<FileVisitDetails>();
+        for (int i = 0; i < 100; i++) {
+            files.add(file(String.format("file%s", i)));
+        }
+        zip(files.toArray(new FileVisitDetails[files.size()]));
+
+        List<String> entries = new ArrayList<String>();
+        ZipFile archive = new ZipFile(zipFile);
+        try {
+            for (Enumeration<? extends java.util.zip.ZipEntry> e = archive.entries(); e.hasMoreElements();) {
+                entries.add(e.nextElement().getName());
+            }
+        } finally {
+            archive.close();
+        }
+        for (int i = 0; i < 100; i++) {
+            assertThat(entries.get(i), equalTo(String.format("file%s", i)));
+        }
+
+        TestFile expandDir = tmpDir.getDir().file("unzipped");
+        zipFile.unzipTo(expandDir);
+        for (int i = 0; i < 100; i++) {
+            expandDir.file(String.format("file%s", i)).assertContents(equalTo(String.format("contents of file%s", i)));
+        }
+    }
+
+    @Test
+    public void createsZipFileContainingLargeFiles() {
+        zip(file("small1"), largeFile("large", 5 * 1024 * 1024), file("small2"));
+
+        TestFile expandDir = tmpDir.getDir().file("expanded");
+        zipFile.unzipTo(expandDir);
+        expandDir.file("small1").assertContents(equalTo("contents of small1"));
+        expandDir.file("small2").assertContents(equalTo("contents of small2"));
+        assertThat(expandDir.file("large").length(), equalTo(5L * 1024 * 1024));
+    }
+
+    @Test
+    public void reusesUnchangedEntriesOfPreviousZipFile() {
+        zip(incrementalVisitor(), file("file1"), file("file2", "original"), file("file3", "original"));
+        zip(incrementalVisitor(), file("file1"), file("file2", "changed"), file("file3", "original"), file("file4"));
+
+        TestFile expandDir = tmpDir.getDir().file("expanded");
+        zipFile.unzipTo(expandDir);
+        expandDir.file("file1").assertContents(equalTo("contents of file1"));
+        expandDir.file("file2").assertContents(equalTo("changed"));
+        expandDir.file("file3").assertContents(equalTo("original"));
+        expandDir.file("file4").assertContents(equalTo("contents of file4"));
+        tmpDir.getDir().file("test.zip.previous").assertDoesNotExist();
+    }
+
+    @Test
+    public void ignoresPreviousFileWhichIsNotAZipFile() {
+        zipFile.write("not a zip file");
+
+        zip(incrementalVisitor(), file("file1"));
+
+        TestFile expandDir = tmpDir.getDir().file("expanded");
+        zipFile.unzipTo(expandDir);
+        expandDir.file("file1").assertContents(equalTo("contents of file1"));
+    }
+
+    @Test
+    public void zipFileContainsExpectedPermissions() {
+        zip(dir("dir"), file("file"));
+
+        Map<String, Integer> expected = new HashMap<String, Integer>();
+        expected.put("dir", 2);
+        expected.put("file", 1);
+
+        assertVisitsPermissions(new ZipFileTree(zipFile, null), expected);
+    }
+
+    @Test
+    public void wrapsFailureToOpenOutputFile() {
+        final TestFile invalidZipFile = tmpDir.createDir("test.zip");
+
+        context.checking(new Expectations(){{
+            allowing(copyAction).getArchivePath();
+            will(returnValue(invalidZipFile));
+        }});
+
+        try {
+            visitor.startVisit(copyAction);
+            fail();
+        } catch (GradleException e) {
+            assertThat(e.getMessage(), equalTo(String.format("Could not create ZIP '%s'.", zipFile)));
+        }
+    }
+
+    @Test
+    public void wrapsFailureToAddElement() {
+        visitor.startVisit(copyAction);
+        visitor.visitSpec(copySpec);
+
+        Throwable failure = new RuntimeException("broken");
+        try {
+            visitor.visitFile(brokenFile("dir/file1", failure));
+            fail();
+        } catch (GradleException e) {
+            assertThat(e.getMessage(), equalTo(String.format("Could not add [dir/file1] to ZIP '%s'.", zipFile)));
+            assertThat(e.getCause(), sameInstance(failure));
+        }
+    }
+
+    @Test
+    public void doesNotReuseEntryWithSameSizeAndCrcButDifferentContent() throws IOException {
+        byte[] original = withCrc(new byte[]{1, 2, 3, 4});
+        byte[] changed = withCrc(new byte[]{4, 3, 2, 1});
+        byte[] largeOriginal = withCrc(new byte[5 * 1024 * 1024]);
+        byte[] largeChanged = new byte[largeOriginal.length - 4];
+        largeChanged[100] = 1;
+        largeChanged = withCrc(largeChanged);
+        assertThat(crc(changed), equalTo(crc(original)));
+        assertThat(crc(largeChanged), equalTo(crc(largeOriginal)));
+
+        zip(incrementalVisitor(), file("small", original), file("large", largeOriginal));
+        zip(incrementalVisitor(), file("small", changed), file("large", largeChanged));
+
+        ZipFile zip = new ZipFile(zipFile);
+        try {
+            assertThat(IOUtils.toByteArray(zip.getInputStream(zip.getEntry("small"))), equalTo(changed));
+            assertTrue(Arrays.equals(IOUtils.toByteArray(zip.getInputStream(zip.getEntry("large"))), largeChanged));
+        } finally {
+            zip.close();
+        }
+    }
+
+    // Any content followed by its own CRC has the same CRC as any other content of the same length followed by its CRC
+    private static byte[] withCrc(byte[] content) {
+        long crc = crc(content);
+        byte[] result = new byte[content.length + 4];
+        System.arraycopy(content, 0, result, 0, content.length);
+        for (int i = 0; i < 4; i++) {
+            result[content.length + i] = (byte) (crc >>> (8 * i));
+        }
+        return result;
+    }
+
+    private static long crc(byte[] content) {
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        return crc.getValue();
+    }
+
+    private ParallelZipCopySpecVisitor incrementalVisitor() {
+        return new ParallelZipCopySpecVisitor(new DefaultExecutorFactory(), 4, true);
+    }
+
+    private void zip(FileVisitDetails... files) {
+        zip(visitor, files);
+    }
+
+    private void zip(ParallelZipCopySpecVisitor visitor, FileVisitDetails... files) {
+        visitor.startVisit(copyAction);
+        visitor.visitSpec(copySpec);
+
+        for (FileVisitDetails f : files) {
+            if (f.isDirectory()) {
+                visitor.visitDir(f);
+            } else {
+                visitor.visitFile(f);
+            }
+        }
+
+        visitor.endVisit();
+    }
+
+    private FileVisitDetails file(final String path) {
+        return file(path, String.format("contents of %s", path));
+    }
+
+    private FileVisitDetails file(String path, String content) {
+        return file(path, content.getBytes());
+    }
+
+    private FileVisitDetails file(final String path, final byte[] content) {
+        final FileVisitDetails details = context.mock(FileVisitDetails.class, String.format("%s (%s)", path, mockCount++));
+
+        context.checking(new Expectations() {{
+            allowing(details).getRelativePath();
+            will(returnValue(RelativePath.parse(true, path)));
+
+            allowing(details).getLastModified();
+            will(returnValue(1000L));
+
+            allowing(details).isDirectory();
+            will(returnValue(false));
+
+            allowing(details).getMode();
+            will(returnValue(1));
+
+            allowing(details).copyTo(with(notNullValue(OutputStream.class)));
+            will(new Action() {
+                public void describeTo(Description description) {
+                    description.appendText("write content");
+                }
+
+                public Object invoke(Invocation invocation) throws Throwable {
+                    ((OutputStream) invocation.getParameter(0)).write(content);
+                    return null;
+                }
+            });
+        }});
+
+        return details;
+    }
+
+    private FileVisitDetails dir(final String path) {
+        final FileVisitDetails details = context.mock(FileVisitDetails.class, path);
+
+        context.checking(new Expectations() {{
+            allowing(details).getRelativePath();
+            will(returnValue(RelativePath.parse(false, path)));
+
+            allowing(details).getLastModified();
+            will(returnValue(1000L));
+
+            allowing(details).isDirectory();
+            will(returnValue(true));
+
+            allowing(details).getMode();
+            will(returnValue(2));
+        }});
+
+        return details;
+    }
+
+    private FileVisitDetails largeFile(final String path, final int size) {
+        final FileVisitDetails details = context.mock(FileVisitDetails.class, path);
+
+        context.checking(new Expectations() {{
+            allowing(details).getRelativePath();
+            will(returnValue(RelativePath.parse(true, path)));
+
+            allowing(details).getLastModified();
+            will(returnValue(1000L));
+
+            allowing(details).isDirectory();
+            will(returnValue(false));
+
+            allowing(details).getMode();
+            will(returnValue(1));
+
+            allowing(details).copyTo(with(notNullValue(OutputStream.class)));
+            will(new Action() {
+                public void describeTo(Description description) {
+                    description.appendText("write content");
+                }
+
+                public Object invoke(Invocation invocation) throws Throwable {
+                    OutputStream outputStream = (OutputStream) invocation.getParameter(0);
+                    byte[] buffer = new byte[1024];
+                    for (int i = 0; i < size / buffer.length; i++) {
+                        outputStream.write(buffer);
+                    }
+                    return null;
+                }
+            });
+        }});
+
+        return details;
+    }
+
+    private FileVisitDetails brokenFile(final String path, final Throwable failure) {
+        final FileVisitDetails details = context.mock(FileVisitDetails.class, String.format("[%s]", path));
+
+        context.checking(new Expectations() {{
+            allowing(details).getRelativePath();
+            will(returnValue(RelativePath.parse(true, path)));
+
+            allowing(details).getLastModified();
+            will(returnValue(1000L));
+
+            allowing(details).isDirectory();
+            will(returnValue(false));
+
+            allowing(details).getMode();
+            will(returnValue(1));
+
+            allowing(details).copyTo(with(notNullValue(OutputStream.class)));
+            will(new Action() {
+                public void describeTo(Description description) {
+                    description.appendText("write content");
+                }
+
+                public Object invoke(Invocation invocation) throws Throwable {
+                    failure.fillInStackTrace();
+                    throw failure;
+                }
+            });
+        }});
+
+        return details;
+    }
+}
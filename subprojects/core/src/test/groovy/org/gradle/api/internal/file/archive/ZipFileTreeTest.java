@@ -15,9 +15,15 @@
  */
 package org.gradle.api.internal.file.archive;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
 
+import org.gradle.api.file.EmptyFileVisitor;
+import org.gradle.api.file.FileVisitDetails;
+
 import org.gradle.util.Resources;
 import org.gradle.util.TemporaryFolder;
 import org.gradle.util.TestFile;
@@ -56,6 +62,77 @@ public class ZipFileTreeTest {
         assertSetContainsForAllTypes(tree, toList("subdir/file1.txt", "subdir2/file2.txt"));
     }
 
+    @Test
+    public void extractsEntryAgainWhenZipFileChanges() {
+        rootDir.file("subdir/file1.txt").write("content");
+        rootDir.zipTo(zipFile);
+
+        TestFile extracted = new TestFile(extractedFiles(tree).get(0));
+        extracted.assertContents(equalTo("content"));
+
+        rootDir.file("subdir/file1.txt").write("changed content");
+        rootDir.zipTo(zipFile);
+
+        assertThat(extractedFiles(tree), equalTo(toList((File) extracted)));
+        extracted.assertContents(equalTo("changed content"));
+    }
+
+    @Test
+    public void extractsEntryAgainWhenZipFileChangesWithoutChangingEntryLengthOrTimestamp() {
+        TestFile file1 = rootDir.file("subdir/file1.txt").write("content");
+        file1.setLastModified(file1.lastModified() - 10000);
+        long entryTime = file1.lastModified();
+        rootDir.zipTo(zipFile);
+
+        TestFile extracted = new TestFile(extractedFiles(tree).get(0));
+        extracted.assertContents(equalTo("content"));
+
+        file1.write("CONTENT");
+        file1.setLastModified(entryTime);
+        zipFile.delete();
+        rootDir.zipTo(zipFile);
+        zipFile.setLastModified(zipFile.lastModified() + 2000);
+
+        assertThat(extractedFiles(new ZipFileTree(zipFile, expandDir)), equalTo(toList((File) extracted)));
+        extracted.assertContents(equalTo("CONTENT"));
+    }
+
+    @Test
+    public void doesNotCopyEntryTimestampToExtractedFile() {
+        TestFile file1 = rootDir.file("subdir/file1.txt").write("content");
+        file1.setLastModified(file1.lastModified() - 100000);
+        long entryTime = file1.lastModified();
+        rootDir.zipTo(zipFile);
+
+        File extracted = extractedFiles(tree).get(0);
+        assertThat(extracted.lastModified(), not(equalTo(entryTime)));
+        assertThat(extractedFiles(tree).get(0).lastModified(), equalTo(extracted.lastModified()));
+    }
+
+    @Test
+    public void visitsContentsOfZipFileAgainAfterItChanges() {
+        rootDir.file("subdir/file1.txt").write("content");
+        rootDir.zipTo(zipFile);
+
+        assertVisits(tree, toList("subdir/file1.txt"), toList("subdir"));
+
+        rootDir.file("subdir/file2.txt").write("content");
+        rootDir.zipTo(zipFile);
+
+        assertVisits(tree, toList("subdir/file1.txt", "subdir/file2.txt"), toList("subdir"));
+    }
+
+    private List<File> extractedFiles(ZipFileTree tree) {
+        final List<File> files = new ArrayList<File>();
+        tree.visit(new EmptyFileVisitor() {
+            @Override
+            public void visitFile(FileVisitDetails fileDetails) {
+                files.add(fileDetails.getFile());
+            }
+        });
+        return files;
+    }
+
     @Test
     public void canStopVisitingFiles() {
         rootDir.file("subdir/file1.txt").write("content");
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.file.archive.compression
+
+import org.gradle.api.internal.file.FileResource
+import org.gradle.internal.concurrent.DefaultExecutorFactory
+import org.gradle.util.TemporaryFolder
+import org.junit.Rule
+import spock.lang.Specification
+
+class ParallelBzip2OutputStreamTest extends Specification {
+    @Rule TemporaryFolder tmpDir = new TemporaryFolder()
+    final executorFactory = new DefaultExecutorFactory()
+
+    def "compressed content can be read back"() {
+        given:
+        def file = tmpDir.file("content.bz2")
+        def content = new byte[size]
+        def random = new Random(1)
+        for (int i = 0; i < size; i++) {
+            content[i] = (byte) (97 + random.nextInt(4))
+        }
+
+        when:
+        def outputStream = Bzip2Archiver.getCompressor(executorFactory, 3).compress(file)
+        outputStream.write(content)
+        outputStream.close()
+
+        then:
+        new Bzip2Archiver(new FileResource(file)).read().bytes == content
+
+        where:
+        size << [0, 10, 900 * 1000, 4 * 1024 * 1024 + 17]
+    }
+
+    def "compresses input that expands under run length encoding"() {
+        given:
+        def file = tmpDir.file("content.bz2")
+        // Runs of 4 equal bytes are the worst case for the run length encoding done before each block is sorted
+        def content = new byte[2 * 1024 * 1024]
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i.intdiv(4) % 2)
+        }
+
+        when:
+        def outputStream = Bzip2Archiver.getCompressor(executorFactory, 3).compress(file)
+        outputStream.write(content)
+        outputStream.close()
+
+        then:
+        new Bzip2Archiver(new FileResource(file)).read().bytes == content
+    }
+}
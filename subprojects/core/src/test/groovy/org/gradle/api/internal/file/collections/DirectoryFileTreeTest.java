@@ -15,7 +15,9 @@
  */
 package org.gradle.api.internal.file.collections;
 
+import org.gradle.api.file.FileTreeElement;
 import org.gradle.api.file.FileVisitDetails;
+import org.gradle.api.file.FileVisitor;
 import org.gradle.api.file.RelativePath;
 import org.gradle.api.internal.file.copy.CopySpecVisitor;
 import org.gradle.api.specs.Spec;
@@ -42,7 +44,10 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
+import static org.gradle.util.WrapUtil.toList;
 import static org.hamcrest.Matchers.equalTo;
 import static org.junit.Assert.*;
 
@@ -228,6 +233,84 @@ public class DirectoryFileTreeTest {
         fileTree.visit(visitor);
     }
 
+    @Test
+    public void visitDetailsReportTheTypeOfEachEntry() {
+        TestFile rootDir = tmpDir.createDir("root");
+        rootDir.file("dir1/sub1/file.txt").createFile();
+        rootDir.file("dir1/file.txt").createFile();
+        rootDir.file("file.txt").createFile();
+
+        List<String> paths = visitedPaths(new DirectoryFileTree(rootDir));
+        assertThat(paths, equalTo(toList("file.txt", "dir1/", "dir1/file.txt", "dir1/sub1/", "dir1/sub1/file.txt")));
+    }
+
+    private List<String> visitedPaths(DirectoryFileTree fileTree) {
+        final List<String> paths = new ArrayList<String>();
+        fileTree.visit(new FileVisitor() {
+            public void visitDir(FileVisitDetails dirDetails) {
+                assertTrue(dirDetails.isDirectory());
+                paths.add(dirDetails.getPath() + "/");
+            }
+
+            public void visitFile(FileVisitDetails fileDetails) {
+                assertFalse(fileDetails.isDirectory());
+                paths.add(fileDetails.getPath());
+            }
+        });
+        return paths;
+    }
+
+    @Test
+    public void doesNotListDirectoriesWhichNoIncludeCanMatch() {
+        final MockFile root = new MockFile(context, "root", false);
+        final MockFile src = root.addDir("src");
+        final MockFile srcFile = src.addFile("Thing.java");
+        root.addDir("build").neverListed();
+        root.setExpectations();
+
+        final Sequence visiting = context.sequence("visiting");
+        context.checking(new Expectations() {{
+            one(visitor).visitDir(with(file(src)));
+            inSequence(visiting);
+            one(visitor).visitFile(with(file(srcFile)));
+            inSequence(visiting);
+        }});
+
+        PatternSet patterns = new PatternSet();
+        patterns.include("src/**/*.java");
+        DirectoryFileTree fileTree = new DirectoryFileTree(root.getMock(), patterns);
+        fileTree.visit(visitor);
+    }
+
+    @Test
+    public void entriesWhichAreNeitherFilesNorDirectoriesAreNotReportedAsDirectories() {
+        final MockFile root = new MockFile(context, "root", false);
+        root.addFile("file");
+        root.addDir("dir");
+        root.addOther("other");
+        root.setExpectations();
+
+        final Map<String, Boolean> isDirectory = new TreeMap<String, Boolean>();
+        PatternSet patterns = new PatternSet();
+        patterns.exclude(new Spec<FileTreeElement>() {
+            public boolean isSatisfiedBy(FileTreeElement element) {
+                isDirectory.put(element.getPath(), element.isDirectory());
+                return element.getName().equals("other");
+            }
+        });
+        new DirectoryFileTree(root.getMock(), patterns).visit(new FileVisitor() {
+            public void visitDir(FileVisitDetails dirDetails) {
+            }
+
+            public void visitFile(FileVisitDetails fileDetails) {
+            }
+        });
+
+        assertThat(isDirectory.get("file"), equalTo(false));
+        assertThat(isDirectory.get("dir"), equalTo(true));
+        assertThat(isDirectory.get("other"), equalTo(false));
+    }
+
     @Test
     public void canTestForFileMembership() {
         TestFile rootDir = tmpDir.createDir("root");
@@ -298,6 +381,8 @@ public class DirectoryFileTreeTest {
 
     public class MockFile {
         private boolean isFile;
+        private boolean isDirectory;
+        private boolean listable = true;
         private String name;
         private Mockery context;
         private List<MockFile> children;
@@ -308,6 +393,7 @@ public class DirectoryFileTreeTest {
             this.context = context;
             this.name = name;
             this.isFile = isFile;
+            this.isDirectory = !isFile;
             children = new ArrayList<MockFile>();
             mock = context.mock(File.class, name);
         }
@@ -330,6 +416,17 @@ public class DirectoryFileTreeTest {
             return child;
         }
 
+        public MockFile addOther(String name) {
+            MockFile child = addFile(name);
+            child.isFile = false;
+            return child;
+        }
+
+        public MockFile neverListed() {
+            listable = false;
+            return this;
+        }
+
         public void setParent(MockFile parent) {
             this.parent = parent;
         }
@@ -357,6 +454,8 @@ public class DirectoryFileTreeTest {
             }
             expectations.allowing(mock).isFile();
             expectations.will(expectations.returnValue(isFile));
+            expectations.allowing(mock).isDirectory();
+            expectations.will(expectations.returnValue(isDirectory));
             expectations.allowing(mock).getName();
             expectations.will(expectations.returnValue(name));
             expectations.allowing(mock).exists();
@@ -367,8 +466,12 @@ public class DirectoryFileTreeTest {
                 mockChildren.add(child.getMock());
                 child.setExpectations(expectations);
             }
-            expectations.allowing(mock).listFiles();
-            expectations.will(expectations.returnValue(mockChildren.toArray(new File[mockChildren.size()])));
+            if (listable) {
+                expectations.allowing(mock).listFiles();
+                expectations.will(expectations.returnValue(mockChildren.toArray(new File[mockChildren.size()])));
+            } else {
+                expectations.never(mock).listFiles();
+            }
         }
     }
 
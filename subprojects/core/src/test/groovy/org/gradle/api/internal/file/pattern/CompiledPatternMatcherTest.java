@@ -0,0 +1,126 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.file.pattern;
+
+import org.gradle.api.file.RelativePath;
+import org.gradle.api.specs.Spec;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class CompiledPatternMatcherTest {
+
+    @Test public void testMatchesAnyOfThePatterns() {
+        Spec<RelativePath> matcher = matcher(false, true, "a/b/c.txt", "**/*.java", "docs/**");
+
+        assertTrue(matcher.isSatisfiedBy(file("a/b/c.txt")));
+        assertTrue(matcher.isSatisfiedBy(file("Fred.java")));
+        assertTrue(matcher.isSatisfiedBy(file("a/b/Fred.java")));
+        assertTrue(matcher.isSatisfiedBy(file("docs/index.html")));
+        assertTrue(matcher.isSatisfiedBy(dir("docs/images")));
+        assertTrue(matcher.isSatisfiedBy(dir("docs")));
+
+        assertFalse(matcher.isSatisfiedBy(file("a/b/c.html")));
+        assertFalse(matcher.isSatisfiedBy(file("a/c.txt")));
+        assertFalse(matcher.isSatisfiedBy(file("a/b/c.txt/d")));
+        assertFalse(matcher.isSatisfiedBy(file("Fred.groovy")));
+        assertFalse(matcher.isSatisfiedBy(dir("a/b")));
+    }
+
+    @Test public void testPartialMatchDirs() {
+        Spec<RelativePath> matcher = matcher(true, true, "a/b/c.txt", "x/**/y/*.java");
+
+        assertTrue(matcher.isSatisfiedBy(dir("a")));
+        assertTrue(matcher.isSatisfiedBy(dir("a/b")));
+        assertTrue(matcher.isSatisfiedBy(dir("x/p/q")));
+        assertFalse(matcher.isSatisfiedBy(dir("b")));
+        assertFalse(matcher.isSatisfiedBy(dir("a/b/c")));
+        assertFalse(matcher.isSatisfiedBy(file("a/b")));
+    }
+
+    @Test public void testNameOnlyPatternsDoNotMatchDirs() {
+        Spec<RelativePath> matcher = matcher(false, true, "**/*.java");
+
+        assertTrue(matcher.isSatisfiedBy(file("a/b.java")));
+        assertFalse(matcher.isSatisfiedBy(dir("a/b.java")));
+
+        matcher = matcher(true, true, "**/*.java");
+        assertTrue(matcher.isSatisfiedBy(dir("a/b.java")));
+        assertTrue(matcher.isSatisfiedBy(dir("a")));
+    }
+
+    @Test public void testGreedyStepsMatchAnyNumberOfSegments() {
+        Spec<RelativePath> matcher = matcher(false, true, "**/a/b", "c/**/d/**");
+
+        assertTrue(matcher.isSatisfiedBy(file("a/b")));
+        assertTrue(matcher.isSatisfiedBy(file("a/a/b")));
+        assertTrue(matcher.isSatisfiedBy(file("x/a/b/a/b")));
+        assertTrue(matcher.isSatisfiedBy(file("c/d")));
+        assertTrue(matcher.isSatisfiedBy(file("c/x/d/d/y")));
+        assertFalse(matcher.isSatisfiedBy(file("a/b/c")));
+        assertFalse(matcher.isSatisfiedBy(file("c/x/y")));
+    }
+
+    @Test public void testWildcards() {
+        Spec<RelativePath> matcher = matcher(false, true, "*.txt", "a*b/?", "pre*");
+
+        assertTrue(matcher.isSatisfiedBy(file(".txt")));
+        assertTrue(matcher.isSatisfiedBy(file("a.txt")));
+        assertTrue(matcher.isSatisfiedBy(file("ab/c")));
+        assertTrue(matcher.isSatisfiedBy(file("axxb/c")));
+        assertTrue(matcher.isSatisfiedBy(file("pre")));
+        assertTrue(matcher.isSatisfiedBy(file("prefix")));
+        assertFalse(matcher.isSatisfiedBy(file("a.txt.bak")));
+        assertFalse(matcher.isSatisfiedBy(file("ab/cd")));
+        assertFalse(matcher.isSatisfiedBy(file("pr")));
+        assertFalse(matcher.isSatisfiedBy(file("a\n.txt")));
+    }
+
+    @Test public void testCaseSensitivity() {
+        assertFalse(matcher(false, true, "a/B*.txt").isSatisfiedBy(file("A/b.TXT")));
+        assertTrue(matcher(false, false, "a/B*.txt").isSatisfiedBy(file("A/b.TXT")));
+    }
+
+    @Test public void testTrailingSlashAndBackslashSeparators() {
+        Spec<RelativePath> matcher = matcher(false, true, "a\\b/");
+
+        assertTrue(matcher.isSatisfiedBy(file("a/b/c")));
+        assertTrue(matcher.isSatisfiedBy(dir("a/b")));
+        assertFalse(matcher.isSatisfiedBy(file("a/c")));
+    }
+
+    @Test public void testNoPatternsMatchesNothing() {
+        Spec<RelativePath> matcher = matcher(true, true);
+
+        assertFalse(matcher.isSatisfiedBy(file("a")));
+        assertFalse(matcher.isSatisfiedBy(dir("a")));
+    }
+
+    private Spec<RelativePath> matcher(boolean partialMatchDirs, boolean caseSensitive, String... patterns) {
+        return new CompiledPatternMatcher(partialMatchDirs, caseSensitive, Arrays.asList(patterns));
+    }
+
+    private RelativePath file(String path) {
+        return RelativePath.parse(true, path);
+    }
+
+    private RelativePath dir(String path) {
+        return RelativePath.parse(false, path);
+    }
+}
@@ -17,6 +17,7 @@
 package org.gradle.api.internal.project;
 
 import org.gradle.api.internal.*;
+import org.gradle.api.internal.artifacts.ivyservice.modulecache.InMemoryModuleDescriptorCache;
 import org.gradle.api.internal.classpath.DefaultModuleRegistry;
 import org.gradle.api.internal.classpath.DefaultPluginModuleRegistry;
 import org.gradle.api.internal.classpath.ModuleRegistry;
@@ -38,6 +39,7 @@ import org.gradle.logging.ProgressLoggerFactory;
 import org.gradle.logging.internal.DefaultLoggingManagerFactory;
 import org.gradle.logging.internal.DefaultProgressLoggerFactory;
 import org.gradle.messaging.remote.MessagingServer;
+import org.gradle.process.internal.WorkerProcessPool;
 import org.gradle.util.ClassLoaderFactory;
 import org.gradle.util.DefaultClassLoaderFactory;
 import org.junit.Test;
@@ -110,6 +112,16 @@ public class GlobalServicesRegistryTest {
         assertThat(registry.get(MessagingServer.class), instanceOf(MessagingServer.class));
     }
 
+    @Test
+    public void providesAWorkerProcessPool() {
+        assertThat(registry.get(WorkerProcessPool.class), instanceOf(WorkerProcessPool.class));
+    }
+
+    @Test
+    public void providesAnInMemoryModuleDescriptorCache() {
+        assertThat(registry.get(InMemoryModuleDescriptorCache.class), instanceOf(InMemoryModuleDescriptorCache.class));
+    }
+
     @Test
     public void providesAClassGenerator() {
         assertThat(registry.get(ClassGenerator.class), instanceOf(AsmBackedClassGenerator.class));
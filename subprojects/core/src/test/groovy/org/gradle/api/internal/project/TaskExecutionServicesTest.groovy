@@ -25,8 +25,12 @@ import org.gradle.api.invocation.Gradle
 import org.gradle.cache.DirectoryCacheBuilder
 import org.gradle.cache.PersistentCache
 import org.gradle.internal.service.ServiceRegistry
+import org.gradle.api.InvalidUserDataException
+import org.gradle.util.SetSystemProperties
+import org.junit.Rule
 
 class TaskExecutionServicesTest extends Specification {
+    @Rule SetSystemProperties systemProperties
     final ServiceRegistry parent = Mock()
     final Gradle gradle = Mock()
     final TaskExecutionServices services = new TaskExecutionServices(parent, gradle)
@@ -51,4 +55,29 @@ class TaskExecutionServicesTest extends Specification {
         services.get(TaskExecuter) instanceof ExecuteAtMostOnceTaskExecuter
         services.get(TaskExecuter).is(services.get(TaskExecuter))
     }
+
+    def "hashes files using MD5 by default"() {
+        expect:
+        TaskExecutionServices.snapshotHashAlgorithm == "MD5"
+    }
+
+    def "can hash files using Murmur3"() {
+        given:
+        System.setProperty(TaskExecutionServices.SNAPSHOT_HASH_ALGORITHM_PROPERTY, "murmur3")
+
+        expect:
+        TaskExecutionServices.snapshotHashAlgorithm == "MURMUR3"
+    }
+
+    def "fails when an unsupported hash algorithm is specified"() {
+        given:
+        System.setProperty(TaskExecutionServices.SNAPSHOT_HASH_ALGORITHM_PROPERTY, "SHA1")
+
+        when:
+        TaskExecutionServices.snapshotHashAlgorithm
+
+        then:
+        InvalidUserDataException e = thrown()
+        e.message == "Cannot hash files using algorithm 'SHA1' specified by system property 'org.gradle.snapshot.hashAlgorithm'. Supported algorithms are MD5 and MURMUR3."
+    }
 }
@@ -121,6 +121,18 @@ class PatternSetTest extends AbstractTestForPatternSet {
         assertFalse(spec.isSatisfiedBy(element(true, 'b')))
     }
 
+    @Test public void greedyPatternsMatchRepeatedNames() {
+        patternSet.include '**/a/b'
+        patternSet.exclude '**/c/c'
+        Spec<FileTreeElement> spec = patternSet.asSpec
+
+        assertTrue(spec.isSatisfiedBy(element(true, 'a', 'b')))
+        assertTrue(spec.isSatisfiedBy(element(true, 'a', 'a', 'b')))
+        assertTrue(spec.isSatisfiedBy(element(true, 'c', 'a', 'b')))
+        assertFalse(spec.isSatisfiedBy(element(true, 'a', 'b', 'c')))
+        assertFalse(spec.isSatisfiedBy(element(false, 'c', 'c', 'c')))
+    }
+
     @Test public void createsSpecForIncludeSpecs() {
         patternSet.include({ FileTreeElement element -> element.file.name.contains('a') } as Spec)
         Spec<FileTreeElement> spec = patternSet.asSpec
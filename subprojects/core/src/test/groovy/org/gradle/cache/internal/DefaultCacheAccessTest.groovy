@@ -22,6 +22,9 @@ import org.gradle.util.TemporaryFolder
 import org.junit.Rule
 import spock.lang.Specification
 
+import java.util.concurrent.CyclicBarrier
+import java.util.concurrent.TimeUnit
+
 import static org.gradle.cache.internal.FileLockManager.LockMode.*
 
 class DefaultCacheAccessTest extends Specification {
@@ -401,6 +404,66 @@ class DefaultCacheAccessTest extends Specification {
         0 * _._
     }
 
+    def "can use cache from several threads at the same time and releases lock when the last thread finishes"() {
+        def barrier = new CyclicBarrier(2)
+        def failures = Collections.synchronizedList([])
+
+        given:
+        manager.open(None)
+        def cache = manager.newCache(targetFile, String, Integer)
+
+        when:
+        def threads = (1..2).collect {
+            Thread.start {
+                try {
+                    manager.useCacheConcurrently("some operation", {
+                        barrier.await(20, TimeUnit.SECONDS)
+                        canAccess cache
+                        barrier.await(20, TimeUnit.SECONDS)
+                    } as Factory)
+                } catch (Throwable t) {
+                    failures << t
+                }
+            }
+        }
+        threads*.join()
+
+        then:
+        failures.empty
+        1 * lockManager.lock(lockFile, Exclusive, "<display-name>", "some operation") >> lock
+        _ * lock.readFile(_)
+        _ * lock.writeFile(_)
+        1 * lock.close()
+        0 * _._
+    }
+
+    def "releases lock before long running operation and reacquires after when using cache concurrently"() {
+        Factory<String> action = Mock()
+        Factory<String> longRunningAction = Mock()
+
+        given:
+        manager.open(None)
+        def cache = manager.newCache(targetFile, String, Integer)
+
+        when:
+        manager.useCacheConcurrently("some operation", action)
+
+        then:
+        1 * action.create() >> {
+            canAccess cache
+            manager.longRunningOperation("nested", longRunningAction)
+            canAccess cache
+        }
+        1 * longRunningAction.create() >> {
+            cannotAccess cache
+        }
+        2 * lockManager.lock(lockFile, Exclusive, "<display-name>", "some operation") >> lock
+        _ * lock.readFile(_)
+        _ * lock.writeFile(_)
+        2 * lock.close()
+        0 * _._
+    }
+
     def "closes caches at the end of the cache action when initial lock mode is none"() {
         Factory<String> action = Mock()
 
@@ -31,6 +31,7 @@ import java.util.*;
 import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 
 public class BTreePersistentIndexedCacheTest {
     @Rule
@@ -43,7 +44,11 @@ public class BTreePersistentIndexedCacheTest {
     @Before
     public void setup() {
         cacheFile = tmpDir.file("cache.bin");
-        cache = new BTreePersistentIndexedCache<String, Integer>(cacheFile, stringSerializer, integerSerializer, (short) 4, 100);
+        cache = new BTreePersistentIndexedCache<String, Integer>(cacheFile, createStore(cacheFile), stringSerializer, integerSerializer, (short) 4, 100);
+    }
+
+    protected BlockStore createStore(File cacheFile) {
+        return new FileBackedBlockStore(cacheFile);
     }
 
     @Test
@@ -111,7 +116,7 @@ public class BTreePersistentIndexedCacheTest {
 
     @Test
     public void reusesEmptySpaceWhenPuttingEntries() {
-        BTreePersistentIndexedCache<String, String> cache = new BTreePersistentIndexedCache<String, String>(cacheFile, stringSerializer, stringSerializer, (short) 4, 100);
+        BTreePersistentIndexedCache<String, String> cache = new BTreePersistentIndexedCache<String, String>(cacheFile, createStore(cacheFile), stringSerializer, stringSerializer, (short) 4, 100);
 
         cache.put("key_1", "abcd");
         cache.put("key_2", "abcd");
@@ -220,7 +225,7 @@ public class BTreePersistentIndexedCacheTest {
         cacheFile.assertIsFile();
         cacheFile.write("some junk");
 
-        BTreePersistentIndexedCache<String, Integer> cache = new BTreePersistentIndexedCache<String, Integer>(cacheFile, stringSerializer, integerSerializer);
+        BTreePersistentIndexedCache<String, Integer> cache = new BTreePersistentIndexedCache<String, Integer>(cacheFile, createStore(cacheFile), stringSerializer, integerSerializer);
 
         assertNull(cache.get("key_1"));
         cache.put("key_1", 99);
@@ -236,7 +241,7 @@ public class BTreePersistentIndexedCacheTest {
 
     @Test
     public void canUseFileAsKey() {
-        BTreePersistentIndexedCache<File, Integer> cache = new BTreePersistentIndexedCache<File, Integer>(cacheFile, new DefaultSerializer<File>(), integerSerializer);
+        BTreePersistentIndexedCache<File, Integer> cache = new BTreePersistentIndexedCache<File, Integer>(cacheFile, createStore(cacheFile), new DefaultSerializer<File>(), integerSerializer);
 
         cache.put(new File("file"), 1);
         cache.put(new File("dir/file"), 2);
@@ -258,6 +263,56 @@ public class BTreePersistentIndexedCacheTest {
         assertThat(cache.get(key2), equalTo(2));
     }
 
+    @Test
+    public void canReadEntriesConcurrentlyWithUpdates() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            cache.put(String.format("key_%d", i), i);
+        }
+
+        final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 4; i++) {
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < 20; j++) {
+                            for (int k = 0; k < 100; k++) {
+                                assertThat(cache.get(String.format("key_%d", k)), equalTo(k));
+                            }
+                        }
+                    } catch (Throwable t) {
+                        failures.add(t);
+                    }
+                }
+            });
+        }
+        threads.add(new Thread() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = 100; i < 200; i++) {
+                        cache.put(String.format("key_%d", i), i);
+                    }
+                } catch (Throwable t) {
+                    failures.add(t);
+                }
+            }
+        });
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertTrue(failures.toString(), failures.isEmpty());
+        for (int i = 0; i < 200; i++) {
+            assertThat(cache.get(String.format("key_%d", i)), equalTo(i));
+        }
+        cache.verify();
+    }
+
     private void checkAdds(Integer... values) {
         checkAdds(Arrays.asList(values));
     }
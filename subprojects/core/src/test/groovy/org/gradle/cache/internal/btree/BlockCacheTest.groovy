@@ -0,0 +1,175 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.cache.internal.btree
+
+import spock.lang.Specification
+
+class BlockCacheTest extends Specification {
+    final owner1 = new Object()
+    final owner2 = new Object()
+
+    def "returns cached block for owner and position"() {
+        def cache = new BlockCache(10000)
+        def block1 = block(0, 100)
+        def block2 = block(0, 100)
+        cache.put(owner1, block1)
+        cache.put(owner2, block2)
+
+        expect:
+        cache.get(owner1, new BlockPointer(0)).is(block1)
+        cache.get(owner2, new BlockPointer(0)).is(block2)
+        cache.get(owner1, new BlockPointer(100)) == null
+    }
+
+    def "evicts least recently used blocks when total size exceeds maximum"() {
+        def cache = new BlockCache(700)
+        def block1 = block(0, 200)
+        def block2 = block(200, 200)
+        def block3 = block(400, 200)
+
+        when:
+        cache.put(owner1, block1)
+        cache.put(owner1, block2)
+        cache.get(owner1, block1.pos)
+        cache.put(owner1, block3)
+
+        then:
+        cache.get(owner1, block1.pos).is(block1)
+        cache.get(owner1, block2.pos) == null
+        cache.get(owner1, block3.pos).is(block3)
+        cache.evictions == 1
+        cache.blockCount == 2
+        cache.size <= 700
+    }
+
+    def "does not cache block larger than maximum size"() {
+        def cache = new BlockCache(100)
+        def block = block(0, 200)
+
+        when:
+        cache.put(owner1, block)
+
+        then:
+        cache.get(owner1, block.pos) == null
+        cache.size == 0
+    }
+
+    def "can discard blocks for owner"() {
+        def cache = new BlockCache(10000)
+        def block1 = block(0, 100)
+        def block2 = block(100, 100)
+        def block3 = block(0, 100)
+        cache.put(owner1, block1)
+        cache.put(owner1, block2)
+        cache.put(owner2, block3)
+
+        when:
+        cache.remove(owner1, block1.pos)
+
+        then:
+        cache.get(owner1, block1.pos) == null
+        cache.get(owner1, block2.pos).is(block2)
+
+        when:
+        cache.removeAll(owner1)
+
+        then:
+        cache.get(owner1, block2.pos) == null
+        cache.get(owner2, block3.pos).is(block3)
+        cache.blockCount == 1
+    }
+
+    def "tracks hit rate"() {
+        def cache = new BlockCache(10000)
+        def block = block(0, 100)
+        cache.put(owner1, block)
+
+        when:
+        cache.get(owner1, block.pos)
+        cache.get(owner1, block.pos)
+        cache.get(owner1, block.pos)
+        cache.get(owner2, block.pos)
+
+        then:
+        cache.hits == 3
+        cache.misses == 1
+        cache.hitRate == 0.75d
+    }
+
+    def block(long pos, int size) {
+        def payload = new TestPayload(size)
+        new TestBlock(payload, new BlockPointer(pos))
+        return payload
+    }
+
+    static class TestPayload extends BlockPayload {
+        final int size
+
+        TestPayload(int size) {
+            this.size = size
+        }
+
+        @Override
+        protected int getSize() {
+            return size
+        }
+
+        @Override
+        protected int getType() {
+            return 0
+        }
+
+        @Override
+        protected void read(DataInputStream inputStream) {
+        }
+
+        @Override
+        protected void write(DataOutputStream outputStream) {
+        }
+    }
+
+    static class TestBlock extends Block {
+        final BlockPointer pos
+
+        TestBlock(BlockPayload payload, BlockPointer pos) {
+            super(payload)
+            this.pos = pos
+        }
+
+        @Override
+        int getSize() {
+            return payload.size
+        }
+
+        @Override
+        RuntimeException blockCorruptedException() {
+            return new CorruptedCacheException("corrupt")
+        }
+
+        @Override
+        boolean hasPos() {
+            return true
+        }
+
+        @Override
+        void setPos(BlockPointer pos) {
+        }
+
+        @Override
+        void setSize(int size) {
+        }
+    }
+}
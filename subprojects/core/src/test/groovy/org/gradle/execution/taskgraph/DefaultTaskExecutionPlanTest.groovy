@@ -19,6 +19,7 @@ package org.gradle.execution.taskgraph;
 
 import org.gradle.api.CircularReferenceException
 import org.gradle.api.Task
+import org.gradle.api.Transformer
 import org.gradle.api.internal.TaskInternal
 import org.gradle.api.internal.changedetection.TaskArtifactStateCacheAccess
 import org.gradle.api.internal.project.ProjectInternal
@@ -34,6 +35,7 @@ import org.hamcrest.Description
 import org.jmock.api.Invocation
 import spock.lang.Specification
 
+import static org.gradle.util.HelperUtil.createChildProject
 import static org.gradle.util.HelperUtil.createRootProject
 import static org.gradle.util.WrapUtil.toList
 import static org.gradle.util.WrapUtil.toSet
@@ -279,6 +281,34 @@ public class DefaultTaskExecutionPlanTest extends Specification {
         e == failure
     }
 
+    def "does not attempt to execute tasks whose dependencies were skipped"() {
+        RuntimeException failure = new RuntimeException()
+        final Task a = brokenTask("a", failure)
+        final Task b = task("b", a)
+        final Task c = task("c", b)
+        final Task d = task("d")
+        final Task e = task("e", c, d)
+        executionPlan.addToTaskGraph([e])
+
+        TaskFailureHandler handler = Mock()
+        handler.onTaskFailure(a) >> {
+            // Ignore failure
+        }
+
+        when:
+        executionPlan.useFailureHandler(handler)
+
+        then:
+        executedTasks == [a, d]
+
+        when:
+        executionPlan.awaitCompletion()
+
+        then:
+        RuntimeException exception = thrown()
+        exception == failure
+    }
+
     def "clear removes all tasks"() {
         given:
         Task a = task("a");
@@ -364,6 +394,92 @@ public class DefaultTaskExecutionPlanTest extends Specification {
         executedTasks == [c]
     }
 
+    def "prioritises tasks by the estimated duration of the longest chain of tasks that they start"() {
+        given:
+        Task a = task("a")
+        Task b = task("b")
+        Task c = task("c", a)
+        Task d = task("d", b)
+        def durations = [a: 10L, b: 50L, c: 100L, d: 20L]
+
+        when:
+        executionPlan.addToTaskGraph([c, d])
+        executionPlan.prioritise({ Task task -> durations[task.name] } as Transformer)
+
+        then:
+        executionPlan.tasks == [a, c, b, d]
+        readyTasks == [a, c, b, d]
+
+        when:
+        durations = [a: 10L, b: 50L, c: 20L, d: 100L]
+        executionPlan.clear()
+        executionPlan.addToTaskGraph([c, d])
+        executionPlan.prioritise({ Task task -> durations[task.name] } as Transformer)
+
+        then:
+        readyTasks == [b, d, a, c]
+    }
+
+    def "does not return a ready task for a project which has a task executing"() {
+        given:
+        def child = createChildProject(root, "child")
+        Task a = task("a")
+        Task b = task("b")
+        Task c = task("c", child)
+
+        when:
+        executionPlan.addToTaskGraph([a, b, c])
+        def taskInfoA = executionPlan.getReadyTaskToExecute()
+        def taskInfoC = executionPlan.getReadyTaskToExecute()
+
+        then:
+        taskInfoA.task == a
+        taskInfoC.task == c
+
+        when:
+        executionPlan.taskComplete(taskInfoA)
+        executionPlan.taskComplete(taskInfoC)
+
+        then:
+        readyTasks == [b]
+    }
+
+    def "does not return ready tasks whose dependencies failed to execute"() {
+        RuntimeException failure = new RuntimeException()
+        final Task a = brokenTask("a", failure)
+        final Task b = task("b", a)
+        final Task c = task("c")
+        executionPlan.addToTaskGraph([b, c])
+
+        TaskFailureHandler handler = Mock()
+        handler.onTaskFailure(a) >> {
+            // Ignore failure
+        }
+
+        when:
+        executionPlan.useFailureHandler(handler)
+
+        then:
+        readyTasks == [a, c]
+
+        when:
+        executionPlan.awaitCompletion()
+
+        then:
+        RuntimeException e = thrown()
+        e == failure
+    }
+
+    def getReadyTasks() {
+        def tasks = []
+        def taskInfo
+        while ((taskInfo = executionPlan.getReadyTaskToExecute()) != null) {
+            tasks << taskInfo.task
+            executionPlan.taskComplete(taskInfo)
+        }
+        return tasks
+    }
+
     private void dependsOn(TaskInternal task, final Task... dependsOnTasks) {
         TaskDependency taskDependency = Mock()
         task.getTaskDependencies() >> taskDependency
@@ -380,16 +496,24 @@ public class DefaultTaskExecutionPlanTest extends Specification {
     }
     
     private TaskInternal task(final String name, final Task... dependsOnTasks) {
-        def task = createTask(name);
+        return task(name, root, dependsOnTasks)
+    }
+
+    private TaskInternal task(final String name, final ProjectInternal project, final Task... dependsOnTasks) {
+        def task = createTask(name, project);
         dependsOn(task, dependsOnTasks);
         task.state.getFailure() >> null
         return task;
     }
     
     private TaskInternal createTask(final String name) {
+        return createTask(name, root)
+    }
+
+    private TaskInternal createTask(final String name, final ProjectInternal project) {
         TaskInternal task = Mock()
         TaskState state = Mock()
-        task.getProject() >> root
+        task.getProject() >> project
         task.name >> name
         task.path >> ':' + name
         task.state >> state
@@ -434,6 +558,10 @@ public class DefaultTaskExecutionPlanTest extends Specification {
             throw new UnsupportedOperationException();
         }
 
+        public <T> T useCacheConcurrently(String operationDisplayName, Factory<? extends T> action) {
+            return action.create();
+        }
+
         public <K, V> PersistentIndexedCache<K, V> createCache(String cacheName, Class<K> keyType, Class<V> valueType, Serializer<V> valueSerializer) {
             throw new UnsupportedOperationException();
         }
@@ -571,6 +571,10 @@ public class DefaultTaskGraphExecuterTest {
             throw new UnsupportedOperationException();
         }
 
+        public <T> T useCacheConcurrently(String operationDisplayName, Factory<? extends T> action) {
+            return action.create();
+        }
+
         public <K, V> PersistentIndexedCache<K, V> createCache(String cacheName, Class<K> keyType, Class<V> valueType, Serializer<V> valueSerializer) {
             throw new UnsupportedOperationException();
         }
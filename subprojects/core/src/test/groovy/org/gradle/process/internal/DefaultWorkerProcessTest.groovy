@@ -160,6 +160,29 @@ class DefaultWorkerProcessTest extends MultithreadedTestCase {
         workerProcess.waitForStop()
     }
 
+    @Test
+    public void runsStopActionsWhenChildProcessStops() {
+        def listener = expectAttachesListener()
+        ExecResult execResult = context.mock(ExecResult.class)
+        def stopped = []
+
+        context.checking {
+            allowing(execResult).rethrowFailure()
+            will(returnValue(execResult))
+            allowing(execResult).assertNormalExitValue()
+            will(returnValue(execResult))
+        }
+
+        workerProcess.whenStopped({ stopped << 'before' } as Runnable)
+        assertThat(stopped, equalTo([]))
+
+        listener.executionFinished(execHandle, execResult)
+        assertThat(stopped, equalTo(['before']))
+
+        workerProcess.whenStopped({ stopped << 'after' } as Runnable)
+        assertThat(stopped, equalTo(['before', 'after']))
+    }
+
     private ExecHandleListener expectAttachesListener() {
         ExecHandleListener listener
         context.checking {
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.process.internal
+
+import org.gradle.api.Action
+import org.gradle.api.internal.file.IdentityFileResolver
+import org.gradle.internal.concurrent.DefaultExecutorFactory
+import org.gradle.messaging.remote.ConnectEvent
+import org.gradle.messaging.remote.MessagingServer
+import org.gradle.messaging.remote.ObjectConnection
+import org.gradle.messaging.remote.internal.inet.SocketInetAddress
+import org.gradle.process.internal.child.PooledWorkerControl
+import org.gradle.process.internal.child.PooledWorkerListener
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+
+class WorkerProcessPoolTest extends Specification {
+    final MessagingServer server = Mock()
+    final WorkerProcessPool pool = new WorkerProcessPool(server, new DefaultExecutorFactory())
+    final List<TestProcess> processes = []
+    Action<ConnectEvent<ObjectConnection>> connectAction
+
+    def setup() {
+        _ * server.accept(_) >> { args ->
+            connectAction = args[0]
+            return new SocketInetAddress(InetAddress.getByName("127.0.0.1"), 40)
+        }
+    }
+
+    def cleanup() {
+        pool.stop()
+    }
+
+    def "runs later sessions with the same options in the same process"() {
+        def process = process()
+
+        when:
+        runSession(sessionBuilder())
+        runSession(sessionBuilder())
+
+        then:
+        processes.size() == 1
+        process.sessions == 2
+    }
+
+    def "starts a separate process for sessions with different jvm args"() {
+        def process1 = process()
+        def process2 = process()
+
+        when:
+        runSession(sessionBuilder())
+        runSession(sessionBuilder("-Xmx64m"))
+        runSession(sessionBuilder())
+
+        then:
+        process1.sessions == 2
+        process2.sessions == 1
+    }
+
+    def "stops process and starts a new one when a session fails"() {
+        def process1 = process()
+        def process2 = process()
+        def failure = new RuntimeException("broken")
+
+        when:
+        def session = pool.newSession(sessionBuilder(), processBuilder())
+        session.start()
+        process1.complete(failure)
+        session.waitForStop()
+
+        then:
+        ExecException e = thrown()
+        e.cause == failure
+        process1.stopped.count == 0
+
+        when:
+        runSession(sessionBuilder())
+
+        then:
+        process2.sessions == 1
+    }
+
+    def "stops process and starts a new one when a session never connects"() {
+        def process1 = process(false)
+        def process2 = process()
+
+        when:
+        pool.newSession(sessionBuilder(), processBuilder()).start()
+
+        then:
+        ExecException e = thrown()
+        e.message.startsWith("Never received a connection from ")
+        process1.stopped.count == 0
+
+        when:
+        runSession(sessionBuilder())
+
+        then:
+        process2.sessions == 1
+    }
+
+    def "runs stop actions when a session completes"() {
+        def process = process()
+        def action = Mock(Runnable)
+
+        when:
+        def session = pool.newSession(sessionBuilder(), processBuilder())
+        session.start()
+        session.whenStopped(action)
+
+        then:
+        0 * action.run()
+
+        when:
+        process.complete(null)
+        session.waitForStop()
+
+        then:
+        1 * action.run()
+
+        when:
+        session.whenStopped(action)
+
+        then:
+        1 * action.run()
+    }
+
+    def "stopping the pool stops the pooled processes"() {
+        def process = process()
+        runSession(sessionBuilder())
+
+        when:
+        pool.stop()
+
+        then:
+        process.stopped.count == 0
+    }
+
+    def runSession(WorkerProcessBuilder sessionBuilder) {
+        def session = pool.newSession(sessionBuilder, processBuilder())
+        session.start()
+        processes.find { it.running }.complete(null)
+        session.waitForStop()
+    }
+
+    def sessionBuilder(String... jvmArgs) {
+        def builder = processBuilder()
+        builder.worker(new TestAction())
+        builder.javaCommand.jvmArgs(jvmArgs as List)
+        return builder
+    }
+
+    def processBuilder() {
+        return new WorkerProcessBuilder(new IdentityFileResolver()) {
+            @Override
+            WorkerProcess build() {
+                def process = processes.find { !it.started }
+                process.started = true
+                return process.workerProcess
+            }
+        }
+    }
+
+    def process(boolean connects = true) {
+        WorkerProcess workerProcess = Mock()
+        ObjectConnection connection = Mock()
+        ObjectConnection sessionConnection = Mock()
+        PooledWorkerControl control = Mock()
+        def process = new TestProcess(workerProcess: workerProcess)
+        processes << process
+
+        _ * workerProcess.connection >> connection
+        _ * workerProcess.waitForStop() >> { process.stopped.await(); null }
+        _ * connection.addIncoming(PooledWorkerListener, _) >> { args -> process.listener = args[1] }
+        _ * connection.addOutgoing(PooledWorkerControl) >> control
+        _ * control.runSession(_, _) >> { args ->
+            process.sessionId = args[0]
+            process.sessions++
+            process.running = true
+            if (connects) {
+                connectAction.execute(new ConnectEvent<ObjectConnection>(sessionConnection, null, null))
+            } else {
+                process.complete(new RuntimeException("broken"))
+            }
+        }
+        _ * control.stop() >> { process.stopped.countDown() }
+        return process
+    }
+
+    static class TestProcess {
+        WorkerProcess workerProcess
+        final CountDownLatch stopped = new CountDownLatch(1)
+        boolean started
+        boolean running
+        int sessions
+        PooledWorkerListener listener
+        Object sessionId
+
+        void complete(Throwable failure) {
+            running = false
+            listener.sessionCompleted(sessionId, failure)
+        }
+    }
+
+    static class TestAction implements Action<WorkerProcessContext>, Serializable {
+        void execute(WorkerProcessContext context) {
+        }
+    }
+}
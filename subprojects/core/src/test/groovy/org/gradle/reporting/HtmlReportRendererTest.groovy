@@ -15,6 +15,7 @@
  */
 package org.gradle.reporting
 
+import org.gradle.api.Action
 import spock.lang.Specification
 import org.w3c.dom.Element
 import org.junit.Rule
@@ -45,6 +46,26 @@ class HtmlReportRendererTest extends Specification {
 ''')
     }
 
+    def "writes streamed text when report is written"() {
+        StringWriter writer = new StringWriter()
+        def streamedRenderer = new DomReportRenderer<String>() {
+            @Override
+            void render(String model, Element parent) {
+                appendStreamedText(append(parent, "pre"), { Appendable target -> target.append(model) } as Action)
+            }
+        }
+
+        when:
+        renderer.renderer(streamedRenderer).writeTo("<a> & \u0256", writer)
+
+        then:
+        writer.toString() == TextUtil.toPlatformLineSeparators('''<!DOCTYPE HTML PUBLIC "-//W3C//DTD HTML 4.01//EN" "http://www.w3.org/TR/html4/strict.dtd">
+<html>
+<pre>&lt;a&gt; &amp; &#598;</pre>
+</html>
+''')
+    }
+
     def "copies resources into output directory"() {
         File destFile = tmpDir.file('report.txt')
 
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.util.hash
+
+import org.gradle.util.TemporaryFolder
+import org.junit.Rule
+import spock.lang.Specification
+
+class HashUtilTest extends Specification {
+    @Rule TemporaryFolder tmpDir = new TemporaryFolder()
+
+    def "calculates hash of string"() {
+        expect:
+        HashUtil.createHash("The quick brown fox jumps over the lazy dog", algorithm).asHexString() == hexString
+
+        where:
+        algorithm        | hexString
+        "MD5"            | "9e107d9d372bb6826bd81d3542a419d6"
+        "SHA1"           | "2fd4e1c67a2d28fced849ee1bb76e7391b93eb12"
+        HashUtil.MURMUR3 | "6c1b07bc7bbc4be347939ac4a93c437a"
+    }
+
+    def "hash of file is the same as hash of its content"() {
+        def file = tmpDir.file("content")
+        def content = new byte[size]
+        new Random(1).nextBytes(content)
+        file.bytes = content
+
+        expect:
+        HashUtil.createHash(file, algorithm) == HashUtil.createHash(new ByteArrayInputStream(content), algorithm)
+        HashUtil.createHash(file, algorithm) == HashUtil.createHash(file, algorithm)
+
+        where:
+        algorithm        | size
+        "MD5"            | 0
+        "MD5"            | 100000
+        "SHA1"           | 100000
+        HashUtil.MURMUR3 | 0
+        HashUtil.MURMUR3 | 15
+        HashUtil.MURMUR3 | 100001
+    }
+
+    def "calculates same hash when content is read in chunks"() {
+        def content = new byte[1000]
+        new Random(1).nextBytes(content)
+        def random = new Random(2)
+        def chunked = new ByteArrayInputStream(content) {
+            @Override
+            int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, random.nextInt(40) + 1))
+            }
+        }
+
+        expect:
+        HashUtil.createHash(chunked, HashUtil.MURMUR3) == HashUtil.createHash(new ByteArrayInputStream(content), HashUtil.MURMUR3)
+    }
+}
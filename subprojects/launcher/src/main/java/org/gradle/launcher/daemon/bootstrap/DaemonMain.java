@@ -19,6 +19,7 @@ import com.google.common.io.Files;
 import org.gradle.api.logging.LogLevel;
 import org.gradle.api.logging.Logger;
 import org.gradle.api.logging.Logging;
+import org.gradle.initialization.DefaultGradleLauncherFactory;
 import org.gradle.launcher.bootstrap.EntryPoint;
 import org.gradle.launcher.bootstrap.ExecutionListener;
 import org.gradle.launcher.daemon.configuration.DaemonServerConfiguration;
@@ -118,6 +119,8 @@ public class DaemonMain extends EntryPoint {
             LOGGER.info("Daemon hit idle timeout (" + configuration.getIdleTimeout() + "ms), stopping...");
         } finally {
             daemon.stop();
+            // Stops the services shared by the builds run in this daemon, such as its worker processes and HTTP connections
+            daemonServices.get(DefaultGradleLauncherFactory.class).stop();
         }
     }
 
@@ -15,6 +15,7 @@
  */
 package org.gradle.launcher.daemon.server
 
+import org.gradle.initialization.DefaultGradleLauncherFactory
 import org.gradle.internal.nativeplatform.ProcessEnvironment
 import org.gradle.launcher.daemon.configuration.DefaultDaemonServerConfiguration
 import org.gradle.launcher.daemon.registry.DaemonDir
@@ -41,6 +42,11 @@ class DaemonServicesTest extends Specification {
         services.get(ProcessEnvironment.class) != null
     }
 
+    def "makes a GradleLauncherFactory available"() {
+        expect:
+        services.get(DefaultGradleLauncherFactory.class) != null
+    }
+
     def "makes a Daemon available"() {
         expect:
         services.get(Daemon.class) != null
@@ -16,7 +16,10 @@
 
 package org.gradle.peformance
 
+import org.gradle.integtests.fixtures.HttpServer
 import org.gradle.peformance.fixture.PerformanceTestRunner
+import org.gradle.peformance.fixture.TestProjectLocator
+import org.junit.Rule
 import spock.lang.Specification
 import spock.lang.Unroll
 
@@ -24,6 +27,8 @@ import spock.lang.Unroll
  * by Szczepan Faber, created at: 2/9/12
  */
 class PerformanceTest extends Specification {
+    @Rule HttpServer server = new HttpServer()
+
     @Unroll("Project '#testProject' clean build")
     def "clean build"() {
         expect:
@@ -60,6 +65,70 @@ class PerformanceTest extends Specification {
         "small"           | 5    | 500
         "multi"           | 5    | 1000
         "lotDependencies" | 5    | 1000
+        "largeSrc"        | 5    | 1000
+    }
+
+    @Unroll("Project '#testProject' #tasksToRun with #args compared to #baselineArgs")
+    def "current build with optimisation enabled"() {
+        expect:
+        def result = new PerformanceTestRunner(testProject: testProject,
+                tasksToRun: tasksToRun,
+                args: args,
+                baselineArgs: baselineArgs,
+                runs: runs,
+                warmUpRuns: 1,
+                accuracyMs: accuracyMs
+        ).run()
+        result.assertCurrentReleaseIsNotSlower()
+
+        where:
+        testProject       | tasksToRun         | args                                       | baselineArgs                               | runs | accuracyMs
+        "largeSrc"        | ['build']          | ['-Dorg.gradle.snapshot.threads=4']        | ['-Dorg.gradle.snapshot.threads=1']        | 5    | 1000
+        "multi"           | ['build']          | ['-Dorg.gradle.cache.memoryMapped=true']   | ['-Dorg.gradle.cache.memoryMapped=false']  | 5    | 1000
+        "largeSrc"        | ['build']          | ['-Dorg.gradle.cache.memoryMapped=true']   | ['-Dorg.gradle.cache.memoryMapped=false']  | 5    | 1000
+        "multi"           | ['clean', 'build'] | ['--parallel-threads=4']                   | []                                         | 5    | 1000
+        "lotDependencies" | ['clean', 'build'] | ['--parallel-threads=4']                   | []                                         | 5    | 1000
+    }
+
+    @Unroll("Project '#testProject' clean build resolving from an HTTP repository")
+    def "clean build resolving from an HTTP repository"() {
+        given:
+        server.start()
+        server.allowGetOrHead("/repo", new File(new TestProjectLocator().findProjectDir(testProject), "mavenRepo"))
+
+        expect:
+        // The repository has no checksums, so each build downloads every module and artifact again
+        def result = new PerformanceTestRunner(testProject: testProject,
+                tasksToRun: ['clean', 'build'],
+                args: ['--refresh-dependencies', "-PrepositoryUrl=http://localhost:${server.port}/repo".toString()],
+                runs: runs,
+                warmUpRuns: 1,
+                accuracyMs: accuracyMs
+        ).run()
+        result.assertCurrentReleaseIsNotSlower()
+
+        where:
+        testProject        | runs | accuracyMs
+        "httpDependencies" | 5    | 1000
+    }
+
+    @Unroll("Project '#testProject' task graph construction")
+    def "task graph construction"() {
+        expect:
+        def result = new PerformanceTestRunner(testProject: testProject,
+                tasksToRun: ['build'],
+                args: ['--dry-run'],
+                runs: runs,
+                warmUpRuns: 1,
+                accuracyMs: accuracyMs
+        ).run()
+        result.assertCurrentReleaseIsNotSlower()
+        result.assertMemoryUsed(0.01)
+
+        where:
+        testProject  | runs | accuracyMs
+        "multi"      | 5    | 1000
+        "largeMulti" | 5    | 1000
     }
 
     @Unroll("Project '#testProject' dependency report")
@@ -31,12 +31,18 @@ public class PerformanceTestRunner {
     int warmUpRuns
     int accuracyMs
     List<String> tasksToRun = ['clean', 'build']
+    List<String> args = []
+    /**
+     * When set, the builds are compared against the current distribution run with these arguments, instead of against the previous release.
+     */
+    List<String> baselineArgs
     DataCollector dataCollector = new MemoryInfoCollector(outputFileName: "build/totalMemoryUsed.txt")
 
     PerformanceResults results
 
     PerformanceResults run() {
-        results = new PerformanceResults(accuracyMs: accuracyMs, displayName: "Results for test project '$testProject'")
+        def displayName = baselineArgs == null ? "Results for test project '$testProject'" : "Results for test project '$testProject' with $args compared to $baselineArgs"
+        results = new PerformanceResults(accuracyMs: accuracyMs, displayName: displayName)
         LOGGER.lifecycle("Running performance tests for test project '{}', no. # runs: {}", testProject, runs)
         warmUpRuns.times {
             LOGGER.info("Executing warm-up run #${it+1}")
@@ -52,13 +58,13 @@ public class PerformanceTestRunner {
 
     void runOnce() {
         File projectDir = new TestProjectLocator().findProjectDir(testProject)
-        def previousExecuter = executer(previous, projectDir)
+        def previousExecuter = baselineArgs == null ? executer(previous, projectDir, args) : executer(current, projectDir, baselineArgs)
         def previousResult = MeasuredOperation.measure { MeasuredOperation operation ->
             previousExecuter.run()
         }
         dataCollector.collect(projectDir, previousResult)
 
-        def currentExecuter = executer(current, projectDir)
+        def currentExecuter = executer(current, projectDir, args)
         def currentResult = MeasuredOperation.measure { MeasuredOperation operation ->
             currentExecuter.run()
         }
@@ -67,7 +73,7 @@ public class PerformanceTestRunner {
         results.addResult(previousResult, currentResult)
     }
 
-    GradleExecuter executer(BasicGradleDistribution dist, File projectDir) {
+    GradleExecuter executer(BasicGradleDistribution dist, File projectDir, List<String> args) {
         def executer
         if (dist instanceof GradleDistribution) {
             executer = new GradleDistributionExecuter(GradleDistributionExecuter.Executer.forking, dist)
@@ -75,6 +81,6 @@ public class PerformanceTestRunner {
             executer = dist.executer()
         }
         executer.withUserHomeDir(current.userHomeDir)
-        return executer.withArguments('-u').inDirectory(projectDir).withTasks(tasksToRun)
+        return executer.withArguments(['-u'] + args).inDirectory(projectDir).withTasks(tasksToRun)
     }
 }
@@ -17,19 +17,25 @@
 package org.gradle.api.internal.tasks.testing.detection;
 
 import org.gradle.api.file.FileTree;
+import org.gradle.api.internal.changedetection.TaskArtifactStateCacheAccess;
+import org.gradle.cache.PersistentIndexedCache;
 import org.gradle.internal.Factory;
 import org.gradle.api.internal.tasks.testing.TestClassProcessor;
 import org.gradle.api.internal.tasks.testing.TestFramework;
 import org.gradle.api.internal.tasks.testing.TestResultProcessor;
 import org.gradle.api.internal.tasks.testing.WorkerTestClassProcessorFactory;
+import org.gradle.api.internal.tasks.testing.junit.JUnitTestFramework;
 import org.gradle.api.internal.tasks.testing.processors.MaxNParallelTestClassProcessor;
 import org.gradle.api.internal.tasks.testing.processors.RestartEveryNTestClassProcessor;
+import org.gradle.api.internal.tasks.testing.processors.TestClassDurations;
 import org.gradle.api.internal.tasks.testing.processors.TestMainAction;
 import org.gradle.api.internal.tasks.testing.worker.ForkingTestClassProcessor;
 import org.gradle.api.tasks.testing.Test;
 import org.gradle.internal.TrueTimeProvider;
 import org.gradle.messaging.actor.ActorFactory;
+import org.gradle.process.internal.PooledWorkerProcessFactory;
 import org.gradle.process.internal.WorkerProcessBuilder;
+import org.gradle.process.internal.WorkerProcessPool;
 
 /**
  * The default test class scanner factory.
@@ -37,16 +43,30 @@ import org.gradle.process.internal.WorkerProcessBuilder;
  * @author Tom Eyckmans
  */
 public class DefaultTestExecuter implements TestExecuter {
+    /**
+     * The system property which, when set to true, runs the tests in worker processes which are kept alive by this
+     * process for use by later test tasks and builds, rather than in new worker processes. Only used when the test
+     * task does not set {@code forkEvery} or {@code debug}.
+     */
+    public static final String REUSE_WORKERS_PROPERTY = "org.gradle.test.reuseWorkers";
     private final Factory<WorkerProcessBuilder> workerFactory;
+    private final WorkerProcessPool workerProcessPool;
     private final ActorFactory actorFactor;
+    private final TaskArtifactStateCacheAccess cacheAccess;
 
-    public DefaultTestExecuter(Factory<WorkerProcessBuilder> workerFactory, ActorFactory actorFactor) {
+    public DefaultTestExecuter(Factory<WorkerProcessBuilder> workerFactory, WorkerProcessPool workerProcessPool, ActorFactory actorFactor,
+                               TaskArtifactStateCacheAccess cacheAccess) {
         this.workerFactory = workerFactory;
+        this.workerProcessPool = workerProcessPool;
         this.actorFactor = actorFactor;
+        this.cacheAccess = cacheAccess;
     }
 
     public void execute(final Test testTask, TestResultProcessor testResultProcessor) {
         final TestFramework testFramework = testTask.getTestFramework();
+        final Factory<WorkerProcessBuilder> workerFactory = reuseWorkers(testTask)
+                ? new PooledWorkerProcessFactory(this.workerFactory, workerProcessPool)
+                : this.workerFactory;
         final WorkerTestClassProcessorFactory testInstanceFactory = testFramework.getProcessorFactory();
         final Factory<TestClassProcessor> forkingProcessorFactory = new Factory<TestClassProcessor>() {
             public TestClassProcessor create() {
@@ -60,8 +80,13 @@ public class DefaultTestExecuter implements TestExecuter {
             }
         };
 
+        // The TestNG processor executes the test classes only when it is stopped, so cannot be given test classes on demand
+        TestClassDurations durations = null;
+        if (testTask.getMaxParallelForks() > 1 && testFramework instanceof JUnitTestFramework) {
+            durations = loadDurations(testTask);
+        }
         TestClassProcessor processor = new MaxNParallelTestClassProcessor(testTask.getMaxParallelForks(),
-                reforkingProcessorFactory, actorFactor);
+                reforkingProcessorFactory, actorFactor, durations);
 
         final FileTree testClassFiles = testTask.getCandidateClassFiles();
 
@@ -72,6 +97,40 @@ public class DefaultTestExecuter implements TestExecuter {
         } else {
             detector = new DefaultTestClassScanner(testClassFiles, null, processor);
         }
-        new TestMainAction(detector, processor, testResultProcessor, new TrueTimeProvider()).run();
+        try {
+            new TestMainAction(detector, processor, testResultProcessor, new TrueTimeProvider()).run();
+        } finally {
+            if (durations != null) {
+                saveDurations(testTask, durations);
+            }
+        }
+    }
+
+    /**
+     * The durations are kept in the task artifact cache, keyed by task path, so that they are not removed by a clean.
+     */
+    private PersistentIndexedCache<String, TestClassDurations> getDurationsCache() {
+        return cacheAccess.createCache("testClassDurations", String.class, TestClassDurations.class, new TestClassDurations.DurationsSerializer());
+    }
+
+    private TestClassDurations loadDurations(final Test testTask) {
+        return cacheAccess.useCache("load test class durations", new Factory<TestClassDurations>() {
+            public TestClassDurations create() {
+                TestClassDurations durations = getDurationsCache().get(testTask.getPath());
+                return durations != null ? durations : new TestClassDurations();
+            }
+        });
+    }
+
+    private void saveDurations(final Test testTask, final TestClassDurations durations) {
+        cacheAccess.useCache("save test class durations", new Runnable() {
+            public void run() {
+                getDurationsCache().put(testTask.getPath(), durations);
+            }
+        });
+    }
+
+    private static boolean reuseWorkers(Test testTask) {
+        return Boolean.getBoolean(REUSE_WORKERS_PROPERTY) && testTask.getForkEvery() == 0 && !testTask.getDebug();
     }
 }
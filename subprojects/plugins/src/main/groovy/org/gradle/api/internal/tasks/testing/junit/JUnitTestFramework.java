@@ -17,6 +17,7 @@
 package org.gradle.api.internal.tasks.testing.junit;
 
 import org.gradle.api.Action;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.id.IdGenerator;
 import org.gradle.internal.service.ServiceRegistry;
 import org.gradle.api.internal.tasks.testing.TestClassProcessor;
@@ -42,9 +43,9 @@ public class JUnitTestFramework implements TestFramework {
     private JUnitDetector detector;
     private final Test testTask;
 
-    public JUnitTestFramework(Test testTask) {
+    public JUnitTestFramework(Test testTask, ExecutorFactory executorFactory) {
         this.testTask = testTask;
-        reporter = new DefaultTestReport();
+        reporter = new DefaultTestReport(executorFactory);
         options = new JUnitOptions();
         detector = new JUnitDetector(testTask.getTestClassesDir(), testTask.getClasspath(), new ClassFileExtractionManager(testTask.getTemporaryDirFactory()));
     }
@@ -26,107 +26,193 @@ import org.gradle.api.tasks.testing.TestDescriptor;
 import org.gradle.api.tasks.testing.TestOutputEvent;
 import org.gradle.api.tasks.testing.TestResult;
 import org.gradle.internal.UncheckedException;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import java.io.*;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.util.EnumMap;
 import java.util.Map;
 
+/**
+ * Writes a JUnit XML report file for each test class. The report is streamed: each test case element is written to a
+ * spool file as the test completes, and the output of the test class is spooled to disk as it arrives. The report
+ * file is then assembled from the spool files when the test class completes, so the memory used does not depend on the
+ * number of tests or the amount of output they generate.
+ */
 public class JUnitXmlReportGenerator extends StateTrackingTestResultProcessor {
+    private static final String ENCODING = "UTF-8";
+    private static final int BUFFER_SIZE = 8192;
     private final File testResultsDir;
-    private final DocumentBuilder documentBuilder;
     private final String hostName;
-    private Document testSuiteReport;
+    private final DOMElementWriter xmlWriter = new DOMElementWriter(true);
     private TestState testSuite;
-    private Element rootElement;
-    private Map<TestOutputEvent.Destination, StringBuilder> outputs
-            = new EnumMap<TestOutputEvent.Destination, StringBuilder>(TestOutputEvent.Destination.class);
+    private Spool testCases;
+    private final Map<TestOutputEvent.Destination, Spool> outputs
+            = new EnumMap<TestOutputEvent.Destination, Spool>(TestOutputEvent.Destination.class);
 
     public JUnitXmlReportGenerator(File testResultsDir) {
         this.testResultsDir = testResultsDir;
-        try {
-            documentBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-        } catch (Exception e) {
-            throw UncheckedException.throwAsUncheckedException(e);
-        }
         hostName = getHostname();
     }
 
     public void output(TestDescriptor test, TestOutputEvent event) {
-        outputs.get(event.getDestination()).append(event.getMessage());
+        Spool output = outputs.get(event.getDestination());
+        if (output == null) {
+            // Output received after the test class has completed
+            return;
+        }
+        try {
+            output.writer.write(event.getMessage());
+        } catch (IOException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
     }
 
     @Override
     protected void started(TestState state) {
         TestDescriptorInternal test = state.test;
         if (test.getName().equals(test.getClassName())) {
-            testSuiteReport = documentBuilder.newDocument();
-            rootElement = testSuiteReport.createElement("testsuite");
-            testSuiteReport.appendChild(rootElement);
-            // Add an empty properties element for compatibility
-            rootElement.appendChild(testSuiteReport.createElement("properties"));
-            outputs.put(TestOutputEvent.Destination.StdOut, new StringBuilder());
-            outputs.put(TestOutputEvent.Destination.StdErr, new StringBuilder());
+            testCases = new Spool();
+            outputs.put(TestOutputEvent.Destination.StdOut, new Spool());
+            outputs.put(TestOutputEvent.Destination.StdErr, new Spool());
             testSuite = state;
         }
     }
 
     @Override
     protected void completed(TestState state) {
-        String testClassName = state.test.getClassName();
-        Element element;
-        if (!state.equals(testSuite)) {
-            element = testSuiteReport.createElement(state.resultType == TestResult.ResultType.SKIPPED ? "ignored-testcase" : "testcase");
-            element.setAttribute("name", state.test.getName());
-            element.setAttribute("classname", testClassName);
-            rootElement.appendChild(element);
-        } else {
-            element = rootElement;
-            rootElement.setAttribute("name", testClassName);
-            rootElement.setAttribute("tests", String.valueOf(state.testCount));
-            rootElement.setAttribute("failures", String.valueOf(state.failedCount));
-            rootElement.setAttribute("errors", "0");
-            rootElement.setAttribute("timestamp", DateUtils.format(state.getStartTime(), DateUtils.ISO8601_DATETIME_PATTERN));
-            rootElement.setAttribute("hostname", hostName);
-            Element stdoutElement = testSuiteReport.createElement("system-out");
-            stdoutElement.appendChild(testSuiteReport.createCDATASection(outputs.get(TestOutputEvent.Destination.StdOut)
-                    .toString()));
-            rootElement.appendChild(stdoutElement);
-            Element stderrElement = testSuiteReport.createElement("system-err");
-            stderrElement.appendChild(testSuiteReport.createCDATASection(outputs.get(TestOutputEvent.Destination.StdErr)
-                    .toString()));
-            rootElement.appendChild(stderrElement);
-        }
-
-        element.setAttribute("time", String.valueOf(state.getExecutionTime() / 1000.0));
+        try {
+            if (!state.equals(testSuite)) {
+                writeTestCase(state, testCases.writer);
+                return;
+            }
+            File reportFile = new File(testResultsDir, "TEST-" + state.test.getClassName() + ".xml");
+            try {
+                writeTestSuite(state, reportFile);
+            } catch (IOException e) {
+                throw new GradleException(String.format("Could not write test report file '%s'.", reportFile), e);
+            }
+        } catch (IOException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        } finally {
+            if (state.equals(testSuite)) {
+                testCases.delete();
+                for (Spool output : outputs.values()) {
+                    output.delete();
+                }
+                testSuite = null;
+                testCases = null;
+                outputs.clear();
+            }
+        }
+    }
+
+    private void writeTestCase(TestState state, Writer writer) throws IOException {
+        String elementName = state.resultType == TestResult.ResultType.SKIPPED ? "ignored-testcase" : "testcase";
+        writer.write("  <");
+        writer.write(elementName);
+        writeAttribute("name", state.test.getName(), writer);
+        writeAttribute("classname", state.test.getClassName(), writer);
+        writeAttribute("time", String.valueOf(state.getExecutionTime() / 1000.0), writer);
+        if (state.failures.isEmpty()) {
+            writer.write(" />\n");
+            return;
+        }
+        writer.write(">\n");
+        writeFailures(state, "    ", writer);
+        writer.write("  </");
+        writer.write(elementName);
+        writer.write(">\n");
+    }
+
+    private void writeTestSuite(TestState state, File reportFile) throws IOException {
+        testCases.close();
+        for (Spool output : outputs.values()) {
+            output.close();
+        }
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(reportFile), ENCODING));
+        try {
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            writer.write("<testsuite");
+            writeAttribute("name", state.test.getClassName(), writer);
+            writeAttribute("tests", String.valueOf(state.testCount), writer);
+            writeAttribute("failures", String.valueOf(state.failedCount), writer);
+            writeAttribute("errors", "0", writer);
+            writeAttribute("timestamp", DateUtils.format(state.getStartTime(), DateUtils.ISO8601_DATETIME_PATTERN), writer);
+            writeAttribute("hostname", hostName, writer);
+            writeAttribute("time", String.valueOf(state.getExecutionTime() / 1000.0), writer);
+            writer.write(">\n");
+            // Add an empty properties element for compatibility
+            writer.write("  <properties />\n");
+            copy(testCases.file, writer);
+            writeOutput("system-out", outputs.get(TestOutputEvent.Destination.StdOut), writer);
+            writeOutput("system-err", outputs.get(TestOutputEvent.Destination.StdErr), writer);
+            writeFailures(state, "  ", writer);
+            writer.write("</testsuite>\n");
+        } finally {
+            writer.close();
+        }
+    }
+
+    private void writeFailures(TestState state, String indent, Writer writer) throws IOException {
         for (Throwable failure : state.failures) {
-            Element failureElement = testSuiteReport.createElement("failure");
-            element.appendChild(failureElement);
-            failureElement.setAttribute("message", failureMessage(failure));
-            failureElement.setAttribute("type", failure.getClass().getName());
-            failureElement.appendChild(testSuiteReport.createTextNode(stackTrace(failure)));
+            writer.write(indent);
+            writer.write("<failure");
+            writeAttribute("message", failureMessage(failure), writer);
+            writeAttribute("type", failure.getClass().getName(), writer);
+            writer.write(">");
+            writer.write(xmlWriter.encode(stackTrace(failure)));
+            writer.write("</failure>\n");
         }
+    }
 
-        if (state.equals(testSuite)) {
-            File reportFile = new File(testResultsDir, "TEST-" + testClassName + ".xml");
-            try {
-                OutputStream outstr = new BufferedOutputStream(new FileOutputStream(reportFile));
-                try {
-                    new DOMElementWriter(true).write(rootElement, outstr);
-                } finally {
-                    outstr.close();
+    private void writeAttribute(String name, String value, Writer writer) throws IOException {
+        writer.write(' ');
+        writer.write(name);
+        writer.write("=\"");
+        writer.write(xmlWriter.encode(value));
+        writer.write('"');
+    }
+
+    private void writeOutput(String elementName, Spool output, Writer writer) throws IOException {
+        writer.write("  <");
+        writer.write(elementName);
+        writer.write("><![CDATA[");
+        Reader reader = new InputStreamReader(new FileInputStream(output.file), ENCODING);
+        try {
+            char[] buffer = new char[BUFFER_SIZE];
+            String pending = "";
+            int nread;
+            while ((nread = reader.read(buffer)) > 0) {
+                String chunk = pending + new String(buffer, 0, nread);
+                // Hold back up to two trailing ']', so that a "]]>" which spans two chunks is still escaped
+                int end = chunk.length();
+                while (end > 0 && chunk.length() - end < 2 && chunk.charAt(end - 1) == ']') {
+                    end--;
                 }
-            } catch (IOException e) {
-                throw new GradleException(String.format("Could not write test report file '%s'.", reportFile), e);
+                pending = chunk.substring(end);
+                writer.write(xmlWriter.encodedata(chunk.substring(0, end)));
             }
+            writer.write(xmlWriter.encodedata(pending));
+        } finally {
+            reader.close();
+        }
+        writer.write("]]></");
+        writer.write(elementName);
+        writer.write(">\n");
+    }
 
-            testSuite = null;
-            outputs.clear();
+    private void copy(File file, Writer writer) throws IOException {
+        Reader reader = new InputStreamReader(new FileInputStream(file), ENCODING);
+        try {
+            char[] buffer = new char[BUFFER_SIZE];
+            int nread;
+            while ((nread = reader.read(buffer)) > 0) {
+                writer.write(buffer, 0, nread);
+            }
+        } finally {
+            reader.close();
         }
     }
 
@@ -162,4 +248,34 @@ public class JUnitXmlReportGenerator extends StateTrackingTestResultProcessor {
             return "localhost";
         }
     }
+
+    /**
+     * A temporary file which a part of the report is written to while the test class executes.
+     */
+    private static class Spool {
+        private final File file;
+        private final Writer writer;
+
+        private Spool() {
+            try {
+                file = File.createTempFile("gradle-junit-report", ".tmp");
+                writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), ENCODING));
+            } catch (IOException e) {
+                throw UncheckedException.throwAsUncheckedException(e);
+            }
+        }
+
+        void close() throws IOException {
+            writer.close();
+        }
+
+        void delete() {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                // Ignore
+            }
+            file.delete();
+        }
+    }
 }
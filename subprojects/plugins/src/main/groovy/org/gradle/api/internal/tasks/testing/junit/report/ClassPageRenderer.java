@@ -16,11 +16,21 @@
 package org.gradle.api.internal.tasks.testing.junit.report;
 
 import org.gradle.api.Action;
+import org.gradle.internal.UncheckedException;
 import org.gradle.reporting.CodePanelRenderer;
 import org.w3c.dom.Element;
 
+import java.io.*;
+import java.nio.CharBuffer;
+
 class ClassPageRenderer extends PageRenderer<ClassTestResults> {
     private final CodePanelRenderer codePanelRenderer = new CodePanelRenderer();
+    private final TestResultFileParser parser;
+    private File standardErrorSpool;
+
+    ClassPageRenderer(TestResultFileParser parser) {
+        this.parser = parser;
+    }
 
     @Override protected void renderBreadcrumbs(Element parent) {
         Element div = append(parent, "div");
@@ -60,12 +70,64 @@ class ClassPageRenderer extends PageRenderer<ClassTestResults> {
         }
     }
 
-    private void renderStdOut(Element parent) {
-        codePanelRenderer.render(getResults().getStandardOutput().toString(), parent);
+    /**
+     * Writes the standard output of the tests straight from the result files. Each result file is read only once, so
+     * when the page also has a standard error tab, the standard error is spooled to a temporary file on the way.
+     */
+    private void writeStandardOutput(Appendable target) throws Exception {
+        if (getResults().hasStandardError()) {
+            standardErrorSpool = File.createTempFile("gradle-test-report", ".tmp");
+        }
+        Writer standardError = standardErrorSpool == null ? null : new BufferedWriter(new OutputStreamWriter(new FileOutputStream(standardErrorSpool), "utf-8"));
+        try {
+            for (File resultFile : getResults().getResultFiles()) {
+                parser.readOutput(resultFile, target, standardError);
+            }
+        } finally {
+            if (standardError != null) {
+                standardError.close();
+            }
+        }
+    }
+
+    private void writeStandardError(Appendable target) throws Exception {
+        if (standardErrorSpool == null) {
+            for (File resultFile : getResults().getResultFiles()) {
+                parser.readOutput(resultFile, null, target);
+            }
+            return;
+        }
+        try {
+            Reader reader = new InputStreamReader(new FileInputStream(standardErrorSpool), "utf-8");
+            try {
+                char[] buffer = new char[8192];
+                int nread;
+                while ((nread = reader.read(buffer)) > 0) {
+                    target.append(CharBuffer.wrap(buffer, 0, nread));
+                }
+            } finally {
+                reader.close();
+            }
+        } finally {
+            standardErrorSpool.delete();
+            standardErrorSpool = null;
+        }
     }
 
-    private void renderStdErr(Element parent) {
-        codePanelRenderer.render(getResults().getStandardError().toString(), parent);
+    private void renderOutput(Element parent, final boolean standardError) {
+        codePanelRenderer.renderStreamed(new Action<Appendable>() {
+            public void execute(Appendable target) {
+                try {
+                    if (standardError) {
+                        writeStandardError(target);
+                    } else {
+                        writeStandardOutput(target);
+                    }
+                } catch (Exception e) {
+                    throw UncheckedException.throwAsUncheckedException(e);
+                }
+            }
+        }, parent);
     }
 
     @Override protected void registerTabs() {
@@ -75,17 +137,17 @@ class ClassPageRenderer extends PageRenderer<ClassTestResults> {
                 renderTests(element);
             }
         });
-        if (getResults().getStandardOutput().length() > 0) {
+        if (getResults().hasStandardOutput()) {
             addTab("Standard output", new Action<Element>() {
                 public void execute(Element element) {
-                    renderStdOut(element);
+                    renderOutput(element, false);
                 }
             });
         }
-        if (getResults().getStandardError().length() > 0) {
+        if (getResults().hasStandardError()) {
             addTab("Standard error", new Action<Element>() {
                 public void execute(Element element) {
-                    renderStdErr(element);
+                    renderOutput(element, true);
                 }
             });
         }
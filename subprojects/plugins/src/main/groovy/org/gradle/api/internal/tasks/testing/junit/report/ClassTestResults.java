@@ -17,9 +17,8 @@ package org.gradle.api.internal.tasks.testing.junit.report;
 
 import org.apache.commons.lang.StringUtils;
 
-import java.util.Collection;
-import java.util.Set;
-import java.util.TreeSet;
+import java.io.File;
+import java.util.*;
 
 /**
  * Test results for a given class.
@@ -28,8 +27,9 @@ public class ClassTestResults extends CompositeTestResults {
     private final String name;
     private final PackageTestResults packageResults;
     private final Set<TestResult> results = new TreeSet<TestResult>();
-    private final StringBuilder standardOutput = new StringBuilder();
-    private final StringBuilder standardError = new StringBuilder();
+    private final List<File> resultFiles = new ArrayList<File>();
+    private boolean hasStandardOutput;
+    private boolean hasStandardError;
 
     public ClassTestResults(String name, PackageTestResults packageResults) {
         super(packageResults);
@@ -62,12 +62,20 @@ public class ClassTestResults extends CompositeTestResults {
         return results;
     }
 
-    public CharSequence getStandardError() {
-        return standardError;
+    /**
+     * Returns the results files for this class. The output of the tests is read from these files when required, rather
+     * than held in memory.
+     */
+    public List<File> getResultFiles() {
+        return resultFiles;
     }
 
-    public CharSequence getStandardOutput() {
-        return standardOutput;
+    public boolean hasStandardOutput() {
+        return hasStandardOutput;
+    }
+
+    public boolean hasStandardError() {
+        return hasStandardError;
     }
 
     public TestResult addTest(String testName, long duration) {
@@ -76,11 +84,9 @@ public class ClassTestResults extends CompositeTestResults {
         return addTest(test);
     }
 
-    public void addStandardOutput(String textContent) {
-        standardOutput.append(textContent);
-    }
-
-    public void addStandardError(String textContent) {
-        standardError.append(textContent);
+    public void addResultFile(File resultFile, boolean hasStandardOutput, boolean hasStandardError) {
+        resultFiles.add(resultFile);
+        this.hasStandardOutput |= hasStandardOutput;
+        this.hasStandardError |= hasStandardError;
     }
 }
@@ -16,28 +16,47 @@
 package org.gradle.api.internal.tasks.testing.junit.report;
 
 import org.gradle.api.GradleException;
+import org.gradle.api.JavaVersion;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.StoppableExecutor;
 import org.gradle.reporting.HtmlReportRenderer;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.NodeList;
-import org.xml.sax.InputSource;
 
-import javax.xml.parsers.DocumentBuilderFactory;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.InputStream;
-import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 public class DefaultTestReport implements TestReporter {
-    private final HtmlReportRenderer htmlRenderer = new HtmlReportRenderer();
+    /**
+     * The system property which specifies the number of threads used to load the test results and render the report.
+     * Defaults to the number of available processors.
+     */
+    public static final String REPORT_THREADS_PROPERTY = "org.gradle.test.report.threads";
+    private final ExecutorFactory executorFactory;
+    private final int maxThreads;
+    private final TestResultFileParser parser = createParser();
+    private final ThreadLocal<HtmlReportRenderer> htmlRenderer = new ThreadLocal<HtmlReportRenderer>() {
+        @Override
+        protected HtmlReportRenderer initialValue() {
+            HtmlReportRenderer htmlRenderer = new HtmlReportRenderer();
+            htmlRenderer.requireResource(DefaultTestReport.class.getResource("/org/gradle/reporting/report.js"));
+            htmlRenderer.requireResource(DefaultTestReport.class.getResource("/org/gradle/reporting/base-style.css"));
+            htmlRenderer.requireResource(DefaultTestReport.class.getResource("/org/gradle/reporting/css3-pie-1.0beta3.htc"));
+            htmlRenderer.requireResource(DefaultTestReport.class.getResource("style.css"));
+            return htmlRenderer;
+        }
+    };
     private File resultDir;
     private File reportDir;
 
-    public DefaultTestReport() {
-        htmlRenderer.requireResource(getClass().getResource("/org/gradle/reporting/report.js"));
-        htmlRenderer.requireResource(getClass().getResource("/org/gradle/reporting/base-style.css"));
-        htmlRenderer.requireResource(getClass().getResource("/org/gradle/reporting/css3-pie-1.0beta3.htc"));
-        htmlRenderer.requireResource(getClass().getResource("style.css"));
+    public DefaultTestReport(ExecutorFactory executorFactory) {
+        this(executorFactory, Integer.getInteger(REPORT_THREADS_PROPERTY, Runtime.getRuntime().availableProcessors()));
+    }
+
+    public DefaultTestReport(ExecutorFactory executorFactory, int maxThreads) {
+        this.executorFactory = executorFactory;
+        this.maxThreads = maxThreads;
     }
 
     public void setTestResultsDir(File resultDir) {
@@ -54,58 +73,26 @@ public class DefaultTestReport implements TestReporter {
     }
 
     private AllTestResults loadModel() {
-        AllTestResults model = new AllTestResults();
+        final AllTestResults model = new AllTestResults();
         if (resultDir.exists()) {
-            for (File file : resultDir.listFiles()) {
+            List<Runnable> jobs = new ArrayList<Runnable>();
+            for (final File file : resultDir.listFiles()) {
                 if (file.getName().startsWith("TEST-") && file.getName().endsWith(".xml")) {
-                    mergeFromFile(file, model);
+                    jobs.add(new Runnable() {
+                        public void run() {
+                            mergeFromFile(file, model);
+                        }
+                    });
                 }
             }
+            runConcurrently(jobs, String.format("Load test results from '%s'", resultDir));
         }
         return model;
     }
 
     private void mergeFromFile(File file, AllTestResults model) {
         try {
-            InputStream inputStream = new FileInputStream(file);
-            Document document;
-            try {
-                document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new InputSource(inputStream));
-            } finally {
-                inputStream.close();
-            }
-            NodeList testCases = document.getElementsByTagName("testcase");
-            for (int i = 0; i < testCases.getLength(); i++) {
-                Element testCase = (Element) testCases.item(i);
-                String className = testCase.getAttribute("classname");
-                String testName = testCase.getAttribute("name");
-                LocaleSafeDecimalFormat format = new LocaleSafeDecimalFormat();
-                BigDecimal duration = format.parse(testCase.getAttribute("time"));
-                duration = duration.multiply(BigDecimal.valueOf(1000));
-                NodeList failures = testCase.getElementsByTagName("failure");
-                TestResult testResult = model.addTest(className, testName, duration.longValue());
-                for (int j = 0; j < failures.getLength(); j++) {
-                    Element failure = (Element) failures.item(j);
-                    testResult.addFailure(failure.getAttribute("message"), failure.getTextContent());
-                }
-            }
-            NodeList ignoredTestCases = document.getElementsByTagName("ignored-testcase");
-            for (int i = 0; i < ignoredTestCases.getLength(); i++) {
-                Element testCase = (Element) ignoredTestCases.item(i);
-                String className = testCase.getAttribute("classname");
-                String testName = testCase.getAttribute("name");
-                model.addTest(className, testName, 0).ignored();
-            }
-            String suiteClassName = document.getDocumentElement().getAttribute("name");
-            ClassTestResults suiteResults = model.addTestClass(suiteClassName);
-            NodeList stdOutElements = document.getElementsByTagName("system-out");
-            for (int i = 0; i < stdOutElements.getLength(); i++) {
-                suiteResults.addStandardOutput(stdOutElements.item(i).getTextContent());
-            }
-            NodeList stdErrElements = document.getElementsByTagName("system-err");
-            for (int i = 0; i < stdErrElements.getLength(); i++) {
-                suiteResults.addStandardError(stdErrElements.item(i).getTextContent());
-            }
+            parser.parse(file, model);
         } catch (Exception e) {
             throw new GradleException(String.format("Could not load test results from '%s'.", file), e);
         }
@@ -113,19 +100,77 @@ public class DefaultTestReport implements TestReporter {
 
     private void generateFiles(AllTestResults model) {
         try {
+            // Render the overview first, as this also copies the resources shared by all pages into the report directory
             generatePage(model, new OverviewPageRenderer(), new File(reportDir, "index.html"));
-            for (PackageTestResults packageResults : model.getPackages()) {
-                generatePage(packageResults, new PackagePageRenderer(), new File(reportDir, packageResults.getName() + ".html"));
-                for (ClassTestResults classResults : packageResults.getClasses()) {
-                    generatePage(classResults, new ClassPageRenderer(), new File(reportDir, classResults.getName() + ".html"));
+            List<Runnable> jobs = new ArrayList<Runnable>();
+            for (final PackageTestResults packageResults : model.getPackages()) {
+                jobs.add(new Runnable() {
+                    public void run() {
+                        generatePage(packageResults, new PackagePageRenderer(), new File(reportDir, packageResults.getName() + ".html"));
+                    }
+                });
+                for (final ClassTestResults classResults : packageResults.getClasses()) {
+                    jobs.add(new Runnable() {
+                        public void run() {
+                            generatePage(classResults, new ClassPageRenderer(parser), new File(reportDir, classResults.getName() + ".html"));
+                        }
+                    });
                 }
             }
+            runConcurrently(jobs, String.format("Generate test report to '%s'", reportDir));
         } catch (Exception e) {
             throw new GradleException(String.format("Could not generate test report to '%s'.", reportDir), e);
         }
     }
 
-    private <T extends CompositeTestResults> void generatePage(T model, PageRenderer<T> renderer, File outputFile) throws Exception {
-        htmlRenderer.renderer(renderer).writeTo(model, outputFile);
+    private <T extends CompositeTestResults> void generatePage(T model, PageRenderer<T> renderer, File outputFile) {
+        htmlRenderer.get().renderer(renderer).writeTo(model, outputFile);
+    }
+
+    /**
+     * Runs the given jobs using up to {@link #maxThreads} threads, and rethrows the first failure.
+     */
+    private void runConcurrently(List<Runnable> jobs, String displayName) {
+        if (maxThreads <= 1 || jobs.size() <= 1) {
+            for (Runnable job : jobs) {
+                job.run();
+            }
+            return;
+        }
+
+        final Queue<Runnable> queue = new ConcurrentLinkedQueue<Runnable>(jobs);
+        StoppableExecutor executor = executorFactory.create(displayName);
+        try {
+            for (int i = 0; i < Math.min(maxThreads, jobs.size()); i++) {
+                executor.execute(new Runnable() {
+                    public void run() {
+                        Runnable job;
+                        while ((job = queue.poll()) != null) {
+                            try {
+                                job.run();
+                            } catch (RuntimeException e) {
+                                queue.clear();
+                                throw e;
+                            }
+                        }
+                    }
+                });
+            }
+        } finally {
+            executor.stop();
+        }
+    }
+
+    private TestResultFileParser createParser() {
+        if (!JavaVersion.current().isJava6Compatible()) {
+            return new DomTestResultFileParser();
+        }
+        try {
+            // excluded when Gradle is compiled against JDK5, hence we can't reference it statically
+            Class<?> clazz = getClass().getClassLoader().loadClass("org.gradle.api.internal.tasks.testing.junit.report.jdk6.StaxTestResultFileParser");
+            return (TestResultFileParser) clazz.newInstance();
+        } catch (Exception e) {
+            throw new GradleException("Internal error: couldn't load or instantiate class StaxTestResultFileParser", e);
+        }
     }
 }
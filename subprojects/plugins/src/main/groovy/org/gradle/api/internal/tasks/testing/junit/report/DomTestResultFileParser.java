@@ -0,0 +1,100 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.testing.junit.report;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+
+/**
+ * A {@link TestResultFileParser} which loads each file into a DOM. Used when StAX is not available.
+ */
+public class DomTestResultFileParser implements TestResultFileParser {
+    public void parse(File file, AllTestResults model) throws Exception {
+        Document document = load(file);
+        synchronized (model) {
+            NodeList testCases = document.getElementsByTagName("testcase");
+            for (int i = 0; i < testCases.getLength(); i++) {
+                Element testCase = (Element) testCases.item(i);
+                String className = testCase.getAttribute("classname");
+                String testName = testCase.getAttribute("name");
+                LocaleSafeDecimalFormat format = new LocaleSafeDecimalFormat();
+                BigDecimal duration = format.parse(testCase.getAttribute("time"));
+                duration = duration.multiply(BigDecimal.valueOf(1000));
+                NodeList failures = testCase.getElementsByTagName("failure");
+                TestResult testResult = model.addTest(className, testName, duration.longValue());
+                for (int j = 0; j < failures.getLength(); j++) {
+                    Element failure = (Element) failures.item(j);
+                    testResult.addFailure(failure.getAttribute("message"), failure.getTextContent());
+                }
+            }
+            NodeList ignoredTestCases = document.getElementsByTagName("ignored-testcase");
+            for (int i = 0; i < ignoredTestCases.getLength(); i++) {
+                Element testCase = (Element) ignoredTestCases.item(i);
+                String className = testCase.getAttribute("classname");
+                String testName = testCase.getAttribute("name");
+                model.addTest(className, testName, 0).ignored();
+            }
+            String suiteClassName = document.getDocumentElement().getAttribute("name");
+            ClassTestResults suiteResults = model.addTestClass(suiteClassName);
+            suiteResults.addResultFile(file, hasText(document, "system-out"), hasText(document, "system-err"));
+        }
+    }
+
+    public void readOutput(File file, Appendable standardOutput, Appendable standardError) throws Exception {
+        Document document = load(file);
+        if (standardOutput != null) {
+            appendText(document, "system-out", standardOutput);
+        }
+        if (standardError != null) {
+            appendText(document, "system-err", standardError);
+        }
+    }
+
+    private void appendText(Document document, String elementName, Appendable target) throws IOException {
+        NodeList elements = document.getElementsByTagName(elementName);
+        for (int i = 0; i < elements.getLength(); i++) {
+            target.append(elements.item(i).getTextContent());
+        }
+    }
+
+    private boolean hasText(Document document, String elementName) {
+        NodeList elements = document.getElementsByTagName(elementName);
+        for (int i = 0; i < elements.getLength(); i++) {
+            if (elements.item(i).getTextContent().length() > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Document load(File file) throws Exception {
+        InputStream inputStream = new FileInputStream(file);
+        try {
+            return DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new InputSource(inputStream));
+        } finally {
+            inputStream.close();
+        }
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.testing.junit.report;
+
+import java.io.File;
+
+/**
+ * Reads the contents of a JUnit XML results file. Implementations must be thread-safe.
+ */
+public interface TestResultFileParser {
+    /**
+     * Adds the test results from the given file to the given model. The test output is not added to the model, only
+     * the location of the file. Implementations hold the model's lock while they update it.
+     */
+    void parse(File file, AllTestResults model) throws Exception;
+
+    /**
+     * Appends the text of the {@code system-out} and {@code system-err} elements of the given file to the given targets,
+     * reading the file once. A null target means the text of that element is not required.
+     */
+    void readOutput(File file, Appendable standardOutput, Appendable standardError) throws Exception;
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.testing.junit.report.jdk6;
+
+import org.gradle.api.internal.tasks.testing.junit.report.*;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link TestResultFileParser} which reads each file using StAX. The output of the tests is skipped while the file is
+ * parsed, and only read again when it is required.
+ */
+public class StaxTestResultFileParser implements TestResultFileParser {
+    private final ThreadLocal<XMLInputFactory> inputFactory = new ThreadLocal<XMLInputFactory>() {
+        @Override
+        protected XMLInputFactory initialValue() {
+            return XMLInputFactory.newInstance();
+        }
+    };
+
+    public void parse(File file, AllTestResults model) throws Exception {
+        String suiteClassName = null;
+        List<TestCase> testCases = new ArrayList<TestCase>();
+        boolean hasStandardOutput = false;
+        boolean hasStandardError = false;
+
+        InputStream inputStream = new FileInputStream(file);
+        try {
+            XMLStreamReader reader = inputFactory.get().createXMLStreamReader(inputStream);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                        continue;
+                    }
+                    String elementName = reader.getLocalName();
+                    if (suiteClassName == null) {
+                        suiteClassName = attribute(reader, "name");
+                    } else if (elementName.equals("testcase")) {
+                        testCases.add(readTestCase(reader, false));
+                    } else if (elementName.equals("ignored-testcase")) {
+                        testCases.add(readTestCase(reader, true));
+                    } else if (elementName.equals("system-out")) {
+                        hasStandardOutput |= readText(reader, null);
+                    } else if (elementName.equals("system-err")) {
+                        hasStandardError |= readText(reader, null);
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } finally {
+            inputStream.close();
+        }
+
+        synchronized (model) {
+            for (TestCase testCase : testCases) {
+                TestResult testResult = model.addTest(testCase.className, testCase.name, testCase.duration);
+                if (testCase.ignored) {
+                    testResult.ignored();
+                }
+                for (String[] failure : testCase.failures) {
+                    testResult.addFailure(failure[0], failure[1]);
+                }
+            }
+            ClassTestResults suiteResults = model.addTestClass(suiteClassName == null ? "" : suiteClassName);
+            suiteResults.addResultFile(file, hasStandardOutput, hasStandardError);
+        }
+    }
+
+    public void readOutput(File file, Appendable standardOutput, Appendable standardError) throws Exception {
+        InputStream inputStream = new FileInputStream(file);
+        try {
+            XMLStreamReader reader = inputFactory.get().createXMLStreamReader(inputStream);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                        continue;
+                    }
+                    if (reader.getLocalName().equals("system-out")) {
+                        readText(reader, standardOutput);
+                    } else if (reader.getLocalName().equals("system-err")) {
+                        readText(reader, standardError);
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    private TestCase readTestCase(XMLStreamReader reader, boolean ignored) throws Exception {
+        TestCase testCase = new TestCase();
+        testCase.className = attribute(reader, "classname");
+        testCase.name = attribute(reader, "name");
+        testCase.ignored = ignored;
+        if (!ignored) {
+            BigDecimal duration = new LocaleSafeDecimalFormat().parse(attribute(reader, "time"));
+            testCase.duration = duration.multiply(BigDecimal.valueOf(1000)).longValue();
+        }
+
+        int depth = 1;
+        while (depth > 0) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    if (!ignored && reader.getLocalName().equals("failure")) {
+                        String message = attribute(reader, "message");
+                        StringBuilder stackTrace = new StringBuilder();
+                        readText(reader, stackTrace);
+                        testCase.failures.add(new String[]{message, stackTrace.toString()});
+                    } else {
+                        depth++;
+                    }
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    depth--;
+                    break;
+            }
+        }
+        return testCase;
+    }
+
+    /**
+     * Reads to the end of the current element, appending its text content to the given target, if any. Returns true if
+     * the element has any text content.
+     */
+    private boolean readText(XMLStreamReader reader, Appendable target) throws XMLStreamException, IOException {
+        boolean hasText = false;
+        int depth = 1;
+        while (depth > 0) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    depth++;
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    depth--;
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    if (reader.getTextLength() > 0) {
+                        hasText = true;
+                        if (target != null) {
+                            target.append(reader.getText());
+                        }
+                    }
+                    break;
+            }
+        }
+        return hasText;
+    }
+
+    private String attribute(XMLStreamReader reader, String name) {
+        String value = reader.getAttributeValue(null, name);
+        return value == null ? "" : value;
+    }
+
+    private static class TestCase {
+        String className;
+        String name;
+        long duration;
+        boolean ignored;
+        final List<String[]> failures = new ArrayList<String[]>();
+    }
+}
@@ -16,37 +16,55 @@
 
 package org.gradle.api.internal.tasks.testing.processors;
 
-import org.gradle.internal.Factory;
-import org.gradle.api.internal.tasks.testing.TestClassProcessor;
-import org.gradle.api.internal.tasks.testing.TestClassRunInfo;
-import org.gradle.api.internal.tasks.testing.TestResultProcessor;
+import org.gradle.api.internal.tasks.testing.*;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.tasks.testing.TestOutputEvent;
 import org.gradle.internal.CompositeStoppable;
+import org.gradle.internal.Factory;
 import org.gradle.internal.UncheckedException;
 import org.gradle.messaging.actor.Actor;
 import org.gradle.messaging.actor.ActorFactory;
 import org.gradle.messaging.dispatch.DispatchException;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 
 /**
  * Manages a set of parallel TestClassProcessors. Uses a simple round-robin algorithm to assign test classes to
  * processors.
+ *
+ * <p>When given the durations of the test classes from previous runs, assigns test classes to processors on demand instead.
+ * Test classes are queued, and a processor is given the next test class only once it has finished its current test class.
+ * The test class which took longest previously is given out first, and new test classes before all others, so that the
+ * processors finish at about the same time. This requires a processor to report each test class as completed before it
+ * is given the next one, so cannot be used with processors which execute test classes only when stopped. A processor which
+ * fails, or whose worker process stops before it is asked to, is given no more test classes.</p>
  */
 public class MaxNParallelTestClassProcessor implements TestClassProcessor {
+    private static final Logger LOGGER = Logging.getLogger(MaxNParallelTestClassProcessor.class);
     private final int maxProcessors;
     private final Factory<TestClassProcessor> factory;
     private final ActorFactory actorFactory;
+    private final TestClassDurations durations;
     private TestResultProcessor resultProcessor;
     private int pos;
     private List<TestClassProcessor> processors = new ArrayList<TestClassProcessor>();
     private List<Actor> actors = new ArrayList<Actor>();
     private Actor resultProcessorActor;
+    private final Object lock = new Object();
+    private final PriorityQueue<QueuedTestClass> queue = new PriorityQueue<QueuedTestClass>();
+    private final List<Fork> forks = new ArrayList<Fork>();
+    private long queuedCount;
 
     public MaxNParallelTestClassProcessor(int maxProcessors, Factory<TestClassProcessor> factory, ActorFactory actorFactory) {
+        this(maxProcessors, factory, actorFactory, null);
+    }
+
+    public MaxNParallelTestClassProcessor(int maxProcessors, Factory<TestClassProcessor> factory, ActorFactory actorFactory, TestClassDurations durations) {
         this.maxProcessors = maxProcessors;
         this.factory = factory;
         this.actorFactory = actorFactory;
+        this.durations = durations;
     }
 
     public void startProcessing(TestResultProcessor resultProcessor) {
@@ -55,14 +73,13 @@ public class MaxNParallelTestClassProcessor implements TestClassProcessor {
     }
 
     public void processTestClass(TestClassRunInfo testClass) {
+        if (durations != null) {
+            queueTestClass(testClass);
+            return;
+        }
         TestClassProcessor processor;
         if (processors.size() < maxProcessors) {
-            processor = factory.create();
-            Actor actor = actorFactory.createActor(processor);
-            processor = actor.getProxy(TestClassProcessor.class);
-            actors.add(actor);
-            processors.add(processor);
-            processor.startProcessing(resultProcessor);
+            processor = startProcessor(factory.create(), resultProcessor);
         } else {
             processor = processors.get(pos);
             pos = (pos + 1) % processors.size();
@@ -71,10 +88,213 @@ public class MaxNParallelTestClassProcessor implements TestClassProcessor {
     }
 
     public void stop() {
+        int notExecuted = 0;
+        if (durations != null) {
+            notExecuted = waitForQueuedTestClasses();
+        }
         try {
             CompositeStoppable.stoppable(processors).add(actors).add(resultProcessorActor).stop();
         } catch (DispatchException e) {
             throw UncheckedException.throwAsUncheckedException(e.getCause());
         }
+        if (notExecuted > 0) {
+            throw new TestSuiteExecutionException(String.format("Could not execute %s test classes, as all test workers have failed.", notExecuted), null);
+        }
+    }
+
+    private TestClassProcessor startProcessor(TestClassProcessor processor, TestResultProcessor resultProcessor) {
+        Actor actor = actorFactory.createActor(processor);
+        processor = actor.getProxy(TestClassProcessor.class);
+        actors.add(actor);
+        processors.add(processor);
+        processor.startProcessing(resultProcessor);
+        return processor;
+    }
+
+    private void queueTestClass(TestClassRunInfo testClass) {
+        synchronized (lock) {
+            queue.add(new QueuedTestClass(testClass, durations.getDuration(testClass.getTestClassName()), queuedCount++));
+            if (!hasIdleFork() && forks.size() < maxProcessors) {
+                Fork fork = new Fork();
+                fork.processor = startProcessor(new ForkTestClassProcessor(fork, factory.create()), new ForkTestResultProcessor(fork));
+                forks.add(fork);
+            }
+            dispatchQueuedTestClasses();
+        }
+    }
+
+    private boolean hasIdleFork() {
+        for (Fork fork : forks) {
+            if (!fork.failed && fork.running == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean hasLiveFork() {
+        for (Fork fork : forks) {
+            if (!fork.failed) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void dispatchQueuedTestClasses() {
+        for (Fork fork : forks) {
+            if (queue.isEmpty()) {
+                return;
+            }
+            if (!fork.failed && fork.running == 0) {
+                fork.running++;
+                fork.processor.processTestClass(queue.remove().testClass);
+            }
+        }
+    }
+
+    /**
+     * Waits until all queued test classes have been given to a processor, and returns the number of test classes which
+     * could not be given to any processor.
+     */
+    private int waitForQueuedTestClasses() {
+        synchronized (lock) {
+            while (!queue.isEmpty() && hasLiveFork()) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    throw UncheckedException.throwAsUncheckedException(e);
+                }
+            }
+            int notExecuted = queue.size();
+            queue.clear();
+            return notExecuted;
+        }
+    }
+
+    private void testClassCompleted(Fork fork, String className, long duration) {
+        durations.recordDuration(className, duration);
+        synchronized (lock) {
+            fork.running--;
+            dispatchQueuedTestClasses();
+            lock.notifyAll();
+        }
+    }
+
+    private void forkFailed(Fork fork) {
+        synchronized (lock) {
+            fork.failed = true;
+            lock.notifyAll();
+        }
+    }
+
+    private static class Fork {
+        TestClassProcessor processor;
+        int running;
+        boolean failed;
+    }
+
+    private static class QueuedTestClass implements Comparable<QueuedTestClass> {
+        final TestClassRunInfo testClass;
+        final Long duration;
+        final long order;
+
+        QueuedTestClass(TestClassRunInfo testClass, Long duration, long order) {
+            this.testClass = testClass;
+            this.duration = duration;
+            this.order = order;
+        }
+
+        public int compareTo(QueuedTestClass other) {
+            if (duration == null || other.duration == null) {
+                if (duration != other.duration) {
+                    return duration == null ? -1 : 1;
+                }
+            } else if (!duration.equals(other.duration)) {
+                return duration > other.duration ? -1 : 1;
+            }
+            return order < other.order ? -1 : order > other.order ? 1 : 0;
+        }
+    }
+
+    /**
+     * Notices when the processor of a fork fails, so that no more test classes are given to it.
+     */
+    private class ForkTestClassProcessor implements TestClassProcessor {
+        private final Fork fork;
+        private final TestClassProcessor processor;
+
+        ForkTestClassProcessor(Fork fork, TestClassProcessor processor) {
+            this.fork = fork;
+            this.processor = processor;
+        }
+
+        public void startProcessing(TestResultProcessor resultProcessor) {
+            processor.startProcessing(resultProcessor);
+        }
+
+        public void processTestClass(TestClassRunInfo testClass) {
+            try {
+                processor.processTestClass(testClass);
+            } catch (RuntimeException e) {
+                forkFailed(fork);
+                throw e;
+            }
+        }
+
+        public void stop() {
+            processor.stop();
+        }
+    }
+
+    /**
+     * Notices when a fork has completed a test class, so that it can be given the next one, and when its worker process
+     * has stopped unexpectedly.
+     */
+    private class ForkTestResultProcessor implements TestResultProcessor, TestWorkerFailureListener {
+        private final Fork fork;
+        private final Map<Object, TestDescriptorInternal> testClasses = new HashMap<Object, TestDescriptorInternal>();
+        private final Map<Object, Long> startTimes = new HashMap<Object, Long>();
+
+        ForkTestResultProcessor(Fork fork) {
+            this.fork = fork;
+        }
+
+        public void started(TestDescriptorInternal test, TestStartEvent event) {
+            if (test instanceof DefaultTestClassDescriptor) {
+                synchronized (testClasses) {
+                    testClasses.put(test.getId(), test);
+                    startTimes.put(test.getId(), event.getStartTime());
+                }
+            }
+            resultProcessor.started(test, event);
+        }
+
+        public void completed(Object testId, TestCompleteEvent event) {
+            resultProcessor.completed(testId, event);
+            TestDescriptorInternal testClass;
+            long startTime;
+            synchronized (testClasses) {
+                testClass = testClasses.remove(testId);
+                if (testClass == null) {
+                    return;
+                }
+                startTime = startTimes.remove(testId);
+            }
+            testClassCompleted(fork, testClass.getClassName(), event.getEndTime() - startTime);
+        }
+
+        public void output(Object testId, TestOutputEvent event) {
+            resultProcessor.output(testId, event);
+        }
+
+        public void failure(Object testId, Throwable result) {
+            resultProcessor.failure(testId, result);
+        }
+
+        public void workerFailed(String workerDisplayName) {
+            LOGGER.debug("{} has stopped unexpectedly, so will not be given any more test classes.", workerDisplayName);
+            forkFailed(fork);
+        }
     }
 }
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.processors;
+
+import org.gradle.messaging.serialize.Serializer;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The durations of test classes, as measured when they were last executed. The durations are persisted between runs
+ * using {@link DurationsSerializer}.
+ */
+public class TestClassDurations {
+    private final Map<String, Long> durations = new HashMap<String, Long>();
+
+    /**
+     * Returns the duration of the given test class, in milliseconds, or null when not known.
+     */
+    public synchronized Long getDuration(String className) {
+        return durations.get(className);
+    }
+
+    public synchronized void recordDuration(String className, long duration) {
+        durations.put(className, duration);
+    }
+
+    public static class DurationsSerializer implements Serializer<TestClassDurations> {
+        public TestClassDurations read(InputStream instr) throws Exception {
+            DataInputStream input = new DataInputStream(instr);
+            TestClassDurations value = new TestClassDurations();
+            int count = input.readInt();
+            for (int i = 0; i < count; i++) {
+                value.durations.put(input.readUTF(), input.readLong());
+            }
+            return value;
+        }
+
+        public void write(OutputStream outstr, TestClassDurations value) throws Exception {
+            DataOutputStream output = new DataOutputStream(outstr);
+            synchronized (value) {
+                output.writeInt(value.durations.size());
+                for (Map.Entry<String, Long> entry : value.durations.entrySet()) {
+                    output.writeUTF(entry.getKey());
+                    output.writeLong(entry.getValue());
+                }
+            }
+            output.flush();
+        }
+    }
+}
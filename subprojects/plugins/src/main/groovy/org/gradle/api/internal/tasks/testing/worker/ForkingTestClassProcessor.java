@@ -21,6 +21,7 @@ import org.gradle.internal.Factory;
 import org.gradle.api.internal.tasks.testing.TestClassProcessor;
 import org.gradle.api.internal.tasks.testing.TestClassRunInfo;
 import org.gradle.api.internal.tasks.testing.TestResultProcessor;
+import org.gradle.api.internal.tasks.testing.TestWorkerFailureListener;
 import org.gradle.api.internal.tasks.testing.WorkerTestClassProcessorFactory;
 import org.gradle.process.JavaForkOptions;
 import org.gradle.process.internal.WorkerProcess;
@@ -37,6 +38,7 @@ public class ForkingTestClassProcessor implements TestClassProcessor {
     private RemoteTestClassProcessor remoteProcessor;
     private WorkerProcess workerProcess;
     private TestResultProcessor resultProcessor;
+    private volatile boolean stopping;
 
     public ForkingTestClassProcessor(Factory<WorkerProcessBuilder> workerFactory, WorkerTestClassProcessorFactory processorFactory, JavaForkOptions options, Iterable<File> classPath, Action<WorkerProcessBuilder> buildConfigAction) {
         this.workerFactory = workerFactory;
@@ -61,6 +63,11 @@ public class ForkingTestClassProcessor implements TestClassProcessor {
             
             workerProcess = builder.build();
             workerProcess.start();
+            workerProcess.whenStopped(new Runnable() {
+                public void run() {
+                    workerStopped();
+                }
+            });
 
             workerProcess.getConnection().addIncoming(TestResultProcessor.class, resultProcessor);
             remoteProcessor = workerProcess.getConnection().addOutgoing(RemoteTestClassProcessor.class);
@@ -72,9 +79,16 @@ public class ForkingTestClassProcessor implements TestClassProcessor {
     }
 
     public void stop() {
+        stopping = true;
         if (remoteProcessor != null) {
             remoteProcessor.stop();
             workerProcess.waitForStop();
         }
     }
+
+    private void workerStopped() {
+        if (!stopping && resultProcessor instanceof TestWorkerFailureListener) {
+            ((TestWorkerFailureListener) resultProcessor).workerFailed(workerProcess.toString());
+        }
+    }
 }
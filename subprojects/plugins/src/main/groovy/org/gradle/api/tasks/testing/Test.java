@@ -22,6 +22,7 @@ import org.gradle.api.file.FileCollection;
 import org.gradle.api.file.FileTree;
 import org.gradle.api.file.FileTreeElement;
 import org.gradle.api.internal.ConventionTask;
+import org.gradle.api.internal.changedetection.TaskArtifactStateCacheAccess;
 import org.gradle.api.internal.file.FileResolver;
 import org.gradle.api.internal.tasks.testing.TestFramework;
 import org.gradle.api.internal.tasks.testing.TestResultProcessor;
@@ -38,6 +39,7 @@ import org.gradle.api.tasks.testing.logging.TestLogging;
 import org.gradle.api.tasks.testing.logging.TestLoggingContainer;
 import org.gradle.api.tasks.util.PatternFilterable;
 import org.gradle.api.tasks.util.PatternSet;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.reflect.Instantiator;
 import org.gradle.listener.ListenerBroadcast;
 import org.gradle.listener.ListenerManager;
@@ -49,6 +51,7 @@ import org.gradle.process.JavaForkOptions;
 import org.gradle.process.ProcessForkOptions;
 import org.gradle.process.internal.DefaultJavaForkOptions;
 import org.gradle.process.internal.WorkerProcessBuilder;
+import org.gradle.process.internal.WorkerProcessPool;
 import org.gradle.util.ConfigureUtil;
 
 import java.io.File;
@@ -117,7 +120,8 @@ public class Test extends ConventionTask implements JavaForkOptions, PatternFilt
         textOutputFactory = getServices().get(StyledTextOutputFactory.class);
         options = new DefaultJavaForkOptions(getServices().get(FileResolver.class));
         options.setEnableAssertions(true);
-        testExecuter = new DefaultTestExecuter(getServices().getFactory(WorkerProcessBuilder.class), getServices().get(ActorFactory.class));
+        testExecuter = new DefaultTestExecuter(getServices().getFactory(WorkerProcessBuilder.class), getServices().get(WorkerProcessPool.class),
+                getServices().get(ActorFactory.class), getServices().get(TaskArtifactStateCacheAccess.class));
 
         Instantiator instantiator = getServices().get(Instantiator.class);
         testLogging = instantiator.newInstance(DefaultTestLoggingContainer.class, instantiator);
@@ -782,7 +786,7 @@ public class Test extends ConventionTask implements JavaForkOptions, PatternFilt
      * of type {@link org.gradle.api.tasks.testing.junit.JUnitOptions}.
      */
     public void useJUnit(Closure testFrameworkConfigure) {
-        useTestFramework(new JUnitTestFramework(this), testFrameworkConfigure);
+        useTestFramework(new JUnitTestFramework(this, getServices().get(ExecutorFactory.class)), testFrameworkConfigure);
     }
 
     /**
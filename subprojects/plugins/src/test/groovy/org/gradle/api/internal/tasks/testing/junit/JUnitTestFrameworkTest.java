@@ -18,6 +18,7 @@ package org.gradle.api.internal.tasks.testing.junit;
 
 import org.gradle.api.AntBuilder;
 import org.gradle.internal.Factory;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.id.IdGenerator;
 import org.gradle.internal.service.ServiceRegistry;
 import org.gradle.api.internal.tasks.testing.AbstractTestFrameworkTest;
@@ -43,6 +44,7 @@ public class JUnitTestFrameworkTest extends AbstractTestFrameworkTest {
     private JUnitOptions jUnitOptionsMock;
     private IdGenerator<?> idGenerator;
     private ServiceRegistry serviceRegistry;
+    private ExecutorFactory executorFactory;
 
     @Before
     public void setUp() throws Exception {
@@ -52,6 +54,7 @@ public class JUnitTestFrameworkTest extends AbstractTestFrameworkTest {
         jUnitOptionsMock = context.mock(JUnitOptions.class);
         idGenerator = context.mock(IdGenerator.class);
         serviceRegistry = context.mock(ServiceRegistry.class);
+        executorFactory = context.mock(ExecutorFactory.class);
         final Factory<File> temporaryDirFactory = new Factory<File>() {
             public File create() {
                 return temporaryDir;
@@ -67,7 +70,7 @@ public class JUnitTestFrameworkTest extends AbstractTestFrameworkTest {
 
     @org.junit.Test
     public void testInitialize() {
-        jUnitTestFramework = new JUnitTestFramework(testMock);
+        jUnitTestFramework = new JUnitTestFramework(testMock, executorFactory);
         setMocks();
 
         assertNotNull(jUnitTestFramework.getOptions());
@@ -76,7 +79,7 @@ public class JUnitTestFrameworkTest extends AbstractTestFrameworkTest {
 
     @org.junit.Test
     public void testCreatesTestProcessor() {
-        jUnitTestFramework = new JUnitTestFramework(testMock);
+        jUnitTestFramework = new JUnitTestFramework(testMock, executorFactory);
         setMocks();
         final ActorFactory actorFactory = context.mock(ActorFactory.class);
 
@@ -92,7 +95,7 @@ public class JUnitTestFrameworkTest extends AbstractTestFrameworkTest {
 
     @org.junit.Test
     public void testReport() {
-        jUnitTestFramework = new JUnitTestFramework(testMock);
+        jUnitTestFramework = new JUnitTestFramework(testMock, executorFactory);
         setMocks();
 
         context.checking(new Expectations() {{
@@ -109,7 +112,7 @@ public class JUnitTestFrameworkTest extends AbstractTestFrameworkTest {
 
     @org.junit.Test
     public void testReportWithDisabledReport() {
-        jUnitTestFramework = new JUnitTestFramework(testMock);
+        jUnitTestFramework = new JUnitTestFramework(testMock, executorFactory);
         setMocks();
 
         context.checking(new Expectations() {{
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.testing.junit
+
+import org.gradle.api.internal.tasks.testing.DefaultTestClassDescriptor
+import org.gradle.api.internal.tasks.testing.DefaultTestDescriptor
+import org.gradle.api.internal.tasks.testing.DefaultTestOutputEvent
+import org.gradle.api.internal.tasks.testing.TestCompleteEvent
+import org.gradle.api.internal.tasks.testing.TestStartEvent
+import org.gradle.api.tasks.testing.TestResult
+import org.gradle.util.TemporaryFolder
+import org.gradle.util.TestFile
+import org.junit.Rule
+import spock.lang.Specification
+
+import static org.gradle.api.tasks.testing.TestOutputEvent.Destination.StdErr
+import static org.gradle.api.tasks.testing.TestOutputEvent.Destination.StdOut
+
+class JUnitXmlReportGeneratorTest extends Specification {
+    @Rule public final TemporaryFolder tmpDir = new TemporaryFolder()
+    final TestFile resultsDir = tmpDir.createDir('results')
+    final JUnitXmlReportGenerator generator = new JUnitXmlReportGenerator(resultsDir)
+
+    def writesReportFileForTestClass() {
+        when:
+        generator.started(new DefaultTestClassDescriptor("class", "org.gradle.Foo"), new TestStartEvent(100))
+        generator.started(new DefaultTestDescriptor("ok", "org.gradle.Foo", "ok"), new TestStartEvent(100, "class"))
+        generator.completed("ok", new TestCompleteEvent(300))
+        generator.started(new DefaultTestDescriptor("broken", "org.gradle.Foo", "broken"), new TestStartEvent(300, "class"))
+        generator.failure("broken", new RuntimeException("broken <message>"))
+        generator.completed("broken", new TestCompleteEvent(400))
+        generator.started(new DefaultTestDescriptor("ignored", "org.gradle.Foo", "ignored"), new TestStartEvent(400, "class"))
+        generator.completed("ignored", new TestCompleteEvent(400, TestResult.ResultType.SKIPPED))
+        generator.completed("class", new TestCompleteEvent(500))
+
+        then:
+        def suite = new XmlSlurper().parse(resultsDir.file("TEST-org.gradle.Foo.xml"))
+        suite.@name == "org.gradle.Foo"
+        suite.@tests == "3"
+        suite.@failures == "1"
+        suite.@errors == "0"
+        suite.@time == "0.4"
+        suite.testcase.size() == 2
+        suite.testcase[0].@name == "ok"
+        suite.testcase[0].@classname == "org.gradle.Foo"
+        suite.testcase[0].@time == "0.2"
+        suite.testcase[0].failure.size() == 0
+        suite.testcase[1].@name == "broken"
+        suite.testcase[1].failure.@message == "java.lang.RuntimeException: broken <message>"
+        suite.testcase[1].failure.@type == "java.lang.RuntimeException"
+        suite.testcase[1].failure.text().startsWith("java.lang.RuntimeException: broken <message>")
+        suite.'ignored-testcase'.@name == "ignored"
+    }
+
+    def writesOutputOfTestClassAsCharacterData() {
+        def largeOutput = ("x" * 10000) + "]]>" + ("y" * 10000)
+
+        when:
+        generator.started(new DefaultTestClassDescriptor("class", "org.gradle.Foo"), new TestStartEvent(100))
+        generator.started(new DefaultTestDescriptor("test", "org.gradle.Foo", "test"), new TestStartEvent(100, "class"))
+        generator.output("test", new DefaultTestOutputEvent(StdOut, "some <output> ]"))
+        generator.output("test", new DefaultTestOutputEvent(StdOut, "]>\n"))
+        generator.output("test", new DefaultTestOutputEvent(StdOut, largeOutput))
+        generator.output("test", new DefaultTestOutputEvent(StdErr, "some error"))
+        generator.completed("test", new TestCompleteEvent(200))
+        generator.completed("class", new TestCompleteEvent(200))
+
+        then:
+        def suite = new XmlSlurper().parse(resultsDir.file("TEST-org.gradle.Foo.xml"))
+        suite.'system-out'.text() == "some <output> ]]>\n" + largeOutput
+        suite.'system-err'.text() == "some error"
+    }
+
+    def ignoresOutputReceivedAfterTestClassHasCompleted() {
+        when:
+        generator.started(new DefaultTestClassDescriptor("class", "org.gradle.Foo"), new TestStartEvent(100))
+        generator.completed("class", new TestCompleteEvent(200))
+        generator.output("class", new DefaultTestOutputEvent(StdOut, "late output"))
+
+        then:
+        def suite = new XmlSlurper().parse(resultsDir.file("TEST-org.gradle.Foo.xml"))
+        suite.'system-out'.text() == ""
+    }
+}
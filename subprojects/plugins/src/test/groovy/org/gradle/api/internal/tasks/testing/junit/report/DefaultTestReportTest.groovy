@@ -15,6 +15,7 @@
  */
 package org.gradle.api.internal.tasks.testing.junit.report
 
+import org.gradle.internal.concurrent.DefaultExecutorFactory
 import org.gradle.util.TemporaryFolder
 import org.gradle.util.TestFile
 import org.junit.Rule
@@ -23,7 +24,7 @@ import org.cyberneko.html.parsers.SAXParser
 
 class DefaultTestReportTest extends Specification {
     @Rule public final TemporaryFolder tmpDir = new TemporaryFolder()
-    final DefaultTestReport report = new DefaultTestReport()
+    final DefaultTestReport report = new DefaultTestReport(new DefaultExecutorFactory())
     final TestFile reportDir = tmpDir.file('report')
     final TestFile resultsDir = tmpDir.file('results')
     final TestFile indexFile = reportDir.file('index.html')
@@ -253,6 +254,36 @@ message">this is a failure.</failure></testcase>
         results(indexFile).assertHasTests(1)
     }
 
+    def generatesReportUsingMultipleThreads() {
+        def report = new DefaultTestReport(new DefaultExecutorFactory(), 4)
+        report.testReportDir = reportDir
+        report.testResultsDir = resultsDir
+        20.times { i ->
+            resultsDir.file("TEST-org.gradle${i % 3}.Test${i}.xml") << """
+<testsuite name="org.gradle${i % 3}.Test${i}">
+    <testcase classname="org.gradle${i % 3}.Test${i}" name="test1" time="0"/>
+    <testcase classname="org.gradle${i % 3}.Test${i}" name="test2" time="0"><failure message="failed">failure ${i}</failure></testcase>
+    <system-out>output ${i}</system-out>
+</testsuite>
+"""
+        }
+
+        when:
+        report.generateReport()
+
+        then:
+        def index = results(indexFile)
+        index.assertHasTests(40)
+        index.assertHasFailures(20)
+        results(reportDir.file('org.gradle1.html')).assertHasTests(14)
+        20.times { i ->
+            def testClassFile = results(reportDir.file("org.gradle${i % 3}.Test${i}.html"))
+            testClassFile.assertHasTests(2)
+            testClassFile.assertHasFailure('test2', "failure ${i}")
+            testClassFile.assertHasStandardOutput("output ${i}")
+        }
+    }
+
     def results(TestFile file) {
         return new TestResultsFixture(file)
     }
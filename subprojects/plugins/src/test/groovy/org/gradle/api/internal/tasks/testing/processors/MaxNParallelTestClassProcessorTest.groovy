@@ -16,9 +16,14 @@
 
 package org.gradle.api.internal.tasks.testing.processors
 
+import org.gradle.api.internal.tasks.testing.DefaultTestClassDescriptor
 import org.gradle.api.internal.tasks.testing.TestClassProcessor
 import org.gradle.api.internal.tasks.testing.TestClassRunInfo
+import org.gradle.api.internal.tasks.testing.TestCompleteEvent
 import org.gradle.api.internal.tasks.testing.TestResultProcessor
+import org.gradle.api.internal.tasks.testing.TestStartEvent
+import org.gradle.api.internal.tasks.testing.TestSuiteExecutionException
+import org.gradle.api.internal.tasks.testing.TestWorkerFailureListener
 import org.gradle.messaging.actor.Actor
 import org.gradle.messaging.actor.ActorFactory
 import spock.lang.Specification
@@ -167,4 +172,166 @@ class MaxNParallelTestClassProcessorTest extends Specification {
         then:
         1 * asyncProcessor2.processTestClass(test)
     }
+
+    def givesTestClassesToProcessorsWhenTheyFinishTheirCurrentTestClass() {
+        def durations = new TestClassDurations()
+        TestClassProcessor processor1 = Mock()
+        TestClassProcessor processor2 = Mock()
+        TestClassProcessor asyncProcessor1 = Mock()
+        TestClassProcessor asyncProcessor2 = Mock()
+        Actor actor1 = Mock()
+        Actor actor2 = Mock()
+        TestResultProcessor forkResultProcessor1
+        def processor = new MaxNParallelTestClassProcessor(2, factory, actorFactory, durations)
+        def test1 = testClass("Test1")
+        def test2 = testClass("Test2")
+        def test3 = testClass("Test3")
+
+        startProcessor(processor)
+
+        when:
+        processor.processTestClass(test1)
+        processor.processTestClass(test2)
+        processor.processTestClass(test3)
+
+        then:
+        2 * factory.create() >>> [processor1, processor2]
+        2 * actorFactory.createActor(_) >>> [actor1, actor2]
+        1 * actor1.getProxy(TestClassProcessor) >> asyncProcessor1
+        1 * actor2.getProxy(TestClassProcessor) >> asyncProcessor2
+        1 * asyncProcessor1.startProcessing(_) >> { forkResultProcessor1 = it[0] }
+        1 * asyncProcessor1.processTestClass(test1)
+        1 * asyncProcessor2.processTestClass(test2)
+        0 * asyncProcessor1.processTestClass(_)
+        0 * asyncProcessor2.processTestClass(_)
+
+        when:
+        forkResultProcessor1.started(new DefaultTestClassDescriptor(1, "Test1"), new TestStartEvent(100))
+        forkResultProcessor1.completed(1, new TestCompleteEvent(350))
+
+        then:
+        1 * asyncResultProcessor.started({ it.id == 1 }, _)
+        1 * asyncResultProcessor.completed(1, _)
+        1 * asyncProcessor1.processTestClass(test3)
+        0 * asyncProcessor2.processTestClass(_)
+        durations.getDuration("Test1") == 250
+    }
+
+    def givesOutTestClassesWhichTookLongestPreviouslyFirst() {
+        def durations = new TestClassDurations()
+        durations.recordDuration("Short", 10)
+        durations.recordDuration("Long", 1000)
+        TestClassProcessor processor1 = Mock()
+        TestClassProcessor asyncProcessor1 = Mock()
+        Actor actor1 = Mock()
+        TestResultProcessor forkResultProcessor1
+        def processor = new MaxNParallelTestClassProcessor(1, factory, actorFactory, durations)
+        def first = testClass("First")
+        def shortTest = testClass("Short")
+        def longTest = testClass("Long")
+        def newTest = testClass("New")
+
+        startProcessor(processor)
+
+        when:
+        processor.processTestClass(first)
+        processor.processTestClass(shortTest)
+        processor.processTestClass(longTest)
+        processor.processTestClass(newTest)
+
+        then:
+        1 * factory.create() >> processor1
+        1 * actorFactory.createActor(_) >> actor1
+        1 * actor1.getProxy(TestClassProcessor) >> asyncProcessor1
+        1 * asyncProcessor1.startProcessing(_) >> { forkResultProcessor1 = it[0] }
+        1 * asyncProcessor1.processTestClass(first)
+
+        when:
+        completeTestClass(forkResultProcessor1, 1, "First")
+
+        then:
+        1 * asyncProcessor1.processTestClass(newTest)
+
+        when:
+        completeTestClass(forkResultProcessor1, 2, "New")
+
+        then:
+        1 * asyncProcessor1.processTestClass(longTest)
+
+        when:
+        completeTestClass(forkResultProcessor1, 3, "Long")
+
+        then:
+        1 * asyncProcessor1.processTestClass(shortTest)
+    }
+
+    def givesNoMoreTestClassesToProcessorWhoseWorkerHasStopped() {
+        def durations = new TestClassDurations()
+        TestClassProcessor processor1 = Mock()
+        TestClassProcessor processor2 = Mock()
+        TestClassProcessor asyncProcessor1 = Mock()
+        TestClassProcessor asyncProcessor2 = Mock()
+        Actor actor1 = Mock()
+        Actor actor2 = Mock()
+        TestResultProcessor forkResultProcessor1
+        TestResultProcessor forkResultProcessor2
+        def processor = new MaxNParallelTestClassProcessor(2, factory, actorFactory, durations)
+        def test1 = testClass("Test1")
+        def test2 = testClass("Test2")
+        def test3 = testClass("Test3")
+        def test4 = testClass("Test4")
+
+        startProcessor(processor)
+
+        when:
+        processor.processTestClass(test1)
+        processor.processTestClass(test2)
+        processor.processTestClass(test3)
+        processor.processTestClass(test4)
+
+        then:
+        2 * factory.create() >>> [processor1, processor2]
+        2 * actorFactory.createActor(_) >>> [actor1, actor2]
+        1 * actor1.getProxy(TestClassProcessor) >> asyncProcessor1
+        1 * actor2.getProxy(TestClassProcessor) >> asyncProcessor2
+        1 * asyncProcessor1.startProcessing(_) >> { forkResultProcessor1 = it[0] }
+        1 * asyncProcessor2.startProcessing(_) >> { forkResultProcessor2 = it[0] }
+        1 * asyncProcessor1.processTestClass(test1)
+        1 * asyncProcessor2.processTestClass(test2)
+
+        when:
+        ((TestWorkerFailureListener) forkResultProcessor1).workerFailed("worker 1")
+        completeTestClass(forkResultProcessor2, 2, "Test2")
+
+        then:
+        1 * asyncProcessor2.processTestClass(test3)
+        0 * asyncProcessor1.processTestClass(_)
+
+        when:
+        ((TestWorkerFailureListener) forkResultProcessor2).workerFailed("worker 2")
+        processor.stop()
+
+        then:
+        0 * asyncProcessor1.processTestClass(_)
+        0 * asyncProcessor2.processTestClass(_)
+        TestSuiteExecutionException e = thrown()
+        e.message == "Could not execute 1 test classes, as all test workers have failed."
+    }
+
+    def startProcessor(MaxNParallelTestClassProcessor processor) {
+        1 * actorFactory.createActor(resultProcessor) >> resultProcessorActor
+        1 * resultProcessorActor.getProxy(TestResultProcessor) >> asyncResultProcessor
+        processor.startProcessing(resultProcessor)
+    }
+
+    def completeTestClass(TestResultProcessor resultProcessor, Object id, String className) {
+        resultProcessor.started(new DefaultTestClassDescriptor(id, className), new TestStartEvent(0))
+        resultProcessor.completed(id, new TestCompleteEvent(10))
+    }
+
+    def testClass(String className) {
+        TestClassRunInfo test = Mock()
+        _ * test.getTestClassName() >> className
+        return test
+    }
 }
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.testing.processors
+
+import spock.lang.Specification
+
+class TestClassDurationsTest extends Specification {
+    final TestClassDurations.DurationsSerializer serializer = new TestClassDurations.DurationsSerializer()
+
+    def "can serialize durations"() {
+        def durations = new TestClassDurations()
+        durations.recordDuration("org.gradle.SomeTest", 120)
+        durations.recordDuration("org.gradle.OtherTest", 5)
+        def outstr = new ByteArrayOutputStream()
+
+        when:
+        serializer.write(outstr, durations)
+        def result = serializer.read(new ByteArrayInputStream(outstr.toByteArray()))
+
+        then:
+        result.getDuration("org.gradle.SomeTest") == 120
+        result.getDuration("org.gradle.OtherTest") == 5
+        result.getDuration("org.gradle.UnknownTest") == null
+    }
+}
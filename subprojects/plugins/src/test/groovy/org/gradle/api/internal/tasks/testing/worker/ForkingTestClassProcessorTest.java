@@ -20,6 +20,7 @@ import org.gradle.api.Action;
 import org.gradle.internal.Factory;
 import org.gradle.api.internal.tasks.testing.TestClassRunInfo;
 import org.gradle.api.internal.tasks.testing.TestResultProcessor;
+import org.gradle.api.internal.tasks.testing.TestWorkerFailureListener;
 import org.gradle.api.internal.tasks.testing.WorkerTestClassProcessorFactory;
 import org.gradle.messaging.remote.ObjectConnection;
 import org.gradle.process.JavaForkOptions;
@@ -27,7 +28,9 @@ import org.gradle.process.internal.JavaExecHandleBuilder;
 import org.gradle.process.internal.WorkerProcess;
 import org.gradle.process.internal.WorkerProcessBuilder;
 import org.gradle.util.JUnit4GroovyMockery;
+import org.hamcrest.Description;
 import org.jmock.Expectations;
+import org.jmock.api.Invocation;
 import org.jmock.integration.junit4.JMock;
 import org.jmock.integration.junit4.JUnit4Mockery;
 import org.junit.Test;
@@ -49,12 +52,13 @@ public class ForkingTestClassProcessorTest {
     private final RemoteTestClassProcessor worker = context.mock(RemoteTestClassProcessor.class);
     private final TestClassRunInfo test1 = context.mock(TestClassRunInfo.class, "test1");
     private final TestClassRunInfo test2 = context.mock(TestClassRunInfo.class, "test2");
-    private final TestResultProcessor resultProcessor = context.mock(TestResultProcessor.class);
+    private final FailureListeningResultProcessor resultProcessor = context.mock(FailureListeningResultProcessor.class);
     private final List<File> appClassPath = asList(new File("classpath.jar"));
     private final JavaForkOptions options = context.mock(JavaForkOptions.class);
     @SuppressWarnings("unchecked")
     private final Action<WorkerProcessBuilder> action = context.mock(Action.class);
     private final ForkingTestClassProcessor processor = new ForkingTestClassProcessor(workerFactory, processorFactory, options, appClassPath, action);
+    private Runnable stopAction;
 
     @Test
     public void onFirstTestCaseStartsWorkerProcess() {
@@ -94,6 +98,34 @@ public class ForkingTestClassProcessorTest {
         processor.stop();
     }
 
+    @Test
+    public void notifiesResultProcessorWhenWorkerProcessStopsUnexpectedly() {
+        expectWorkerProcessStarted();
+        context.checking(new Expectations() {{
+            one(worker).processTestClass(test1);
+            one(resultProcessor).workerFailed("workerProcess");
+        }});
+
+        processor.startProcessing(resultProcessor);
+        processor.processTestClass(test1);
+        stopAction.run();
+    }
+
+    @Test
+    public void doesNotNotifyResultProcessorWhenWorkerProcessStopsOnEndProcessing() {
+        expectWorkerProcessStarted();
+        context.checking(new Expectations() {{
+            one(worker).processTestClass(test1);
+            one(worker).stop();
+            one(workerProcess).waitForStop();
+        }});
+
+        processor.startProcessing(resultProcessor);
+        processor.processTestClass(test1);
+        processor.stop();
+        stopAction.run();
+    }
+
     @Test
     public void onEndProcessingDoesNothingIfNoTestsProcessed() {
         processor.startProcessing(resultProcessor);
@@ -135,7 +167,22 @@ public class ForkingTestClassProcessorTest {
 
             one(workerProcess).start();
 
+            one(workerProcess).whenStopped(with(notNullValue(Runnable.class)));
+            will(new org.jmock.api.Action() {
+                public void describeTo(Description description) {
+                    description.appendText("collect stop action");
+                }
+
+                public Object invoke(Invocation invocation) {
+                    stopAction = (Runnable) invocation.getParameter(0);
+                    return null;
+                }
+            });
+
             one(worker).startProcessing();
         }});
     }
+
+    interface FailureListeningResultProcessor extends TestResultProcessor, TestWorkerFailureListener {
+    }
 }